@@ -24,17 +24,34 @@ public class A4Reporter {
 	/** If nonnull, then we will forward requests to this reporter. */
 	private final A4Reporter parent;
 
+	/** [VM] If nonnull, then the translation and the solving stop once it is cancelled. */
+	private final Cancellation cancellation;
+
 	/** This is a pre-constructed instance that simply ignores all calls. */
 	public static final A4Reporter NOP = new A4Reporter();
 
 	/** Constructs a default A4Reporter object that does nothing. */
 	public A4Reporter () {
 		parent = null;
+		cancellation = null;
 	}
 
 	/** Constructs an A4Reporter that forwards each method to the given A4Reporter. */
 	public A4Reporter (A4Reporter reporter) {
 		parent = reporter;
+		cancellation = null;
+	}
+
+	/** [VM] Constructs an A4Reporter that forwards each method to the given A4Reporter, and whose task can be cancelled. */
+	public A4Reporter (A4Reporter reporter, Cancellation cancellation) {
+		parent = reporter;
+		this.cancellation = cancellation;
+	}
+
+	/** [VM] Returns the cancellation of this reporter's task, or its parent's; null if the task cannot be cancelled. */
+	public Cancellation cancellation () {
+		if (cancellation != null) return cancellation;
+		return parent != null ? parent.cancellation() : null;
 	}
 
 	/** This method is called at various points to report the current progress;
@@ -91,6 +108,14 @@ public class A4Reporter {
 		if (parent != null) parent.solve(primaryVars, totalVars, clauses);
 	}
 
+	/** [VM] This method is called by a batch just before it solves its i-th formula over the shared CNF.
+	 *
+	 * @param i - the index of the formula in the batch
+	 */
+	public void solveBatchFormula (int i) {
+		if (parent != null) parent.solveBatchFormula(i);
+	}
+
 	/** If solver==KK or solver==CNF, this method is called by the translator after it constructed the Kodkod or CNF file.
 	 *
 	 * @param filename - the Kodkod or CNF file generated by the translator
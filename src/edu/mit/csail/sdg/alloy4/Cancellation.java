@@ -0,0 +1,58 @@
+package edu.mit.csail.sdg.alloy4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/** [VM] A flag that asks a running translation or solve to stop as soon as it can.
+ *
+ * <p> The translator polls it between its stages, and a solver registers a hook that stops its search loop.
+ * Once cancelled, it stays cancelled; a new one is made for each task.
+ */
+public final class Cancellation {
+
+	private volatile boolean cancelled = false;
+
+	/** The hooks to run on cancel; guarded by this. */
+	private final List<Runnable> hooks = new ArrayList<Runnable>();
+
+	/** Cancels and runs the registered hooks; does nothing if already cancelled. */
+	public void cancel() {
+		final List<Runnable> toRun;
+		synchronized(this) {
+			if (cancelled) return;
+			cancelled = true;
+			toRun = new ArrayList<Runnable>(hooks);
+			hooks.clear();
+		}
+		for(Runnable hook: toRun) hook.run();
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/** Registers a hook to run on cancel; it runs right away if already cancelled. */
+	public void onCancel(Runnable hook) {
+		synchronized(this) {
+			if (!cancelled) { hooks.add(hook); return; }
+		}
+		hook.run();
+	}
+
+	/** Removes a hook that is no longer needed, e.g. the hook of a freed solver. */
+	public synchronized void remove(Runnable hook) {
+		hooks.remove(hook);
+	}
+
+	/** Throws a CancellationException if cancelled. */
+	public void check() {
+		if (cancelled) throw new CancellationException("The analysis is cancelled.");
+	}
+
+	/** Throws a CancellationException if the reporter's task is cancelled. */
+	public static void check(A4Reporter rep) {
+		final Cancellation cancellation = rep==null ? null : rep.cancellation();
+		if (cancellation!=null) cancellation.check();
+	}
+}
@@ -651,6 +651,41 @@ public final class CompModule extends Browsable implements Module {
       if (body.errors.size()>0) throw body.errors.pick(); else return body;
    }
 
+   /** [VM] added to make a run/check command over this already resolved root module without re-parsing it.
+    * @param label - the label of the new command
+    * @param check - true if the formula is to be checked (and thus negated), false if it is to be run
+    * @param formula - the body of the command; it is typechecked against this module
+    * @param scope - the scope part of the command, such as "for 5" or "for 3 but 4 Node"
+    * @return the resolved command which also includes all the reachable facts
+    */
+   public Command parseOneCommandFromString(String label, boolean check, String formula, String scope) throws Err, FileNotFoundException, IOException {
+      Expr e = parseOneExpressionFromString(formula);
+      if (check) e = e.not();
+      Command cmd = parseOneScopeFromString(label, check, scope);
+      return cmd.change(cmd.formula.and(e));
+   }
+
+   /** [VM] added to make a run/check command with an empty body over this already resolved root module.
+    * @param label - the label of the new command
+    * @param check - true if it is a check command, false if it is a run command
+    * @param scope - the scope part of the command, such as "for 5" or "for 3 but 4 Node"
+    * @return the resolved command whose formula is all the reachable facts
+    */
+   public Command parseOneScopeFromString(String label, boolean check, String scope) throws Err, FileNotFoundException, IOException {
+      Map<String,String> fc = new LinkedHashMap<String,String>();
+      fc.put("", (check ? "check" : "run") + " {} " + scope);
+      CompModule m = CompParser.alloy_parseStream(new ArrayList<Object>(), null, fc, null, -1, "", "", 1);
+      if (m.commands.size()!=1) throw new ErrorSyntax("The input does not correspond to an Alloy command scope.");
+      Command cmd = m.commands.get(0);
+      TempList<CommandScope> sc=new TempList<CommandScope>(cmd.scope.size());
+      for(CommandScope et: cmd.scope) {
+         Sig s = getRawSIG(et.sig.pos, et.sig.label);
+         if (s==null) throw new ErrorSyntax(et.sig.pos, "The sig \""+et.sig.label+"\" cannot be found.");
+         sc.add(new CommandScope(null, s, et.isExact, et.startingScope, et.endingScope, et.increment));
+      }
+      return new Command(cmd.pos, label, check, cmd.overall, cmd.bitwidth, cmd.maxseq, cmd.expects, sc.makeConst(), ConstList.make(world.exactSigs), getAllReachableFacts(), null);
+   }
+
    /** Throw an exception if the name is already used, or has @ or /, or is univ/Int/none. */
    private void dup(Pos pos, String name, boolean checkSig) throws Err {
       if (name.length()==0)     throw new ErrorSyntax(pos, "Name cannot be empty");
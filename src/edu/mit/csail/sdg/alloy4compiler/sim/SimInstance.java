@@ -27,6 +27,11 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import edu.mit.csail.sdg.alloy4.Env;
 import edu.mit.csail.sdg.alloy4.Err;
 import edu.mit.csail.sdg.alloy4.ErrorAPI;
@@ -82,6 +87,9 @@ public final class SimInstance extends VisitReturn<Object> {
     /** Caches parameter-less functions to a Boolean, Integer, or SimTupleset. */
     private final Map<Func,Object> cacheForConstants = new IdentityHashMap<Func,Object>();
 
+    /** [VM] Caches the value of each closed non-leaf node evaluated so far (see SimPlan); it is cleared whenever a sig/field/var/callback changes. */
+    private final Map<Expr,Object> memo = new IdentityHashMap<Expr,Object>();
+
     /** This is used to detect "function recursion" (which we currently do not allow). */
     private final List<Func> current_function = new ArrayList<Func>();
 
@@ -104,6 +112,18 @@ public final class SimInstance extends VisitReturn<Object> {
     private boolean wasOverflow;
     public boolean wasOverflow() { return wasOverflow; }
 
+    /** [VM] Whether "trunc" was ever called; a worker reports its overflow to its parent only if so. */
+    private boolean truncated;
+
+    /** [VM] A quantifier whose first variable has at least this many bindings is enumerated in parallel. */
+    private static final int PARALLEL_BINDINGS = 16;
+
+    /** [VM] The least number of bindings each parallel task enumerates. */
+    private static final int PARALLEL_CHUNK = 4;
+
+    /** [VM] True if this is a copy that enumerates some bindings of a quantifier for its parent; a worker does not fork again. */
+    private final boolean worker;
+
     /** Helper method that encodes the given string using UTF-8 and write to the output stream. */
     private static void write(BufferedOutputStream out, String string) throws IOException {
         out.write(string.getBytes("UTF-8"));
@@ -237,6 +257,7 @@ public final class SimInstance extends VisitReturn<Object> {
     public SimInstance(Module root, int bitwidth, int maxseq) throws Err {
         if (bitwidth<0 || bitwidth>32) throw new ErrorType("Bitwidth must be between 0 and 32.");
         this.root = root;
+        this.worker = false;
         this.bitwidth = bitwidth;
         this.maxseq = maxseq;
         this.callbacks = new HashMap<Func,SimCallback>();
@@ -249,6 +270,7 @@ public final class SimInstance extends VisitReturn<Object> {
     /** Construct a deep copy of this instance (except that it shares the same root Module object as the old instance) */
     public SimInstance(SimInstance old) throws Err {
         root = old.root;
+        worker = false;
         bitwidth = old.bitwidth;
         maxseq = old.maxseq;
         min = old.min;
@@ -261,9 +283,31 @@ public final class SimInstance extends VisitReturn<Object> {
         for(Map.Entry<Expr,SimTupleset> e: old.sfs.entrySet()) sfs.put(e.getKey(), e.getValue());
     }
 
+    /** [VM] Construct a worker that evaluates with the given local variables in the parent's instance;
+     * it copies the caches so that it never writes to the parent's state.
+     */
+    private SimInstance(SimInstance parent, Env<ExprVar,Object> env) {
+        root = parent.root;
+        worker = true;
+        bitwidth = parent.bitwidth;
+        maxseq = parent.maxseq;
+        min = parent.min;
+        max = parent.max;
+        shiftmask = parent.shiftmask;
+        this.env = env;
+        cacheUNIV = parent.cacheUNIV;
+        cacheSTRING = parent.cacheSTRING;
+        callbacks = parent.callbacks;
+        sfs.putAll(parent.sfs);
+        cacheForConstants.putAll(parent.cacheForConstants);
+        memo.putAll(parent.memo);
+        current_function.addAll(parent.current_function);
+    }
+
     /** Register a callback. */
     public void addCallback(Func predicateOrFunction, SimCallback callback) {
         callbacks.put(predicateOrFunction, callback);
+        memo.clear();
     }
 
     /** Returns true if the given atom is an Int atom, or String atom, or is in at least one of the sig. */
@@ -293,6 +337,7 @@ public final class SimInstance extends VisitReturn<Object> {
           if (hasAtom(atom)) continue;
           SimTupleset add = SimTupleset.make(SimTuple.make(atom));
           if (cacheUNIV!=null) cacheUNIV = cacheUNIV.union(add);
+          memo.clear();
           for(; s!=null; s=s.parent) if (!s.builtin) {
               SimTupleset old = sfs.get(s);
               if (old==null || old.empty()) sfs.put(s, add); else if (!add.in(old)) sfs.put(s, old.union(add)); else break;
@@ -317,45 +362,48 @@ public final class SimInstance extends VisitReturn<Object> {
           SimTupleset newvalue = oldvalue.removeAll(atom);
           if (oldvalue.longsize() != newvalue.longsize()) { changed=true; x.setValue(newvalue); }
        }
-       if (changed) { cacheUNIV=null; return true; } else { return false; }
+       if (changed) { cacheUNIV=null; memo.clear(); return true; } else { return false; }
     }
 
     /** Initializes the given sig to be associated with the given unary value; should only be called at the beginning.
      * <p> The resulting instance may or may not satisfy all facts, and should be checked for consistency.
      */
     public void init(Sig sig, SimTupleset value) throws Err {
-        if (value==null) { sfs.remove(sig); return; }
+        if (value==null) { sfs.remove(sig); memo.clear(); return; }
         if (value.arity()>1) throw new ErrorType("Evaluator encountered an error: sig "+sig.label+" arity must not be " + value.arity());
         if (sig.builtin) throw new ErrorAPI("Evaluator cannot prebind the builtin sig \"" + sig.label + "\"");
         sfs.put(sig, value);
         cacheUNIV = null;
         cacheSTRING = null;
         cacheForConstants.clear();
+        memo.clear();
     }
 
     /** Initializes the given field to be associated with the given unary value; should only be called at the beginning.
      * <p> The resulting instance may or may not satisfy all facts, and should be checked for consistency.
      */
     public void init(Field field, SimTupleset value) throws Err {
-        if (value==null) { sfs.remove(field); return; }
+        if (value==null) { sfs.remove(field); memo.clear(); return; }
         if (!value.empty() && value.arity()!=field.type().arity()) throw new ErrorType("Evaluator encountered an error: field "+field.label+" arity must not be " + value.arity());
         if (field.defined) throw new ErrorAPI("Evaluator cannot prebind the value of a defined field.");
         sfs.put(field, value);
         cacheUNIV = null;
         cacheSTRING = null;
         cacheForConstants.clear();
+        memo.clear();
     }
 
     /** Initializes the given var to be associated with the given unary value; should only be called at the beginning.
      * <p> The resulting instance may or may not satisfy all facts, and should be checked for consistency.
      */
     public void init(ExprVar var, SimTupleset value) throws Err {
-        if (value==null) { sfs.remove(var); return; }
+        if (value==null) { sfs.remove(var); memo.clear(); return; }
         if (!value.empty() && value.arity()!=var.type().arity()) throw new ErrorType("Evaluator encountered an error: skolem "+var.label+" arity must not be " + value.arity());
         sfs.put(var, value);
         cacheUNIV = null;
         cacheSTRING = null;
         cacheForConstants.clear();
+        memo.clear();
     }
 
     /** Truncate the given integer based on the current chosen bitwidth (as string) plus 
@@ -363,16 +411,30 @@ public final class SimInstance extends VisitReturn<Object> {
     private int trunc(int i) { 
         int ret = (i<<(32-bitwidth)) >> (32-bitwidth);
         wasOverflow = ret != i;
+        truncated = true;
         return ret;
     }
 
+    /** [VM] Evaluates x; if x is a closed non-leaf node, its value is computed once until the instance changes.
+     * <p> An integer is not kept, since computing it again is cheap and sets the overflow flag.
+     */
+    private Object eval(Expr x) throws Err {
+        if (SimPlan.isLeaf(x) || !SimPlan.isClosed(x)) return x.accept(this);
+        Object ans = memo.get(x);
+        if (ans==null) {
+            ans = x.accept(this);
+            if (!(ans instanceof Integer)) memo.put(x, ans);
+        }
+        return ans;
+    }
+
     /** Convenience method that evalutes x and casts the result to be a boolean.
      * @return the boolean - if x evaluates to a boolean
      * @throws ErrorFatal - if x does not evaluate to a boolean
      */
     public boolean cform(Expr x) throws Err {
         if (!x.errors.isEmpty()) throw x.errors.pick();
-        Object y = visitThis(x);
+        Object y = eval(x);
         if (y instanceof Boolean) return Boolean.TRUE.equals(y);
         throw new ErrorFatal(x.span(), "This should have been a formula.\nInstead it is "+y);
     }
@@ -383,7 +445,7 @@ public final class SimInstance extends VisitReturn<Object> {
      */
     public int cint(Expr x) throws Err {
         if (!x.errors.isEmpty()) throw x.errors.pick();
-        Object y = visitThis(x);
+        Object y = eval(x);
         if (y instanceof Integer) return (Integer)y;
         if (y instanceof SimTupleset) return ((SimTupleset) y).sum();
         throw new ErrorFatal(x.span(), "This should have been an integer expression.\nInstead it is "+y);
@@ -395,7 +457,7 @@ public final class SimInstance extends VisitReturn<Object> {
      */
     public SimTupleset cset(Expr x) throws Err {
         if (!x.errors.isEmpty()) throw x.errors.pick();
-        Object y = visitThis(x);
+        Object y = eval(x);
         if (y instanceof SimTupleset) return (SimTupleset)y;
         if (y instanceof Integer) return SimTupleset.make(SimTuple.make(SimAtom.make(((Integer) y).intValue())));
         throw new ErrorFatal(x.span(), "This should have been a set or a relation.\nInstead it is "+y);
@@ -524,7 +586,7 @@ public final class SimInstance extends VisitReturn<Object> {
         Env<ExprVar,Object> oldenv = env;
         env = newenv;
         current_function.add(f);
-        Object ans = visitThis(body);
+        Object ans = eval(body);
         env = oldenv;
         current_function.remove(current_function.size()-1);
         if (f.count()==0) cacheForConstants.put(f, ans);
@@ -554,13 +616,13 @@ public final class SimInstance extends VisitReturn<Object> {
 
     /** {@inheritDoc} */
     @Override public Object visit(ExprITE x) throws Err {
-        if (cform(x.cond)) return visitThis(x.left); else return visitThis(x.right);
+        if (cform(x.cond)) return eval(x.left); else return eval(x.right);
     }
 
     /** {@inheritDoc} */
     @Override public Object visit(ExprLet x) throws Err {
-        env.put(x.var, visitThis(x.expr));
-        Object ans = visitThis(x.sub);
+        env.put(x.var, eval(x.expr));
+        Object ans = eval(x.sub);
         env.remove(x.var);
         return ans;
     }
@@ -573,7 +635,7 @@ public final class SimInstance extends VisitReturn<Object> {
           case ONEOF:
           case SETOF:
           case SOMEOF:      return cset(x.sub);
-          case NOOP:        return visitThis(x.sub);
+          case NOOP:        return eval(x.sub);
           case CARDINALITY: return trunc(cset(x.sub).size());
           case NO:          return cset(x.sub).empty();
           case LONE:        return cset(x.sub).longsize()<=1;
@@ -656,8 +718,7 @@ public final class SimInstance extends VisitReturn<Object> {
     }
 
     /** Helper method for enumerating all possibilties for a quantification-expression. */
-    private int enumerate(final TempList<SimTuple> store, int sum, final ExprQt x, final Expr body, final int i) throws Err { // if op is ALL NO SOME ONE LONE then it always returns 0 1 2
-       final int n = x.count();
+    private int enumerate(final TempList<SimTuple> store, int sum, final ExprQt x, final Expr body, final boolean negate, final int i) throws Err { // if op is ALL NO SOME ONE LONE then it always returns 0 1 2
        final ExprVar v = x.get(i);
        final Expr bound = x.getBound(i);
        final SimTupleset e = cset(bound);
@@ -668,39 +729,165 @@ public final class SimInstance extends VisitReturn<Object> {
          case SOMEOF: it = e.someOf(); break;
          default:     it = e.setOf();
        }
+       if (i==0 && isParallel(x, bound, e)) {
+          List<SimTupleset> bindings = new ArrayList<SimTupleset>(e.size());
+          while(it.hasNext()) bindings.add(it.next());
+          return enumerateInParallel(store, x, body, negate, bindings);
+       }
        while(it.hasNext()) {
-          final SimTupleset binding = it.next();
-          if (bound.mult==2 && !isIn(binding, bound)) continue;
-          env.put(v, binding);
-          if (i<n-1) sum = enumerate(store, sum, x, body, i+1);
-             else if (x.op==ExprQt.Op.SUM) sum += cint(body);
-             else if (x.op!=ExprQt.Op.COMPREHENSION) sum += cform(body)?1:0;
-             else if (cform(body)) {
-               SimTuple a=null, b;
-               for(int j=0; j<n; j++) { b=((SimTupleset)(env.get(x.get(j)))).getTuple(); if (a==null) a=b; else a=a.product(b); }
-               store.add(a);
-             }
-          env.remove(v);
+          sum = enumerate(store, sum, x, body, negate, i, it.next());
           if (sum>=2 && x.op!=ExprQt.Op.COMPREHENSION && x.op!=ExprQt.Op.SUM) return 2; // no need to enumerate further
        }
        return sum;
     }
 
+    /** Helper method that binds the i-th variable of a quantification-expression to the given binding, then enumerates the rest. */
+    private int enumerate(final TempList<SimTuple> store, int sum, final ExprQt x, final Expr body, final boolean negate, final int i, final SimTupleset binding) throws Err {
+       final int n = x.count();
+       final ExprVar v = x.get(i);
+       final Expr bound = x.getBound(i);
+       if (bound.mult==2 && !isIn(binding, bound)) return sum;
+       env.put(v, binding);
+       if (i<n-1) sum = enumerate(store, sum, x, body, negate, i+1);
+          else if (x.op==ExprQt.Op.SUM) sum += cint(body);
+          else if (x.op!=ExprQt.Op.COMPREHENSION) sum += cform(body)!=negate?1:0;
+          else if (cform(body)) {
+            SimTuple a=null, b;
+            for(int j=0; j<n; j++) { b=((SimTupleset)(env.get(x.get(j)))).getTuple(); if (a==null) a=b; else a=a.product(b); }
+            store.add(a);
+          }
+       env.remove(v);
+       return sum;
+    }
+
+    /** [VM] Returns true if the first variable of x is worth binding in parallel: it has many single-tuple bindings,
+     * and either more variables follow it or the body enumerates bindings itself.
+     */
+    private boolean isParallel(ExprQt x, Expr bound, SimTupleset e) throws Err {
+       if (worker || !callbacks.isEmpty()) return false; // a callback need not be thread-safe
+       if (pool().getParallelism()<2) return false;
+       if (bound.mult()!=ExprUnary.Op.ONEOF || e.longsize()<PARALLEL_BINDINGS) return false;
+       return x.count()>1 || SimPlan.isNested(x.sub);
+    }
+
+    /** [VM] Returns the pool in which the bindings are enumerated: the caller's pool if it runs in one, else the common pool. */
+    private static ForkJoinPool pool() {
+       return ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+    }
+
+    /** [VM] Enumerates the given bindings of the first variable of x across the fork-join pool; a worker enumerates a run of them.
+     * <p> A run stops early once the runs before it and its own bindings reach the count at which the sequential enumeration stops,
+     * or once a run before it stopped. The runs are then put together in order, and the binding at which the sequential
+     * enumeration would stop or fail is enumerated again here, so the answer, the error and the overflow are the same.
+     * @return what enumerate(store, 0, x, body, negate, 0) returns
+     */
+    private int enumerateInParallel(final TempList<SimTuple> store, final ExprQt x, final Expr body, final boolean negate, final List<SimTupleset> bindings) throws Err {
+       final boolean decides = x.op!=ExprQt.Op.COMPREHENSION && x.op!=ExprQt.Op.SUM;
+       visit(Sig.UNIV); // so that the workers share the cached UNIV and STRING
+       final ForkJoinPool pool = pool();
+       final int chunks = Math.max(1, Math.min(bindings.size() / PARALLEL_CHUNK, pool.getParallelism() * 4));
+       final Chunk[] runs = new Chunk[chunks];
+       for(int c=0; c<chunks; c++) runs[c] = new Chunk(bindings.size() * c / chunks, bindings.size() * (c+1) / chunks);
+       final AtomicIntegerArray counts = new AtomicIntegerArray(chunks);
+       final AtomicInteger firstStopped = new AtomicInteger(chunks);
+       final class Run extends RecursiveAction {
+          private static final long serialVersionUID = 0;
+          private final int lo, hi;
+          Run(int lo, int hi) { this.lo=lo; this.hi=hi; }
+          /** Returns true if the sequential enumeration is known to stop before the next binding of run c. */
+          private boolean stops(int c, int sum) {
+             if (firstStopped.get() < c) return true;
+             if (!decides) return false;
+             for(int j=0; j<c && sum<2; j++) sum += counts.get(j);
+             return sum>=2;
+          }
+          @Override protected void compute() {
+             if (hi-lo>1) { int mid=(lo+hi)>>>1; invokeAll(new Run(lo, mid), new Run(mid, hi)); return; }
+             final Chunk run = runs[lo];
+             final SimInstance w = new SimInstance(SimInstance.this, env.dup());
+             final TempList<SimTuple> found = store==null ? null : new TempList<SimTuple>();
+             int sum = 0;
+             try {
+                for(int k=run.from; k<run.to && !stops(lo, sum); k++) {
+                   sum = w.enumerate(found, sum, x, body, negate, 0, bindings.get(k));
+                   run.record(sum, found, w);
+                   counts.set(lo, sum);
+                }
+             } catch(Err ex) {
+                run.failed = true;
+             }
+             if (run.failed || run.done < run.to-run.from) {
+                int c = firstStopped.get();
+                while(lo<c && !firstStopped.compareAndSet(c, lo)) c = firstStopped.get();
+             }
+             run.found = found==null ? null : found.makeConst();
+          }
+       }
+       pool.invoke(new Run(0, chunks));
+       int sum = 0;
+       for(Chunk run: runs) {
+          for(int k=0; k<run.done; k++) {
+             if (!decides || sum + run.sums[k] < 2) continue;
+             run.restore(this, store, k);
+             return enumerateFrom(store, sum + (k==0 ? 0 : run.sums[k-1]), x, body, negate, bindings, run.from+k);
+          }
+          run.restore(this, store, run.done);
+          if (run.done < run.to-run.from) return enumerateFrom(store, sum + (run.done==0 ? 0 : run.sums[run.done-1]), x, body, negate, bindings, run.from+run.done);
+          sum += run.done==0 ? 0 : run.sums[run.done-1];
+       }
+       return sum;
+    }
+
+    /** [VM] Enumerates the bindings of the first variable of x from the given one on, like enumerate(store, sum, x, body, negate, 0). */
+    private int enumerateFrom(final TempList<SimTuple> store, int sum, final ExprQt x, final Expr body, final boolean negate, final List<SimTupleset> bindings, int from) throws Err {
+       for(int k=from; k<bindings.size(); k++) {
+          sum = enumerate(store, sum, x, body, negate, 0, bindings.get(k));
+          if (sum>=2 && x.op!=ExprQt.Op.COMPREHENSION && x.op!=ExprQt.Op.SUM) return 2;
+       }
+       return sum;
+    }
+
+    /** [VM] The bindings from..to-1 of the first variable of a quantifier, and what a worker found after each one it enumerated. */
+    private static final class Chunk {
+       final int from, to;
+       /** The number of bindings enumerated without an error. */
+       int done;
+       boolean failed;
+       /** After each binding: the count, the number of tuples found, and whether "trunc" was called and overflowed so far. */
+       final int[] sums, sizes;
+       final boolean[] truncated, overflow;
+       List<SimTuple> found;
+       Chunk(int from, int to) {
+          this.from=from; this.to=to;
+          sums = new int[to-from]; sizes = new int[to-from]; truncated = new boolean[to-from]; overflow = new boolean[to-from];
+       }
+       void record(int sum, TempList<SimTuple> found, SimInstance w) {
+          sums[done] = sum; sizes[done] = found==null ? 0 : found.size(); truncated[done] = w.truncated; overflow[done] = w.wasOverflow;
+          done++;
+       }
+       /** Sets the store and the overflow of the parent to what they are after the first k bindings of this run. */
+       void restore(SimInstance parent, TempList<SimTuple> store, int k) {
+          if (k==0) return;
+          if (store!=null) store.addAll(found.subList(0, sizes[k-1]));
+          if (truncated[k-1]) { parent.truncated = true; parent.wasOverflow = overflow[k-1]; }
+       }
+    }
+
     /** {@inheritDoc} */
     @Override public Object visit(ExprQt x) throws Err {
-        Expr xx = x.desugar();
-        if (xx instanceof ExprQt) x = (ExprQt)xx; else return visitThis(xx);
+        Expr xx = SimPlan.desugar(x); // [VM] desugared once per node, so the memo sees the same subnodes each time
+        if (xx instanceof ExprQt) x = (ExprQt)xx; else return eval(xx);
         if (x.op == ExprQt.Op.COMPREHENSION) {
            TempList<SimTuple> ans = new TempList<SimTuple>();
-           enumerate(ans, 0, x, x.sub, 0);
+           enumerate(ans, 0, x, x.sub, false, 0);
            return SimTupleset.make(ans.makeConst());
         }
-        if (x.op == ExprQt.Op.ALL)  return enumerate(null, 0, x, x.sub.not(), 0) == 0;
-        if (x.op == ExprQt.Op.NO)   return enumerate(null, 0, x, x.sub,       0) == 0;
-        if (x.op == ExprQt.Op.SOME) return enumerate(null, 0, x, x.sub,       0) >= 1;
-        if (x.op == ExprQt.Op.LONE) return enumerate(null, 0, x, x.sub,       0) <= 1;
-        if (x.op == ExprQt.Op.ONE)  return enumerate(null, 0, x, x.sub,       0) == 1;
-        if (x.op == ExprQt.Op.SUM)  return trunc(enumerate(null, 0, x, x.sub, 0));
+        if (x.op == ExprQt.Op.ALL)  return enumerate(null, 0, x, x.sub, true,  0) == 0;
+        if (x.op == ExprQt.Op.NO)   return enumerate(null, 0, x, x.sub, false, 0) == 0;
+        if (x.op == ExprQt.Op.SOME) return enumerate(null, 0, x, x.sub, false, 0) >= 1;
+        if (x.op == ExprQt.Op.LONE) return enumerate(null, 0, x, x.sub, false, 0) <= 1;
+        if (x.op == ExprQt.Op.ONE)  return enumerate(null, 0, x, x.sub, false, 0) == 1;
+        if (x.op == ExprQt.Op.SUM)  return trunc(enumerate(null, 0, x, x.sub, false, 0));
         throw new ErrorFatal(x.pos, "Unsupported operator ("+x.op+") encountered during ExprQt.accept()");
     }
 
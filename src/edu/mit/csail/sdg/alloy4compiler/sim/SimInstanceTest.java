@@ -0,0 +1,236 @@
+package edu.mit.csail.sdg.alloy4compiler.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.alloy4.Err;
+import edu.mit.csail.sdg.alloy4compiler.ast.Expr;
+import edu.mit.csail.sdg.alloy4compiler.ast.ExprVar;
+import edu.mit.csail.sdg.alloy4compiler.ast.Func;
+import edu.mit.csail.sdg.alloy4compiler.ast.Sig;
+import edu.mit.csail.sdg.alloy4compiler.ast.Sig.Field;
+import edu.mit.csail.sdg.alloy4compiler.parser.CompModule;
+import edu.mit.csail.sdg.alloy4compiler.parser.CompUtil;
+
+/** [VM] Checks that a quantifier enumerated in parallel gives what the sequential enumeration gives,
+ * and that the memo of the closed subterms gives what evaluating them again gives.
+ */
+public class SimInstanceTest {
+
+    /** f calls itself for an atom with an s, so evaluating it fails only for some bindings. */
+    static final String MODEL = "sig A { r: set A, s: lone A }\n"
+        + "fun f[x: A]: set A { some x.s implies f[x] else x.r }\n"
+        + "pred p[x: A] { some x.r and x not in x.^r }\n"
+        // g is closed; h is the same but depends on its argument, so it is never kept in the memo.
+        + "fun g: set A { A.r }\n"
+        + "fun h[x: A]: set A { A.r + (x - x) }\n"
+        + "fun k[y: set A]: set A { y.r }\n";
+
+    /** Enough atoms for the first variable to be bound in parallel. */
+    static final int ATOMS = 24;
+
+    static final String[] QUANTIFIERS = {
+        "all x: A | some y: A | x->y in r",
+        "all x, y: A | x->y in r implies y->x in r",
+        "some x: A | some y: A | x->y in r and y->x in r",
+        "some x: A | p[x]",
+        "no x, y: A | x.s = y and y.s = x and x != y",
+        "no x: A | some y: x.r | y in y.r",
+        "one x: A | some y: A | y in x.r and y in x.s",
+        "one x: A | p[x]",
+        "lone x: A | some y: x.r | y in x.s",
+        "lone x: A | p[x]",
+        "sum x: A | sum y: x.r | 1",
+        "sum x, y: A | #(x.r & y.r)",
+        "{x: A, y: x.r | y in A.s}",
+        "{x: A | some y: A | y in x.r.r}",
+        // The overflow flag is the one of the last truncation.
+        "all x: A | (sum y: A | 1) < 0",
+        "all x: A | (sum y: x.r | 1) < 7",
+        "some x: A | (sum y: x.r | 1) > 5",
+        // The bindings with an s fail.
+        "all x: A | some f[x]",
+        "some x: A | some f[x]",
+        "{x: A | some f[x]}",
+    };
+
+    final CompModule root;
+
+    /** The last atom; the bindings are enumerated in the order of the atoms. */
+    final ExprVar last;
+
+    public SimInstanceTest() throws Err, IOException {
+        final File file = File.createTempFile("sim", ".als");
+        file.deleteOnExit();
+        Files.write(file.toPath(), MODEL.getBytes("UTF-8"));
+        root = CompUtil.parseEverything_fromFile(A4Reporter.NOP, null, file.getAbsolutePath());
+        last = ExprVar.make(null, "last", sig("A").type());
+        root.addGlobal(last.label, last);
+    }
+
+    Sig sig(String label) {
+        for (Sig sig : root.getAllReachableSigs()) if (sig.label.equals("this/" + label)) return sig;
+        throw new IllegalArgumentException(label);
+    }
+
+    Field field(String label) {
+        for (Field field : sig("A").getFields()) if (field.label.equals(label)) return field;
+        throw new IllegalArgumentException(label);
+    }
+
+    Func func(String label) {
+        for (Func func : root.getAllFunc()) if (func.label.equals("this/" + label)) return func;
+        throw new IllegalArgumentException(label);
+    }
+
+    static SimTupleset set(List<SimTuple> tuples) {
+        return tuples.isEmpty() ? SimTupleset.EMPTY : SimTupleset.make(tuples);
+    }
+
+    /** A random instance with the given density of r and share of atoms with an s. */
+    SimInstance instance(long seed, double density, double withS) throws Err {
+        final Random random = new Random(seed);
+        final List<SimTuple> atoms = new ArrayList<SimTuple>(), r = new ArrayList<SimTuple>(), s = new ArrayList<SimTuple>();
+        for (int i = 0; i < ATOMS; i++) atoms.add(SimTuple.make("A$" + i));
+        for (int i = 0; i < ATOMS; i++)
+            for (int j = 0; j < ATOMS; j++)
+                if (random.nextDouble() < density) r.add(SimTuple.make(new String[] { "A$" + i, "A$" + j }));
+        for (int i = 0; i < ATOMS; i++)
+            if (random.nextDouble() < withS) s.add(SimTuple.make(new String[] { "A$" + i, "A$" + random.nextInt(ATOMS) }));
+        final SimInstance instance = new SimInstance(root, 4, 0);
+        instance.init(sig("A"), set(atoms));
+        instance.init(field("r"), set(r));
+        instance.init(field("s"), set(s));
+        instance.init(last, SimTupleset.make(atoms.get(ATOMS - 1)));
+        return instance;
+    }
+
+    /** Evaluates the expression on a fresh instance in a pool of the given parallelism; returns the answer and the overflow flag, or the error. */
+    String eval(final long seed, final double density, final double withS, final String expr, final int parallelism) throws Exception {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> {
+                final SimInstance instance = instance(seed, density, withS);
+                try {
+                    final Object ans = instance.visitThis(CompUtil.parseOneExpression_fromString(root, expr));
+                    return ans + " overflow=" + instance.wasOverflow();
+                } catch (Err e) {
+                    return "error: " + e.msg;
+                }
+            }).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelAgreesWithSequential() throws Exception {
+        final double[] densities = { 0.0, 0.02, 0.1, 0.4 };
+        final double[] withS = { 0.0, 0.05, 0.5 };
+        int errors = 0;
+        for (long seed = 0; seed < 3; seed++)
+            for (double density : densities)
+                for (double s : withS)
+                    for (String expr : QUANTIFIERS) {
+                        final String sequential = eval(seed, density, s, expr, 1);
+                        assertEquals(expr + " seed=" + seed + " density=" + density + " s=" + s, sequential, eval(seed, density, s, expr, 4));
+                        if (sequential.startsWith("error: ")) errors++;
+                    }
+        // Both ways have failed on the same bindings.
+        assertTrue(errors > 0);
+    }
+
+    @Test
+    public void testOverflowOfTheLastBindingIsKept() throws Exception {
+        // Every binding overflows.
+        assertEquals("true overflow=true", eval(0, 0.1, 0, "all x: A | (sum y: A | 1) < 0", 4));
+        // Only the bindings before the last one overflow.
+        final String expr = "all x: A | (x = last => (sum y: x | 1) > 0 else (sum y: A | 1) < 0)";
+        assertEquals("true overflow=false", eval(0, 0.1, 0, expr, 1));
+        assertEquals("true overflow=false", eval(0, 0.1, 0, expr, 4));
+    }
+
+    /** Each expression has a closed subterm under a let, a quantifier or a call; the second one makes the subterm depend on the bound x, so it is evaluated for each binding. */
+    static final String[][] CLOSED = {
+        { "all x: A | x.r in A.r", "all x: A | x.r in (A.r + (x - x))" },
+        { "some x: A | x in A.r.r", "some x: A | x in (A.r + (x - x)).r" },
+        { "let t = A.r | all x: A | x in t", "all x: A | let t = A.r + (x - x) | x in t" },
+        { "all x: A | let t = A.^r | x in t implies some x.r", "all x: A | let t = (A + (x - x)).^r | x in t implies some x.r" },
+        { "{x: A | x in g}", "{x: A | x in h[x]}" },
+        { "some x: A | p[x] and some g", "some x: A | p[x] and some h[x]" },
+        { "one x: A | x in A - A.r", "one x: A | x in A + (x - x) - A.r" },
+        { "sum x: A | #(A.r.r)", "sum x: A | #((A.r + (x - x)).r)" },
+        { "{x: A, y: A.s | y in x.r}", "{x: A, y: (A + (x - x)).s | y in x.r}" },
+        { "all x: A | some y: A.r | x->y in ^r", "all x: A | some y: A.r + (x - x) | x->y in ^r" },
+    };
+
+    @Test
+    public void testClosedSubtermsGiveWhatTheOpenOnesGive() throws Exception {
+        final double[] densities = { 0.0, 0.05, 0.2 };
+        for (long seed = 0; seed < 3; seed++)
+            for (double density : densities)
+                for (String[] pair : CLOSED) {
+                    final SimInstance instance = instance(seed, density, 0.3);
+                    final Expr closed = CompUtil.parseOneExpression_fromString(root, pair[0]);
+                    final Object open = instance(seed, density, 0.3).visitThis(CompUtil.parseOneExpression_fromString(root, pair[1]));
+                    final String message = pair[0] + " seed=" + seed + " density=" + density;
+                    assertEquals(message, open, instance.visitThis(closed));
+                    // The second time, the subterms come from the memo.
+                    assertEquals(message, open, instance.visitThis(closed));
+                }
+    }
+
+    /** Evaluates the expression; the same node is evaluated again after each change of the instance. */
+    static String eval(SimInstance instance, Expr expr) throws Err {
+        final Object ans = instance.visitThis(expr);
+        return ans instanceof SimTupleset ? "" + ((SimTupleset) ans).size() : ans.toString();
+    }
+
+    @Test
+    public void testMemoIsClearedWhenTheInstanceChanges() throws Exception {
+        final SimInstance instance = instance(0, 0.0, 0.0);
+        final Expr join = CompUtil.parseOneExpression_fromString(root, "some A.r");
+        final Expr atoms = CompUtil.parseOneExpression_fromString(root, "A & A");
+        final Expr call = CompUtil.parseOneExpression_fromString(root, "some k[A]");
+        assertEquals("false", eval(instance, join));
+        assertEquals("" + ATOMS, eval(instance, atoms));
+        assertEquals("false", eval(instance, call));
+
+        // A field changes.
+        instance.init(field("r"), SimTupleset.make(SimTuple.make(new String[] { "A$0", "A$1" })));
+        assertEquals("true", eval(instance, join));
+        assertEquals("true", eval(instance, call));
+
+        // An atom is deleted.
+        assertTrue(instance.deleteAtom(SimAtom.make("A$1")));
+        assertEquals("false", eval(instance, join));
+        assertEquals("false", eval(instance, call));
+        assertEquals("" + (ATOMS - 1), eval(instance, atoms));
+
+        // An atom is made.
+        instance.makeAtom(sig("A"));
+        assertEquals("" + ATOMS, eval(instance, atoms));
+
+        // A sig changes.
+        instance.init(sig("A"), SimTupleset.make(SimTuple.make("A$0")));
+        assertEquals("1", eval(instance, atoms));
+
+        // A callback takes over the call.
+        instance.init(field("r"), SimTupleset.make(SimTuple.make(new String[] { "A$0", "A$0" })));
+        assertEquals("true", eval(instance, call));
+        instance.addCallback(func("k"), (f, args) -> SimTupleset.EMPTY);
+        assertEquals("false", eval(instance, call));
+    }
+
+}
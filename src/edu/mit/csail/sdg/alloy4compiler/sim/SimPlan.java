@@ -0,0 +1,187 @@
+/* Alloy Analyzer 4 -- Copyright (c) 2006-2009, Felix Chang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated documentation files
+ * (the "Software"), to deal in the Software without restriction, including without limitation the rights to use, copy, modify,
+ * merge, publish, distribute, sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ * OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package edu.mit.csail.sdg.alloy4compiler.sim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import edu.mit.csail.sdg.alloy4.Err;
+import edu.mit.csail.sdg.alloy4compiler.ast.Bounds;
+import edu.mit.csail.sdg.alloy4compiler.ast.Decl;
+import edu.mit.csail.sdg.alloy4compiler.ast.Expr;
+import edu.mit.csail.sdg.alloy4compiler.ast.ExprBinary;
+import edu.mit.csail.sdg.alloy4compiler.ast.ExprCall;
+import edu.mit.csail.sdg.alloy4compiler.ast.ExprConstant;
+import edu.mit.csail.sdg.alloy4compiler.ast.ExprHasName;
+import edu.mit.csail.sdg.alloy4compiler.ast.ExprITE;
+import edu.mit.csail.sdg.alloy4compiler.ast.ExprLet;
+import edu.mit.csail.sdg.alloy4compiler.ast.ExprList;
+import edu.mit.csail.sdg.alloy4compiler.ast.ExprQt;
+import edu.mit.csail.sdg.alloy4compiler.ast.ExprUnary;
+import edu.mit.csail.sdg.alloy4compiler.ast.ExprVar;
+import edu.mit.csail.sdg.alloy4compiler.ast.Sig;
+import edu.mit.csail.sdg.alloy4compiler.ast.VisitReturn;
+import edu.mit.csail.sdg.alloy4compiler.ast.Sig.Field;
+
+/** [VM] Immutable; what SimInstance learns about an expression node once and reuses for every instance it evaluates.
+ *
+ * <p> A node is closed if no local variable (LET, QUANT, Function Param) occurs free in it; then its value depends only
+ * on the instance, and SimInstance keeps it until the instance changes. A quantifier also keeps its desugared form.
+ *
+ * <p> The plans are kept weakly per node, so they are freed with the AST.
+ */
+
+final class SimPlan {
+
+    /** The plan of each non-leaf node seen so far; the keys are compared by identity, since Expr does not override equals. */
+    private static final Map<Expr,SimPlan> plans = Collections.synchronizedMap(new WeakHashMap<Expr,SimPlan>());
+
+    /** The local variables that occur free in the node; empty if the node is closed. */
+    private final Set<ExprVar> free;
+
+    /** True if the node contains a quantifier or a call, so evaluating it may enumerate bindings. */
+    private final boolean nested;
+
+    /** The desugared quantifier to evaluate in place of the node; null if it is the node itself.
+     * (It must not be the node itself, or else the WeakHashMap would never free the entry.)
+     */
+    private final Expr desugared;
+
+    private SimPlan(Set<ExprVar> free, boolean nested, Expr desugared) {
+        this.free = free;
+        this.nested = nested;
+        this.desugared = desugared;
+    }
+
+    private SimPlan(Set<ExprVar> free, boolean nested) {
+        this(free, nested, null);
+    }
+
+    /** Returns true if the node is cheap to evaluate and so is neither planned nor memoized. */
+    static boolean isLeaf(Expr x) {
+        if (x instanceof ExprVar || x instanceof Sig) return true;
+        if (x instanceof Field) return !((Field)x).defined;
+        if (x instanceof ExprConstant) return ((ExprConstant)x).op!=ExprConstant.Op.IDEN;
+        return false;
+    }
+
+    /** Returns the plan of the given non-leaf node, making it the first time the node is seen. */
+    static SimPlan of(Expr x) throws Err {
+        SimPlan ans = plans.get(x);
+        if (ans==null) { ans = x.accept(planner); plans.put(x, ans); }
+        return ans;
+    }
+
+    /** Returns true if the value of the given node only depends on the instance. */
+    static boolean isClosed(Expr x) throws Err {
+        return free(x).isEmpty();
+    }
+
+    /** Returns the quantifier to evaluate in place of the given one; it only differs if some decl is disjoint. */
+    static Expr desugar(ExprQt x) throws Err {
+        SimPlan p = of(x);
+        return p.desugared==null ? x : p.desugared;
+    }
+
+    /** Returns true if the given node contains a quantifier or a call. */
+    static boolean isNested(Expr x) throws Err {
+        return !isLeaf(x) && of(x).nested;
+    }
+
+    /** Returns the local variables that occur free in the given node. */
+    private static Set<ExprVar> free(Expr x) throws Err {
+        if (x instanceof ExprVar) return Collections.singleton((ExprVar)x);
+        if (isLeaf(x)) return Collections.emptySet();
+        return of(x).free;
+    }
+
+    /** Returns the union of the two sets; it returns one of them if the other one is empty. */
+    private static Set<ExprVar> union(Set<ExprVar> a, Set<ExprVar> b) {
+        if (b.isEmpty() || a.containsAll(b)) return a;
+        if (a.isEmpty() || b.containsAll(a)) return b;
+        Set<ExprVar> ans = Collections.newSetFromMap(new IdentityHashMap<ExprVar,Boolean>());
+        ans.addAll(a);
+        ans.addAll(b);
+        return ans;
+    }
+
+    /** Returns the given set without the given variables. */
+    private static Set<ExprVar> minus(Set<ExprVar> a, Iterable<? extends ExprHasName> vars) {
+        Set<ExprVar> ans = a;
+        for(ExprHasName v: vars) if (ans.contains(v)) {
+            if (ans==a) { ans = Collections.newSetFromMap(new IdentityHashMap<ExprVar,Boolean>()); ans.addAll(a); }
+            ans.remove(v);
+        }
+        return ans.isEmpty() ? Collections.<ExprVar>emptySet() : ans;
+    }
+
+    /** Makes the plan of a non-leaf node from the plans of its subnodes. */
+    private static final VisitReturn<SimPlan> planner = new VisitReturn<SimPlan>() {
+        @Override public SimPlan visit(ExprBinary x) throws Err {
+            return new SimPlan(union(free(x.left), free(x.right)), isNested(x.left) || isNested(x.right));
+        }
+        @Override public SimPlan visit(ExprList x) throws Err {
+            Set<ExprVar> ans = Collections.emptySet();
+            boolean nested = false;
+            for(Expr e: x.args) { ans = union(ans, free(e)); nested = nested || isNested(e); }
+            return new SimPlan(ans, nested);
+        }
+        @Override public SimPlan visit(ExprCall x) throws Err {
+            // The body is evaluated with only the parameters bound, so only the arguments matter
+            Set<ExprVar> ans = Collections.emptySet();
+            for(Expr e: x.args) ans = union(ans, free(e));
+            return new SimPlan(ans, true);
+        }
+        @Override public SimPlan visit(ExprConstant x) throws Err {
+            return new SimPlan(Collections.<ExprVar>emptySet(), false);
+        }
+        @Override public SimPlan visit(ExprITE x) throws Err {
+            return new SimPlan(union(free(x.cond), union(free(x.left), free(x.right))), isNested(x.cond) || isNested(x.left) || isNested(x.right));
+        }
+        @Override public SimPlan visit(ExprLet x) throws Err {
+            return new SimPlan(union(free(x.expr), minus(free(x.sub), Collections.singleton(x.var))), isNested(x.expr) || isNested(x.sub));
+        }
+        @Override public SimPlan visit(ExprQt x) throws Err {
+            // A bound may refer to the variables of the decls before it
+            List<ExprHasName> bound = new ArrayList<ExprHasName>();
+            Set<ExprVar> ans = Collections.emptySet();
+            for(Decl d: x.decls) { ans = union(ans, minus(free(d.expr), bound)); bound.addAll(d.names); }
+            ans = union(ans, minus(free(x.sub), bound));
+            Expr desugared = x.desugar();
+            return new SimPlan(ans, true, desugared==x ? null : desugared);
+        }
+        @Override public SimPlan visit(ExprUnary x) throws Err {
+            return new SimPlan(free(x.sub), isNested(x.sub));
+        }
+        @Override public SimPlan visit(ExprVar x) throws Err {
+            return new SimPlan(Collections.singleton(x), false);
+        }
+        @Override public SimPlan visit(Sig x) throws Err {
+            return new SimPlan(Collections.<ExprVar>emptySet(), false);
+        }
+        @Override public SimPlan visit(Field x) throws Err {
+            // A defined field is evaluated with no local variable bound
+            return new SimPlan(Collections.<ExprVar>emptySet(), false);
+        }
+        @Override public SimPlan visit(Bounds x) throws Err {
+            return new SimPlan(Collections.<ExprVar>emptySet(), false);
+        }
+    };
+}
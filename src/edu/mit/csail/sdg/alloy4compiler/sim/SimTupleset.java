@@ -20,11 +20,13 @@ import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import edu.mit.csail.sdg.alloy4.ConstList;
 import edu.mit.csail.sdg.alloy4.ErrorAPI;
 import edu.mit.csail.sdg.alloy4.ErrorType;
@@ -48,6 +50,14 @@ public final class SimTupleset implements Iterable<SimTuple> {
     private final int max;
     private final boolean next;
 
+    /** [VM] A list with more tuples than this gets a hash index for the membership tests. */
+    private static final int INDEX_THRESHOLD = 16;
+
+    /** [VM] If nonnull, the hash set of "tuples"; made on the first membership test of a large list.
+     * Since the atoms are canonical, a tuple's hash is computed from the atoms' identities and cached.
+     */
+    private volatile Set<SimTuple> index;
+
     /** Construct a tupleset with the given 4 values (Note: caller MUST make sure there are no duplicates, even between (min,max) and tuples, and that all tuples are of same arity!) */
     private SimTupleset(Collection<SimTuple> tuples, int min, int max, boolean next) {
        this.tuples = ConstList.make(tuples);
@@ -140,7 +150,15 @@ public final class SimTupleset implements Iterable<SimTuple> {
            Integer a = that.get(0).toInt(null), b = that.get(1).toInt(null);
            if (a!=null && b!=null && a<b && a.intValue()==b.intValue()-1 && min<=a && b<=max) return true;
         }
-        return tuples.contains(that);
+        if (tuples.size() <= INDEX_THRESHOLD) return tuples.contains(that);
+        return index().contains(that);
+    }
+
+    /** [VM] Returns the hash set of "tuples", making it on the first call. */
+    private Set<SimTuple> index() {
+        Set<SimTuple> ans = index;
+        if (ans == null) { ans = new HashSet<SimTuple>(tuples); index = ans; }
+        return ans;
     }
 
     /** Returns true if this tupleset is unary and contains the given atom. */
@@ -150,6 +168,7 @@ public final class SimTupleset implements Iterable<SimTuple> {
           Integer a = that.toInt(null);
           if (a!=null && min<=a && a<=max) return true;
        }
+       if (tuples.size() > INDEX_THRESHOLD) return index().contains(SimTuple.make(that));
        for(int i=tuples.size()-1; i>=0; i--) if (tuples.get(i).get(0)==that) return true;
        return false;
     }
@@ -207,16 +226,18 @@ public final class SimTupleset implements Iterable<SimTuple> {
        if (n<=0 || empty()) return EMPTY; else if (arity() <= n) return this;
        if (min<max) { // if we get here, than arity must be 2, and n must be 1.
           TempList<SimTuple> ans = new TempList<SimTuple>(tuples.size());
+          Set<SimTuple> seen = new HashSet<SimTuple>();
           for(SimTuple x: tuples) {
              Integer a = x.head().toInt(null);
              if (a!=null && a>=min && a<max) continue;
              SimTuple y = SimTuple.make(x.head());
-             if (!ans.contains(y)) ans.add(y);
+             if (seen.add(y)) ans.add(y);
           }
           return new SimTupleset(ans.makeConst(), min, max-1, false);
        }
        TempList<SimTuple> ans = new TempList<SimTuple>(tuples.size());
-       for(SimTuple x: this) { SimTuple y = x.head(n); if (!ans.contains(y)) ans.add(y); }
+       Set<SimTuple> seen = new HashSet<SimTuple>();
+       for(SimTuple x: this) { SimTuple y = x.head(n); if (seen.add(y)) ans.add(y); }
        return new SimTupleset(ans.makeConst());
     }
 
@@ -225,16 +246,18 @@ public final class SimTupleset implements Iterable<SimTuple> {
        if (n<=0 || empty()) return EMPTY; else if (arity() <= n) return this;
        if (min<max) { // if we get here, than arity must be 2, and n must be 1.
           TempList<SimTuple> ans = new TempList<SimTuple>(tuples.size());
+          Set<SimTuple> seen = new HashSet<SimTuple>();
           for(SimTuple x: tuples) {
              Integer a = x.tail().toInt(null);
              if (a!=null && a>min && a<=max) continue;
              SimTuple y = SimTuple.make(x.tail());
-             if (!ans.contains(y)) ans.add(y);
+             if (seen.add(y)) ans.add(y);
           }
           return new SimTupleset(ans.makeConst(), min+1, max, false);
        }
        TempList<SimTuple> ans = new TempList<SimTuple>(tuples.size());
-       for(SimTuple x: this) { SimTuple y = x.tail(n); if (!ans.contains(y)) ans.add(y); }
+       Set<SimTuple> seen = new HashSet<SimTuple>();
+       for(SimTuple x: this) { SimTuple y = x.tail(n); if (seen.add(y)) ans.add(y); }
        return new SimTupleset(ans.makeConst());
     }
 
@@ -284,14 +307,15 @@ public final class SimTupleset implements Iterable<SimTuple> {
         return make(list);
     }
 
-    /** Returns the index position if the list of tuples contains the tuple (a,b) (or return -1 if not found). */
-    private static int find(TempList<SimTuple> tuples, SimAtom a, SimAtom b) {
-       if (tuples.size() == 0 || tuples.get(0).arity() != 2) return -1;
-       for(int i=tuples.size()-1; i >= 0; i--) {
-          SimTuple x = tuples.get(i);
-          if (x.head()==a && x.tail()==b) return i;
+    /** [VM] Groups the tuples by their first atom; each group keeps the tuples' order. */
+    private static IdentityHashMap<SimAtom,List<SimTuple>> groupByHead(Iterable<SimTuple> tuples) {
+       IdentityHashMap<SimAtom,List<SimTuple>> ans = new IdentityHashMap<SimAtom,List<SimTuple>>();
+       for(SimTuple x: tuples) {
+          List<SimTuple> group = ans.get(x.head());
+          if (group == null) { group = new ArrayList<SimTuple>(2); ans.put(x.head(), group); }
+          group.add(x);
        }
-       return -1;
+       return ans;
     }
 
     /** {@inheritDoc} */
@@ -443,10 +467,16 @@ public final class SimTupleset implements Iterable<SimTuple> {
     public SimTupleset join(SimTupleset that) throws ErrorType {
        if (empty() || that.empty()) return EMPTY;
        if (arity()==1 && that.arity()==1) throw new ErrorType("Cannot join two unary relations.");
+       // [VM] A hash join on the join column; the result keeps the order of the nested loop.
+       IdentityHashMap<SimAtom,List<SimTuple>> right = groupByHead(that);
        TempList<SimTuple> ans = new TempList<SimTuple>();
-       for(SimTuple a: this) for(SimTuple b: that) if (a.tail()==b.head()) {
-          SimTuple c = a.join(b);
-          if (!ans.contains(c)) ans.add(c);
+       Set<SimTuple> seen = new HashSet<SimTuple>();
+       for(SimTuple a: this) {
+          List<SimTuple> matches = right.get(a.tail());
+          if (matches != null) for(SimTuple b: matches) {
+             SimTuple c = a.join(b);
+             if (seen.add(c)) ans.add(c);
+          }
        }
        return ans.size()==0 ? EMPTY : new SimTupleset(ans.makeConst());
     }
@@ -488,21 +518,28 @@ public final class SimTupleset implements Iterable<SimTuple> {
     /** Returns the closure of this tupleset (NOTE: if this.arity!=2, we will return an empty set) */
     public SimTupleset closure() {
        if (arity()!=2) return EMPTY;
+       // [VM] Semi-naive: each round only joins the tuples found in the previous round with this tupleset.
+       IdentityHashMap<SimAtom,List<SimTuple>> steps = groupByHead(this);
        TempList<SimTuple> ar = new TempList<SimTuple>(size());
        ar.addAll(this);
-       while(true) {
+       Set<SimTuple> seen = new HashSet<SimTuple>();
+       for(SimTuple x: this) seen.add(x);
+       int from = 0;
+       while(from < ar.size()) {
           int n = ar.size();
-          for(int i=0; i<n; i++) {
+          for(int i=from; i<n; i++) {
              SimTuple left = ar.get(i);
              if (left.head()==left.tail()) continue;      // whatever "right" is, "left.right" won't add any new tuple to the final answer
-             for(int j=0; j<n; j++) if (i!=j) {           // whatever "left" is,  "left.left"  won't add any new tuple to the final answer
-                SimTuple right = ar.get(j);
+             List<SimTuple> rights = steps.get(left.tail());
+             if (rights != null) for(SimTuple right: rights) {
                 if (right.head()==right.tail()) continue; // whatever "left" is,  "left.right" won't add any new tuple to the final answer
-                if (left.tail()==right.head() && find(ar, left.head(), right.tail())<0) ar.add(SimTuple.make(left.head(), right.tail()));
+                SimTuple c = SimTuple.make(left.head(), right.tail());
+                if (seen.add(c)) ar.add(c);
              }
           }
-          if (n == ar.size()) return ar.size()==longsize() ? this : new SimTupleset(ar.makeConst()); // if we went through the loop without making any change, we're done
+          from = n;
        }
+       return ar.size()==longsize() ? this : new SimTupleset(ar.makeConst());
     }
 
     /** Return the set of tuples which begins with the given tuple (where we remove the "matching leading part") */
@@ -0,0 +1,146 @@
+package edu.mit.csail.sdg.alloy4compiler.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import edu.mit.csail.sdg.alloy4.Err;
+
+/** [VM] Checks the hash join, the semi-naive closure and the indexed membership tests against the naive versions. */
+public class SimTuplesetTest {
+
+    static SimTupleset set(List<SimTuple> tuples) {
+        return tuples.isEmpty() ? SimTupleset.EMPTY : SimTupleset.make(tuples);
+    }
+
+    static List<SimTuple> list(SimTupleset set) {
+        final List<SimTuple> ans = new ArrayList<SimTuple>();
+        for (SimTuple x : set) ans.add(x);
+        return ans;
+    }
+
+    /** A random relation of the given arity over n atoms, without duplicates. */
+    static SimTupleset random(Random random, int arity, int n, int size) {
+        final Set<SimTuple> ans = new LinkedHashSet<SimTuple>();
+        for (int i = 0; i < size; i++) {
+            final String[] atoms = new String[arity];
+            for (int j = 0; j < arity; j++) atoms[j] = "A$" + random.nextInt(n);
+            ans.add(SimTuple.make(atoms));
+        }
+        return set(new ArrayList<SimTuple>(ans));
+    }
+
+    /** The nested loop join; the tuples are in the order the loop finds them. */
+    static List<SimTuple> naiveJoin(SimTupleset left, SimTupleset right) {
+        final Set<SimTuple> ans = new LinkedHashSet<SimTuple>();
+        for (SimTuple a : left) for (SimTuple b : right) if (a.tail() == b.head()) ans.add(a.join(b));
+        return new ArrayList<SimTuple>(ans);
+    }
+
+    /** Joins the relation with itself until nothing new is found. */
+    static Set<SimTuple> naiveClosure(SimTupleset relation) {
+        final Set<SimTuple> ans = new HashSet<SimTuple>(list(relation));
+        while (true) {
+            final Set<SimTuple> more = new HashSet<SimTuple>(ans);
+            for (SimTuple a : ans) for (SimTuple b : relation) if (a.tail() == b.head()) more.add(SimTuple.make(a.head(), b.tail()));
+            if (more.size() == ans.size()) return ans;
+            ans.addAll(more);
+        }
+    }
+
+    static void assertClosure(SimTupleset relation) {
+        final List<SimTuple> closure = list(relation.closure());
+        assertEquals(naiveClosure(relation), new HashSet<SimTuple>(closure));
+        assertEquals("no duplicates", closure.size(), new HashSet<SimTuple>(closure).size());
+    }
+
+    @Test
+    public void testJoinAgreesWithTheNestedLoop() throws Err {
+        final Random random = new Random(0);
+        for (int round = 0; round < 200; round++) {
+            final int n = 1 + random.nextInt(12);
+            final int leftArity = 1 + random.nextInt(3), rightArity = (leftArity == 1 ? 2 : 1) + random.nextInt(2);
+            final SimTupleset left = random(random, leftArity, n, random.nextInt(40));
+            final SimTupleset right = random(random, rightArity, n, random.nextInt(40));
+            assertEquals(naiveJoin(left, right), list(left.join(right)));
+        }
+    }
+
+    @Test
+    public void testClosureAgreesWithTheNaiveFixpoint() {
+        final Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            final int n = 1 + random.nextInt(15);
+            assertClosure(random(random, 2, n, random.nextInt(3 * n)));
+        }
+        // A long chain takes many rounds.
+        final List<SimTuple> chain = new ArrayList<SimTuple>();
+        for (int i = 0; i < 40; i++) chain.add(SimTuple.make(new String[] { "A$" + i, "A$" + (i + 1) }));
+        assertClosure(set(chain));
+        assertEquals(40 * 41 / 2, set(chain).closure().size());
+    }
+
+    @Test
+    public void testRangesAreJoinedAndClosed() throws Err {
+        // (0,1) (1,2) ... (4,5)
+        final SimTupleset next = SimTupleset.makenext(0, 5);
+        assertEquals(naiveJoin(next, next), list(next.join(next)));
+        assertEquals(4, next.join(next).size());
+        assertClosure(next);
+        assertEquals(15, next.closure().size());
+
+        // 0..5 joined with a relation from the ints.
+        final SimTupleset ints = SimTupleset.make(0, 5);
+        final List<SimTuple> fromInts = new ArrayList<SimTuple>();
+        for (int i = 3; i < 9; i++) fromInts.add(SimTuple.make(new String[] { "" + i, "A$" + i }));
+        assertEquals(naiveJoin(ints, set(fromInts)), list(ints.join(set(fromInts))));
+        assertEquals(3, ints.join(set(fromInts)).size());
+
+        // A range with more tuples than the ones listed.
+        final SimTupleset mixed = next.union(SimTuple.make(new String[] { "5", "0" }));
+        assertEquals(naiveJoin(mixed, mixed), list(mixed.join(mixed)));
+        assertClosure(mixed);
+        assertEquals(36, mixed.closure().size());
+    }
+
+    @Test
+    public void testMembershipOfLargeSets() {
+        for (int n : new int[] { 5, 16, 17, 40 }) {
+            final List<SimTuple> unary = new ArrayList<SimTuple>(), binary = new ArrayList<SimTuple>();
+            for (int i = 0; i < n; i++) {
+                unary.add(SimTuple.make("A$" + (2 * i)));
+                binary.add(SimTuple.make(new String[] { "A$" + i, "A$" + (i + 1) }));
+            }
+            final SimTupleset atoms = set(unary), pairs = set(binary);
+            for (int i = 0; i < 2 * n; i++) {
+                final SimAtom atom = SimAtom.make("A$" + i);
+                assertEquals("A$" + i + " of " + n, i % 2 == 0, atoms.has(atom));
+                assertEquals(i % 2 == 0, atoms.has(SimTuple.make(atom)));
+                assertEquals(i < n, pairs.has(SimTuple.make(new String[] { "A$" + i, "A$" + (i + 1) })));
+                assertFalse(pairs.has(SimTuple.make(new String[] { "A$" + (i + 1), "A$" + i })));
+                // A binary set has no atom.
+                assertFalse(pairs.has(atom));
+            }
+        }
+
+        // The ints in the range are found without being listed.
+        final SimTupleset ints = SimTupleset.make(-8, 7);
+        final List<SimTuple> more = new ArrayList<SimTuple>();
+        for (int i = 0; i < 20; i++) more.add(SimTuple.make("A$" + i));
+        final SimTupleset mixed = ints.union(set(more));
+        assertEquals(36, mixed.size());
+        for (int i = -10; i < 10; i++) assertEquals(-8 <= i && i <= 7, mixed.has(SimAtom.make(i)));
+        for (int i = 0; i < 25; i++) assertEquals(i < 20, mixed.has(SimAtom.make("A$" + i)));
+        assertTrue(mixed.has(SimTuple.make("A$19")));
+    }
+
+}
@@ -0,0 +1,55 @@
+package edu.mit.csail.sdg.alloy4compiler.translator;
+
+/** [VM] Immutable; the outcome of checking a list of formulas over one translation of the shared facts and bounds.
+ *
+ * <p> The translation numbers are shared by all the formulas. The satisfiability and the solving time are
+ * per formula, in the order the formulas were given. If the batch is cancelled while solving, only the formulas
+ * before decided() have an outcome.
+ */
+public final class A4BatchSolution {
+
+	/** The number of primary variables, all variables and clauses of the shared CNF. */
+	public final int primaryVars, totalVars, clauses;
+
+	/** The time in milliseconds spent to translate the facts and all the formulas. */
+	public final long translationTime;
+
+	/** The number of formulas solved before the batch was cancelled; all of them if it was not. */
+	private final int decided;
+
+	private final boolean[] sat;
+
+	private final long[] solveTimes;
+
+	A4BatchSolution(int primaryVars, int totalVars, int clauses, long translationTime, int decided, boolean[] sat, long[] solveTimes) {
+		if (sat.length!=solveTimes.length) throw new IllegalArgumentException("The number of results and times do not match.");
+		if (decided<0 || decided>sat.length) throw new IllegalArgumentException("The number of decided formulas is out of range: "+decided);
+		this.primaryVars = primaryVars;
+		this.totalVars = totalVars;
+		this.clauses = clauses;
+		this.translationTime = translationTime;
+		this.decided = decided;
+		this.sat = sat.clone();
+		this.solveTimes = solveTimes.clone();
+	}
+
+	/** Returns the number of formulas in the batch. */
+	public int size() { return sat.length; }
+
+	/** Returns the number of formulas with an outcome; the formulas from this index on were not solved. */
+	public int decided() { return decided; }
+
+	/** Returns true if the facts and the i-th formula are satisfiable together; i has to be less than decided(). */
+	public boolean satisfiable(int i) { return sat[i]; }
+
+	/** Returns the time in milliseconds spent to solve the i-th formula. */
+	public long solveTime(int i) { return solveTimes[i]; }
+
+	@Override public String toString() {
+		StringBuilder sb = new StringBuilder("A4BatchSolution [primaryVars=").append(primaryVars)
+			.append(", totalVars=").append(totalVars).append(", clauses=").append(clauses)
+			.append(", translationTime=").append(translationTime).append(", sat=[");
+		for(int i=0; i<sat.length; i++) sb.append(i==0 ? "" : ", ").append(i<decided ? String.valueOf(sat[i]) : "?");
+		return sb.append("]]").toString();
+	}
+}
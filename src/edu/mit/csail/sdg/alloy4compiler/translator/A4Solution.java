@@ -44,6 +44,7 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentSkipListSet;
 
 import kodkod.ast.BinaryExpression;
@@ -63,11 +64,14 @@ import kodkod.engine.Evaluator;
 import kodkod.engine.Proof;
 import kodkod.engine.Solution;
 import kodkod.engine.Solver;
+import kodkod.engine.bool.BooleanFormula;
 import kodkod.engine.config.AbstractReporter;
 import kodkod.engine.config.Options;
 import kodkod.engine.config.Reporter;
+import kodkod.engine.fol2sat.Translation;
 import kodkod.engine.fol2sat.TranslationRecord;
 import kodkod.engine.fol2sat.Translator;
+import kodkod.engine.fol2sat.TrivialFormulaException;
 import kodkod.engine.satlab.SATFactory;
 import kodkod.engine.ucore.HybridStrategy;
 import kodkod.engine.ucore.RCEStrategy;
@@ -78,7 +82,9 @@ import kodkod.instance.TupleFactory;
 import kodkod.instance.TupleSet;
 import kodkod.instance.Universe;
 import kodkod.util.ints.IndexedEntry;
+import kodkod.util.ints.IntSet;
 import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.alloy4.Cancellation;
 import edu.mit.csail.sdg.alloy4.ConstList;
 import edu.mit.csail.sdg.alloy4.ConstMap;
 import edu.mit.csail.sdg.alloy4.Err;
@@ -652,6 +658,42 @@ public final class A4Solution {
 	/** Returns the most specific sig corresponding to the given atom if the problem is solved and is satisfiable; else returns UNIV. */
 	PrimSig atom2sig(Object atom) { PrimSig sig=atom2sig.get(atom); return sig==null ? UNIV : sig; }
 
+	/** [VM] If solved, the short name of each atom by its index in the Kodkod universe; made on the first call to atomName(). */
+	private String[] atomNames = null;
+
+	/** [VM] If solved, the index of each short atom name; made on the first call to atomIndex(). */
+	private Map<String,Integer> name2index = null;
+
+	/** [VM] Returns the number of atoms in the universe; the atom indexes used by A4TupleSet.indexes() are below it. */
+	public int atomCount() { return factory.universe().size(); }
+
+	/** [VM] Returns the short name of the atom with the given index, as A4Tuple.atom() does, without making any A4Tuple. */
+	public String atomName(int index) {
+		if (!solved) return atom2name(factory.universe().atom(index));
+		String[] names = atomNames;
+		if (names==null) {
+			names = new String[atomCount()];
+			for(int i=0; i<names.length; i++) names[i] = atom2name(factory.universe().atom(i));
+			atomNames = names;
+		}
+		return names[index];
+	}
+
+	/** [VM] Returns the index of the atom with the given short name; returns -1 if there is no such atom. */
+	public int atomIndex(String name) {
+		Map<String,Integer> map = name2index;
+		if (map==null) {
+			map = new HashMap<String,Integer>();
+			for(int i=atomCount()-1; i>=0; i--) map.put(atomName(i), i);
+			if (solved) name2index = map;
+		}
+		Integer ans = map.get(name);
+		return ans==null ? -1 : ans;
+	}
+
+	/** [VM] Returns the most specific sig of the atom with the given index; returns UNIV if unknown. */
+	public PrimSig atomSig(int index) { return atom2sig(factory.universe().atom(index)); }
+
 	/** Caches eval(Sig) and eval(Field) results. */
 	private Map<Expr,A4TupleSet> evalCache = new LinkedHashMap<Expr,A4TupleSet>();
 
@@ -1061,9 +1103,16 @@ public final class A4Solution {
 				} catch(Throwable ex) { } // Exception here is not fatal
 			}
 			@Override public void solvingCNF(int primaryVars, int vars, int clauses) {
+				Cancellation.check(rep);
 				if (solved[0]) return; else solved[0]=true; // initially solved[0] is true, so we won't report the # of vars/clauses
 				if (rep!=null) rep.solve(primaryVars, vars, clauses);
 			}
+			// [VM] Stop between Kodkod's stages once the task is cancelled.
+			@Override public void detectingSymmetries(Bounds b) { Cancellation.check(rep); }
+			@Override public void optimizingBoundsAndFormula() { Cancellation.check(rep); }
+			@Override public void translatingToBoolean(Formula f, Bounds b) { Cancellation.check(rep); }
+			@Override public void generatingSBP() { Cancellation.check(rep); }
+			@Override public void translatingToCNF(BooleanFormula circuit) { Cancellation.check(rep); }
 		});
 		if (!opt.solver.equals(SatSolver.CNF) && !opt.solver.equals(SatSolver.KK) && tryBookExamples) { // try book examples
 			A4Reporter r = "yes".equals(System.getProperty("debug")) ? rep : null;
@@ -1095,6 +1144,9 @@ public final class A4Solution {
 			rep.resultCNF(out);
 			return null;
 		}
+		// [VM] The SAT4J search of a cancellable task is stopped on cancel.
+		if (opt.solver.equals(SatSolver.SAT4J) && rep.cancellation()!=null)
+			solver.options().setSolver(IncrementalSAT4J.factory(rep.cancellation()));
 		if (solver.options().solver()==SATFactory.ZChaffMincost || !solver.options().solver().incremental()) {
 			if (sol==null) sol = solver.solve(fgoal, bounds);
 		} else {
@@ -1142,6 +1194,77 @@ public final class A4Solution {
 		return this;
 	}
 
+	/** [VM] Solve each of the given formulas together with the facts, but translate the facts only once.
+	 *
+	 * <p> Every formula is guarded by a fresh unary relation with a single possible tuple, so all of them go into one CNF.
+	 * Then the i-th formula is decided by solving the CNF under the assumption that its guard is nonempty; the other
+	 * guards may be empty, so their formulas do not constrain the answer. This object is only a staging area and stays unsolved.
+	 */
+	A4BatchSolution solveBatch(final A4Reporter rep, Simplifier simp, List<Formula> properties) throws Err {
+		if (solved) throw new ErrorAPI("This solution is already solved.");
+		final int n = properties.size();
+		final boolean[] sat = new boolean[n];
+		final long[] solveTimes = new long[n];
+		rep.debug("Simplifying the bounds...\n");
+		if (simp!=null && formulas.size()>0 && !simp.simplify(rep, this, formulas))
+			addFormula(Formula.FALSE, Pos.UNKNOWN);
+		rep.translate(originalOptions.solver.id(), bitwidth, maxseq, solver.options().skolemDepth(), solver.options().symmetryBreaking());
+		long time = System.currentTimeMillis();
+		final Bounds batchBounds = bounds.clone();
+		final Tuple first = factory.tuple(kAtoms.get(0));
+		final List<Formula> goals = new ArrayList<Formula>(formulas);
+		for(Relation r: bounds.relations())
+			goals.add(r.eq(r)); // Without this, kodkod refuses to grow unmentioned relations
+		final List<Relation> guards = new ArrayList<Relation>(n);
+		for(int i=0; i<n; i++) {
+			Relation guard = Relation.unary("$batch_guard_" + i);
+			batchBounds.bound(guard, factory.range(first, first));
+			guards.add(guard);
+			goals.add(guard.some().implies(properties.get(i)));
+		}
+		final SATFactory oldSolver = solver.options().solver();
+		final Reporter oldReporter = solver.options().reporter();
+		solver.options().setSolver(IncrementalSAT4J.factory(rep.cancellation()));
+		solver.options().setReporter(new AbstractReporter() { // Stop between Kodkod's stages once the task is cancelled
+			@Override public void detectingSymmetries(Bounds b) { Cancellation.check(rep); }
+			@Override public void optimizingBoundsAndFormula() { Cancellation.check(rep); }
+			@Override public void translatingToBoolean(Formula f, Bounds b) { Cancellation.check(rep); }
+			@Override public void generatingSBP() { Cancellation.check(rep); }
+			@Override public void translatingToCNF(BooleanFormula circuit) { Cancellation.check(rep); }
+		});
+		try {
+			final Translation translation = Translator.translate(Formula.and(goals), batchBounds, solver.options());
+			final IncrementalSAT4J cnf = (IncrementalSAT4J) translation.cnf();
+			time = System.currentTimeMillis() - time;
+			rep.solve(translation.numPrimaryVariables(), cnf.numberOfVariables(), cnf.numberOfClauses());
+			int decided = 0;
+			try {
+				for(; decided<n; decided++) {
+					Cancellation.check(rep);
+					rep.solveBatchFormula(decided);
+					long start = System.currentTimeMillis();
+					IntSet guard = translation.primaryVariables(guards.get(decided));
+					// A guard without a variable means its formula was simplified to true.
+					sat[decided] = (guard==null || guard.isEmpty()) ? cnf.solve() : cnf.solve(new int[]{ guard.min() });
+					solveTimes[decided] = System.currentTimeMillis() - start;
+				}
+			} catch(CancellationException ex) {
+				// The formulas solved before the cancel are still returned; the rest are undecided.
+			}
+			cnf.free();
+			return new A4BatchSolution(translation.numPrimaryVariables(), cnf.numberOfVariables(), cnf.numberOfClauses(), time, decided, sat, solveTimes);
+		} catch(TrivialFormulaException ex) {
+			// Either the facts are false, or every guarded formula is true.
+			time = System.currentTimeMillis() - time;
+			rep.solve(0, 0, 0);
+			Arrays.fill(sat, ex.value().booleanValue());
+			return new A4BatchSolution(0, 0, 0, time, n, sat, solveTimes);
+		} finally {
+			solver.options().setSolver(oldSolver);
+			solver.options().setReporter(oldReporter);
+		}
+	}
+
 	//===================================================================================================//
 
 	/** This caches the toString() output. */
@@ -15,11 +15,13 @@
 
 package edu.mit.csail.sdg.alloy4compiler.translator;
 
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import edu.mit.csail.sdg.alloy4.ErrorAPI;
 import kodkod.instance.Tuple;
 import kodkod.instance.TupleSet;
+import kodkod.util.ints.IntIterator;
 
 /** Immutable; represents a collection of Alloy tuples; comparison is by identity rather than by value. */
 
@@ -55,6 +57,44 @@ public final class A4TupleSet implements Iterable<A4Tuple> {
         };
     }
 
+    /** [VM] Returns the indexes of the tuples in increasing order, without making an A4Tuple for each tuple.
+     * <p> A tuple (a0, a1, ... ak) has the index a0*n^k + a1*n^(k-1) + ... + ak, where n is sol.atomCount();
+     * for a unary set, the index of a tuple is the index of its atom.
+     * The indexes are in the order in which iterator() returns the tuples; use atom() to read the atoms of a tuple,
+     * and A4Solution.atomName() to read their names.
+     */
+    public IntIterator tupleIndexes() {
+        return tuples.indexView().iterator();
+    }
+
+    /** [VM] Returns the atoms of a unary set as a bitset of atom indexes, which is at most sol.atomCount() bits.
+     * <p> A relation would need up to n^arity bits, so its tuples are read by tupleIndexes() instead.
+     * @throws UnsupportedOperationException if the arity is not 1
+     */
+    public BitSet indexes() {
+        if (tuples.arity()!=1) throw new UnsupportedOperationException("A bitset is made only for a unary set; use tupleIndexes().");
+        final BitSet ans = new BitSet(tuples.isEmpty() ? 0 : tuples.indexView().max()+1);
+        for(IntIterator it = tuples.indexView().iterator(); it.hasNext();) ans.set(it.next());
+        return ans;
+    }
+
+    /** [VM] Returns the index of the i-th atom of the tuple with the given tuple index. */
+    public int atom(int tupleIndex, int i) {
+        final int n = tuples.universe().size();
+        for(int j=tuples.arity()-1; j>i; j--) tupleIndex /= n;
+        return tupleIndex % n;
+    }
+
+    /** [VM] Prints the tuple with the given tuple index as A4Tuple.toString() does. */
+    public String toString(int tupleIndex) {
+        StringBuilder sb=new StringBuilder();
+        for(int i=0; i<tuples.arity(); i++) {
+            if (i>0) sb.append("->");
+            sb.append(sol.atomName(atom(tupleIndex, i)));
+        }
+        return sb.toString();
+    }
+
     /** Returns the arity. */
     public int arity() { return tuples.arity(); }
 
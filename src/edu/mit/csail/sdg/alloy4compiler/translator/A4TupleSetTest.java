@@ -0,0 +1,119 @@
+package edu.mit.csail.sdg.alloy4compiler.translator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.BitSet;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.alloy4.Err;
+import edu.mit.csail.sdg.alloy4compiler.ast.Sig;
+import edu.mit.csail.sdg.alloy4compiler.ast.Sig.Field;
+import edu.mit.csail.sdg.alloy4compiler.parser.CompModule;
+import edu.mit.csail.sdg.alloy4compiler.parser.CompUtil;
+import kodkod.util.ints.IntIterator;
+
+/** [VM] Checks that the tuple indexes decode to the tuples the A4Tuple iterator gives, and that atomIndex inverts atomName. */
+public class A4TupleSetTest {
+
+	/** r is ternary; i maps to Int atoms, which are named by their values. */
+	static final String MODEL = "sig A { r: A -> A, i: Int }\n"
+		+ "run { some r and #r > 4 and some a: A | a.i < 0 and some a: A | a.i > 2 } for 4 but 4 int\n";
+
+	final A4Solution sol;
+
+	final Sig a;
+
+	public A4TupleSetTest() throws Err, IOException {
+		final File file = File.createTempFile("tuples", ".als");
+		file.deleteOnExit();
+		Files.write(file.toPath(), MODEL.getBytes("UTF-8"));
+		final CompModule root = CompUtil.parseEverything_fromFile(A4Reporter.NOP, null, file.getAbsolutePath());
+		sol = TranslateAlloyToKodkod.execute_command(A4Reporter.NOP, root.getAllReachableSigs(), root.getAllCommands().get(0), new A4Options());
+		assertTrue(sol.satisfiable());
+		Sig found = null;
+		for (Sig sig : root.getAllReachableSigs()) if (sig.label.equals("this/A")) found = sig;
+		a = found;
+	}
+
+	Field field(String label) {
+		for (Field field : a.getFields()) if (field.label.equals(label)) return field;
+		throw new IllegalArgumentException(label);
+	}
+
+	/** Decodes every tuple index of the set and compares it with the tuple the iterator gives at the same place. */
+	void assertDecodes(A4TupleSet set) {
+		final IntIterator indexes = set.tupleIndexes();
+		final Iterator<A4Tuple> tuples = set.iterator();
+		int count = 0, last = -1;
+		while (tuples.hasNext()) {
+			final A4Tuple tuple = tuples.next();
+			assertTrue(indexes.hasNext());
+			final int index = indexes.next();
+			assertTrue("increasing", index > last);
+			last = index;
+			assertEquals(set.arity(), tuple.arity());
+			for (int i = 0; i < tuple.arity(); i++) {
+				final int atom = set.atom(index, i);
+				assertTrue(0 <= atom && atom < sol.atomCount());
+				assertEquals(tuple.atom(i), sol.atomName(atom));
+				assertEquals(tuple.sig(i), sol.atomSig(atom));
+			}
+			assertEquals(tuple.toString(), set.toString(index));
+			count++;
+		}
+		assertFalse(indexes.hasNext());
+		assertEquals(set.size(), count);
+	}
+
+	@Test
+	public void testTernaryField() {
+		final A4TupleSet r = sol.eval(field("r"));
+		assertEquals(3, r.arity());
+		assertTrue(r.size() > 4);
+		assertDecodes(r);
+		try {
+			r.indexes();
+			fail("a bitset is made for a ternary set");
+		} catch (UnsupportedOperationException ex) {
+		}
+	}
+
+	@Test
+	public void testIntAtoms() {
+		final A4TupleSet i = sol.eval(field("i"));
+		assertEquals(2, i.arity());
+		assertDecodes(i);
+		boolean negative = false;
+		for (IntIterator it = i.tupleIndexes(); it.hasNext();) {
+			final int atom = i.atom(it.next(), 1);
+			final String value = sol.atomName(atom);
+			assertEquals(atom, sol.atomIndex(value));
+			negative |= Integer.parseInt(value) < 0;
+		}
+		assertTrue(negative);
+
+		final A4TupleSet ints = sol.eval(Sig.SIGINT);
+		assertEquals(16, ints.size());
+		assertDecodes(ints);
+		final BitSet bits = ints.indexes();
+		assertEquals(ints.size(), bits.cardinality());
+		for (A4Tuple tuple : ints) assertTrue(tuple.atom(0), bits.get(sol.atomIndex(tuple.atom(0))));
+	}
+
+	@Test
+	public void testAtomIndexInvertsAtomName() {
+		assertTrue(sol.atomCount() >= 4 + 16);
+		for (int k = 0; k < sol.atomCount(); k++) assertEquals(sol.atomName(k), k, sol.atomIndex(sol.atomName(k)));
+		assertEquals(-1, sol.atomIndex("no such atom"));
+		for (A4Tuple tuple : sol.eval(a)) assertEquals(a, sol.atomSig(sol.atomIndex(tuple.atom(0))));
+	}
+}
@@ -0,0 +1,159 @@
+package edu.mit.csail.sdg.alloy4compiler.translator;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CancellationException;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
+
+import edu.mit.csail.sdg.alloy4.Cancellation;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+
+/** [VM] A SAT4J wrapper that can solve its clauses under a set of assumption literals.
+ *
+ * <p> Kodkod's own SAT4J wrapper only solves the whole CNF. Here the learnt clauses are kept between calls,
+ * so the same CNF can be solved once per assumption without translating it again.
+ *
+ * <p> If it is made with a Cancellation, then cancelling stops the running search and the call to solve
+ * throws a CancellationException, like the checks between the translation stages.
+ */
+final class IncrementalSAT4J implements SATSolver {
+
+	/** The factory that makes instances of this solver. */
+	static final SATFactory FACTORY = new SATFactory() {
+		@Override public SATSolver instance() { return new IncrementalSAT4J(SolverFactory.instance().defaultSolver()); }
+		@Override public boolean incremental() { return true; }
+		@Override public String toString() { return "IncrementalSAT4J"; }
+	};
+
+	/** [VM] Returns a factory whose solvers stop searching once the given cancellation is cancelled. */
+	static SATFactory factory(final Cancellation cancellation) {
+		if (cancellation==null) return FACTORY;
+		return new SATFactory() {
+			@Override public SATSolver instance() { return new IncrementalSAT4J(SolverFactory.instance().defaultSolver(), cancellation); }
+			@Override public boolean incremental() { return true; }
+			@Override public String toString() { return "CancellableSAT4J"; }
+		};
+	}
+
+	/** [VM] How often a cancelled search is told again to stop, in milliseconds. */
+	private static final long STOP_PERIOD = 10;
+
+	/** [VM] Runs the tasks that stop the cancelled searches. */
+	private static final Timer STOPPER = new Timer("IncrementalSAT4J stopper", true);
+
+	private ISolver solver;
+
+	/** If nonnull, then the search stops once it is cancelled. */
+	private final Cancellation cancellation;
+
+	/** Becomes true once an added clause contradicts the others; then every call to solve returns false. */
+	private boolean contradicted = false;
+
+	/** The result of the last call to solve; the model can be read only if it is true. */
+	private boolean sat = false;
+
+	private int vars = 0, clauses = 0;
+
+	private IncrementalSAT4J(ISolver solver) {
+		this(solver, null);
+	}
+
+	private IncrementalSAT4J(ISolver solver, Cancellation cancellation) {
+		if (solver==null) throw new NullPointerException("solver");
+		this.solver = solver;
+		this.cancellation = cancellation;
+	}
+
+	public int numberOfVariables() { return vars; }
+
+	public int numberOfClauses() { return clauses; }
+
+	public void addVariables(int numVars) {
+		if (numVars<0) throw new IllegalArgumentException("numVars < 0: " + numVars);
+		if (numVars>0) { vars += numVars; solver.newVar(vars); }
+	}
+
+	public boolean addClause(int[] lits) {
+		if (contradicted) return false;
+		try {
+			clauses++;
+			// SAT4J keeps a reference to the vector, so the array is copied.
+			solver.addClause(new VecInt(lits.clone()));
+			return true;
+		} catch(ContradictionException ex) {
+			contradicted = true;
+			return false;
+		}
+	}
+
+	public boolean solve() { return solve(new int[0]); }
+
+	/** Solve the clauses assuming all the given literals are true; the assumptions are not kept for the next call. */
+	public boolean solve(int[] assumptions) {
+		if (contradicted) return sat = false;
+		if (cancellation==null) {
+			try {
+				return sat = solver.isSatisfiable(new VecInt(assumptions.clone()));
+			} catch(TimeoutException ex) {
+				throw new RuntimeException("timed out");
+			}
+		}
+		final ISolver searching = solver;
+		final Stopper stopper = new Stopper(searching);
+		final Runnable stop = new Runnable() { public void run() { stopper.start(); } };
+		cancellation.onCancel(stop);
+		try {
+			if (cancellation.isCancelled()) { sat = false; throw new CancellationException("The search is cancelled."); }
+			return sat = searching.isSatisfiable(new VecInt(assumptions.clone()));
+		} catch(TimeoutException ex) {
+			sat = false;
+			if (cancellation.isCancelled()) throw new CancellationException("The search is cancelled.");
+			throw new RuntimeException("timed out");
+		} finally {
+			stopper.finish();
+			cancellation.remove(stop);
+		}
+	}
+
+	public boolean valueOf(int variable) {
+		if (!sat) throw new IllegalStateException();
+		if (variable<1 || variable>vars) throw new IllegalArgumentException(variable + " !in [1.." + vars + "]");
+		return solver.model(variable);
+	}
+
+	public synchronized void free() { solver = null; }
+
+	/** [VM] Stops a cancelled search.
+	 *
+	 * <p> SAT4J arms its timer when the search starts, which undoes an expireTimeout() issued just before.
+	 * So once started, the timeout is expired again every STOP_PERIOD until the search returns.
+	 */
+	private static final class Stopper extends TimerTask {
+
+		private final ISolver solver;
+
+		/** True once the search has returned; guarded by this. */
+		private boolean finished = false;
+
+		Stopper(ISolver solver) { this.solver = solver; }
+
+		@Override public void run() { solver.expireTimeout(); }
+
+		/** Starts expiring the timeout, unless the search has already returned. */
+		synchronized void start() {
+			if (!finished) STOPPER.schedule(this, 0, STOP_PERIOD);
+		}
+
+		/** Called once the search returns; no timeout is expired after this. */
+		synchronized void finish() {
+			finished = true;
+			cancel();
+		}
+	}
+}
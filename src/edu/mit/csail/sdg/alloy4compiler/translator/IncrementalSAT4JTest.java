@@ -0,0 +1,102 @@
+package edu.mit.csail.sdg.alloy4compiler.translator;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import edu.mit.csail.sdg.alloy4.Cancellation;
+import kodkod.engine.satlab.SATSolver;
+
+/** [VM] Checks that cancelling stops a search, however early the cancel lands. */
+public class IncrementalSAT4JTest {
+
+	/** Pigeons into one hole fewer: unsatisfiable, and far too long a search to finish in the test. */
+	static final int PIGEONS = 14;
+
+	/** How long a cancelled search may take to return, in seconds. */
+	static final long BOUND = 10;
+
+	/** A solver for the pigeonhole problem; variable p*holes+h+1 puts pigeon p into hole h. */
+	static SATSolver pigeonhole(Cancellation cancellation) {
+		final int holes = PIGEONS - 1;
+		final SATSolver solver = IncrementalSAT4J.factory(cancellation).instance();
+		solver.addVariables(PIGEONS * holes);
+		for (int p = 0; p < PIGEONS; p++) {
+			final int[] some = new int[holes];
+			for (int h = 0; h < holes; h++) some[h] = p * holes + h + 1;
+			solver.addClause(some);
+		}
+		for (int h = 0; h < holes; h++)
+			for (int p = 0; p < PIGEONS; p++)
+				for (int q = p + 1; q < PIGEONS; q++)
+					solver.addClause(new int[] { -(p * holes + h + 1), -(q * holes + h + 1) });
+		return solver;
+	}
+
+	/** Solves on another thread, cancels once the solve is about to start, and waits for the CancellationException. */
+	static void cancelAtStart(ExecutorService executor, long delayNanos) throws Exception {
+		final Cancellation cancellation = new Cancellation();
+		final SATSolver solver = pigeonhole(cancellation);
+		final CountDownLatch starting = new CountDownLatch(1);
+		final Future<Boolean> result = executor.submit(new Callable<Boolean>() {
+			public Boolean call() {
+				starting.countDown();
+				return solver.solve();
+			}
+		});
+		starting.await();
+		final long until = System.nanoTime() + delayNanos;
+		while (System.nanoTime() < until) Thread.yield();
+		cancellation.cancel();
+		try {
+			result.get(BOUND, TimeUnit.SECONDS);
+			fail("the search is not cancelled");
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause().toString(), ex.getCause() instanceof CancellationException);
+		}
+	}
+
+	@Test
+	public void testCancelBeforeTheSearch() {
+		final Cancellation cancellation = new Cancellation();
+		final SATSolver solver = pigeonhole(cancellation);
+		cancellation.cancel();
+		try {
+			solver.solve();
+			fail("the search is not cancelled");
+		} catch (CancellationException ex) {
+		}
+	}
+
+	@Test
+	public void testCancelAtTheStartOfTheSearch() throws Exception {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// The cancels land anywhere from before the check to well into the search.
+			for (int round = 0; round < 200; round++) cancelAtStart(executor, (round % 20) * 50000L);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testCancelDuringTheSearch() throws Exception {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			cancelAtStart(executor, TimeUnit.MILLISECONDS.toNanos(500));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -44,10 +44,12 @@ import kodkod.instance.TupleFactory;
 import kodkod.instance.TupleSet;
 import kodkod.util.ints.IntVector;
 import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.alloy4.Cancellation;
 import edu.mit.csail.sdg.alloy4.ConstList;
 import edu.mit.csail.sdg.alloy4.ConstMap;
 import edu.mit.csail.sdg.alloy4.Env;
 import edu.mit.csail.sdg.alloy4.Err;
+import edu.mit.csail.sdg.alloy4.ErrorAPI;
 import edu.mit.csail.sdg.alloy4.ErrorFatal;
 import edu.mit.csail.sdg.alloy4.ErrorSyntax;
 import edu.mit.csail.sdg.alloy4.ErrorType;
@@ -385,7 +387,9 @@ public final class TranslateAlloyToKodkod extends VisitReturn<Object> {
         try {
             if (cmd.parent!=null || !cmd.getGrowableSigs().isEmpty()) return execute_greedyCommand(rep, sigs, cmd, opt);
             tr = new TranslateAlloyToKodkod(rep, opt, sigs, cmd);
+            Cancellation.check(rep); // [VM] stop between the stages once the task is cancelled
             tr.makeFacts(cmd.formula);
+            Cancellation.check(rep);
             return tr.frame.solve(rep, cmd, new Simplifier(), false);
         } catch(UnsatisfiedLinkError ex) {
             throw new ErrorFatal("The required JNI library cannot be found: "+ex.toString().trim(), ex);
@@ -399,6 +403,39 @@ public final class TranslateAlloyToKodkod extends VisitReturn<Object> {
         }
     }
 
+    /** [VM] Check a list of formulas against the facts and scope of one command, translating the shared part only once.
+     *
+     * @param rep - if nonnull, we'll send compilation diagnostic messages to it
+     * @param sigs - the list of sigs; this list must be complete
+     * @param cmd - the Command whose facts and scope are shared; its formula should not include the properties
+     * @param properties - the formulas to be solved one by one together with cmd's formula
+     * @param opt - the set of options guiding the execution of the command
+     *
+     * @return the satisfiability of each formula in the order they were given
+     */
+    public static A4BatchSolution execute_batch (A4Reporter rep, Iterable<Sig> sigs, Command cmd, List<Expr> properties, A4Options opt) throws Err {
+        if (rep==null) rep = A4Reporter.NOP;
+        if (cmd.parent!=null || !cmd.getGrowableSigs().isEmpty()) throw new ErrorAPI("A batch cannot be made over a command with growable sigs.");
+        TranslateAlloyToKodkod tr = null;
+        try {
+            tr = new TranslateAlloyToKodkod(rep, opt, sigs, cmd);
+            Cancellation.check(rep); // stop between the stages once the task is cancelled
+            tr.makeFacts(cmd.formula);
+            List<Formula> formulas = new ArrayList<Formula>(properties.size());
+            for(Expr property: properties) { Cancellation.check(rep); formulas.add(tr.cform(property)); }
+            return tr.frame.solveBatch(rep, new Simplifier(), formulas);
+        } catch(UnsatisfiedLinkError ex) {
+            throw new ErrorFatal("The required JNI library cannot be found: "+ex.toString().trim(), ex);
+        } catch(CapacityExceededException ex) {
+            throw rethrow(ex);
+        } catch(HigherOrderDeclException ex) {
+            Pos p = tr!=null ? tr.frame.kv2typepos(ex.decl().variable()).b : Pos.UNKNOWN;
+            throw new ErrorType(p, "Analysis cannot be performed since it requires higher-order quantification that could not be skolemized.");
+        } catch(Throwable ex) {
+            if (ex instanceof Err) throw (Err)ex; else throw new ErrorFatal("Unknown exception occurred: "+ex, ex);
+        }
+    }
+
     /** Based on the specified "options", execute one command and return the resulting A4Solution object.
      *
      * <p> Note: it will first test whether the model fits one of the model from the "Software Abstractions" book;
@@ -420,7 +457,9 @@ public final class TranslateAlloyToKodkod extends VisitReturn<Object> {
         try {
             if (cmd.parent!=null || !cmd.getGrowableSigs().isEmpty()) return execute_greedyCommand(rep, sigs, cmd, opt);
             tr = new TranslateAlloyToKodkod(rep, opt, sigs, cmd);
+            Cancellation.check(rep); // [VM] stop between the stages once the task is cancelled
             tr.makeFacts(cmd.formula);
+            Cancellation.check(rep);
             return tr.frame.solve(rep, cmd, new Simplifier(), true);
         } catch(UnsatisfiedLinkError ex) {
             throw new ErrorFatal("The required JNI library cannot be found: "+ex.toString().trim(), ex);
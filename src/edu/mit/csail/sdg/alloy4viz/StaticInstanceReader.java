@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -39,8 +40,8 @@ import edu.mit.csail.sdg.alloy4compiler.ast.Sig.PrimSig;
 import edu.mit.csail.sdg.alloy4compiler.ast.Sig.SubsetSig;
 import edu.mit.csail.sdg.alloy4compiler.translator.A4Solution;
 import edu.mit.csail.sdg.alloy4compiler.translator.A4SolutionReader;
-import edu.mit.csail.sdg.alloy4compiler.translator.A4Tuple;
 import edu.mit.csail.sdg.alloy4compiler.translator.A4TupleSet;
+import kodkod.util.ints.IntIterator;
 
 /** This utility class parses an XML file into an AlloyInstance object.
  *
@@ -172,8 +173,9 @@ public final class StaticInstanceReader {
     	  atoms(sol, c); 
     	  }
       A4TupleSet ts = (A4TupleSet) (sol.eval(s.minus(sum))); // This ensures that atoms will be associated with the most specific sig
-      for(A4Tuple z: ts) {
-         String atom = z.atom(0);
+      BitSet indexes = ts.indexes(); // [VM] reads the atom names by index, without making an A4Tuple for each atom
+      for(int z = indexes.nextSetBit(0); z >= 0; z = indexes.nextSetBit(z+1)) {
+         String atom = sol.atomName(z);
          int i, dollar = atom.lastIndexOf('$'), partial = atom.lastIndexOf('%');
          try { 
         	 i = Integer.parseInt(dollar>=0 ? atom.substring(dollar+1) : atom); 
@@ -201,8 +203,9 @@ public final class StaticInstanceReader {
             PrimSig t = ps.get(0);
             AlloySet set = makeSet(label, isPrivate, isMeta, sig(t));
             sets.add(set);
-            for(A4Tuple tp: (A4TupleSet)(sol.eval(expr.intersect(t)))) {
-               atom2sets.get(string2atom.get(tp.atom(0))).add(set);
+            BitSet indexes = ((A4TupleSet)(sol.eval(expr.intersect(t)))).indexes();
+            for(int tp = indexes.nextSetBit(0); tp >= 0; tp = indexes.nextSetBit(tp+1)) {
+               atom2sets.get(string2atom.get(sol.atomName(tp))).add(set);
             }
          } else {
             Expr mask = null;
@@ -213,11 +216,14 @@ public final class StaticInstanceReader {
             }
             AlloyRelation rel = makeRel(label, isPrivate, isMeta, types);
             Set<AlloyTuple> ts = new LinkedHashSet<AlloyTuple>();
-            for(A4Tuple tp: (A4TupleSet)(sol.eval(expr.intersect(mask)))) {
-               AlloyAtom[] atoms = new AlloyAtom[tp.arity()];
-               for(int i=0; i<tp.arity(); i++) {
-                  atoms[i] = string2atom.get(tp.atom(i));
-                  if (atoms[i]==null) throw new ErrorFatal("Unexpected XML inconsistency: cannot resolve atom "+tp.atom(i));
+            A4TupleSet tuples = (A4TupleSet)(sol.eval(expr.intersect(mask)));
+            for(IntIterator it = tuples.tupleIndexes(); it.hasNext();) { // [VM] no bitset of n^arity bits for a relation
+               int tp = it.next();
+               AlloyAtom[] atoms = new AlloyAtom[tuples.arity()];
+               for(int i=0; i<tuples.arity(); i++) {
+                  String atom = sol.atomName(tuples.atom(tp, i));
+                  atoms[i] = string2atom.get(atom);
+                  if (atoms[i]==null) throw new ErrorFatal("Unexpected XML inconsistency: cannot resolve atom "+atom);
                }
                ts.add(new AlloyTuple(atoms));
             }
@@ -1,6 +1,8 @@
 package edu.uw.ece.alloy.debugger.exec;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -11,12 +13,16 @@ import java.util.logging.Logger;
 
 import edu.mit.csail.sdg.alloy4.A4Reporter;
 import edu.mit.csail.sdg.alloy4.Err;
+import edu.mit.csail.sdg.alloy4.ErrorAPI;
+import edu.mit.csail.sdg.alloy4.ErrorFatal;
 import edu.mit.csail.sdg.alloy4.OurDialog;
 import edu.mit.csail.sdg.alloy4.Util;
 import edu.mit.csail.sdg.alloy4compiler.ast.Command;
+import edu.mit.csail.sdg.alloy4compiler.ast.Expr;
 import edu.mit.csail.sdg.alloy4compiler.ast.Module;
 import edu.mit.csail.sdg.alloy4compiler.parser.CompModule;
 import edu.mit.csail.sdg.alloy4compiler.parser.CompUtil;
+import edu.mit.csail.sdg.alloy4compiler.translator.A4BatchSolution;
 import edu.mit.csail.sdg.alloy4compiler.translator.A4Options;
 import edu.mit.csail.sdg.alloy4compiler.translator.A4Solution;
 import edu.mit.csail.sdg.alloy4compiler.translator.TranslateAlloyToKodkod;
@@ -40,11 +46,15 @@ public class A4CommandExecuter {
 
 	private static A4CommandExecuter itself;
 
+	/* Parsed worlds are shared among all the checks made in this JVM. */
+	private final CompModuleCache worldCache = new CompModuleCache();
+
 	private A4CommandExecuter() {
 		setUp();
 	}
 
-	public static A4CommandExecuter getInstance() {
+	/* The workers of an agent share the instance and its parsed worlds. */
+	public static synchronized A4CommandExecuter getInstance() {
 		if (itself == null) {
 			itself = new A4CommandExecuter();
 		}
@@ -181,8 +191,191 @@ public class A4CommandExecuter {
 		return result;
 	}
 
+	/**
+	 * Runs the command generated by the coder. The world part of the generated
+	 * code is looked up in the cache, so only the command block is parsed and
+	 * typechecked per call.
+	 * 
+	 * @param coder
+	 * @param worldPath
+	 *          The path that imports of the world are resolved relative to. The
+	 *          file itself is not read.
+	 * @param rep
+	 * @return
+	 * @throws Err
+	 */
+	public A4Solution runThenGetAnswers(PropertyToAlloyCode coder,
+			String worldPath, A4Reporter rep) throws Err {
+		if (Configuration.IsInDeubbungMode)
+			logger.log(Level.INFO, "[" + Thread.currentThread().getName() + "]"
+					+ "=========== Resolving " + coder.srcName()
+					+ " over the cached world =============");
+		CompModule world = worldCache.resolve(rep, worldPath,
+				coder.generateWorldCode());
+
+		Command command;
+		try {
+			command = world.parseOneCommandFromString(
+					PropertyToAlloyCode.COMMAND_BLOCK_NAME, coder.isCheckCommand(),
+					coder.generateCommandFormula(), coder.scope);
+		} catch (IOException e) {
+			throw new ErrorFatal("IOException occurred: " + e.getMessage(), e);
+		}
+
+		A4Options options = new A4Options();
+		options.solver = A4Options.SatSolver.SAT4J;
+		options.symmetry = 0;
+
+		if (Configuration.IsInDeubbungMode)
+			logger.log(Level.INFO, "[" + Thread.currentThread().getName() + "]"
+					+ "============ Command " + command + ": ============");
+
+		return TranslateAlloyToKodkod.execute_command(rep,
+				world.getAllReachableSigs(), command, options);
+	}
+
+	public void run(PropertyToAlloyCode coder, String worldPath, A4Reporter rep)
+			throws Err {
+		runThenGetAnswers(coder, worldPath, rep);
+	}
+
+	/**
+	 * Runs the commands generated by the coders in one batch. The coders have
+	 * to share the same batch key. The world is made of all their predicate
+	 * bodies, then the facts and bounds are translated once and every command
+	 * is solved under its own assumption on the same SAT instance.
+	 * 
+	 * @param coders
+	 * @param worldPath
+	 *          The path that imports of the world are resolved relative to. The
+	 *          file itself is not read.
+	 * @param rep
+	 * @return the outcome of each coder in the given order.
+	 * @throws Err
+	 */
+	public A4BatchSolution runBatchThenGetAnswers(
+			List<PropertyToAlloyCode> coders, String worldPath, A4Reporter rep)
+			throws Err {
+		if (coders.isEmpty())
+			throw new ErrorAPI("The batch is empty.");
+
+		final String batchKey = coders.get(0).batchKey();
+		for (PropertyToAlloyCode coder : coders) {
+			if (!coder.batchKey().equals(batchKey))
+				throw new ErrorAPI(
+						"The batched coders do not share the same world and scope: "
+								+ coder.srcName());
+		}
+		final String worldCode = PropertyToAlloyCode.generateWorldCode(coders);
+		final String scope = coders.get(0).scope;
+
+		if (Configuration.IsInDeubbungMode)
+			logger.log(Level.INFO, "[" + Thread.currentThread().getName() + "]"
+					+ "=========== Resolving a batch of " + coders.size()
+					+ " commands over the cached world =============");
+		CompModule world = worldCache.resolve(rep, worldPath, worldCode);
+
+		Command command;
+		List<Expr> properties = new ArrayList<>(coders.size());
+		try {
+			for (PropertyToAlloyCode coder : coders) {
+				Expr property = world
+						.parseOneExpressionFromString(coder.generateCommandFormula());
+				properties.add(coder.isCheckCommand() ? property.not() : property);
+			}
+			command = world.parseOneScopeFromString(
+					PropertyToAlloyCode.COMMAND_BLOCK_NAME, false, scope);
+		} catch (IOException e) {
+			throw new ErrorFatal("IOException occurred: " + e.getMessage(), e);
+		}
+
+		A4Options options = new A4Options();
+		options.solver = A4Options.SatSolver.SAT4J;
+		options.symmetry = 0;
+
+		return TranslateAlloyToKodkod.execute_batch(rep,
+				world.getAllReachableSigs(), command, properties, options);
+	}
+
+	/**
+	 * Parses the content as if it was stored in path and runs all its commands.
+	 * Nothing is written or read from path; the imports are resolved from the
+	 * pinned libraries or relative to path. The content is taken as a one-shot
+	 * query, so its world is not kept in the world cache.
+	 * 
+	 * @param path
+	 * @param content
+	 * @param rep
+	 * @return
+	 * @throws Err
+	 */
+	public Map<Command, A4Solution> runThenGetAnswersInMemory(String path,
+			String content, A4Reporter rep) throws Err {
+		return runThenGetAnswersInMemory(path, content, rep, 0);
+	}
+
+	/**
+	 * As runThenGetAnswersInMemory(path, content, rep), but the solutions are
+	 * found with the given symmetry breaking. It is for the commands whose
+	 * solutions are enumerated, so the isomorphic ones are not found.
+	 * 
+	 * @param path
+	 * @param content
+	 * @param rep
+	 * @param symmetry
+	 * @return
+	 * @throws Err
+	 */
+	public Map<Command, A4Solution> runThenGetAnswersInMemory(String path,
+			String content, A4Reporter rep, int symmetry) throws Err {
+
+		Map<Command, A4Solution> result = new HashMap<>();
+
+		if (Configuration.IsInDeubbungMode)
+			logger.log(Level.INFO, "[" + Thread.currentThread().getName() + "]"
+					+ "=========== Parsing+Typechecking in memory " + path
+					+ " =============");
+
+		CompModule world = worldCache.parse(rep, path, content);
+
+		A4Options options = new A4Options();
+		options.solver = A4Options.SatSolver.SAT4J;
+		options.symmetry = symmetry;
+
+		for (Command command : world.getAllCommands()) {
+			if (Configuration.IsInDeubbungMode)
+				logger.log(Level.INFO, "[" + Thread.currentThread().getName() + "]"
+						+ "============ Command " + command + ": ============");
+
+			result.put(command, TranslateAlloyToKodkod.execute_command(rep,
+					world.getAllReachableSigs(), command, options));
+		}
+
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Keeps a module in memory, so the generated codes opening it do not need
+	 * the module on the disk.
+	 * 
+	 * @param path
+	 * @param content
+	 */
+	public void registerLibrary(String path, String content) {
+		worldCache.pinLibrary(path, content);
+	}
+
+	public CompModuleCache getWorldCache() {
+		return worldCache;
+	}
+
 	public Map<Command, A4Solution> runThenGetAnswers(String[] args,
 			A4Reporter rep) throws Err {
+		return runThenGetAnswers(args, rep, 0);
+	}
+
+	public Map<Command, A4Solution> runThenGetAnswers(String[] args,
+			A4Reporter rep, int symmetry) throws Err {
 		// Alloy4 sends diagnostic messages and progress reports to the A4Reporter.
 		// By default, the A4Reporter ignores all these events (but you can extend
 		// the A4Reporter to display the event for the user)
@@ -203,7 +396,7 @@ public class A4CommandExecuter {
 			A4Options options = new A4Options();
 
 			options.solver = A4Options.SatSolver.SAT4J;
-			options.symmetry = 0;
+			options.symmetry = symmetry;
 
 			for (Command command : world.getAllCommands()) {
 
@@ -0,0 +1,169 @@
+package edu.uw.ece.alloy.debugger.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.alloy4.Cancellation;
+import edu.mit.csail.sdg.alloy4.Err;
+import edu.mit.csail.sdg.alloy4compiler.translator.A4BatchSolution;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.Dependency;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.IfPropertyToAlloyCode;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.IffPropertyToAlloyCode;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.PropertyToAlloyCode;
+
+/**
+ * @author vajih
+ *
+ */
+public class A4CommandExecuterTest {
+
+	final String header = "sig A{r: set A}\n";
+	final String scope = "for 3";
+	final String worldPath = new File("tmp", "batch.als").getAbsolutePath();
+
+	final String[][] preds = {
+			{ "reflexive", "pred reflexive[r: A->A]{ all a: A | a->a in r }" },
+			{ "symmetric", "pred symmetric[r: A->A]{ r = ~r }" },
+			{ "empty", "pred empty[r: A->A]{ no r }" },
+			{ "total", "pred total[r: A->A]{ all a: A | some a.r }" } };
+
+	List<PropertyToAlloyCode> coders;
+
+	@Before
+	public void setUp() throws Exception {
+		coders = new ArrayList<>();
+		for (String[] a : preds) {
+			for (String[] b : preds) {
+				if (a == b)
+					continue;
+				for (PropertyToAlloyCode converter : Arrays.asList(
+						IfPropertyToAlloyCode.EMPTY_CONVERTOR,
+						IffPropertyToAlloyCode.EMPTY_CONVERTOR)) {
+					coders.add(converter.createIt(a[1], b[1], a[0] + "[r]",
+							b[0] + "[r]", a[0], b[0], new ArrayList<Dependency>(), header,
+							scope, "r"));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBatchAgreesWithSingleChecks() throws Err {
+		A4CommandExecuter executer = A4CommandExecuter.getInstance();
+
+		A4BatchSolution batch = executer.runBatchThenGetAnswers(coders, worldPath,
+				A4Reporter.NOP);
+
+		assertEquals(coders.size(), batch.size());
+		assertEquals(coders.size(), batch.decided());
+		for (int i = 0; i < coders.size(); ++i) {
+			boolean single = executer
+					.runThenGetAnswers(coders.get(i), worldPath, A4Reporter.NOP)
+					.satisfiable();
+			assertEquals(coders.get(i).srcName(), single, batch.satisfiable(i));
+		}
+	}
+
+	@Test(expected = Err.class)
+	public void testBatchRejectsDifferentScopes() throws Err {
+		List<PropertyToAlloyCode> mixed = new ArrayList<>(coders.subList(0, 1));
+		PropertyToAlloyCode first = coders.get(0);
+		mixed.add(first.createIt(first.predBodyA, first.predBodyB, first.predCallA,
+				first.predCallB, first.predNameA, first.predNameB,
+				first.dependencies, header, "for 4", "r"));
+		A4CommandExecuter.getInstance().runBatchThenGetAnswers(mixed, worldPath,
+				A4Reporter.NOP);
+	}
+
+	@Test
+	public void testUncancelledChecksAreNotChanged() throws Err {
+		A4CommandExecuter executer = A4CommandExecuter.getInstance();
+		A4Reporter reporter = new A4Reporter(A4Reporter.NOP, new Cancellation());
+
+		A4BatchSolution batch = executer.runBatchThenGetAnswers(coders, worldPath,
+				reporter);
+		for (int i = 0; i < coders.size(); ++i) {
+			boolean single = executer
+					.runThenGetAnswers(coders.get(i), worldPath, reporter)
+					.satisfiable();
+			assertEquals(coders.get(i).srcName(), single, batch.satisfiable(i));
+		}
+	}
+
+	@Test
+	public void testCancelledBatchKeepsTheDecidedChecks() throws Err {
+		A4CommandExecuter executer = A4CommandExecuter.getInstance();
+		final Cancellation cancellation = new Cancellation();
+		A4Reporter reporter = new A4Reporter(A4Reporter.NOP, cancellation) {
+			@Override
+			public void solveBatchFormula(int i) {
+				if (i == 2)
+					cancellation.cancel();
+			}
+		};
+
+		A4BatchSolution batch = executer.runBatchThenGetAnswers(coders, worldPath,
+				reporter);
+		assertEquals(coders.size(), batch.size());
+		assertEquals(2, batch.decided());
+		for (int i = 0; i < batch.decided(); ++i) {
+			boolean single = executer
+					.runThenGetAnswers(coders.get(i), worldPath, A4Reporter.NOP)
+					.satisfiable();
+			assertEquals(coders.get(i).srcName(), single, batch.satisfiable(i));
+		}
+	}
+
+	@Test
+	public void testCancelledChecksStop() {
+		A4CommandExecuter executer = A4CommandExecuter.getInstance();
+		Cancellation cancellation = new Cancellation();
+		cancellation.cancel();
+		A4Reporter reporter = new A4Reporter(A4Reporter.NOP, cancellation);
+
+		try {
+			executer.runThenGetAnswers(coders.get(0), worldPath, reporter);
+			fail("A cancelled check is solved.");
+		} catch (Err e) {
+			assertTrue(cancellation.isCancelled());
+		}
+		try {
+			executer.runBatchThenGetAnswers(coders, worldPath, reporter);
+			fail("A cancelled batch is solved.");
+		} catch (Err e) {
+			assertTrue(cancellation.isCancelled());
+		}
+	}
+
+	@Test
+	public void testInMemoryQueriesAreNotCached() throws Err {
+		A4CommandExecuter executer = A4CommandExecuter.getInstance();
+		CompModuleCache cache = executer.getWorldCache();
+		executer.runThenGetAnswers(coders.get(0), worldPath, A4Reporter.NOP);
+		final int size = cache.size();
+		final long hits = cache.getHits();
+
+		for (int i = 0; i < 3; ++i) {
+			String path = new File("tmp", "query" + i + ".als").getAbsolutePath();
+			assertTrue(executer.runThenGetAnswersInMemory(path,
+					header + "run {some r} " + scope, A4Reporter.NOP).values()
+					.iterator().next().satisfiable());
+		}
+		assertEquals(size, cache.size());
+
+		// The world of the agents is still there.
+		executer.runThenGetAnswers(coders.get(0), worldPath, A4Reporter.NOP);
+		assertEquals(hits + 1, cache.getHits());
+	}
+
+}
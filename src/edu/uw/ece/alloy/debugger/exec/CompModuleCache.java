@@ -0,0 +1,238 @@
+package edu.uw.ece.alloy.debugger.exec;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.alloy4.Err;
+import edu.mit.csail.sdg.alloy4.Util;
+import edu.mit.csail.sdg.alloy4compiler.parser.CompModule;
+import edu.mit.csail.sdg.alloy4compiler.parser.CompUtil;
+import edu.uw.ece.alloy.Configuration;
+import edu.uw.ece.alloy.util.Utils;
+
+/**
+ * An in-process cache of parsed and typechecked worlds. A world is the
+ * generated source without its command block, i.e. the opens, the model to
+ * be analyzed and the predicate bodies. The key is the content hash of the
+ * world plus the directory it is resolved from, since the opens are relative
+ * to that directory.
+ *
+ * The imported modules are cached by their path. Alloy binds the resolved
+ * sub-modules to their root module, so a resolved sub-module cannot be shared
+ * between two different worlds. Instead, their contents are kept in memory and
+ * fed to the parser, and the whole world is rejected if any imported file is
+ * changed on the disk. Modules can also be pinned in memory, so a world can
+ * be parsed without any file on the disk.
+ *
+ * @author vajih
+ *
+ */
+public class CompModuleCache {
+
+	final static Logger logger = Logger
+			.getLogger(CompModuleCache.class.getName() + "--"
+					+ Thread.currentThread().getName());
+
+	final public static int DefaultCapacity = Integer
+			.parseInt(Configuration.getProp("compmodule_cache_capacity"));
+
+	/**
+	 * A stamp of a file on the disk. A change in size or modification time
+	 * means the cached content is stale.
+	 */
+	private final static class Stamp {
+		final long lastModified, length;
+
+		Stamp(final File file) {
+			this.lastModified = file.lastModified();
+			this.length = file.length();
+		}
+
+		boolean isFresh(final File file) {
+			return file.lastModified() == lastModified && file.length() == length;
+		}
+	}
+
+	private final static class CachedWorld {
+		final CompModule world;
+		/* imported module path -> its stamp */
+		final Map<String, Stamp> imports;
+
+		CachedWorld(final CompModule world, final Map<String, Stamp> imports) {
+			this.world = world;
+			this.imports = Collections.unmodifiableMap(imports);
+		}
+
+		boolean isFresh() {
+			for (String path : imports.keySet()) {
+				if (!imports.get(path).isFresh(new File(path)))
+					return false;
+			}
+			return true;
+		}
+	}
+
+	private final int capacity;
+
+	private final Map<String, CachedWorld> worlds;
+	/* imported module path -> content and stamp */
+	private final Map<String, String> libraries = new HashMap<>();
+	private final Map<String, Stamp> librariesStamps = new HashMap<>();
+	/* Modules that only exist in memory, e.g. sent by the setup message. */
+	private final Map<String, String> pinnedLibraries = new HashMap<>();
+
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+
+	public CompModuleCache(final int capacity) {
+		this.capacity = capacity;
+		this.worlds = new LinkedHashMap<String, CachedWorld>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedWorld> eldest) {
+				return size() > CompModuleCache.this.capacity;
+			}
+		};
+	}
+
+	public CompModuleCache() {
+		this(DefaultCapacity);
+	}
+
+	/**
+	 * Returns the resolved world for the given content. The content is parsed
+	 * as if it was stored in worldPath, but nothing is read from worldPath.
+	 *
+	 * @param rep
+	 * @param worldPath
+	 *          The path that the imports are resolved relative to.
+	 * @param worldContent
+	 * @return
+	 * @throws Err
+	 */
+	public synchronized CompModule resolve(final A4Reporter rep,
+			final String worldPath, final String worldContent) throws Err {
+
+		final String canonPath = Util.canon(worldPath);
+		final String key = Utils
+				.digest(new File(canonPath).getParent() + '\0' + worldContent);
+
+		final CachedWorld cached = worlds.get(key);
+		if (cached != null && cached.isFresh()) {
+			hits.incrementAndGet();
+			return cached.world;
+		}
+		misses.incrementAndGet();
+
+		final Map<String, Stamp> imports = new HashMap<>();
+		final CompModule world = parse(rep, canonPath, worldContent, imports);
+		worlds.put(key, new CachedWorld(world, imports));
+		return world;
+	}
+
+	/**
+	 * Parses the content as resolve does, but the world is not kept. It is for
+	 * the contents that are parsed only once, e.g. the lattice queries, so they
+	 * do not evict the worlds that are used again. The imported modules are
+	 * still shared with the cached worlds.
+	 *
+	 * @param rep
+	 * @param worldPath
+	 *          The path that the imports are resolved relative to.
+	 * @param worldContent
+	 * @return
+	 * @throws Err
+	 */
+	public synchronized CompModule parse(final A4Reporter rep,
+			final String worldPath, final String worldContent) throws Err {
+		return parse(rep, Util.canon(worldPath), worldContent,
+				new HashMap<String, Stamp>());
+	}
+
+	/**
+	 * Parses the content with the cached modules, and fills imports with the
+	 * stamps of the files it opens.
+	 */
+	private CompModule parse(final A4Reporter rep, final String canonPath,
+			final String worldContent, final Map<String, Stamp> imports)
+			throws Err {
+		final Map<String, String> loaded = new LinkedHashMap<>();
+		for (String path : libraries.keySet()) {
+			if (librariesStamps.get(path).isFresh(new File(path)))
+				loaded.put(path, libraries.get(path));
+		}
+		loaded.putAll(pinnedLibraries);
+		loaded.put(canonPath, worldContent);
+
+		final CompModule world = CompUtil.parseEverything_fromFile(rep, loaded,
+				canonPath);
+
+		// After parsing, loaded contains exactly the files that are used.
+		for (String path : loaded.keySet()) {
+			if (path.equals(canonPath) || pinnedLibraries.containsKey(path))
+				continue;
+			final File file = new File(path);
+			// Built-in modules are read from the jar and never change.
+			if (!file.exists())
+				continue;
+			final Stamp stamp = librariesStamps.containsKey(path)
+					&& librariesStamps.get(path).isFresh(file)
+							? librariesStamps.get(path) : new Stamp(file);
+			imports.put(path, stamp);
+			libraries.put(path, loaded.get(path));
+			librariesStamps.put(path, stamp);
+		}
+
+		return world;
+	}
+
+	/**
+	 * Makes a module available to the parser without storing it on the disk.
+	 * The pinned module is preferred to a file with the same path and never
+	 * becomes stale.
+	 * 
+	 * @param path
+	 * @param content
+	 */
+	public synchronized void pinLibrary(final String path, final String content) {
+		final String canonPath = Util.canon(path);
+		if (content.equals(pinnedLibraries.get(canonPath)))
+			return;
+		pinnedLibraries.put(canonPath, content);
+		// The worlds opened the old content are not valid anymore.
+		worlds.clear();
+	}
+
+	public synchronized void clear() {
+		worlds.clear();
+		libraries.clear();
+		librariesStamps.clear();
+		pinnedLibraries.clear();
+	}
+
+	public synchronized int size() {
+		return worlds.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public String toString() {
+		return "CompModuleCache [size=" + size() + ", hits=" + hits + ", misses="
+				+ misses + "]";
+	}
+
+}
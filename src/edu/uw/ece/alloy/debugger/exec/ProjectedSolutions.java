@@ -0,0 +1,123 @@
+package edu.uw.ece.alloy.debugger.exec;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import edu.mit.csail.sdg.alloy4.Err;
+import edu.mit.csail.sdg.alloy4compiler.ast.Expr;
+import edu.mit.csail.sdg.alloy4compiler.translator.A4Solution;
+import edu.mit.csail.sdg.alloy4compiler.translator.A4TupleSet;
+import kodkod.util.ints.IntIterator;
+
+/**
+ * The solutions of a command that differ in the values of the projected
+ * expressions. The solutions are found lazily by A4Solution.next(), so a
+ * caller that stops early does not pay for the rest, and the solutions that
+ * repeat a seen projection are skipped. If no expression is given, the
+ * solutions are projected on their skolems.
+ *
+ * Each iterator starts from the first solution. A4Solution keeps its next
+ * solution, so walking the solutions again does not solve them again.
+ *
+ * @author vajih
+ *
+ */
+public class ProjectedSolutions implements Iterable<A4Solution> {
+
+	final static Logger logger = Logger
+			.getLogger(ProjectedSolutions.class.getName() + "--"
+					+ Thread.currentThread().getName());
+
+	private final A4Solution first;
+	private final List<? extends Expr> projection;
+
+	public ProjectedSolutions(final A4Solution first,
+			final List<? extends Expr> projection) {
+		this.first = first;
+		this.projection = Collections.unmodifiableList(projection);
+	}
+
+	public ProjectedSolutions(final A4Solution first) {
+		this(first, Collections.<Expr> emptyList());
+	}
+
+	@Override
+	public Iterator<A4Solution> iterator() {
+		return new Iterator<A4Solution>() {
+			private final Set<String> seen = new HashSet<>();
+			private A4Solution current = first;
+			private boolean found = false;
+
+			@Override
+			public boolean hasNext() {
+				try {
+					while (!found && current != null && current.satisfiable()) {
+						if (seen.add(key(current)))
+							found = true;
+						else
+							current = current.next();
+					}
+				} catch (Err e) {
+					logger.log(Level.WARNING, "[" + Thread.currentThread().getName()
+							+ "] " + "The solutions are cut short: ", e);
+					current = null;
+				}
+				return found;
+			}
+
+			@Override
+			public A4Solution next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				final A4Solution result = current;
+				found = false;
+				try {
+					current = current.next();
+				} catch (Err e) {
+					logger.log(Level.WARNING, "[" + Thread.currentThread().getName()
+							+ "] " + "The solutions are cut short: ", e);
+					current = null;
+				}
+				return result;
+			}
+		};
+	}
+
+	public Stream<A4Solution> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+				Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * The values of the projected expressions in the solution. A tuple set is
+	 * written as the indexes of its tuples, which do not change from a solution
+	 * to the next one.
+	 */
+	String key(final A4Solution solution) throws Err {
+		final StringBuilder result = new StringBuilder();
+		final Iterable<? extends Expr> exprs = projection.isEmpty()
+				? solution.getAllSkolems() : projection;
+		for (Expr expr : exprs) {
+			final Object value = solution.eval(expr);
+			if (value instanceof A4TupleSet) {
+				for (IntIterator it = ((A4TupleSet) value).tupleIndexes(); it.hasNext();)
+					result.append(it.next()).append(',');
+			} else {
+				result.append(value);
+			}
+			result.append(';');
+		}
+		return result.toString();
+	}
+
+}
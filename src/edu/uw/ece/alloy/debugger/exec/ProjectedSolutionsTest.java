@@ -0,0 +1,80 @@
+package edu.uw.ece.alloy.debugger.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.alloy4.Err;
+import edu.mit.csail.sdg.alloy4compiler.ast.Sig;
+import edu.mit.csail.sdg.alloy4compiler.translator.A4Solution;
+
+/**
+ * @author vajih
+ *
+ */
+public class ProjectedSolutionsTest {
+
+	final String path = new File("tmp", "projected.als").getAbsolutePath();
+
+	A4Solution solve(String content, int symmetry) throws Err {
+		return A4CommandExecuter.getInstance()
+				.runThenGetAnswersInMemory(path, content, A4Reporter.NOP, symmetry)
+				.values().iterator().next();
+	}
+
+	@Test
+	public void testSolutionsAreDistinctOnSkolems() throws Err {
+		final A4Solution first = solve(
+				"sig A{r: set A}\nrun {some a: A | some a.r} for 2", 0);
+		final ProjectedSolutions solutions = new ProjectedSolutions(first);
+
+		int all = 0;
+		final Set<String> keys = new HashSet<>();
+		for (A4Solution solution = first; solution.satisfiable(); solution = solution
+				.next()) {
+			++all;
+			keys.add(solutions.key(solution));
+		}
+
+		int distinct = 0;
+		final Set<String> found = new HashSet<>();
+		for (A4Solution solution : solutions) {
+			++distinct;
+			assertTrue(found.add(solutions.key(solution)));
+		}
+		assertEquals(keys, found);
+		assertEquals(keys.size(), distinct);
+		assertTrue(distinct < all);
+		// Iterating again gives the same solutions.
+		assertEquals(distinct, solutions.stream().count());
+	}
+
+	@Test
+	public void testSolutionsAreDistinctOnTheProjection() throws Err {
+		final A4Solution first = solve("sig A{r: set A}\nrun {} for 2", 0);
+		Sig a = null;
+		for (Sig sig : first.getAllReachableSigs())
+			if (sig.label.equals("this/A"))
+				a = sig;
+		final ProjectedSolutions solutions = new ProjectedSolutions(first,
+				Arrays.asList(a));
+		// A is one of the subsets of its two atoms.
+		assertEquals(4, solutions.stream().count());
+	}
+
+	@Test
+	public void testUnsatisfiableHasNoSolution() throws Err {
+		final A4Solution first = solve("sig A{}\nrun {some A and no A} for 2",
+				20);
+		assertFalse(new ProjectedSolutions(first).iterator().hasNext());
+	}
+
+}
@@ -10,8 +10,8 @@ import edu.mit.csail.sdg.alloy4compiler.ast.CommandScope;
 import edu.mit.csail.sdg.alloy4compiler.ast.Sig;
 import edu.mit.csail.sdg.alloy4compiler.ast.Sig.Field;
 import edu.mit.csail.sdg.alloy4compiler.translator.A4Solution;
-import edu.mit.csail.sdg.alloy4compiler.translator.A4Tuple;
 import edu.mit.csail.sdg.alloy4compiler.translator.A4TupleSet;
+import kodkod.util.ints.IntIterator;
 
 /**
  * The class contains static methods that are helpful for extracting Alloy
@@ -62,6 +62,19 @@ public class ExtractorUtils {
 		return sig.isSubsig != null && sig instanceof Sig.PrimSig && !((Sig.PrimSig)sig).parent.builtin;
 	}
 
+	/**
+	 * The tuples are printed from their indexes, so no A4Tuple is made.
+	 * 
+	 * @param tuples
+	 * @return The tuples in the order of the iterator of A4TupleSet.
+	 */
+	private static List<String> tupleNames(A4TupleSet tuples) {
+		final List<String> result = new ArrayList<>(tuples.size());
+		for (IntIterator it = tuples.tupleIndexes(); it.hasNext();)
+			result.add(tuples.toString(it.next()));
+		return result;
+	}
+
 	/**
 	 * Given an A4solution object from AlloyExecuter, it converts it to a Alloy
 	 * syntax
@@ -87,8 +100,8 @@ public class ExtractorUtils {
 				emptySigs.add(sigName);
 			} else {
 				List<String> atoms = new ArrayList<>();
-				for (A4Tuple tuple : solution.eval(sig)) {
-					atoms.add(tuple.toString().replace("$", "_").replace("/", "_"));
+				for (String atom : tupleNames(solution.eval(sig))) {
+					atoms.add(atom.replace("$", "_").replace("/", "_"));
 				}
 				if (!isSubSig(sig))
 					quantifiers.add("some disj " + atoms.stream().collect(Collectors.joining(", ")) + ": univ");
@@ -116,11 +129,11 @@ public class ExtractorUtils {
 						constraints.add("\tno " + fieldName);
 					} else {
 						final List<String> tuples = new ArrayList<>();
-						fieldsTuples.forEach(t -> tuples.add(t.toString().replace("$", "_")));
+						tupleNames(fieldsTuples).forEach(t -> tuples.add(t.replace("$", "_")));
 						constraint = "\t((" + tuples.stream().collect(Collectors.joining("+")) + ") = " + fieldName+")";
 					}
 					if (isOrdering(sig)) {
-						String orderingAtom = solution.eval(sig).iterator().next().toString().replace("$", "_");
+						String orderingAtom = tupleNames(solution.eval(sig)).get(0).replace("$", "_");
 						constraint = constraint.replaceAll(orderingAtom + "->", "");
 					}
 					if (!constraint.isEmpty())
@@ -3,10 +3,8 @@ package edu.uw.ece.alloy.debugger.knowledgebase;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -19,7 +17,11 @@ import edu.mit.csail.sdg.alloy4.ErrorSyntax;
 import edu.mit.csail.sdg.alloy4.Util;
 import edu.mit.csail.sdg.alloy4compiler.ast.Command;
 import edu.mit.csail.sdg.alloy4compiler.translator.A4Solution;
+import edu.mit.csail.sdg.alloy4compiler.translator.A4TupleSet;
+import edu.uw.ece.alloy.Configuration;
 import edu.uw.ece.alloy.debugger.exec.A4CommandExecuter;
+import edu.uw.ece.alloy.debugger.exec.ProjectedSolutions;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.AlloyProcessingParam;
 
 /**
  * The class returns all necessary info properties from implication lattice.
@@ -35,6 +37,8 @@ public abstract class ImplicationLattic {
 	final String TEMPORARY_FOLDER;
 	final String[] MODLUE_NAMES;
 	final static Random rand = new Random();
+	// The symmetry breaking used to enumerate the solutions.
+	final static int EnumerationSymmetry = Integer.parseInt(Configuration.getProp("lattice_symmetry"));
 
 	protected final static Logger logger = Logger
 			.getLogger(ImplicationLattic.class.getName() + "--" + Thread.currentThread().getName());
@@ -61,33 +65,46 @@ public abstract class ImplicationLattic {
 
 	}
 
-	protected List<A4Solution> getAllproperties(String path) throws Err {
+	/**
+	 * The solutions of the only command in path with distinct skolems. They are
+	 * found while being iterated.
+	 */
+	protected Iterable<A4Solution> getAllproperties(String path) throws Err {
 
 		Map<Command, A4Solution> executionResult = A4CommandExecuter.getInstance()
-				.runThenGetAnswers(new String[] { path }, A4Reporter.NOP);
+				.runThenGetAnswers(new String[] { path }, A4Reporter.NOP, EnumerationSymmetry);
 
 		if (executionResult.size() != 1)
 			throw new RuntimeException("There hsa to be one command be executed");
 
-		A4Solution solution = executionResult.values().iterator().next();
-		List<A4Solution> result = new LinkedList<>();
-		try {
-			while (solution.satisfiable()) {
-				result.add(solution);
-				solution = solution.next();
-			}
-		} catch (Err e) {
-		}
+		return new ProjectedSolutions(executionResult.values().iterator().next());
+	}
+
+	protected Iterable<A4Solution> getAllproperties(String path, String content) throws Err {
 
-		return Collections.unmodifiableList(result);
+		Map<Command, A4Solution> executionResult = A4CommandExecuter.getInstance().runThenGetAnswersInMemory(path,
+				content, A4Reporter.NOP, EnumerationSymmetry);
 
+		if (executionResult.size() != 1)
+			throw new RuntimeException("There hsa to be one command be executed");
+
+		return new ProjectedSolutions(executionResult.values().iterator().next());
 	}
 
-	protected List<A4Solution> writeAndFind(String content, File file) throws Err {
-		final List<A4Solution> result = new ArrayList<>();
+	/**
+	 * Finds all solutions of the given content with distinct skolems. In the
+	 * memory only mode, the content is parsed as if it was stored in file, and
+	 * nothing is written on the disk. The file is only needed to find the first
+	 * solution, so the rest are found while being iterated.
+	 */
+	protected Iterable<A4Solution> writeAndFind(String content, File file) throws Err {
 		try {
-			Util.writeAll(file.getAbsolutePath(), content);
-			result.addAll(getAllproperties(file.getAbsolutePath()));
+			if (AlloyProcessingParam.memoryOnly) {
+				return getAllproperties(file.getAbsolutePath(), content);
+			} else {
+				Util.writeAll(file.getAbsolutePath(), content);
+				return getAllproperties(file.getAbsolutePath());
+			}
 		} catch (ErrorSyntax es) {
 			/*
 			 * logger .log(Level.WARNING, "[" + Thread.currentThread().getName()
@@ -95,22 +112,31 @@ public abstract class ImplicationLattic {
 			 * "Syntax Error while getting all sources in implication lattice: "
 			 * , es);
 			 */
+			return Collections.emptyList();
 		} catch (Exception e) {
 			logger.log(Level.SEVERE, "[" + Thread.currentThread().getName() + "] "
 					+ "Error while getting all sources in implication lattice: ", e);
 			throw e;
 		} finally {
-			file.delete();
+			if (!AlloyProcessingParam.memoryOnly)
+				file.delete();
 		}
-
-		return Collections.unmodifiableList(result);
 	}
 
 	protected String extractSkolemedValue(A4Solution sol) throws Err {
 
 		if (!sol.getAllSkolems().iterator().hasNext())
 			throw new RuntimeException("The skolemized atom is empty");
-		String value = sol.eval(sol.getAllSkolems().iterator().next()).toString();
+		final Object skolem = sol.eval(sol.getAllSkolems().iterator().next());
+		// The skolem is one atom, so its name is read from the atom index instead of
+		// printing the whole set.
+		final String value;
+		if (skolem instanceof A4TupleSet && ((A4TupleSet) skolem).size() == 1) {
+			final A4TupleSet tuples = (A4TupleSet) skolem;
+			value = sol.atomName(tuples.atom(tuples.tupleIndexes().next(), tuples.arity() - 1));
+		} else {
+			value = skolem.toString();
+		}
 		int lastIndexOfSlash = value.lastIndexOf('/');
 		int lastIndexOfDollar = value.lastIndexOf('$');
 		if (lastIndexOfDollar > lastIndexOfSlash)
@@ -1,11 +1,6 @@
 package edu.uw.ece.alloy.debugger.knowledgebase;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import edu.mit.csail.sdg.alloy4.Err;
 
@@ -31,15 +26,7 @@ public abstract class ImplicationLatticImperative extends ImplicationLattic {
 	 */
 	@Override
 	public List<String> getAllSources() throws Err {
-		List<String> result = new LinkedList<>();
-		Map<String, Set<String>> revImpilications = generator.findRevReachable();
-		for (String key : revImpilications.keySet()) {
-			Set<String> revImplied = revImpilications.get(key);
-			if (revImplied.isEmpty()) {
-				result.add(key);
-			}
-		}
-		return Collections.unmodifiableList(result);
+		return generator.getSources();
 	}
 
 	/*
@@ -50,11 +37,7 @@ public abstract class ImplicationLatticImperative extends ImplicationLattic {
 	 */
 	@Override
 	public List<String> getNextImpliedProperties(String property) throws Err {
-		List<String> result = new ArrayList<>();
-		if (generator.findReachable().containsKey(property)) {
-			result.addAll(generator.findReachable().get(property));
-		}
-		return Collections.unmodifiableList(result);
+		return generator.getNext(property);
 	}
 
 	/*
@@ -65,11 +48,7 @@ public abstract class ImplicationLatticImperative extends ImplicationLattic {
 	 */
 	@Override
 	public List<String> getNextRevImpliedProperties(String property) throws Err {
-		List<String> result = new ArrayList<>();
-		if (generator.findRevReachable().containsKey(property)) {
-			result.addAll(generator.findRevReachable().get(property));
-		}
-		return Collections.unmodifiableList(result);
+		return generator.getNextRev(property);
 	}
 
 	/*
@@ -80,15 +59,7 @@ public abstract class ImplicationLatticImperative extends ImplicationLattic {
 	 */
 	@Override
 	public List<String> getAllSinks() throws Err {
-		List<String> result = new LinkedList<>();
-		Map<String, Set<String>> implications = generator.findReachable();
-		for (String key : implications.keySet()) {
-			Set<String> implied = implications.get(key);
-			if (implied.isEmpty()) {
-				result.add(key);
-			}
-		}
-		return Collections.unmodifiableList(result);
+		return generator.getSinks();
 	}
 
 	/*
@@ -99,12 +70,7 @@ public abstract class ImplicationLatticImperative extends ImplicationLattic {
 	 */
 	@Override
 	public List<String> getAllImpliedProperties(String property) throws Err {
-
-		List<String> result = new ArrayList<>();
-		if (generator.findAllReachable().containsKey(property)) {
-			result.addAll(generator.findAllReachable().get(property));
-		}
-		return Collections.unmodifiableList(result);
+		return generator.getAllReachable(property);
 	}
 
 	/*
@@ -115,12 +81,7 @@ public abstract class ImplicationLatticImperative extends ImplicationLattic {
 	 */
 	@Override
 	public List<String> getAllRevImpliedProperties(String property) throws Err {
-
-		List<String> result = new ArrayList<>();
-		if (generator.findAllRevReachable().containsKey(property)) {
-			result.addAll(generator.findAllRevReachable().get(property));
-		}
-		return Collections.unmodifiableList(result);
+		return generator.getAllRevReachable(property);
 	}
 
 	@Override
@@ -130,7 +91,7 @@ public abstract class ImplicationLatticImperative extends ImplicationLattic {
 
 	@Override
 	public List<String> getAllPatterns() {
-		return Collections.unmodifiableList(new ArrayList<>(generator.getAllpatterns()));
+		return generator.getPatterns();
 	}
 
 }
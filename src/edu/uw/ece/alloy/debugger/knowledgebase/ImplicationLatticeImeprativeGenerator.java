@@ -3,14 +3,13 @@ package edu.uw.ece.alloy.debugger.knowledgebase;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import edu.uw.ece.alloy.util.Utils;
-import edu.uw.ece.alloy.util.graph.AdjMatrixEdgeWeightedDigraph;
-import edu.uw.ece.alloy.util.graph.DirectedEdge;
-import edu.uw.ece.alloy.util.graph.FloydWarshall;
+import edu.uw.ece.alloy.util.graph.Reachability;
 
 public abstract class ImplicationLatticeImeprativeGenerator {
 
@@ -24,6 +23,21 @@ public abstract class ImplicationLatticeImeprativeGenerator {
 	final Map<String, Set<String>> allReachableMaps = new HashMap<>();
 	final Map<String, Set<String>> allRevReachableMaps = new HashMap<>();
 
+	/*
+	 * The same relations as lists, decoded once, so the lattice queries return
+	 * them without copying.
+	 */
+	final Map<String, List<String>> nextLists = new HashMap<>();
+	final Map<String, List<String>> nextRevLists = new HashMap<>();
+	final Map<String, List<String>> allReachableLists = new HashMap<>();
+	final Map<String, List<String>> allRevReachableLists = new HashMap<>();
+	List<String> patterns = Collections.emptyList();
+	List<String> sources = Collections.emptyList();
+	List<String> sinks = Collections.emptyList();
+
+	/* Reachability over the pattern ids; the ids are the legends keys. */
+	Reachability reachability, revReachability;
+
 	public ImplicationLatticeImeprativeGenerator(String pathToLegend, String pathToImplication, String pathToIff) {
 
 		final Map<Integer, Set<Integer>> implicationMap = new HashMap<>();
@@ -163,8 +177,21 @@ public abstract class ImplicationLatticeImeprativeGenerator {
 
 		this.implicationMap.putAll(decodeMap(implicationMap));
 		this.revImplicationMap.putAll(decodeMap(revImplicationMap));
-		this.allReachableMaps.putAll(decodeMap(findAllReachables(legends.keySet(), implicationMap)));
-		this.allRevReachableMaps.putAll(decodeMap(findAllReachables(legends.keySet(), revImplicationMap)));
+		reachability = new Reachability(legends.size(), implicationMap);
+		revReachability = new Reachability(legends.size(), revImplicationMap);
+		this.allReachableMaps.putAll(decodeMap(findAllReachables(legends.keySet(), reachability)));
+		this.allRevReachableMaps.putAll(decodeMap(findAllReachables(legends.keySet(), revReachability)));
+
+		this.nextLists.putAll(decodeLists(implicationMap));
+		this.nextRevLists.putAll(decodeLists(revImplicationMap));
+		this.allReachableLists.putAll(decodeLists(findAllReachables(legends.keySet(), reachability)));
+		this.allRevReachableLists.putAll(decodeLists(findAllReachables(legends.keySet(), revReachability)));
+		this.patterns = Collections.unmodifiableList(
+				legends.keySet().stream().sorted().map(legends::get).collect(Collectors.toList()));
+		this.sources = Collections.unmodifiableList(legends.keySet().stream().sorted()
+				.filter(key -> revImplicationMap.get(key).isEmpty()).map(legends::get).collect(Collectors.toList()));
+		this.sinks = Collections.unmodifiableList(legends.keySet().stream().sorted()
+				.filter(key -> implicationMap.get(key).isEmpty()).map(legends::get).collect(Collectors.toList()));
 	}
 
 	public String convertImplicationMapToAlloy() {
@@ -202,34 +229,30 @@ public abstract class ImplicationLatticeImeprativeGenerator {
 		return result.toString();
 	}
 
-	protected Map<Integer, Set<Integer>> findAllReachables(Set<Integer> nodes, Map<Integer, Set<Integer>> input) {
+	protected Map<Integer, Set<Integer>> findAllReachables(Set<Integer> nodes, Reachability reachability) {
 		Map<Integer, Set<Integer>> result = new HashMap<>();
 
-		AdjMatrixEdgeWeightedDigraph G = new AdjMatrixEdgeWeightedDigraph(legends.size());
-		for (Integer from : nodes) {
-			if (!input.containsKey(from))
-				continue;
-			for (Integer to : input.get(from)) {
-				G.addEdge(new DirectedEdge(from, to, 1));
-			}
-		}
-		FloydWarshall spt = new FloydWarshall(G);
-
 		for (Integer from : nodes) {
-			if (!result.containsKey(from))
-				result.put(from, new HashSet<>());
-			for (Integer to : nodes) {
-				if (from.equals(to))
-					continue;
-				if (spt.hasPath(from, to)) {
-					result.get(from).add(to);
-				}
-			}
+			final Set<Integer> tos = new HashSet<>();
+			reachability.forEach(from, to -> {
+				if (to != from)
+					tos.add(to);
+			});
+			result.put(from, tos);
 		}
 
 		return Collections.unmodifiableMap(result);
 	}
 
+	protected Map<String, List<String>> decodeLists(Map<Integer, Set<Integer>> map) {
+		final Map<String, List<String>> result = new HashMap<>();
+		for (Integer key : map.keySet()) {
+			result.put(legends.get(key), Collections.unmodifiableList(
+					map.get(key).stream().sorted().map(legends::get).collect(Collectors.toList())));
+		}
+		return result;
+	}
+
 	protected Map<String, Set<String>> decodeMap(Map<Integer, Set<Integer>> map) {
 		final Map<String, Set<String>> result = new HashMap<>();
 		for (Integer key : map.keySet()) {
@@ -271,6 +294,44 @@ public abstract class ImplicationLatticeImeprativeGenerator {
 		return Collections.unmodifiableMap(allRevReachableMaps);
 	}
 
+	public List<String> getNext(String pattern) {
+		return nextLists.getOrDefault(pattern, Collections.emptyList());
+	}
+
+	public List<String> getNextRev(String pattern) {
+		return nextRevLists.getOrDefault(pattern, Collections.emptyList());
+	}
+
+	public List<String> getAllReachable(String pattern) {
+		return allReachableLists.getOrDefault(pattern, Collections.emptyList());
+	}
+
+	public List<String> getAllRevReachable(String pattern) {
+		return allRevReachableLists.getOrDefault(pattern, Collections.emptyList());
+	}
+
+	/**
+	 * @return true if patternA implies patternB, directly or transitively.
+	 */
+	public boolean implies(String patternA, String patternB) {
+		final Integer a = revLegends.get(patternA), b = revLegends.get(patternB);
+		return a != null && b != null && !a.equals(b) && reachability.hasPath(a, b);
+	}
+
+	/* The patterns that are implied by no other pattern. */
+	public List<String> getSources() {
+		return sources;
+	}
+
+	/* The patterns that imply no other pattern. */
+	public List<String> getSinks() {
+		return sinks;
+	}
+
+	public List<String> getPatterns() {
+		return patterns;
+	}
+
 	public Set<String> getAllpatterns() {
 		return Collections.unmodifiableSet(revLegends.keySet());
 	}
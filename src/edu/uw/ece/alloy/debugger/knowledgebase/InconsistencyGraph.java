@@ -40,6 +40,12 @@ public abstract class InconsistencyGraph {
 	final Map<String, Integer> revLegends = new HashMap<>();
 	final Map<Integer, Set<Integer>> inconsistencies = new HashMap<>();
 
+	/**
+	 * For the graphs that are not read from the csv files.
+	 */
+	protected InconsistencyGraph() {
+	}
+
 	public InconsistencyGraph(String pathToLegend, String pathToInconsistency, String pathToIff) {
 
 		final Map<Integer, Set<Integer>> iffMap = new HashMap<>();
@@ -0,0 +1,435 @@
+package edu.uw.ece.alloy.debugger.knowledgebase;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.uw.ece.alloy.Configuration;
+import edu.uw.ece.alloy.util.Utils;
+import edu.uw.ece.alloy.util.graph.Reachability;
+
+/**
+ * A binary snapshot of the implication lattices and the inconsistency graphs.
+ * The snapshot is built once from the csv files, then it is memory mapped and
+ * queried in place, so neither the csv files are parsed nor the closures are
+ * computed on start-up.
+ *
+ * The file is a header followed by named sections. Each section has a pattern
+ * dictionary and its adjacency in the compressed sparse row format. An
+ * implication section also has the next and the reverse next edges and the
+ * closures as bitsets, one row per pattern. All numbers are big-endian.
+ *
+ * @author vajih
+ *
+ */
+public class KnowledgeBaseSnapshot {
+
+	final static Logger logger = Logger
+			.getLogger(KnowledgeBaseSnapshot.class.getName() + "--" + Thread.currentThread().getName());
+
+	final static int Magic = 0x4B42534E; // KBSN
+	final static int Version = 1;
+
+	final static byte ImplicationKind = 1;
+	final static byte InconsistencyKind = 2;
+
+	public final static String StructuralImplication = "structural_implication";
+	public final static String TemporalImplication = "temporal_implication";
+	public final static String StructuralInconsistency = "structural_inconsistency";
+	public final static String TemporalInconsistency = "temporal_inconsistency";
+
+	public final static String pathToSnapshot = Configuration.getProp("kb_snapshot");
+
+	/* Loaded once; empty if there is no usable snapshot. */
+	private static Optional<KnowledgeBaseSnapshot> defaultSnapshot = null;
+
+	/**
+	 * The names of a section, in the id order. The names are decoded once while
+	 * loading, as every query starts with a lookup by the name.
+	 */
+	final static class Dictionary {
+		final List<String> names;
+		final Map<String, Integer> ids;
+
+		Dictionary(final List<String> names) {
+			this.names = Collections.unmodifiableList(names);
+			final Map<String, Integer> ids = new HashMap<>();
+			for (int i = 0; i < names.size(); ++i)
+				ids.put(names.get(i), i);
+			this.ids = Collections.unmodifiableMap(ids);
+		}
+
+		int size() {
+			return names.size();
+		}
+
+		int id(final String name) {
+			final Integer result = ids.get(name);
+			return result == null ? -1 : result;
+		}
+	}
+
+	/**
+	 * Adjacency in the compressed sparse row format: the edges of node i are
+	 * targets[offsets[i]..offsets[i+1]), sorted in the increasing order.
+	 */
+	final static class Adjacency {
+		final ByteBuffer buffer;
+		final int offsets;
+		final int targets;
+
+		Adjacency(final ByteBuffer buffer, final int position, final int size) {
+			this.buffer = buffer;
+			this.offsets = position;
+			this.targets = position + (size + 1) * Integer.BYTES;
+		}
+
+		int end(final int size) {
+			return targets + buffer.getInt(offsets + size * Integer.BYTES) * Integer.BYTES;
+		}
+
+		int degree(final int node) {
+			return buffer.getInt(offsets + (node + 1) * Integer.BYTES) - buffer.getInt(offsets + node * Integer.BYTES);
+		}
+
+		List<String> decode(final int node, final Dictionary dictionary) {
+			final int from = buffer.getInt(offsets + node * Integer.BYTES);
+			final int to = buffer.getInt(offsets + (node + 1) * Integer.BYTES);
+			final List<String> result = new ArrayList<>(to - from);
+			for (int i = from; i < to; ++i)
+				result.add(dictionary.names.get(buffer.getInt(targets + i * Integer.BYTES)));
+			return Collections.unmodifiableList(result);
+		}
+
+		boolean contains(final int node, final int target) {
+			int low = buffer.getInt(offsets + node * Integer.BYTES);
+			int high = buffer.getInt(offsets + (node + 1) * Integer.BYTES) - 1;
+			while (low <= high) {
+				final int mid = (low + high) >>> 1;
+				final int value = buffer.getInt(targets + mid * Integer.BYTES);
+				if (value < target)
+					low = mid + 1;
+				else if (value > target)
+					high = mid - 1;
+				else
+					return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * One bitset of 'words' longs per node.
+	 */
+	final static class Closure {
+		final ByteBuffer buffer;
+		final int position;
+		final int words;
+
+		Closure(final ByteBuffer buffer, final int position, final int words) {
+			this.buffer = buffer;
+			this.position = position;
+			this.words = words;
+		}
+
+		int end(final int size) {
+			return position + size * words * Long.BYTES;
+		}
+
+		boolean contains(final int node, final int target) {
+			final long word = buffer.getLong(position + (node * words + target / Long.SIZE) * Long.BYTES);
+			return (word & (1L << (target % Long.SIZE))) != 0;
+		}
+
+		/* The nodes reachable from the node, excluding itself. */
+		List<String> decode(final int node, final Dictionary dictionary) {
+			final List<String> result = new ArrayList<>();
+			for (int w = 0; w < words; ++w) {
+				long word = buffer.getLong(position + (node * words + w) * Long.BYTES);
+				while (word != 0) {
+					final int target = w * Long.SIZE + Long.numberOfTrailingZeros(word);
+					if (target != node)
+						result.add(dictionary.names.get(target));
+					word &= word - 1;
+				}
+			}
+			return Collections.unmodifiableList(result);
+		}
+	}
+
+	final File file;
+	final Map<String, SnapshotImplicationLattic> implications = new HashMap<>();
+	final Map<String, SnapshotInconsistencyGraph> inconsistencies = new HashMap<>();
+
+	protected KnowledgeBaseSnapshot(final File file) throws IOException {
+		this.file = file;
+		final ByteBuffer buffer;
+		try (final RandomAccessFile raf = new RandomAccessFile(file, "r"); final FileChannel channel = raf.getChannel()) {
+			// The mapping stays valid after the channel is closed.
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.getInt(0) != Magic)
+			throw new IOException("Not a knowledge base snapshot: " + file);
+		if (buffer.getInt(Integer.BYTES) != Version)
+			throw new IOException("Unsupported snapshot version " + buffer.getInt(Integer.BYTES) + ": " + file);
+		final int sections = buffer.getInt(2 * Integer.BYTES);
+		int position = 3 * Integer.BYTES;
+		for (int s = 0; s < sections; ++s) {
+			final int nameLength = buffer.getInt(position);
+			position += Integer.BYTES;
+			final String name = decodeString(buffer, position, nameLength);
+			position += nameLength;
+			final byte kind = buffer.get(position);
+			position += 1;
+			final int size = buffer.getInt(position);
+			position += Integer.BYTES;
+
+			final int namesEnd = position + (size + 1) * Integer.BYTES;
+			final List<String> names = new ArrayList<>(size);
+			for (int i = 0; i < size; ++i) {
+				final int from = buffer.getInt(position + i * Integer.BYTES);
+				final int to = buffer.getInt(position + (i + 1) * Integer.BYTES);
+				names.add(decodeString(buffer, namesEnd + from, to - from));
+			}
+			final Dictionary dictionary = new Dictionary(names);
+			position = namesEnd + buffer.getInt(position + size * Integer.BYTES);
+
+			if (kind == ImplicationKind) {
+				final Adjacency next = new Adjacency(buffer, position, size);
+				position = next.end(size);
+				final Adjacency nextRev = new Adjacency(buffer, position, size);
+				position = nextRev.end(size);
+				final int words = buffer.getInt(position);
+				position += Integer.BYTES;
+				final Closure reachable = new Closure(buffer, position, words);
+				position = reachable.end(size);
+				final Closure revReachable = new Closure(buffer, position, words);
+				position = revReachable.end(size);
+				implications.put(name, new SnapshotImplicationLattic(dictionary, next, nextRev, reachable, revReachable));
+			} else if (kind == InconsistencyKind) {
+				final Adjacency adjacency = new Adjacency(buffer, position, size);
+				position = adjacency.end(size);
+				inconsistencies.put(name, new SnapshotInconsistencyGraph(dictionary, adjacency));
+			} else {
+				throw new IOException("Unknown section kind " + kind + " in: " + file);
+			}
+		}
+	}
+
+	private static String decodeString(final ByteBuffer buffer, final int position, final int length) {
+		final byte[] bytes = new byte[length];
+		for (int i = 0; i < length; ++i)
+			bytes[i] = buffer.get(position + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public static KnowledgeBaseSnapshot load(final File file) throws IOException {
+		return new KnowledgeBaseSnapshot(file);
+	}
+
+	public Optional<ImplicationLattic> getImplicationLattic(final String name) {
+		return Optional.ofNullable(implications.get(name));
+	}
+
+	public Optional<InconsistencyGraph> getInconsistencyGraph(final String name) {
+		return Optional.ofNullable(inconsistencies.get(name));
+	}
+
+	/**
+	 * The snapshot at kb_snapshot. It is not used if it does not exist or any of
+	 * the csv files is newer than it.
+	 */
+	public static synchronized Optional<KnowledgeBaseSnapshot> getDefault() {
+		if (defaultSnapshot != null)
+			return defaultSnapshot;
+		defaultSnapshot = Optional.empty();
+		if (pathToSnapshot == null || pathToSnapshot.isEmpty())
+			return defaultSnapshot;
+		final File file = new File(pathToSnapshot);
+		if (!file.exists())
+			return defaultSnapshot;
+		for (String path : sourcePaths()) {
+			if (path != null && new File(path).lastModified() > file.lastModified()) {
+				logger.warning(Utils.threadName() + "The snapshot is older than " + path + ", so it is ignored.");
+				return defaultSnapshot;
+			}
+		}
+		try {
+			defaultSnapshot = Optional.of(load(file));
+		} catch (IOException | RuntimeException e) {
+			logger.log(Level.WARNING, Utils.threadName() + "The snapshot cannot be loaded: " + file, e);
+		}
+		return defaultSnapshot;
+	}
+
+	private static List<String> sourcePaths() {
+		final List<String> result = new ArrayList<>();
+		result.add(StructuralImplicationLatticeImperativeGenerator.pathToLegend);
+		result.add(StructuralImplicationLatticeImperativeGenerator.pathToImplication);
+		result.add(StructuralImplicationLatticeImperativeGenerator.pathToIff);
+		result.add(BinaryInconsistencyGraph.pathToInconsistency);
+		result.add(TemporalImplicationLatticeImperativeGenerator.pathToLegend);
+		result.add(TemporalImplicationLatticeImperativeGenerator.pathToImplication);
+		result.add(TemporalImplicationLatticeImperativeGenerator.pathToIff);
+		result.add(TernaryInconsistencyGraph.pathToInconsistency);
+		return result;
+	}
+
+	public static ImplicationLattic getStructuralImplication() {
+		return getDefault().flatMap(s -> s.getImplicationLattic(StructuralImplication))
+				.orElseGet(BinaryImplicationLatticImperative::new);
+	}
+
+	public static ImplicationLattic getTemporalImplication() {
+		return getDefault().flatMap(s -> s.getImplicationLattic(TemporalImplication))
+				.orElseGet(TernaryImplicationLatticImperative::new);
+	}
+
+	public static InconsistencyGraph getStructuralInconsistency() {
+		return getDefault().flatMap(s -> s.getInconsistencyGraph(StructuralInconsistency))
+				.orElseGet(BinaryInconsistencyGraph::new);
+	}
+
+	public static InconsistencyGraph getTemporalInconsistency() {
+		return getDefault().flatMap(s -> s.getInconsistencyGraph(TemporalInconsistency))
+				.orElseGet(TernaryInconsistencyGraph::new);
+	}
+
+	/**
+	 * Writes the given lattices and graphs in a snapshot. The file is replaced
+	 * once the snapshot is completely written.
+	 */
+	public static void write(final File file, final Map<String, ImplicationLatticeImeprativeGenerator> implications,
+			final Map<String, InconsistencyGraph> inconsistencies) throws IOException {
+		final File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists())
+			parent.mkdirs();
+		final File tmp = new File(file.getAbsolutePath() + ".tmp");
+		try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(Magic);
+			out.writeInt(Version);
+			out.writeInt(implications.size() + inconsistencies.size());
+			for (String name : implications.keySet())
+				writeImplication(out, name, implications.get(name));
+			for (String name : inconsistencies.keySet())
+				writeInconsistency(out, name, inconsistencies.get(name));
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void writeHeader(final DataOutputStream out, final String name, final byte kind,
+			final List<String> names) throws IOException {
+		final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(nameBytes.length);
+		out.write(nameBytes);
+		out.writeByte(kind);
+		out.writeInt(names.size());
+		final List<byte[]> encoded = new ArrayList<>(names.size());
+		int offset = 0;
+		out.writeInt(offset);
+		for (String pattern : names) {
+			final byte[] bytes = pattern.getBytes(StandardCharsets.UTF_8);
+			encoded.add(bytes);
+			offset += bytes.length;
+			out.writeInt(offset);
+		}
+		for (byte[] bytes : encoded)
+			out.write(bytes);
+	}
+
+	private static void writeAdjacency(final DataOutputStream out, final List<int[]> adjacency) throws IOException {
+		int offset = 0;
+		out.writeInt(offset);
+		for (int[] targets : adjacency) {
+			offset += targets.length;
+			out.writeInt(offset);
+		}
+		for (int[] targets : adjacency)
+			for (int target : targets)
+				out.writeInt(target);
+	}
+
+	private static List<int[]> encode(final List<String> names, final Map<String, Integer> ids,
+			final Map<String, ? extends Set<String>> edges) {
+		final List<int[]> result = new ArrayList<>(names.size());
+		for (String name : names) {
+			final Set<String> tos = edges.containsKey(name) ? edges.get(name) : Collections.emptySet();
+			result.add(tos.stream().mapToInt(ids::get).sorted().toArray());
+		}
+		return result;
+	}
+
+	private static void writeImplication(final DataOutputStream out, final String name,
+			final ImplicationLatticeImeprativeGenerator generator) throws IOException {
+		// The generator ids are already 0..n-1.
+		final List<String> names = generator.getPatterns();
+		final Map<String, Integer> ids = new HashMap<>(generator.revLegends);
+		writeHeader(out, name, ImplicationKind, names);
+		writeAdjacency(out, encode(names, ids, generator.implicationMap));
+		writeAdjacency(out, encode(names, ids, generator.revImplicationMap));
+		final int words = (names.size() + Long.SIZE - 1) / Long.SIZE;
+		out.writeInt(words);
+		writeClosure(out, words, generator.reachability);
+		writeClosure(out, words, generator.revReachability);
+	}
+
+	private static void writeClosure(final DataOutputStream out, final int words, final Reachability closure)
+			throws IOException {
+		for (int from = 0; from < closure.size; ++from) {
+			final long[] bits = new long[words];
+			closure.forEach(from, to -> bits[to / Long.SIZE] |= 1L << (to % Long.SIZE));
+			for (long word : bits)
+				out.writeLong(word);
+		}
+	}
+
+	private static void writeInconsistency(final DataOutputStream out, final String name,
+			final InconsistencyGraph graph) throws IOException {
+		final List<String> names = new ArrayList<>(graph.getAllPatterns());
+		Collections.sort(names);
+		final Map<String, Integer> ids = new HashMap<>();
+		for (int i = 0; i < names.size(); ++i)
+			ids.put(names.get(i), i);
+		final Map<String, Set<String>> edges = new LinkedHashMap<>();
+		for (String pattern : names)
+			edges.put(pattern, graph.getAllInconsistecies(pattern));
+		writeHeader(out, name, InconsistencyKind, names);
+		writeAdjacency(out, encode(names, ids, edges));
+	}
+
+	/**
+	 * Builds the snapshot at kb_snapshot, or the given path, from the csv files
+	 * in the configuration.
+	 */
+	public static void main(String[] args) throws IOException {
+		final File file = new File(args.length > 0 ? args[0] : pathToSnapshot);
+		final Map<String, ImplicationLatticeImeprativeGenerator> implications = new LinkedHashMap<>();
+		implications.put(StructuralImplication, new StructuralImplicationLatticeImperativeGenerator());
+		implications.put(TemporalImplication, new TemporalImplicationLatticeImperativeGenerator());
+		final Map<String, InconsistencyGraph> inconsistencies = new LinkedHashMap<>();
+		inconsistencies.put(StructuralInconsistency, new BinaryInconsistencyGraph());
+		inconsistencies.put(TemporalInconsistency, new TernaryInconsistencyGraph());
+		write(file, implications, inconsistencies);
+		logger.info(Utils.threadName() + "The snapshot is written in: " + file.getAbsolutePath());
+	}
+
+}
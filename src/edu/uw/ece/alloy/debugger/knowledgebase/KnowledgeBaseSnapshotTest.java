@@ -0,0 +1,111 @@
+package edu.uw.ece.alloy.debugger.knowledgebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.mit.csail.sdg.alloy4.Util;
+import edu.uw.ece.alloy.debugger.knowledgebase.InconsistencyGraph.STATUS;
+
+/**
+ * @author vajih
+ *
+ */
+public class KnowledgeBaseSnapshotTest {
+
+	final static File tmpDir = new File("tmp");
+	final static File legendPath = new File(tmpDir, "snapshot_legends.csv");
+	final static File implyPath = new File(tmpDir, "snapshot_implies.csv");
+	final static File inconPath = new File(tmpDir, "snapshot_incons.csv");
+	final static File iffPath = new File(tmpDir, "snapshot_iff.csv");
+	final static File snapshotPath = new File(tmpDir, "kb.snapshot");
+
+	ImplicationLatticeImeprativeGenerator generator;
+	InconsistencyGraph graph;
+	KnowledgeBaseSnapshot snapshot;
+
+	@Before
+	public void setUp() throws Exception {
+		if (!tmpDir.exists())
+			tmpDir.mkdirs();
+		// A=>B, B=>C, A=>C (transitive), D<=>E, E=>C
+		Util.writeAll(legendPath.getAbsolutePath(), "\n0,A\n1,B\n2,C\n3,D\n4,E\n5,F\n");
+		Util.writeAll(implyPath.getAbsolutePath(), "\n0,1\n1,2\n0,2\n4,2\n");
+		Util.writeAll(iffPath.getAbsolutePath(), "\n3,4\n");
+		Util.writeAll(inconPath.getAbsolutePath(), "\n0,5\n3,5\n");
+
+		generator = new TemporalImplicationLatticeImperativeGenerator(legendPath.getAbsolutePath(),
+				implyPath.getAbsolutePath(), iffPath.getAbsolutePath());
+		graph = new TernaryInconsistencyGraph(legendPath.getAbsolutePath(), inconPath.getAbsolutePath(),
+				iffPath.getAbsolutePath());
+
+		final Map<String, ImplicationLatticeImeprativeGenerator> implications = new LinkedHashMap<>();
+		implications.put(KnowledgeBaseSnapshot.TemporalImplication, generator);
+		final Map<String, InconsistencyGraph> inconsistencies = new LinkedHashMap<>();
+		inconsistencies.put(KnowledgeBaseSnapshot.TemporalInconsistency, graph);
+		KnowledgeBaseSnapshot.write(snapshotPath, implications, inconsistencies);
+		snapshot = KnowledgeBaseSnapshot.load(snapshotPath);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		legendPath.delete();
+		implyPath.delete();
+		inconPath.delete();
+		iffPath.delete();
+		snapshotPath.delete();
+	}
+
+	@Test
+	public void testLatticeIsTheSameAsTheCsvOne() throws Exception {
+		final ImplicationLattic csv = new TernaryImplicationLatticImperative(generator);
+		final ImplicationLattic mapped = snapshot.getImplicationLattic(KnowledgeBaseSnapshot.TemporalImplication)
+				.get();
+
+		assertEquals(csv.getAllPatterns(), mapped.getAllPatterns());
+		assertEquals(csv.getAllSources(), mapped.getAllSources());
+		assertEquals(csv.getAllSinks(), mapped.getAllSinks());
+		for (String pattern : csv.getAllPatterns()) {
+			assertTrue(mapped.hasPattern(pattern));
+			assertEquals(csv.getNextImpliedProperties(pattern), mapped.getNextImpliedProperties(pattern));
+			assertEquals(csv.getNextRevImpliedProperties(pattern), mapped.getNextRevImpliedProperties(pattern));
+			assertEquals(csv.getAllImpliedProperties(pattern), mapped.getAllImpliedProperties(pattern));
+			assertEquals(csv.getAllRevImpliedProperties(pattern), mapped.getAllRevImpliedProperties(pattern));
+			for (String other : csv.getAllPatterns())
+				assertEquals(generator.implies(pattern, other),
+						((SnapshotImplicationLattic) mapped).implies(pattern, other));
+		}
+		assertFalse(mapped.hasPattern("G"));
+		assertEquals(Collections.emptyList(), mapped.getAllImpliedProperties("G"));
+	}
+
+	@Test
+	public void testInconsistencyIsTheSameAsTheCsvOne() {
+		final InconsistencyGraph mapped = snapshot
+				.getInconsistencyGraph(KnowledgeBaseSnapshot.TemporalInconsistency).get();
+
+		assertEquals(graph.getAllPatterns(), mapped.getAllPatterns());
+		for (String a : graph.getAllPatterns()) {
+			assertEquals(graph.getAllInconsistecies(a), mapped.getAllInconsistecies(a));
+			for (String b : graph.getAllPatterns())
+				assertEquals(graph.isInconsistent(a, b), mapped.isInconsistent(a, b));
+		}
+		assertEquals(STATUS.Unknown, mapped.isInconsistent("A", "G"));
+	}
+
+	@Test
+	public void testMissingSection() {
+		assertFalse(snapshot.getImplicationLattic(KnowledgeBaseSnapshot.StructuralImplication).isPresent());
+		assertFalse(snapshot.getInconsistencyGraph(KnowledgeBaseSnapshot.StructuralInconsistency).isPresent());
+	}
+
+}
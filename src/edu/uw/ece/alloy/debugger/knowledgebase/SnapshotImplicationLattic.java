@@ -0,0 +1,97 @@
+package edu.uw.ece.alloy.debugger.knowledgebase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.uw.ece.alloy.debugger.knowledgebase.KnowledgeBaseSnapshot.Adjacency;
+import edu.uw.ece.alloy.debugger.knowledgebase.KnowledgeBaseSnapshot.Closure;
+import edu.uw.ece.alloy.debugger.knowledgebase.KnowledgeBaseSnapshot.Dictionary;
+
+/**
+ * An implication lattice queried in place over a memory mapped snapshot. The
+ * answers are the same as the imperative lattice the snapshot is built from.
+ * 
+ * @author vajih
+ *
+ */
+public class SnapshotImplicationLattic extends ImplicationLattic {
+
+	final Dictionary dictionary;
+	final Adjacency next, nextRev;
+	final Closure reachable, revReachable;
+	final List<String> sources, sinks;
+
+	protected SnapshotImplicationLattic(final Dictionary dictionary, final Adjacency next, final Adjacency nextRev,
+			final Closure reachable, final Closure revReachable) {
+		super();
+		this.dictionary = dictionary;
+		this.next = next;
+		this.nextRev = nextRev;
+		this.reachable = reachable;
+		this.revReachable = revReachable;
+
+		final List<String> sources = new ArrayList<>(), sinks = new ArrayList<>();
+		for (int id = 0; id < dictionary.size(); ++id) {
+			if (nextRev.degree(id) == 0)
+				sources.add(dictionary.names.get(id));
+			if (next.degree(id) == 0)
+				sinks.add(dictionary.names.get(id));
+		}
+		this.sources = Collections.unmodifiableList(sources);
+		this.sinks = Collections.unmodifiableList(sinks);
+	}
+
+	@Override
+	public List<String> getAllSources() {
+		return sources;
+	}
+
+	@Override
+	public List<String> getNextImpliedProperties(String pattern) {
+		final int id = dictionary.id(pattern);
+		return id < 0 ? Collections.emptyList() : next.decode(id, dictionary);
+	}
+
+	@Override
+	public List<String> getNextRevImpliedProperties(String pattern) {
+		final int id = dictionary.id(pattern);
+		return id < 0 ? Collections.emptyList() : nextRev.decode(id, dictionary);
+	}
+
+	@Override
+	public List<String> getAllSinks() {
+		return sinks;
+	}
+
+	@Override
+	public List<String> getAllImpliedProperties(String pattern) {
+		final int id = dictionary.id(pattern);
+		return id < 0 ? Collections.emptyList() : reachable.decode(id, dictionary);
+	}
+
+	@Override
+	public List<String> getAllRevImpliedProperties(String pattern) {
+		final int id = dictionary.id(pattern);
+		return id < 0 ? Collections.emptyList() : revReachable.decode(id, dictionary);
+	}
+
+	/**
+	 * @return true if patternA implies patternB, directly or transitively.
+	 */
+	public boolean implies(String patternA, String patternB) {
+		final int a = dictionary.id(patternA), b = dictionary.id(patternB);
+		return a >= 0 && b >= 0 && a != b && reachable.contains(a, b);
+	}
+
+	@Override
+	public boolean hasPattern(String pattern) {
+		return dictionary.id(pattern) >= 0;
+	}
+
+	@Override
+	public List<String> getAllPatterns() {
+		return dictionary.names;
+	}
+
+}
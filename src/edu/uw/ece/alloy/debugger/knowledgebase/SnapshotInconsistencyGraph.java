@@ -0,0 +1,50 @@
+package edu.uw.ece.alloy.debugger.knowledgebase;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.uw.ece.alloy.debugger.knowledgebase.KnowledgeBaseSnapshot.Adjacency;
+import edu.uw.ece.alloy.debugger.knowledgebase.KnowledgeBaseSnapshot.Dictionary;
+
+/**
+ * An inconsistency graph queried in place over a memory mapped snapshot. The
+ * equal patterns are already merged when the snapshot is built.
+ * 
+ * @author vajih
+ *
+ */
+public class SnapshotInconsistencyGraph extends InconsistencyGraph {
+
+	final Dictionary dictionary;
+	final Adjacency inconsistencies;
+	final Set<String> patterns;
+
+	protected SnapshotInconsistencyGraph(final Dictionary dictionary, final Adjacency inconsistencies) {
+		super();
+		this.dictionary = dictionary;
+		this.inconsistencies = inconsistencies;
+		this.patterns = Collections.unmodifiableSet(dictionary.ids.keySet());
+	}
+
+	@Override
+	public STATUS isInconsistent(String patternA, String patternB) {
+		final int codeA = dictionary.id(patternA), codeB = dictionary.id(patternB);
+		if (codeA < 0 || codeB < 0)
+			return STATUS.Unknown;
+		return inconsistencies.contains(codeA, codeB) ? STATUS.True : STATUS.False;
+	}
+
+	@Override
+	public Set<String> getAllInconsistecies(String pattern) {
+		final int code = dictionary.id(pattern);
+		return code < 0 ? Collections.emptySet()
+				: Collections.unmodifiableSet(new HashSet<>(inconsistencies.decode(code, dictionary)));
+	}
+
+	@Override
+	public Set<String> getAllPatterns() {
+		return patterns;
+	}
+
+}
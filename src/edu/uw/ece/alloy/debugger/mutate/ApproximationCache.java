@@ -0,0 +1,421 @@
+package edu.uw.ece.alloy.debugger.mutate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.mit.csail.sdg.alloy4.Pair;
+import edu.uw.ece.alloy.Configuration;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.PropertyToAlloyCode;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.debugger.PatternProcessedResult;
+import edu.uw.ece.alloy.util.Utils;
+
+/**
+ * Caches the approximations found by the expression analyzers. An entry is
+ * weighed by the number of its results and the least recently used entries
+ * are evicted once the total weight passes the bound. The evicted entries are
+ * written in the spill directory, if there is one, and read back on a miss.
+ * The spill directory is emptied when the cache is made, and only keeps the
+ * most recently spilled entries.
+ *
+ * The concurrent lookups of the same key wait for one computation, so the
+ * approximations can be requested asynchronously and at once.
+ *
+ * @author vajih
+ *
+ */
+public class ApproximationCache {
+
+	final static Logger logger = Logger
+			.getLogger(ApproximationCache.class.getName() + "--" + Thread.currentThread().getName());
+
+	public final static long MaxWeight = Long.parseLong(Configuration.getProp("approximation_cache_max_weight"));
+	public final static String SpillDirectory = Configuration.getProp("approximation_cache_spill");
+	public final static int MaxSpilledFiles = Integer
+			.parseInt(Configuration.getProp("approximation_cache_spill_max_files"));
+
+	/**
+	 * The digest of a file's content while its modification time and size do
+	 * not change.
+	 */
+	private final static class FileDigest {
+		final long lastModified, length;
+		final String digest;
+
+		FileDigest(final long lastModified, final long length, final String digest) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.digest = digest;
+		}
+	}
+
+	/* The analyzed file path -> the digest of its last seen version. */
+	final static Map<String, FileDigest> fileDigests = new ConcurrentHashMap<>();
+
+	/* Reads and digests the file only if it is changed since the last lookup. */
+	static String contentDigest(final File file) {
+		if (!file.exists())
+			return "";
+		final String path = file.getAbsolutePath();
+		final long lastModified = file.lastModified(), length = file.length();
+		final FileDigest cached = fileDigests.get(path);
+		if (cached != null && cached.lastModified == lastModified && cached.length == length)
+			return cached.digest;
+		final String digest = Utils.digest(Utils.readFile(path));
+		fileDigests.put(path, new FileDigest(lastModified, length, digest));
+		return digest;
+	}
+
+	/**
+	 * The structural key of an approximation. Two keys are equal only if all
+	 * their parts are equal, so a hash collision cannot return another
+	 * approximation.
+	 *
+	 * @author vajih
+	 *
+	 */
+	public final static class Key implements Serializable {
+
+		private static final long serialVersionUID = -2317465093260193118L;
+
+		final String path;
+		/* The analyzed file might be rewritten with the same path. */
+		final String contentDigest;
+		final String statement;
+		final String fieldLabel;
+		final String scope;
+		final String coderClass;
+		final PropertyToAlloyCode coder;
+
+		public Key(final File toBeAnalyzedCode, final String statement, final String fieldLabel, final String scope,
+				final PropertyToAlloyCode coder) {
+			this.path = toBeAnalyzedCode.getAbsolutePath();
+			this.contentDigest = contentDigest(toBeAnalyzedCode);
+			this.statement = statement;
+			this.fieldLabel = fieldLabel;
+			this.scope = scope;
+			this.coderClass = coder.getClass().getName();
+			this.coder = coder;
+		}
+
+		/* Names the spill file of the key. */
+		String digest() {
+			return Utils.digest(path + "\n" + contentDigest + "\n" + statement + "\n" + fieldLabel + "\n" + scope
+					+ "\n" + coderClass + "\n" + coder.hashCode());
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + path.hashCode();
+			result = prime * result + contentDigest.hashCode();
+			result = prime * result + ((statement == null) ? 0 : statement.hashCode());
+			result = prime * result + ((fieldLabel == null) ? 0 : fieldLabel.hashCode());
+			result = prime * result + ((scope == null) ? 0 : scope.hashCode());
+			result = prime * result + coderClass.hashCode();
+			result = prime * result + coder.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			final Key other = (Key) obj;
+			return path.equals(other.path) && contentDigest.equals(other.contentDigest)
+					&& Objects.equals(statement, other.statement)
+					&& Objects.equals(fieldLabel, other.fieldLabel)
+					&& Objects.equals(scope, other.scope) && coderClass.equals(other.coderClass)
+					&& coder.equals(other.coder);
+		}
+
+		@Override
+		public String toString() {
+			return "Key [path=" + path + ", statement=" + statement + ", fieldLabel=" + fieldLabel + ", scope=" + scope
+					+ ", coder=" + coderClass + "]";
+		}
+	}
+
+	final long maxWeight;
+	final Optional<File> spillDirectory;
+	final int maxSpilledFiles;
+
+	/* The spilled files in the order they are written. Guarded by itself. */
+	final LinkedHashSet<File> spilled = new LinkedHashSet<>();
+
+	/* In the access order. Guarded by this. */
+	final LinkedHashMap<Key, PatternProcessedResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+	long weight = 0;
+
+	/* The computations in progress. */
+	final Map<Key, CompletableFuture<PatternProcessedResult>> loading = new ConcurrentHashMap<>();
+
+	final AtomicLong hits = new AtomicLong(0);
+	final AtomicLong spillHits = new AtomicLong(0);
+	final AtomicLong misses = new AtomicLong(0);
+	final AtomicLong evictions = new AtomicLong(0);
+	final AtomicLong loadTime = new AtomicLong(0);
+
+	public ApproximationCache(final long maxWeight, final Optional<File> spillDirectory,
+			final int maxSpilledFiles) {
+		if (maxWeight < 1)
+			throw new IllegalArgumentException("The max weight has to be positive: " + maxWeight);
+		this.maxWeight = maxWeight;
+		this.spillDirectory = spillDirectory;
+		this.maxSpilledFiles = maxSpilledFiles;
+		spillDirectory.ifPresent(directory -> {
+			directory.mkdirs();
+			// The entries spilled by the previous runs are not tracked.
+			final File[] leftovers = directory.listFiles();
+			if (leftovers != null)
+				for (File file : leftovers)
+					if (file.isFile() && !file.delete())
+						logger.warning(Utils.threadName() + "The spilled approximation is not deleted: " + file);
+		});
+	}
+
+	public ApproximationCache(final long maxWeight, final Optional<File> spillDirectory) {
+		this(maxWeight, spillDirectory, MaxSpilledFiles);
+	}
+
+	public ApproximationCache() {
+		this(MaxWeight, SpillDirectory == null || SpillDirectory.trim().isEmpty() ? Optional.empty()
+				: Optional.of(new File(SpillDirectory)));
+	}
+
+	protected static long weigh(final PatternProcessedResult value) {
+		return 1 + value.getResults().map(r -> r.size()).orElse(0);
+	}
+
+	/**
+	 * Returns the cached approximation of the key, or computes and caches it.
+	 * If the key is being computed by another thread, waits for it.
+	 */
+	public PatternProcessedResult get(final Key key, final Supplier<PatternProcessedResult> loader) {
+		return join(getAsync(key, () -> CompletableFuture.completedFuture(loader.get())));
+	}
+
+	/**
+	 * Returns the cached approximation of the key, or starts loading it. The
+	 * lookups of a key that is being loaded get the same future. The loaded
+	 * approximation is cached once the loader's future is completed; a failed
+	 * load is not cached.
+	 */
+	public CompletableFuture<PatternProcessedResult> getAsync(final Key key,
+			final Supplier<CompletableFuture<PatternProcessedResult>> loader) {
+		final Optional<PatternProcessedResult> cached = getIfPresent(key);
+		if (cached.isPresent())
+			return CompletableFuture.completedFuture(cached.get());
+
+		final CompletableFuture<PatternProcessedResult> future = new CompletableFuture<>();
+		final CompletableFuture<PatternProcessedResult> inProgress = loading.putIfAbsent(key, future);
+		if (inProgress != null) {
+			hits.incrementAndGet();
+			return inProgress;
+		}
+
+		// Another thread might have cached it in between.
+		synchronized (this) {
+			final PatternProcessedResult value = entries.get(key);
+			if (value != null) {
+				loading.remove(key);
+				future.complete(value);
+				return future;
+			}
+		}
+		misses.incrementAndGet();
+		final long start = System.nanoTime();
+		final CompletableFuture<PatternProcessedResult> loaded;
+		try {
+			loaded = loader.get();
+		} catch (RuntimeException e) {
+			loadTime.addAndGet(System.nanoTime() - start);
+			loading.remove(key);
+			future.completeExceptionally(e);
+			return future;
+		}
+		loaded.whenComplete((value, error) -> {
+			loadTime.addAndGet(System.nanoTime() - start);
+			if (error == null)
+				put(key, value);
+			loading.remove(key);
+			if (error == null)
+				future.complete(value);
+			else
+				future.completeExceptionally(error);
+		});
+		return future;
+	}
+
+	/* Waits for the future and throws its failure as it is. */
+	static <T> T join(final CompletableFuture<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/* As join, but fails if the future is not completed in timeout ms. */
+	static <T> T join(final CompletableFuture<T> future, final long timeout) {
+		try {
+			return future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} catch (TimeoutException e) {
+			throw new RuntimeException("The approximation is not found after " + timeout + " ms.", e);
+		}
+	}
+
+	public Optional<PatternProcessedResult> getIfPresent(final Key key) {
+		synchronized (this) {
+			final PatternProcessedResult value = entries.get(key);
+			if (value != null) {
+				hits.incrementAndGet();
+				return Optional.of(value);
+			}
+		}
+		final Optional<PatternProcessedResult> spilled = readSpilled(key);
+		if (spilled.isPresent()) {
+			spillHits.incrementAndGet();
+			put(key, spilled.get());
+		}
+		return spilled;
+	}
+
+	public void put(final Key key, final PatternProcessedResult value) {
+		final Map<Key, PatternProcessedResult> evicted = new LinkedHashMap<>();
+		synchronized (this) {
+			final PatternProcessedResult old = entries.put(key, value);
+			if (old != null)
+				weight -= weigh(old);
+			weight += weigh(value);
+			final Iterator<Map.Entry<Key, PatternProcessedResult>> it = entries.entrySet().iterator();
+			// The newest entry stays even if it is heavier than the bound.
+			while (weight > maxWeight && entries.size() > 1 && it.hasNext()) {
+				final Map.Entry<Key, PatternProcessedResult> eldest = it.next();
+				weight -= weigh(eldest.getValue());
+				evicted.put(eldest.getKey(), eldest.getValue());
+				it.remove();
+			}
+		}
+		evictions.addAndGet(evicted.size());
+		evicted.forEach(this::spill);
+	}
+
+	protected void spill(final Key key, final PatternProcessedResult value) {
+		if (!spillDirectory.isPresent())
+			return;
+		final File file = new File(spillDirectory.get(), key.digest());
+		try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+			out.writeObject(new Pair<>(key, value));
+		} catch (IOException e) {
+			logger.log(Level.WARNING, Utils.threadName() + "The approximation is not spilled: " + key, e);
+			return;
+		}
+		// The oldest spilled files are deleted past the bound.
+		synchronized (spilled) {
+			spilled.remove(file);
+			spilled.add(file);
+			final Iterator<File> it = spilled.iterator();
+			while (spilled.size() > maxSpilledFiles && it.hasNext()) {
+				it.next().delete();
+				it.remove();
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	protected Optional<PatternProcessedResult> readSpilled(final Key key) {
+		if (!spillDirectory.isPresent())
+			return Optional.empty();
+		final File file = new File(spillDirectory.get(), key.digest());
+		if (!file.exists())
+			return Optional.empty();
+		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+			final Pair<Key, PatternProcessedResult> entry = (Pair<Key, PatternProcessedResult>) in.readObject();
+			return entry.a.equals(key) ? Optional.of(entry.b) : Optional.empty();
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			logger.log(Level.WARNING, Utils.threadName() + "The spilled approximation cannot be read: " + file, e);
+			return Optional.empty();
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getSpillHits() {
+		return spillHits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/* The average time of computing a missed approximation, in ms. */
+	public double getAverageLoadTime() {
+		final long count = misses.get();
+		return count == 0 ? 0 : loadTime.get() / 1e6 / count;
+	}
+
+	/**
+	 * The counters in the csv format.
+	 */
+	public String getStatistics() {
+		return "size,weight,hits,spillHits,misses,evictions,avgLoadTimeMs\n" + size() + "," + getWeight() + ","
+				+ getHits() + "," + getSpillHits() + "," + getMisses() + "," + getEvictions() + ","
+				+ getAverageLoadTime() + "\n";
+	}
+
+	@Override
+	public String toString() {
+		return "ApproximationCache [size=" + size() + ", weight=" + getWeight() + ", hits=" + hits + ", spillHits="
+				+ spillHits + ", misses=" + misses + ", evictions=" + evictions + "]";
+	}
+
+}
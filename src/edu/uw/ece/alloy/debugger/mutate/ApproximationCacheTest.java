@@ -0,0 +1,244 @@
+package edu.uw.ece.alloy.debugger.mutate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.IfPropertyToAlloyCode;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.PropertyToAlloyCode;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.debugger.PatternProcessedResult;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.debugger.PatternProcessingParam;
+
+/**
+ * @author vajih
+ *
+ */
+public class ApproximationCacheTest {
+
+	final File spill = new File("tmp", "approximation_cache_test");
+	final File model = new File("tmp", "approximation_cache_test.als");
+
+	static class Coder extends IfPropertyToAlloyCode {
+		private static final long serialVersionUID = 1L;
+
+		Coder(final String header) {
+			super("", "", "", "", "", "", new ArrayList<>(), header, "", "");
+		}
+	}
+
+	static ApproximationCache.Key key(final File file, final String statement, final String field,
+			final PropertyToAlloyCode coder) {
+		return new ApproximationCache.Key(file, statement, field, "for 5", coder);
+	}
+
+	static PatternProcessedResult value() {
+		return new PatternProcessedResult(PatternProcessingParam.EMPTY_PARAM, Collections.emptySet());
+	}
+
+	static void delete(final File file) {
+		if (file.isDirectory())
+			for (File child : file.listFiles())
+				delete(child);
+		file.delete();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		delete(spill);
+		delete(model);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		delete(spill);
+		delete(model);
+	}
+
+	@Test
+	public void testKeysWithTheSamePartsAreEqual() {
+		final ApproximationCache.Key a = key(model, "s", "r", new Coder("sig A{}"));
+		final ApproximationCache.Key b = key(model, "s", "r", new Coder("sig A{}"));
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+
+		assertNotEquals(a, key(model, "s", "q", new Coder("sig A{}")));
+		assertNotEquals(a, key(model, "t", "r", new Coder("sig A{}")));
+		assertNotEquals(a, key(model, "s", "r", new Coder("sig B{}")));
+	}
+
+	@Test
+	public void testRewrittenFileIsANewKey() throws Exception {
+		Files.write(model.toPath(), "sig A{}".getBytes());
+		final ApproximationCache.Key before = key(model, "s", "r", new Coder(""));
+		Files.write(model.toPath(), "sig B{}".getBytes());
+		// The file is read again once its modification time or size is changed.
+		model.setLastModified(model.lastModified() + 2000);
+		final ApproximationCache.Key after = key(model, "s", "r", new Coder(""));
+		assertNotEquals(before, after);
+	}
+
+	@Test
+	public void testUnchangedFileIsNotReadAgain() throws Exception {
+		Files.write(model.toPath(), "sig A{}".getBytes());
+		final long lastModified = model.lastModified();
+		final ApproximationCache.Key before = key(model, "s", "r", new Coder(""));
+		// The same size and modification time is taken as the same version.
+		Files.write(model.toPath(), "sig B{}".getBytes());
+		model.setLastModified(lastModified);
+		assertEquals(before, key(model, "s", "r", new Coder("")));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		final ApproximationCache cache = new ApproximationCache(2, Optional.empty());
+		final ApproximationCache.Key a = key(model, "a", "r", new Coder(""));
+		final ApproximationCache.Key b = key(model, "b", "r", new Coder(""));
+		final ApproximationCache.Key c = key(model, "c", "r", new Coder(""));
+
+		cache.put(a, value());
+		cache.put(b, value());
+		assertTrue(cache.getIfPresent(a).isPresent());
+		cache.put(c, value());
+
+		assertEquals(2, cache.size());
+		assertEquals(2, cache.getWeight());
+		assertEquals(1, cache.getEvictions());
+		assertTrue(cache.getIfPresent(a).isPresent());
+		assertFalse(cache.getIfPresent(b).isPresent());
+	}
+
+	@Test
+	public void testEvictedIsReadFromTheSpill() {
+		final ApproximationCache cache = new ApproximationCache(1, Optional.of(spill));
+		final ApproximationCache.Key a = key(model, "a", "r", new Coder(""));
+		final ApproximationCache.Key b = key(model, "b", "r", new Coder(""));
+
+		cache.put(a, value());
+		cache.put(b, value());
+		assertEquals(1, cache.size());
+
+		assertTrue(cache.getIfPresent(a).isPresent());
+		assertEquals(1, cache.getSpillHits());
+		// Reading it back evicts the other one.
+		assertTrue(cache.getIfPresent(b).isPresent());
+		assertEquals(2, cache.getSpillHits());
+	}
+
+	@Test
+	public void testSpilledFilesAreBounded() throws Exception {
+		spill.mkdirs();
+		final File leftover = new File(spill, "leftover");
+		Files.write(leftover.toPath(), "".getBytes());
+		final ApproximationCache cache = new ApproximationCache(1, Optional.of(spill), 2);
+		assertFalse(leftover.exists());
+
+		final ApproximationCache.Key a = key(model, "a", "r", new Coder(""));
+		final ApproximationCache.Key b = key(model, "b", "r", new Coder(""));
+		final ApproximationCache.Key c = key(model, "c", "r", new Coder(""));
+		final ApproximationCache.Key d = key(model, "d", "r", new Coder(""));
+		cache.put(a, value());
+		cache.put(b, value());
+		cache.put(c, value());
+		cache.put(d, value());
+		// a, b and c are spilled, but only the last two are kept.
+		assertEquals(2, spill.listFiles().length);
+		assertFalse(cache.getIfPresent(a).isPresent());
+		assertTrue(cache.getIfPresent(b).isPresent());
+	}
+
+	@Test
+	public void testConcurrentLookupsComputeOnce() throws Exception {
+		final ApproximationCache cache = new ApproximationCache(100, Optional.empty());
+		final ApproximationCache.Key a = key(model, "a", "r", new Coder(""));
+		final AtomicInteger computed = new AtomicInteger(0);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final PatternProcessedResult expected = value();
+
+		final Thread first = new Thread(() -> cache.get(a, () -> {
+			computed.incrementAndGet();
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return expected;
+		}));
+		first.start();
+		started.await();
+
+		final PatternProcessedResult[] second = new PatternProcessedResult[1];
+		final Thread waiter = new Thread(() -> second[0] = cache.get(a, () -> {
+			computed.incrementAndGet();
+			return value();
+		}));
+		waiter.start();
+		Thread.sleep(50);
+		release.countDown();
+		first.join(1000);
+		waiter.join(1000);
+
+		assertEquals(1, computed.get());
+		assertSame(expected, second[0]);
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testAsyncLookupsShareTheRequest() throws Exception {
+		final ApproximationCache cache = new ApproximationCache(100, Optional.empty());
+		final ApproximationCache.Key a = key(model, "a", "r", new Coder(""));
+		final ApproximationCache.Key b = key(model, "b", "r", new Coder(""));
+		final CompletableFuture<PatternProcessedResult> responseA = new CompletableFuture<>();
+		final CompletableFuture<PatternProcessedResult> responseB = new CompletableFuture<>();
+
+		final CompletableFuture<PatternProcessedResult> first = cache.getAsync(a, () -> responseA);
+		final CompletableFuture<PatternProcessedResult> second = cache.getAsync(a, () -> new CompletableFuture<>());
+		final CompletableFuture<PatternProcessedResult> other = cache.getAsync(b, () -> responseB);
+		assertFalse(first.isDone());
+		assertSame(first, second);
+
+		final PatternProcessedResult expected = value();
+		responseA.complete(expected);
+		assertSame(expected, second.get());
+		assertSame(expected, cache.getIfPresent(a).get());
+		assertFalse(other.isDone());
+
+		responseB.completeExceptionally(new IllegalStateException("The analyzer died."));
+		assertTrue(other.isCompletedExceptionally());
+		assertFalse(cache.getIfPresent(b).isPresent());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void testWaitIsBounded() throws Exception {
+		final CompletableFuture<PatternProcessedResult> response = new CompletableFuture<>();
+		try {
+			ApproximationCache.join(response, 50);
+			fail("A response that never comes is waited for.");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		final PatternProcessedResult expected = value();
+		response.complete(expected);
+		assertSame(expected, ApproximationCache.join(response, 50));
+	}
+
+}
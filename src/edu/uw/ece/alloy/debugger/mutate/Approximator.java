@@ -13,7 +13,16 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -25,20 +34,18 @@ import edu.mit.csail.sdg.alloy4compiler.ast.Expr;
 import edu.mit.csail.sdg.alloy4compiler.ast.Sig.Field;
 import edu.uw.ece.alloy.Configuration;
 import edu.uw.ece.alloy.debugger.PrettyPrintExpression;
-import edu.uw.ece.alloy.debugger.knowledgebase.BinaryImplicationLatticImperative;
-import edu.uw.ece.alloy.debugger.knowledgebase.BinaryInconsistencyGraph;
 import edu.uw.ece.alloy.debugger.knowledgebase.ImplicationLattic;
 import edu.uw.ece.alloy.debugger.knowledgebase.InconsistencyGraph;
 import edu.uw.ece.alloy.debugger.knowledgebase.InconsistencyGraph.STATUS;
+import edu.uw.ece.alloy.debugger.knowledgebase.KnowledgeBaseSnapshot;
 import edu.uw.ece.alloy.debugger.knowledgebase.PatternToProperty;
-import edu.uw.ece.alloy.debugger.knowledgebase.TernaryImplicationLatticImperative;
-import edu.uw.ece.alloy.debugger.knowledgebase.TernaryInconsistencyGraph;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.AndPropertyToAlloyCode;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.IfPropertyToAlloyCode;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.InconExpressionToAlloyCode;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.InconPropertyToAlloyCode;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.PropertyToAlloyCode;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.ProcessDistributer;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.RemoteProcess;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.RemoteProcessManager;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.ResponseMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.debugger.PatternProcessedResult;
@@ -47,6 +54,7 @@ import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.debugger.PatternReque
 import edu.uw.ece.alloy.debugger.propgen.tripletemporal.TemporalPropertyGenerator;
 import edu.uw.ece.alloy.util.LazyFile;
 import edu.uw.ece.alloy.util.ServerSocketInterface;
+import edu.uw.ece.alloy.util.Utils;
 import edu.uw.ece.alloy.util.events.MessageEventListener;
 import edu.uw.ece.alloy.util.events.MessageReceivedEventArgs;
 
@@ -83,7 +91,61 @@ public class Approximator {
 	final List<InconsistencyGraph> inconsistencies;
 	final Map<String, Integer> patternToPriorityEncoder;
 
-	int approximationRequestCount = 1;
+	/* How long in ms an approximation request waits for its response. */
+	final public static long ApproximationTimeout = Long.parseLong(Configuration.getProp("approximation_timeout"));
+
+	/* One timer for the timeouts of all the waiting requests. */
+	final static ScheduledThreadPoolExecutor approximationTimer = new ScheduledThreadPoolExecutor(1, r -> {
+		final Thread timer = new Thread(r, "Approximator-timeout");
+		timer.setDaemon(true);
+		return timer;
+	});
+
+	static {
+		approximationTimer.setRemoveOnCancelPolicy(true);
+	}
+
+	/*
+	 * How long in ms a blocking call waits for its approximation. It is longer
+	 * than ApproximationTimeout, so a request normally times out first.
+	 */
+	final public static long ApproximationWaitTimeout = Long
+			.parseLong(Configuration.getProp("approximation_wait_timeout"));
+
+	/*
+	 * Runs the continuations of the responses, so the lattice queries do not
+	 * run on the threads reading the sockets.
+	 */
+	final static ExecutorService approximationExecutor = Executors
+			.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+				final Thread worker = new Thread(r, "Approximator-continuation");
+				worker.setDaemon(true);
+				return worker;
+			});
+
+	/* Waits for the approximation at most ApproximationWaitTimeout. */
+	static <T> T await(final CompletableFuture<T> future) {
+		return ApproximationCache.join(future, ApproximationWaitTimeout);
+	}
+
+	/**
+	 * An approximation request waiting for its response, and the analyzer it
+	 * is sent to. It is sent again if the analyzer is killed.
+	 */
+	final static class PendingApproximation {
+		final PatternRequestMessage message;
+		final CompletableFuture<PatternProcessedResult> result = new CompletableFuture<>();
+		volatile RemoteProcess process;
+		volatile long sentTime;
+		volatile ScheduledFuture<?> timeoutTask;
+
+		PendingApproximation(PatternRequestMessage message) {
+			this.message = message;
+		}
+	}
+
+	/* The approximation requests waiting for their responses, by session. */
+	final Map<UUID, PendingApproximation> pendingApproximations = new ConcurrentHashMap<>();
 
 	public Approximator(ServerSocketInterface interfacE, ProcessDistributer processManager,
 			PatternToProperty patternToProperty, File tmpLocalDirectory, File toBeAnalyzedCode,
@@ -102,12 +164,12 @@ public class Approximator {
 		// connected
 		// to the given relational and temporal patterns stored in a request
 		// message
-		implications.add(new BinaryImplicationLatticImperative());
-		implications.add(new TernaryImplicationLatticImperative());
+		implications.add(KnowledgeBaseSnapshot.getStructuralImplication());
+		implications.add(KnowledgeBaseSnapshot.getTemporalImplication());
 
 		inconsistencies = new LinkedList<>();
-		inconsistencies.add(new TernaryInconsistencyGraph());
-		inconsistencies.add(new BinaryInconsistencyGraph());
+		inconsistencies.add(KnowledgeBaseSnapshot.getTemporalInconsistency());
+		inconsistencies.add(KnowledgeBaseSnapshot.getStructuralInconsistency());
 
 		patternToPriorityEncoder = new HashMap<>();
 		try {
@@ -116,6 +178,35 @@ public class Approximator {
 			e.printStackTrace();
 		}
 
+		// One listener completes the pending requests by their session.
+		interfacE.MessageReceived.addListener(new MessageEventListener<MessageReceivedEventArgs>() {
+			@Override
+			public void actionOn(ResponseMessage responseMessage, MessageReceivedEventArgs messageArgs) {
+				if (!(responseMessage.getResult() instanceof PatternProcessedResult))
+					return;
+				final PatternProcessedResult result = (PatternProcessedResult) responseMessage.getResult();
+				result.getParam().getAnalyzingSessionID()
+						.ifPresent(sessionID -> removePending(sessionID).ifPresent(pending -> {
+							if (processManager instanceof RemoteProcessManager)
+								((RemoteProcessManager) processManager).recordTaskLatency(pending.process,
+										System.currentTimeMillis() - pending.sentTime);
+							pending.result.complete(result);
+						}));
+			}
+		});
+
+		// The requests left on a killed analyzer are sent to another one.
+		if (processManager instanceof RemoteProcessManager)
+			((RemoteProcessManager) processManager).addKillListener((process, sessionIDs) -> {
+				for (UUID sessionID : sessionIDs) {
+					final PendingApproximation pending = pendingApproximations.get(sessionID);
+					if (pending == null || pending.result.isDone())
+						continue;
+					logger.log(Level.WARNING, Utils.threadName() + "The approximation request " + sessionID
+							+ " is sent again, since its analyzer is killed: " + process);
+					send(sessionID, pending);
+				}
+			});
 	}
 
 	public Approximator(ServerSocketInterface interfacE, ProcessDistributer processManager, File tmpLocalDirectory,
@@ -181,18 +272,70 @@ public class Approximator {
 		return isInconsistent(toBeAnalyzedCode, PrettyPrintExpression.makeString(statement), field.label, scope);
 	}
 
+	public CompletableFuture<List<Pair<String, String>>> strongestImplicationApproximationAsync(Expr statement,
+			Field field, String scope) throws Err {
+		return strongestImplicationApproximationAsync(PrettyPrintExpression.makeString(statement), field.label,
+				scope);
+	}
+
+	public CompletableFuture<List<Pair<String, String>>> weakestInconsistentApproximationAsync(Expr statement,
+			Field field, String scope) throws Err {
+		return weakestInconsistentApproximationAsync(PrettyPrintExpression.makeString(statement), field.label, scope);
+	}
+
+	public CompletableFuture<List<Pair<String, String>>> weakestConsistentApproximationAsync(Expr statement,
+			Field field, String scope) throws Err {
+		return weakestConsistentApproximationAsync(PrettyPrintExpression.makeString(statement), field.label, scope);
+	}
+
+	public CompletableFuture<Boolean> isInconsistentAsync(Expr statement, Field field, String scope) throws Err {
+		return isInconsistentAsync(PrettyPrintExpression.makeString(statement), field.label, scope);
+	}
+
+	/**
+	 * Sends all the approximation requests the debugger makes for a field at
+	 * once: whether the model is inconsistent and its weakest inconsistent
+	 * patterns, and the strongest implied and the weakest inconsistent patterns
+	 * of every model part. The responses are cached, so the later calls for the
+	 * same field do not wait for the analyzers one by one.
+	 * 
+	 * @return completed once all the responses are arrived.
+	 * @throws Err
+	 */
+	public CompletableFuture<Void> prefetchApproximations(Collection<Expr> modelParts, Expr model, Field field,
+			String scope) throws Err {
+		final List<CompletableFuture<?>> requests = new ArrayList<>();
+		final String modelString = PrettyPrintExpression.makeString(model);
+		requests.add(findApproximationAsync(toBeAnalyzedCode, modelString, field.label, scope,
+				InconExpressionToAlloyCode.EMPTY_CONVERTOR, Function.identity()));
+		requests.add(findApproximationAsync(toBeAnalyzedCode, modelString, field.label, scope,
+				InconPropertyToAlloyCode.EMPTY_CONVERTOR, Function.identity()));
+		for (Expr modelPart : modelParts) {
+			final String modelPartString = PrettyPrintExpression.makeString(modelPart);
+			requests.add(findApproximationAsync(toBeAnalyzedCode, modelPartString, field.label, scope,
+					IfPropertyToAlloyCode.EMPTY_CONVERTOR, Function.identity()));
+			requests.add(findApproximationAsync(toBeAnalyzedCode, modelPartString, field.label, scope,
+					InconPropertyToAlloyCode.EMPTY_CONVERTOR, Function.identity()));
+		}
+		return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[requests.size()]));
+	}
+
 	StringBuilder sb_strongestImplicationApproximation = new StringBuilder(
 			"Map<String, List<Pair<String, String>> > strongestImpl = new HashMap<>();\n");
 
 	public List<Pair<String, String>> strongestImplicationApproximation(String statement, String fieldLabel,
 			String scope) {
-		List<Pair<String, String>> approx = findApproximation(statement, fieldLabel, scope,
-				IfPropertyToAlloyCode.EMPTY_CONVERTOR, filterWeakerApproximations);
-
-		makeNewRecordInCacheResult(sb_strongestImplicationApproximation, "strongestImpl", statement, fieldLabel, scope,
-				approx);
+		return await(strongestImplicationApproximationAsync(statement, fieldLabel, scope));
+	}
 
-		return approx;
+	public CompletableFuture<List<Pair<String, String>>> strongestImplicationApproximationAsync(String statement,
+			String fieldLabel, String scope) {
+		return findApproximationAsync(statement, fieldLabel, scope, IfPropertyToAlloyCode.EMPTY_CONVERTOR,
+				filterWeakerApproximations).thenApplyAsync(approx -> {
+					makeNewRecordInCacheResult(sb_strongestImplicationApproximation, "strongestImpl", statement,
+							fieldLabel, scope, approx);
+					return approx;
+				}, approximationExecutor);
 	}
 
 	StringBuilder sb_strongestConsistentApproximation = new StringBuilder(
@@ -200,13 +343,17 @@ public class Approximator {
 
 	public List<Pair<String, String>> strongestConsistentApproximation(String statement, String fieldLabel,
 			String scope) {
-		List<Pair<String, String>> approx = findApproximation(statement, fieldLabel, scope,
-				AndPropertyToAlloyCode.EMPTY_CONVERTOR, filterWeakerApproximations);
-
-		makeNewRecordInCacheResult(sb_strongestConsistentApproximation, "strongestCon", statement, fieldLabel, scope,
-				approx);
+		return await(strongestConsistentApproximationAsync(statement, fieldLabel, scope));
+	}
 
-		return approx;
+	public CompletableFuture<List<Pair<String, String>>> strongestConsistentApproximationAsync(String statement,
+			String fieldLabel, String scope) {
+		return findApproximationAsync(statement, fieldLabel, scope, AndPropertyToAlloyCode.EMPTY_CONVERTOR,
+				filterWeakerApproximations).thenApplyAsync(approx -> {
+					makeNewRecordInCacheResult(sb_strongestConsistentApproximation, "strongestCon", statement,
+							fieldLabel, scope, approx);
+					return approx;
+				}, approximationExecutor);
 	}
 
 	public StringBuilder sb_weakestInconsistentApproximation = new StringBuilder(
@@ -214,20 +361,35 @@ public class Approximator {
 
 	public List<Pair<String, String>> weakestInconsistentApproximation(String statement, String fieldLabel,
 			String scope) {
-		List<Pair<String, String>> approx = findApproximation(statement, fieldLabel, scope,
-				InconPropertyToAlloyCode.EMPTY_CONVERTOR, filterStrongerApproximations);
-
-		makeNewRecordInCacheResult(sb_weakestInconsistentApproximation, "weakestIncon", statement, fieldLabel, scope,
-				approx);
+		return await(weakestInconsistentApproximationAsync(statement, fieldLabel, scope));
+	}
 
-		return approx;
+	public CompletableFuture<List<Pair<String, String>>> weakestInconsistentApproximationAsync(String statement,
+			String fieldLabel, String scope) {
+		return findApproximationAsync(statement, fieldLabel, scope, InconPropertyToAlloyCode.EMPTY_CONVERTOR,
+				filterStrongerApproximations).thenApplyAsync(approx -> {
+					makeNewRecordInCacheResult(sb_weakestInconsistentApproximation, "weakestIncon", statement,
+							fieldLabel, scope, approx);
+					return approx;
+				}, approximationExecutor);
 	}
 
 	public StringBuilder sb_allConsistentApproximation = new StringBuilder(
 			"Map<String, List<Pair<String, String>> > allCon = new HashMap<>();\n");
 
 	public List<Pair<String, String>> allConsistentApproximation(String statement, String fieldLabel, String scope) {
-		final List<Pair<String, String>> weakestIncons = weakestInconsistentApproximation(statement, fieldLabel, scope);
+		return await(allConsistentApproximationAsync(statement, fieldLabel, scope));
+	}
+
+	public CompletableFuture<List<Pair<String, String>>> allConsistentApproximationAsync(String statement,
+			String fieldLabel, String scope) {
+		return weakestInconsistentApproximationAsync(statement, fieldLabel, scope)
+				.thenApplyAsync(weakestIncons -> allConsistentApproximation(statement, fieldLabel, scope, weakestIncons),
+						approximationExecutor);
+	}
+
+	protected List<Pair<String, String>> allConsistentApproximation(String statement, String fieldLabel, String scope,
+			List<Pair<String, String>> weakestIncons) {
 		final List<String> weakestInconsPatterns = weakestIncons.stream().map(a -> a.a).collect(Collectors.toList());
 		final Set<String> allPatterns = inconsistencies.stream().map(a -> a.getAllPatterns()).flatMap(a -> a.stream())
 				.collect(Collectors.toSet());
@@ -246,12 +408,18 @@ public class Approximator {
 			"Map<String, List<Pair<String, String>> > allInCon = new HashMap<>();\n");
 
 	public List<Pair<String, String>> allInconsistentApproximation(String statement, String fieldLabel, String scope) {
-		List<Pair<String, String>> approx = convertPatternToProperty(
-				weakestInconsistentApproximation(statement, fieldLabel, scope).stream().map(a -> strongerPatterns(a.a))
-						.flatMap(a -> a.stream()).collect(Collectors.toList()),
-				fieldLabel);
-		makeNewRecordInCacheResult(sb_allInconsistentApproximation, "allInCon", statement, fieldLabel, scope, approx);
-		return approx;
+		return await(allInconsistentApproximationAsync(statement, fieldLabel, scope));
+	}
+
+	public CompletableFuture<List<Pair<String, String>>> allInconsistentApproximationAsync(String statement,
+			String fieldLabel, String scope) {
+		return weakestInconsistentApproximationAsync(statement, fieldLabel, scope).thenApplyAsync(weakestIncons -> {
+			List<Pair<String, String>> approx = convertPatternToProperty(weakestIncons.stream()
+					.map(a -> strongerPatterns(a.a)).flatMap(a -> a.stream()).collect(Collectors.toList()), fieldLabel);
+			makeNewRecordInCacheResult(sb_allInconsistentApproximation, "allInCon", statement, fieldLabel, scope,
+					approx);
+			return approx;
+		}, approximationExecutor);
 	}
 
 	public StringBuilder sb_weakestConsistentApproximation = new StringBuilder(
@@ -259,30 +427,39 @@ public class Approximator {
 
 	public List<Pair<String, String>> weakestConsistentApproximation(String statement, String fieldLabel,
 			String scope) {
-		List<Pair<String, String>> approx = allConsistentApproximation(statement, fieldLabel, scope).stream()
-				.filter(a -> implications.stream().anyMatch(b -> {
-					try {
-						return b.hasPattern(a.a) && b.getNextImpliedProperties(a.a).isEmpty();
-					} catch (Exception e) {
-						e.printStackTrace();
-						return false;
-					}
-				})).collect(Collectors.toList());
-
-		makeNewRecordInCacheResult(sb_weakestConsistentApproximation, "weakestCon", statement, fieldLabel, scope,
-				approx);
+		return await(weakestConsistentApproximationAsync(statement, fieldLabel, scope));
+	}
 
-		return approx;
+	public CompletableFuture<List<Pair<String, String>>> weakestConsistentApproximationAsync(String statement,
+			String fieldLabel, String scope) {
+		return allConsistentApproximationAsync(statement, fieldLabel, scope).thenApplyAsync(allCons -> {
+			List<Pair<String, String>> approx = allCons.stream().filter(a -> implications.stream().anyMatch(b -> {
+				try {
+					return b.hasPattern(a.a) && b.getNextImpliedProperties(a.a).isEmpty();
+				} catch (Exception e) {
+					e.printStackTrace();
+					return false;
+				}
+			})).collect(Collectors.toList());
+
+			makeNewRecordInCacheResult(sb_weakestConsistentApproximation, "weakestCon", statement, fieldLabel, scope,
+					approx);
+
+			return approx;
+		}, approximationExecutor);
 	}
 
+	/* The records are made by the approximation executor. */
 	private void makeNewRecordInCacheResult(StringBuilder sb, String name, String statement, String fieldLabel,
 			String scope, List<Pair<String, String>> approx) {
 		// Converting to Cache.
 		String key = statement + fieldLabel;
-		sb.append("allMokedApproximations.get(\"NAMENAME\").get(\"" + name + "\").put(\"").append(key)
-				.append("\", Arrays.asList(").append(approx.stream()
-						.map(p -> "new Pair<>(\"" + p.a + "\", \"" + p.b + "\")").collect(Collectors.joining(", ")))
-				.append("));\n");
+		synchronized (sb) {
+			sb.append("allMokedApproximations.get(\"NAMENAME\").get(\"" + name + "\").put(\"").append(key)
+					.append("\", Arrays.asList(").append(approx.stream()
+							.map(p -> "new Pair<>(\"" + p.a + "\", \"" + p.b + "\")").collect(Collectors.joining(", ")))
+					.append("));\n");
+		}
 	}
 
 	public String getAllChachedResults() {
@@ -296,32 +473,44 @@ public class Approximator {
 
 	}
 	
+	/**
+	 * The approximation cache counters in the csv format.
+	 */
 	public String getApproximationTimeLog() {
-		return timeOfApproximation.toString()+cacheKey.toString();
+		return cacheApproximation.getStatistics();
 	}
 
 	public StringBuilder sb_isInconsistent = new StringBuilder("Map<String, Boolean > isIncon = new HashMap<>();\n");
 
 	public Boolean isInconsistent(String statement, String fieldLabel, String scope) {
-		Boolean result = !findApproximation(statement, fieldLabel, scope, InconExpressionToAlloyCode.EMPTY_CONVERTOR,
-				Function.identity()).isEmpty();
-		// Converting to Cache.
-		String key = statement + fieldLabel;
-		sb_isInconsistent.append("allMokedApproximations.get(\"NAMENAME\").get(\"isIncon\").put(\"").append(key)
-				.append("\", ").append(result).append(");\n");
-
-		return result;
+		return isInconsistent(this.toBeAnalyzedCode, statement, fieldLabel, scope);
 	}
 
 	public Boolean isInconsistent(File toBeAnalyzedCode, String statement, String fieldLabel, String scope) {
-		Boolean result = !findApproximation(toBeAnalyzedCode, statement, fieldLabel, scope,
-				InconExpressionToAlloyCode.EMPTY_CONVERTOR, Function.identity()).isEmpty();
+		return await(isInconsistentAsync(toBeAnalyzedCode, statement, fieldLabel, scope));
+	}
+
+	public CompletableFuture<Boolean> isInconsistentAsync(String statement, String fieldLabel, String scope) {
+		return isInconsistentAsync(this.toBeAnalyzedCode, statement, fieldLabel, scope);
+	}
+
+	public CompletableFuture<Boolean> isInconsistentAsync(File toBeAnalyzedCode, String statement, String fieldLabel,
+			String scope) {
+		return findApproximationAsync(toBeAnalyzedCode, statement, fieldLabel, scope,
+				InconExpressionToAlloyCode.EMPTY_CONVERTOR, Function.identity()).thenApplyAsync(approx -> {
+					Boolean result = !approx.isEmpty();
+					recordIsInconsistent(statement, fieldLabel, result);
+					return result;
+				}, approximationExecutor);
+	}
+
+	private void recordIsInconsistent(String statement, String fieldLabel, Boolean result) {
 		// Converting to Cache.
 		String key = statement + fieldLabel;
-		sb_isInconsistent.append("allMokedApproximations.get(\"NAMENAME\").get(\"isIncon\").put(\"").append(key)
-				.append("\", ").append(result).append(");\n");
-
-		return result;
+		synchronized (sb_isInconsistent) {
+			sb_isInconsistent.append("allMokedApproximations.get(\"NAMENAME\").get(\"isIncon\").put(\"")
+					.append(key).append("\", ").append(result).append(");\n");
+		}
 	}
 
 	protected List<Pair<String, String>> findApproximation(String statement, String fieldLabel, String scope,
@@ -329,22 +518,13 @@ public class Approximator {
 		return findApproximation(this.toBeAnalyzedCode, statement, fieldLabel, scope, coder, filter);
 	}
 
-	final Map<Integer, PatternProcessedResult> cacheApproximation = new HashMap<>();
-	final StringBuilder cacheKey = new StringBuilder();
-
-	protected Integer computeKey(File toBeAnalyzedCode, String statement, String fieldLabel, String scope,
-			PropertyToAlloyCode coder) {
-		Integer key = (toBeAnalyzedCode.getAbsoluteFile() + statement + fieldLabel + scope).hashCode()
-				+ coder.hashCode() + coder.getClass().getName().hashCode();
-
-		cacheKey.append("key,").append(key).append(",").append(toBeAnalyzedCode.getAbsoluteFile()).append(",").append(statement)
-				.append(",").append(fieldLabel).append(",").append(scope).append(",").append(coder.getClass().getName())
-				.append(",").append(coder.getPredName()).append("\n");
-
-		return key;
+	protected CompletableFuture<List<Pair<String, String>>> findApproximationAsync(String statement,
+			String fieldLabel, String scope, PropertyToAlloyCode coder,
+			Function<List<Pair<String, String>>, List<Pair<String, String>>> filter) {
+		return findApproximationAsync(this.toBeAnalyzedCode, statement, fieldLabel, scope, coder, filter);
 	}
 
-	final StringBuilder timeOfApproximation = new StringBuilder();
+	final ApproximationCache cacheApproximation = new ApproximationCache();
 
 	/**
 	 * 
@@ -359,79 +539,108 @@ public class Approximator {
 	protected List<Pair<String, String>> findApproximation(File toBeAnalyzedCode, String statement, String fieldLabel,
 			String scope, PropertyToAlloyCode coder,
 			Function<List<Pair<String, String>>, List<Pair<String, String>>> filter) {
+		return await(findApproximationAsync(toBeAnalyzedCode, statement, fieldLabel, scope, coder, filter));
+	}
 
-		long startTime = System.currentTimeMillis();
+	/**
+	 * Finds the approximation in the cache or sends its request without
+	 * waiting for the response.
+	 * 
+	 * @param toBeAnalyzedCode
+	 * @param statement
+	 * @param fieldLabel
+	 * @param scope
+	 * @param coder
+	 * @param filter
+	 * @return completed on the approximation executor once the response is
+	 *         received.
+	 */
+	protected CompletableFuture<List<Pair<String, String>>> findApproximationAsync(File toBeAnalyzedCode,
+			String statement, String fieldLabel, String scope, PropertyToAlloyCode coder,
+			Function<List<Pair<String, String>>, List<Pair<String, String>>> filter) {
 
-		Integer cacheKey = computeKey(toBeAnalyzedCode, statement, fieldLabel, scope, coder);
-		if (!cacheApproximation.containsKey(cacheKey)) {
+		final ApproximationCache.Key cacheKey = new ApproximationCache.Key(toBeAnalyzedCode, statement, fieldLabel,
+				scope, coder);
+		return cacheApproximation
+				.getAsync(cacheKey, () -> requestApproximation(toBeAnalyzedCode, statement, fieldLabel, scope, coder))
+				.thenApplyAsync(approximation -> filter.apply(approximation.getResults().get().stream()
+						.map(b -> new Pair<>(b.getParam().getAlloyCoder().get().predNameB,
+								b.getParam().getAlloyCoder().get().predCallB))
+						.collect(Collectors.toList())), approximationExecutor);
+	}
 
-			if (approximationRequestCount % 60 == 0) {
-				((RemoteProcessManager) processManager).replaceAllProcesses();
-				while (!((RemoteProcessManager) processManager).allProcessesIDLE()) {
-					try {
-						Thread.sleep(30);
-					} catch (InterruptedException e) {
-						e.printStackTrace();
-					}
-				}
-			}
+	/**
+	 * Sends the approximation request to an expression analyzer. The returned
+	 * future is completed once the response of the same session is arrived.
+	 */
+	protected CompletableFuture<PatternProcessedResult> requestApproximation(File toBeAnalyzedCode,
+			String statement, String fieldLabel, String scope, PropertyToAlloyCode coder) {
+		// The unhealthy analyzers are replaced one at a time, while the
+		// others take the requests.
+		if (processManager instanceof RemoteProcessManager)
+			((RemoteProcessManager) processManager).recycleUnhealthyProcesses();
+
+		// Creating a request message
+		Map<String, LazyFile> files = new HashMap<>();
+
+		files.put("toBeAnalyzedCode", new LazyFile(toBeAnalyzedCode.getAbsolutePath()));
+		files.put("relationalPropModuleOriginal", new LazyFile(relationalPropModule.getAbsolutePath()));
+		files.put("temporalPropModuleOriginal", new LazyFile(temporalPropModule.getAbsolutePath()));
+		for (File file : dependentFiles)
+			files.put("relationalLib", new LazyFile(file.getAbsolutePath()));
+
+		final UUID sessionID = UUID.randomUUID();
+		PatternProcessingParam param = new PatternProcessingParam(0, tmpLocalDirectory, sessionID, Long.MAX_VALUE,
+				fieldLabel, coder, statement, scope, files);
+		PatternRequestMessage message = new PatternRequestMessage(interfacE.getHostProcess(), param);
+
+		final PendingApproximation pending = new PendingApproximation(message);
+		pendingApproximations.put(sessionID, pending);
+		pending.timeoutTask = approximationTimer.schedule(
+				() -> removePending(sessionID).ifPresent(timedout -> timedout.result.completeExceptionally(
+						new TimeoutException("The approximation request " + sessionID + " is not responded after "
+								+ ApproximationTimeout + " ms."))),
+				ApproximationTimeout, TimeUnit.MILLISECONDS);
+		send(sessionID, pending);
+		return pending.result;
+	}
 
-			// Creating a request message
-			Map<String, LazyFile> files = new HashMap<>();
-
-			files.put("toBeAnalyzedCode", new LazyFile(toBeAnalyzedCode.getAbsolutePath()));
-			files.put("relationalPropModuleOriginal", new LazyFile(relationalPropModule.getAbsolutePath()));
-			files.put("temporalPropModuleOriginal", new LazyFile(temporalPropModule.getAbsolutePath()));
-			for (File file : dependentFiles)
-				files.put("relationalLib", new LazyFile(file.getAbsolutePath()));
-
-			PatternProcessingParam param = new PatternProcessingParam(0, tmpLocalDirectory, UUID.randomUUID(),
-					Long.MAX_VALUE, fieldLabel, coder, statement, scope, files);
-			PatternRequestMessage message = new PatternRequestMessage(interfacE.getHostProcess(), param);
-
-			// Wait until the result is sent back
-			final SynchronizedResult<PatternProcessedResult> result = new SynchronizedResult<>();
-			MessageEventListener<MessageReceivedEventArgs> receiveListener = new MessageEventListener<MessageReceivedEventArgs>() {
-				@Override
-				public void actionOn(ResponseMessage responseMessage, MessageReceivedEventArgs messageArgs) {
-					result.result = (PatternProcessedResult) responseMessage.getResult();
-					synchronized (result) {
-						result.notify();
-					}
-				}
-			};
-			interfacE.MessageReceived.addListener(receiveListener);
-			interfacE.sendMessage(message, processManager.getActiveRandomeProcess());
-			synchronized (result) {
-				try {
-					do {
-						result.wait();
-						// Wait until the response for the same session is
-						// arrived.
-					} while (!result.getResult().get().getParam().getAnalyzingSessionID()
-							.equals(param.getAnalyzingSessionID()));
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
+	/**
+	 * Sends the request to an active analyzer. The analyzer is not recycled
+	 * until the request is responded, and the request is sent again if the
+	 * analyzer is killed.
+	 */
+	void send(final UUID sessionID, final PendingApproximation pending) {
+		try {
+			RemoteProcess process;
+			do {
+				process = processManager.getActiveRandomeProcess();
+			} while (processManager instanceof RemoteProcessManager
+					&& !((RemoteProcessManager) processManager).addPendingSession(process, sessionID));
+			pending.process = process;
+			// It might be timed out in between.
+			if (!pendingApproximations.containsKey(sessionID)) {
+				if (processManager instanceof RemoteProcessManager)
+					((RemoteProcessManager) processManager).removePendingSession(process, sessionID);
+				return;
 			}
-			interfacE.MessageReceived.removeListener(receiveListener);
-
-			approximationRequestCount++;
-			cacheApproximation.put(cacheKey, result.getResult().get());
+			pending.sentTime = System.currentTimeMillis();
+			interfacE.sendMessage(pending.message, process);
+		} catch (RuntimeException e) {
+			removePending(sessionID).ifPresent(failed -> failed.result.completeExceptionally(e));
 		}
+	}
 
-		timeOfApproximation.append("time,")
-				.append(toBeAnalyzedCode.getName()).append(",")
-				.append(statement).append(",")
-				.append(coder.getClass().getSimpleName()).append(",")
-				.append(System.currentTimeMillis() - startTime).append(",")
-				.append(Configuration.getProp("alloy_processes_number"))
-				.append("\n");
-
-		return filter.apply(cacheApproximation.get(cacheKey).getResults().get().stream()
-				.map(b -> new Pair<>(b.getParam().getAlloyCoder().get().predNameB,
-						b.getParam().getAlloyCoder().get().predCallB))
-				.collect(Collectors.toList()));
+	/* Stops waiting for the response of the session. */
+	Optional<PendingApproximation> removePending(final UUID sessionID) {
+		final Optional<PendingApproximation> pending = Optional.ofNullable(pendingApproximations.remove(sessionID));
+		pending.ifPresent(p -> {
+			if (p.timeoutTask != null)
+				p.timeoutTask.cancel(false);
+			if (p.process != null && processManager instanceof RemoteProcessManager)
+				((RemoteProcessManager) processManager).removePendingSession(p.process, sessionID);
+		});
+		return pending;
 	}
 
 	/**
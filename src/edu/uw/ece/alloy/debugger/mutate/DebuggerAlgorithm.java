@@ -354,6 +354,7 @@ public abstract class DebuggerAlgorithm {
 		while (!fieldsQueue.isEmpty()) {
 			DecisionQueueItem<Field> field = fieldsQueue.poll();
 			toBeingAnalyzedField = field.getItem().get();
+			prefetchApproximations();
 			checkIfModelIsInconsistent();
 			if (afterPickField())
 				break;
@@ -1168,6 +1169,25 @@ public abstract class DebuggerAlgorithm {
 		return this.fields.size() > 0 ? Optional.of(this.fields.remove(0)) : Optional.empty();
 	}
 
+	/**
+	 * Sends the approximation requests of all the model parts of the picked
+	 * field at once. It does not wait for the responses; the analyzers work on
+	 * them while the approximations are taken one by one.
+	 */
+	protected void prefetchApproximations() {
+		try {
+			approximator.prefetchApproximations(model, modelExpr, toBeingAnalyzedField, scope)
+					.whenCompleteAsync((done, error) -> {
+						if (error != null)
+							logger.warning(Utils.threadName() + "The approximations of " + toBeingAnalyzedField
+									+ " are not prefetched: " + error);
+					}, Approximator.approximationExecutor);
+		} catch (Err e) {
+			logger.warning(Utils.threadName() + "The approximations of " + toBeingAnalyzedField
+					+ " are not prefetched: " + e.getMessage());
+		}
+	}
+
 	protected void checkIfModelIsInconsistent() {
 		// find out whether an expression is inconsistent by itself
 		try {
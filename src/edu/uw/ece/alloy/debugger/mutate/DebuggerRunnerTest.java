@@ -9,11 +9,13 @@ import java.net.InetSocketAddress;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 
 import org.junit.After;
@@ -27,6 +29,8 @@ import com.google.common.io.Files;
 import edu.mit.csail.sdg.alloy4.Err;
 import edu.mit.csail.sdg.alloy4.Pair;
 import edu.mit.csail.sdg.alloy4.Util;
+import edu.mit.csail.sdg.alloy4compiler.ast.Expr;
+import edu.mit.csail.sdg.alloy4compiler.ast.Sig.Field;
 import edu.uw.ece.alloy.debugger.mutate.experiment.DebuggerAlgorithmHeuristics;
 import edu.uw.ece.alloy.debugger.mutate.experiment.DebuggerAlgorithmRandom;
 import edu.uw.ece.alloy.debugger.onborder.ExampleFinderByHola;
@@ -450,6 +454,12 @@ public class DebuggerRunnerTest {
 				return ((List<Pair<String, String>>) allMokedApproximations.get(mockedName).get("weakestCon")
 						.get(statement + fieldLabel));
 			}
+
+			@Override
+			public CompletableFuture<Void> prefetchApproximations(Collection<Expr> modelParts, Expr model,
+					Field field, String scope) {
+				return CompletableFuture.completedFuture(null);
+			}
 		};
 	}
 
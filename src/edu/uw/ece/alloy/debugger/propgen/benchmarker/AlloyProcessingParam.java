@@ -20,6 +20,11 @@ import edu.uw.ece.alloy.util.Utils;
 public class AlloyProcessingParam extends ProcessingParam {
 
 	final public static boolean reWrite = Boolean.valueOf(Configuration.getProp("is_rewrite_enable_on_agent"));
+	/*
+	 * The generated codes are not stored on the disk. They are parsed from
+	 * memory and their dependencies are resolved from the in memory modules.
+	 */
+	final public static boolean memoryOnly = Boolean.valueOf(Configuration.getProp("is_memory_only_execution"));
 	final static Logger logger = Logger
 			.getLogger(AlloyProcessingParam.class.getName() + "--" + Thread.currentThread().getName());
 	/**
@@ -253,9 +258,11 @@ public class AlloyProcessingParam extends ProcessingParam {
 		return path;
 	}
 
-	// The default behavior is to eagerly store the file on the disk
+	// The default behavior is to eagerly store the file on the disk, unless
+	// the execution is memory only.
 	public AlloyProcessingParam prepareToUse() throws Exception {
-		dumpAll();
+		if (!memoryOnly)
+			dumpAll();
 		// TODO(vajih) check whether the dependencies are in place.
 		// final File srcParent = new File(srcPath.getParent());
 		return this;// prepareToUse(srcParent);
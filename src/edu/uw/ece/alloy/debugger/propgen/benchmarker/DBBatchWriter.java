@@ -0,0 +1,199 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.uw.ece.alloy.Configuration;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyProcessedResult;
+import edu.uw.ece.alloy.util.Utils;
+
+/**
+ * A write-behind sink for the results. The results are kept in a bounded
+ * buffer and a separate thread inserts them in batches, committing each batch
+ * at once. A batch is written once it is full or its first record has waited
+ * for the flush interval.
+ *
+ * @author vajih
+ *
+ */
+public class DBBatchWriter implements Runnable {
+
+	protected final static Logger logger = Logger
+			.getLogger(DBBatchWriter.class.getName() + "--" + Thread.currentThread().getName());
+
+	public final static int BufferSize = Integer.parseInt(Configuration.getProp("db_writer_buffer_size"));
+	public final static int BatchSize = Integer.parseInt(Configuration.getProp("db_writer_batch_size"));
+	public final static long FlushInterval = Long.parseLong(Configuration.getProp("db_writer_flush_interval"));
+
+	protected final static class Entry {
+		final DBConnectionInfo connectionInfo;
+		final DBLogger.Record record;
+
+		Entry(final DBConnectionInfo connectionInfo, final DBLogger.Record record) {
+			this.connectionInfo = connectionInfo;
+			this.record = record;
+		}
+	}
+
+	protected final BlockingQueue<Entry> buffer;
+	protected final int batchSize;
+	protected final long flushInterval;
+
+	/* Makes the logger of a database. Only called by the writing thread. */
+	protected final Function<DBConnectionInfo, DBLogger> loggerFactory;
+	protected final Map<DBConnectionInfo, DBLogger> loggers = new HashMap<>();
+
+	protected final AtomicLong written = new AtomicLong(0);
+	protected final AtomicLong failed = new AtomicLong(0);
+
+	protected final Thread writerThread = new Thread(this);
+
+	public DBBatchWriter(final Function<DBConnectionInfo, DBLogger> loggerFactory, final int capacity,
+			final int batchSize, final long flushInterval) {
+		if (batchSize < 1)
+			throw new IllegalArgumentException("The batch size has to be positive: " + batchSize);
+		this.loggerFactory = loggerFactory;
+		this.buffer = new ArrayBlockingQueue<>(capacity);
+		this.batchSize = batchSize;
+		this.flushInterval = flushInterval;
+	}
+
+	public DBBatchWriter(final Function<DBConnectionInfo, DBLogger> loggerFactory) {
+		this(loggerFactory, BufferSize, BatchSize, FlushInterval);
+	}
+
+	/**
+	 * Queues the result to be written in the given database. The values are
+	 * taken out of the result now. It waits only if the buffer is full.
+	 */
+	public void put(final DBConnectionInfo connectionInfo, final AlloyProcessedResult result, final String pid)
+			throws InterruptedException {
+		put(connectionInfo, new DBLogger.Record(result, connectionInfo.tablename, pid));
+	}
+
+	public void put(final DBConnectionInfo connectionInfo, final DBLogger.Record record)
+			throws InterruptedException {
+		buffer.put(new Entry(connectionInfo, record));
+	}
+
+	/**
+	 * Collects the next batch. Waits for the first entry, then waits for more
+	 * entries until the batch is full or the flush interval is passed.
+	 *
+	 * @return an empty batch if nothing is arrived in the flush interval.
+	 */
+	protected List<Entry> nextBatch() throws InterruptedException {
+		final List<Entry> batch = new ArrayList<>();
+		final Entry first = buffer.poll(flushInterval, TimeUnit.MILLISECONDS);
+		if (first == null)
+			return batch;
+		batch.add(first);
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushInterval);
+		while (batch.size() < batchSize) {
+			if (buffer.drainTo(batch, batchSize - batch.size()) > 0)
+				continue;
+			final long remaining = deadline - System.nanoTime();
+			if (remaining <= 0)
+				break;
+			final Entry next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+			if (next == null)
+				break;
+			batch.add(next);
+		}
+		return batch;
+	}
+
+	protected void write(final List<Entry> batch) {
+		final Map<DBConnectionInfo, List<DBLogger.Record>> byDatabase = new LinkedHashMap<>();
+		for (Entry entry : batch)
+			byDatabase.computeIfAbsent(entry.connectionInfo, c -> new ArrayList<>()).add(entry.record);
+		for (DBConnectionInfo connectionInfo : byDatabase.keySet()) {
+			final List<DBLogger.Record> records = byDatabase.get(connectionInfo);
+			try {
+				final List<DBLogger.Record> rejected = write(connectionInfo, records);
+				written.addAndGet(records.size() - rejected.size());
+				failed.addAndGet(rejected.size());
+				if (!rejected.isEmpty())
+					logger.severe(Utils.threadName() + "Failed on storing " + rejected.size() + " of " + records.size()
+							+ " results in: " + connectionInfo);
+			} catch (SQLException | RuntimeException e) {
+				failed.addAndGet(records.size());
+				logger.log(Level.SEVERE,
+						Utils.threadName() + "Failed on storing " + records.size() + " results in: " + connectionInfo, e);
+			}
+		}
+	}
+
+	/**
+	 * @return the records that are not written.
+	 */
+	protected List<DBLogger.Record> write(final DBConnectionInfo connectionInfo, final List<DBLogger.Record> records)
+			throws SQLException {
+		return loggers.computeIfAbsent(connectionInfo, loggerFactory).insertResults(records);
+	}
+
+	/**
+	 * Writes everything in the buffer on the caller thread.
+	 */
+	public synchronized void flush() {
+		final List<Entry> batch = new ArrayList<>();
+		while (buffer.drainTo(batch, batchSize) > 0) {
+			write(batch);
+			batch.clear();
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				final List<Entry> batch = nextBatch();
+				if (!batch.isEmpty()) {
+					synchronized (this) {
+						write(batch);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.info(Utils.threadName() + "The DB writer is interrupted after writing " + written + " results.");
+		}
+		// Whatever is left is written before leaving.
+		flush();
+	}
+
+	public void startThread() {
+		writerThread.start();
+	}
+
+	public void cancelThread() {
+		writerThread.interrupt();
+	}
+
+	public Thread getThread() {
+		return writerThread;
+	}
+
+	public int size() {
+		return buffer.size();
+	}
+
+	public long getWritten() {
+		return written.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+}
@@ -0,0 +1,123 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author vajih
+ *
+ */
+public class DBBatchWriterTest {
+
+	final DBConnectionInfo databaseA = new DBConnectionInfo("localhost", "", "", "a", "table_a");
+	final DBConnectionInfo databaseB = new DBConnectionInfo("localhost", "", "", "b", "table_b");
+
+	final List<List<DBLogger.Record>> batches = Collections.synchronizedList(new ArrayList<>());
+
+	DBBatchWriter writer;
+
+	class CapturingWriter extends DBBatchWriter {
+		CapturingWriter(final int capacity, final int batchSize, final long flushInterval) {
+			super(c -> null, capacity, batchSize, flushInterval);
+		}
+
+		@Override
+		protected List<DBLogger.Record> write(DBConnectionInfo connectionInfo, List<DBLogger.Record> records)
+				throws SQLException {
+			if (connectionInfo.equals(databaseB))
+				throw new SQLException("The database is down.");
+			batches.add(new ArrayList<>(records));
+			return records.stream().filter(r -> r.result.equals("bad")).collect(Collectors.toList());
+		}
+	}
+
+	static DBLogger.Record record(final DBConnectionInfo database, final int i) {
+		return new DBLogger.Record(database.tablename, "r" + i, "content", "p" + i, "q" + i, "=>", "S", i, "src", "dst",
+				"pid");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		writer.cancelThread();
+		writer.getThread().join(1000);
+	}
+
+	@Test
+	public void testFullBatchesAreWrittenAtOnce() throws Exception {
+		writer = new CapturingWriter(100, 10, 10000);
+		for (int i = 0; i < 25; ++i)
+			writer.put(databaseA, record(databaseA, i));
+		writer.startThread();
+
+		for (int wait = 0; writer.getWritten() < 20 && wait < 100; ++wait)
+			Thread.sleep(10);
+
+		assertEquals(20, writer.getWritten());
+		assertEquals(2, batches.size());
+		assertEquals(10, batches.get(0).size());
+		assertEquals("p0", batches.get(0).get(0).prop1);
+		assertEquals("p10", batches.get(1).get(0).prop1);
+	}
+
+	@Test
+	public void testPartialBatchIsWrittenAfterTheInterval() throws Exception {
+		writer = new CapturingWriter(100, 10, 50);
+		writer.startThread();
+		for (int i = 0; i < 3; ++i)
+			writer.put(databaseA, record(databaseA, i));
+
+		for (int wait = 0; writer.getWritten() < 3 && wait < 100; ++wait)
+			Thread.sleep(10);
+
+		assertEquals(3, writer.getWritten());
+		assertEquals(0, writer.size());
+	}
+
+	@Test
+	public void testLeftoversAreWrittenOnCancel() throws Exception {
+		writer = new CapturingWriter(100, 10, 10000);
+		writer.startThread();
+		for (int i = 0; i < 3; ++i)
+			writer.put(databaseA, record(databaseA, i));
+		writer.cancelThread();
+		writer.getThread().join(1000);
+
+		assertEquals(3, writer.getWritten());
+	}
+
+	@Test
+	public void testFailedDatabaseDoesNotStopTheOthers() throws Exception {
+		writer = new CapturingWriter(100, 10, 10000);
+		writer.put(databaseA, record(databaseA, 0));
+		writer.put(databaseB, record(databaseB, 1));
+		writer.put(databaseA, record(databaseA, 2));
+		writer.flush();
+
+		assertEquals(2, writer.getWritten());
+		assertEquals(1, writer.getFailed());
+		assertEquals(1, batches.size());
+		assertTrue(batches.get(0).stream().allMatch(r -> r.getTableName().equals("table_a")));
+	}
+
+	@Test
+	public void testRejectedRecordsAreCountedAsFailed() throws Exception {
+		writer = new CapturingWriter(100, 10, 10000);
+		writer.put(databaseA, record(databaseA, 0));
+		writer.put(databaseA, new DBLogger.Record(databaseA.tablename, "bad", "content", "p", "q", "=>", "S", 1, "src",
+				"dst", "pid"));
+		writer.flush();
+
+		assertEquals(1, writer.getWritten());
+		assertEquals(1, writer.getFailed());
+	}
+
+}
@@ -6,11 +6,19 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import edu.uw.ece.alloy.Configuration;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyProcessedResult;
+import edu.uw.ece.alloy.util.Utils;
 
 public class DBLogger {
 
@@ -26,11 +34,82 @@ public class DBLogger {
 	final public static String SQL_INSERT_STMT = "INSERT INTO [[TABLE]](result, params, date, prop1, prop2, op, sat, recordTime, recordsTimeConfirm, srcPath, destPath, pid) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?,?)";
 	final public static String SQL_DELETE_STMT = "DELETE FROM [[TABLE]] WHERE ID=?";
 
+	/*
+	 * The large contents are stored once in a side table and the params column
+	 * refers to them by their hash.
+	 */
+	final public static String SQL_CONTENT_TABLE_SCHEMA = "CREATE TABLE IF NOT EXISTS [[TABLE]]_content(hash char(64) PRIMARY KEY, content TEXT)";
+	final public static String SQL_CONTENT_INSERT_STMT = "INSERT INTO [[TABLE]]_content(hash, content) VALUES (?, ?)";
+	final public static String CONTENT_REFERENCE = "sha256:";
+	final public static int ContentDedupSize = Integer.parseInt(Configuration.getProp("db_content_dedup_size"));
+
 	protected final static Logger logger = Logger.getLogger(
 			DBLogger.class.getName() + "--" + Thread.currentThread().getName());
 
 	final DBConnectionPool dBConnection;
 
+	/* The content hashes known to be in the side tables. */
+	final Set<String> storedContents = ConcurrentHashMap.newKeySet();
+	final Set<String> contentTables = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The values of a result row, taken out of the result once, so the result
+	 * and its content can be dropped while the row waits to be written.
+	 * 
+	 * @author vajih
+	 *
+	 */
+	public final static class Record {
+		final String tableName;
+		final String result;
+		final String content;
+		final String prop1;
+		final String prop2;
+		final String op;
+		final String sat;
+		final long recordTime;
+		final String srcPath;
+		final String destPath;
+		final String pid;
+
+		protected Record(final String tableName, final String result, final String content, final String prop1,
+				final String prop2, final String op, final String sat, final long recordTime, final String srcPath,
+				final String destPath, final String pid) {
+			this.tableName = tableName;
+			this.result = result;
+			this.content = content;
+			this.prop1 = prop1;
+			this.prop2 = prop2;
+			this.op = op;
+			this.sat = sat;
+			this.recordTime = recordTime;
+			this.srcPath = srcPath;
+			this.destPath = destPath;
+			this.pid = pid;
+		}
+
+		public Record(final AlloyProcessedResult result, final String tableName, final String pid) {
+			this(tableName, result.asRecord(), result.getParam().content().get(),
+					result.getParam().alloyCoder.predNameA, result.getParam().alloyCoder.predNameB,
+					result.getParam().alloyCoder.srcNameOperator(), convertSATResult(result), System.currentTimeMillis(),
+					result.getParam().getSrcPath().get().getName(), result.getParam().getDestPath().get().getName(), pid);
+		}
+
+		public String getTableName() {
+			return tableName;
+		}
+
+		public boolean isLarge() {
+			return content != null && content.length() > ContentDedupSize;
+		}
+
+		@Override
+		public String toString() {
+			return "Record [tableName=" + tableName + ", prop1=" + prop1 + ", prop2=" + prop2 + ", op=" + op
+					+ ", sat=" + sat + ", pid=" + pid + "]";
+		}
+	}
+
 	public DBLogger(final String dbAddress, final String dbUsername,
 			final String dbPassword, final String dbName, final String tableName,
 			final boolean tableRenew, final DBConnectionPool dBConnection) {
@@ -272,6 +351,150 @@ public class DBLogger {
 		}
 	}
 
+	public Record createRecord(final AlloyProcessedResult result, final String pid) {
+		return new Record(result, this.connectionInfo.tablename, pid);
+	}
+
+	/**
+	 * Inserts the records using batch statements, one transaction per batch.
+	 * The large contents are stored once in the side table of each table,
+	 * before and apart from the transaction of the records. A failed batch is
+	 * retried once and then split in halves, so a bad record does not drop the
+	 * others.
+	 * 
+	 * @param records
+	 * @return the records that could not be inserted even alone.
+	 * @throws SQLException
+	 *           if no connection is available. Nothing is inserted then.
+	 */
+	public List<Record> insertResults(final List<Record> records) throws SQLException {
+		final List<Record> rejected = new ArrayList<>();
+		if (records.isEmpty())
+			return rejected;
+		if (Configuration.IsInDeubbungMode)
+			logger.info("[" + Thread.currentThread().getName() + "] " + "Inserting " + records.size()
+					+ " records in the database.");
+		try (Connection connection = dBConnection.getPooledConnection()) {
+			final Map<Record, String> references = storeContents(connection, records);
+			insertResults(connection, records, references, true, rejected);
+		}
+		return rejected;
+	}
+
+	void insertResults(final Connection connection, final List<Record> records, final Map<Record, String> references,
+			final boolean retry, final List<Record> rejected) {
+		try {
+			insertRecords(connection, records, references);
+		} catch (SQLException e) {
+			if (retry) {
+				logger.log(Level.WARNING,
+						Utils.threadName() + "Retrying to insert " + records.size() + " records after: ", e);
+				insertResults(connection, records, references, false, rejected);
+			} else if (records.size() == 1) {
+				logger.log(Level.SEVERE, Utils.threadName() + "The record is not inserted: " + records.get(0), e);
+				rejected.add(records.get(0));
+			} else {
+				final int half = records.size() / 2;
+				insertResults(connection, records.subList(0, half), references, false, rejected);
+				insertResults(connection, records.subList(half, records.size()), references, false, rejected);
+			}
+		}
+	}
+
+	/**
+	 * Stores the large contents of the records, each in its own statement. A
+	 * content that is already stored, even by another writer at the same time,
+	 * is taken as stored. A content that cannot be stored stays in its record.
+	 * 
+	 * @return the references to the stored contents.
+	 */
+	protected Map<Record, String> storeContents(final Connection connection, final List<Record> records) {
+		final Map<Record, String> references = new HashMap<>();
+		for (Record record : records) {
+			if (!record.isLarge())
+				continue;
+			final String hash = Utils.digest(record.content);
+			if (storedContents.contains(record.tableName + hash)
+					|| storeContent(connection, record.tableName, hash, record.content))
+				references.put(record, CONTENT_REFERENCE + hash);
+		}
+		return references;
+	}
+
+	protected boolean storeContent(final Connection connection, final String tableName, final String hash,
+			final String content) {
+		try {
+			if (contentTables.add(tableName)) {
+				try (Statement statement = connection.createStatement()) {
+					statement.executeUpdate(SQL_CONTENT_TABLE_SCHEMA.replace("[[TABLE]]", tableName));
+				} catch (SQLException e) {
+					contentTables.remove(tableName);
+					throw e;
+				}
+			}
+			try (PreparedStatement insert = connection
+					.prepareStatement(SQL_CONTENT_INSERT_STMT.replace("[[TABLE]]", tableName))) {
+				insert.setString(1, hash);
+				insert.setString(2, content);
+				insert.executeUpdate();
+			}
+		} catch (SQLException e) {
+			// SQL state class 23 is an integrity violation, i.e. the hash is taken.
+			if (e.getSQLState() == null || !e.getSQLState().startsWith("23")) {
+				logger.log(Level.WARNING, Utils.threadName() + "The content is kept in the record: ", e);
+				return false;
+			}
+		}
+		storedContents.add(tableName + hash);
+		return true;
+	}
+
+	protected void insertRecords(final Connection connection, final List<Record> records,
+			final Map<Record, String> references) throws SQLException {
+		final Map<String, List<Record>> byTable = new LinkedHashMap<>();
+		for (Record record : records)
+			byTable.computeIfAbsent(record.tableName, t -> new ArrayList<>()).add(record);
+
+		connection.setAutoCommit(false);
+		try {
+			for (String tableName : byTable.keySet())
+				insertRecords(connection, tableName, byTable.get(tableName), references);
+			connection.commit();
+		} catch (SQLException e) {
+			try {
+				connection.rollback();
+			} catch (SQLException r) {
+				e.addSuppressed(r);
+			}
+			throw e;
+		} finally {
+			connection.setAutoCommit(true);
+		}
+	}
+
+	protected void insertRecords(final Connection connection, final String tableName, final List<Record> records,
+			final Map<Record, String> references) throws SQLException {
+		try (PreparedStatement preparedSQLStmt = connection
+				.prepareStatement(SQL_INSERT_STMT.replace("[[TABLE]]", tableName))) {
+			for (Record record : records) {
+				preparedSQLStmt.setString(1, record.result);
+				preparedSQLStmt.setString(2, references.getOrDefault(record, record.content));
+				preparedSQLStmt.setInt(3, -1);
+				preparedSQLStmt.setString(4, record.prop1);
+				preparedSQLStmt.setString(5, record.prop2);
+				preparedSQLStmt.setString(6, record.op);
+				preparedSQLStmt.setString(7, record.sat);
+				preparedSQLStmt.setLong(8, record.recordTime);
+				preparedSQLStmt.setInt(9, -1);
+				preparedSQLStmt.setString(10, record.srcPath);
+				preparedSQLStmt.setString(11, record.destPath);
+				preparedSQLStmt.setString(12, record.pid);
+				preparedSQLStmt.addBatch();
+			}
+			preparedSQLStmt.executeBatch();
+		}
+	}
+
 	public void dropDatabase(String databaseName) {
 		if (Configuration.IsInDeubbungMode)
 			logger.info("[" + Thread.currentThread().getName() + "] "
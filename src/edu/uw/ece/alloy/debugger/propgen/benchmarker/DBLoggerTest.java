@@ -0,0 +1,100 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @author vajih
+ *
+ */
+public class DBLoggerTest {
+
+	final DBConnectionInfo database = new DBConnectionInfo("localhost", "", "", "a", "table_a");
+
+	final List<List<DBLogger.Record>> transactions = new ArrayList<>();
+
+	class FailingLogger extends DBLogger {
+		FailingLogger() {
+			super(false, new MySQLDBConnectionPool(database));
+		}
+
+		@Override
+		protected void insertRecords(Connection connection, List<Record> records, Map<Record, String> references)
+				throws SQLException {
+			transactions.add(new ArrayList<>(records));
+			if (records.stream().anyMatch(r -> r.result.equals("bad")))
+				throw new SQLException("A bad record.");
+		}
+	}
+
+	DBLogger.Record record(final String result, final String content) {
+		return new DBLogger.Record(database.tablename, result, content, "p", "q", "=>", "S", 0, "src", "dst", "pid");
+	}
+
+	/**
+	 * A connection whose inserts fail with the given SQL state.
+	 */
+	static Connection connection(final String sqlState) {
+		final Object statement = Proxy.newProxyInstance(DBLoggerTest.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+					if (method.getName().equals("executeUpdate") && (args == null || args.length == 0))
+						throw new SQLException("The insert failed.", sqlState);
+					return method.getReturnType().equals(int.class) ? 0 : null;
+				});
+		return (Connection) Proxy.newProxyInstance(DBLoggerTest.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+					if (method.getName().equals("createStatement"))
+						return Proxy.newProxyInstance(DBLoggerTest.class.getClassLoader(),
+								new Class<?>[] { Statement.class },
+								(p, m, a) -> m.getReturnType().equals(int.class) ? 0 : null);
+					if (method.getName().equals("prepareStatement"))
+						return statement;
+					return null;
+				});
+	}
+
+	@Test
+	public void testFailedBatchIsSplitAroundTheBadRecord() throws Exception {
+		final List<DBLogger.Record> records = Arrays.asList(record("r0", "c"), record("r1", "c"), record("bad", "c"),
+				record("r3", "c"), record("r4", "c"));
+		final List<DBLogger.Record> rejected = new ArrayList<>();
+		new FailingLogger().insertResults(null, records, Collections.emptyMap(), true, rejected);
+
+		assertEquals(Arrays.asList(records.get(2)), rejected);
+		final List<DBLogger.Record> committed = new ArrayList<>();
+		for (List<DBLogger.Record> transaction : transactions)
+			if (transaction.stream().noneMatch(r -> r.result.equals("bad")))
+				committed.addAll(transaction);
+		assertEquals(4, committed.size());
+		assertTrue(committed.containsAll(Arrays.asList(records.get(0), records.get(1), records.get(3), records.get(4))));
+	}
+
+	@Test
+	public void testContentStoredByAnotherWriterIsReferenced() throws Exception {
+		final char[] large = new char[DBLogger.ContentDedupSize + 1];
+		Arrays.fill(large, 'x');
+		final DBLogger.Record record = record("r", new String(large));
+
+		// A duplicate hash means the content is already there.
+		final Map<DBLogger.Record, String> references = new FailingLogger().storeContents(connection("23000"),
+				Arrays.asList(record));
+		assertTrue(references.get(record).startsWith(DBLogger.CONTENT_REFERENCE));
+
+		// Any other failure keeps the content in the record.
+		assertTrue(new FailingLogger().storeContents(connection("08S01"), Arrays.asList(record)).isEmpty());
+	}
+
+}
@@ -4,13 +4,16 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,9 +22,11 @@ import edu.mit.csail.sdg.alloy4.Pair;
 import edu.mit.csail.sdg.alloy4compiler.ast.Sig;
 import edu.mit.csail.sdg.alloy4compiler.ast.Sig.Field;
 import edu.uw.ece.alloy.Configuration;
+import edu.uw.ece.alloy.debugger.knowledgebase.ImplicationLattic;
 import edu.uw.ece.alloy.debugger.knowledgebase.PatternToProperty;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.communication.Publisher;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.watchdogs.ThreadToBeMonitored;
+import edu.uw.ece.alloy.util.FingerprintSet;
 import edu.uw.ece.alloy.util.Utils;
 
 public class ExpressionPropertyGenerator implements Runnable, ThreadToBeMonitored {
@@ -44,7 +49,10 @@ public class ExpressionPropertyGenerator implements Runnable, ThreadToBeMonitore
 	/* The expression that is going to be analyzed. */
 	final ExpressionPredicate expressionPredicate;
 
-	final static List<Dependency> dependencies = new LinkedList<Dependency>();
+	final List<Dependency> dependencies = new LinkedList<Dependency>();
+
+	/* coder class and pattern -> priority. The lattices of a coder class do not change. */
+	final static Map<String, Integer> patternPriorities = new ConcurrentHashMap<>();
 
 	/* Converting properties and patterns to param. */
 	final PropertyToAlloyCodeBuilder propertyBuilder;
@@ -54,8 +62,9 @@ public class ExpressionPropertyGenerator implements Runnable, ThreadToBeMonitore
 	Set<String> toBeCheckProperties;
 	// Such checks should be excluded from the generation because for example
 	// the
-	// are generated before.
-	final Set<String> excludedChecks;
+	// are generated before. A generated check is added, so the set is the
+	// history of the session if it is shared.
+	final FingerprintSet excludedChecks;
 
 	/**
 	 * A predicate is made and the information is stored as predicateName,
@@ -95,7 +104,7 @@ public class ExpressionPropertyGenerator implements Runnable, ThreadToBeMonitore
 			PatternToProperty patternToProperty, long alloyProcessingTime) throws Err, IOException {
 
 		this(sessionID, generatedStorage, toBeAnalyzedCode, relationalPropModuleOriginal, temporalPropModuleOriginal,
-				fieldName, propertyToAlloyCode, expression, scope, Collections.emptySet(), Optional.empty(),
+				fieldName, propertyToAlloyCode, expression, scope, new FingerprintSet(), Optional.empty(),
 				dependecyFiles, patternToProperty, alloyProcessingTime);
 	}
 
@@ -111,8 +120,8 @@ public class ExpressionPropertyGenerator implements Runnable, ThreadToBeMonitore
 			List<File> dependecyFiles, PatternToProperty patternToProperty, long alloyProcessingTime) throws Err, IOException {
 
 		this(sessionID, generatedStorage, toBeAnalyzedCode, relationalPropModuleOriginal, temporalPropModuleOriginal,
-				fieldName, propertyToAlloyCode, expression, scope, excludedChecks, Optional.empty(), dependecyFiles,
-				patternToProperty, alloyProcessingTime);
+				fieldName, propertyToAlloyCode, expression, scope, FingerprintSet.of(excludedChecks), Optional.empty(),
+				dependecyFiles, patternToProperty, alloyProcessingTime);
 	}
 
 	public ExpressionPropertyGenerator(final UUID sessionID, final Publisher<AlloyProcessingParam> generatedStorage,
@@ -123,10 +132,22 @@ public class ExpressionPropertyGenerator implements Runnable, ThreadToBeMonitore
 			Set<String> excludedChecks, Set<String> toBeCheckProperties, List<File> dependecyFiles,
 			PatternToProperty patternToProperty, long alloyProcessingTime) throws Err, IOException {
 		this(sessionID, generatedStorage, toBeAnalyzedCode, relationalPropModuleOriginal, temporalPropModuleOriginal,
-				fieldName, propertyToAlloyCode, expression, scope, excludedChecks,
+				fieldName, propertyToAlloyCode, expression, scope, FingerprintSet.of(excludedChecks),
 				Optional.ofNullable(toBeCheckProperties), dependecyFiles, patternToProperty, alloyProcessingTime);
 	}
 
+	public ExpressionPropertyGenerator(final UUID sessionID, final Publisher<AlloyProcessingParam> generatedStorage,
+			File toBeAnalyzedCode, File relationalPropModuleOriginal, File temporalPropModuleOriginal,
+
+			String fieldName, PropertyToAlloyCode propertyToAlloyCode, String expression, String scope,
+
+			Set<String> excludedChecks, Optional<Set<String>> toBeCheckProperties, List<File> dependecyFiles,
+			PatternToProperty patternToProperty, long alloyProcessingTime) throws Err, IOException {
+		this(sessionID, generatedStorage, toBeAnalyzedCode, relationalPropModuleOriginal, temporalPropModuleOriginal,
+				fieldName, propertyToAlloyCode, expression, scope, FingerprintSet.of(excludedChecks),
+				toBeCheckProperties, dependecyFiles, patternToProperty, alloyProcessingTime);
+	}
+
 	/**
 	 * 
 	 * @param sessionID
@@ -141,6 +162,8 @@ public class ExpressionPropertyGenerator implements Runnable, ThreadToBeMonitore
 	 * @param expression
 	 * @param scope
 	 * @param excludedChecks
+	 *            The checks generated before. The generated checks are added
+	 *            to it.
 	 * @param toBeCheckProperties
 	 * @param dependecyFiles
 	 *            Dependency files including relationalPropModuleOriginal,
@@ -153,7 +176,7 @@ public class ExpressionPropertyGenerator implements Runnable, ThreadToBeMonitore
 
 			String fieldName, PropertyToAlloyCode propertyToAlloyCode, String expression, String scope,
 
-			Set<String> excludedChecks, Optional<Set<String>> toBeCheckProperties, List<File> dependecyFiles,
+			FingerprintSet excludedChecks, Optional<Set<String>> toBeCheckProperties, List<File> dependecyFiles,
 			PatternToProperty patternToProperty, long alloyProcessingTime) throws Err, IOException {
 
 		this.sessionID = sessionID;
@@ -190,7 +213,7 @@ public class ExpressionPropertyGenerator implements Runnable, ThreadToBeMonitore
 
 		this.generator = new Thread(this);
 
-		this.excludedChecks = Collections.unmodifiableSet(excludedChecks);
+		this.excludedChecks = excludedChecks;
 
 		// This is initialized here
 		this.patternToProperty = patternToProperty;
@@ -230,6 +253,89 @@ public class ExpressionPropertyGenerator implements Runnable, ThreadToBeMonitore
 		return makeNewOpens() + "\n" + sanitizeTheCurrentCode() + "\n" + newPred;
 	}
 
+	/**
+	 * Generates the AlloyProcessingParams for checking properties of an
+	 * expression lazily. A check is made once the previous one is taken, so
+	 * the consumer decides how fast the checks are generated. A check in the
+	 * excluded checks is skipped.
+	 * 
+	 * @author vajih
+	 *
+	 */
+	class PatternCheckers implements Iterator<AlloyProcessingParam> {
+
+		final Iterator<Map.Entry<Pair<String, String>, String>> propertyCalls;
+		final Set<String> patternNames;
+
+		String pattern;
+		Iterator<PropertyToAlloyCode> coders = Collections.emptyIterator();
+		AlloyProcessingParam next;
+
+		/**
+		 * @param propertyCalls:
+		 *            The property calls are ready to use.
+		 *            (pattern,field)->property. E.g.
+		 *            <acyclic,next>->acyclic[next]. It includes both temporal
+		 *            and relational patterns
+		 * @param patternNames:
+		 *            The pattern names that should be included
+		 */
+		PatternCheckers(Map<Pair<String, String>, String> propertyCalls, Set<String> patternNames) {
+			this.propertyCalls = propertyCalls.entrySet().iterator();
+			this.patternNames = patternNames;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null) {
+				if (coders.hasNext()) {
+					next = toParam(coders.next());
+					continue;
+				}
+				if (!propertyCalls.hasNext())
+					return false;
+				final Map.Entry<Pair<String, String>, String> call = propertyCalls.next();
+				pattern = call.getKey().a;
+				if (!patternNames.contains(pattern)) {
+					if (Configuration.IsInDeubbungMode)
+						logger.warning(Utils.threadName() + " The pattern:" + pattern
+								+ " is not in the pattern list: " + patternNames);
+					continue;
+				}
+				coders = propertyBuilder.createObjects("", "", expressionPredicate.predicateCall, call.getValue(),
+						expressionPredicate.predicateName, pattern, field.label).iterator();
+			}
+			return true;
+		}
+
+		@Override
+		public AlloyProcessingParam next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			final AlloyProcessingParam result = next;
+			next = null;
+			return result;
+		}
+
+		/* null if the check is excluded or cannot be made. */
+		AlloyProcessingParam toParam(final PropertyToAlloyCode alloyCodeGenerator) {
+			if (!excludedChecks.add(alloyCodeGenerator.getPredName())) {
+				logger.log(Level.INFO,
+						Utils.threadName() + "The property was generated and tested before: " + alloyCodeGenerator);
+				return null;
+			}
+			try {
+				return new AlloyProcessingParam(sessionID, prioritize(pattern, alloyCodeGenerator), alloyProcessingTime,
+						alloyCodeGenerator);
+			} catch (Exception e) {
+				logger.log(Level.SEVERE,
+						"[" + Thread.currentThread().getName() + "] " + "Property code generation is failed:", e);
+				e.printStackTrace();
+				return null;
+			}
+		}
+	}
+
 	/**
 	 * generate AlloyProcessingParam for checking properties of an expression
 	 * 
@@ -244,45 +350,48 @@ public class ExpressionPropertyGenerator implements Runnable, ThreadToBeMonitore
 	 */
 	int generatePatternCheckers(Map<Pair<String, String>, String> propertyCalls, Set<String> patternNames,
 			Publisher<AlloyProcessingParam> result) {
-		
-		
-		
 		int numberOfGeneratedParams = 0;
-		for (Pair<String, String> key : propertyCalls.keySet()) {
-			
-			final String pattern = key.a;
-			
-			final String property = propertyCalls.get(key);
-			if (!patternNames.contains(pattern)) {
-				if (Configuration.IsInDeubbungMode)
-					logger.warning(Utils.threadName() + " The pattern:" + pattern + " is not in the pattern list: "
-							+ patternNames);
-				continue;
+		final Iterator<AlloyProcessingParam> checkers = new PatternCheckers(propertyCalls, patternNames);
+		while (checkers.hasNext()) {
+			final AlloyProcessingParam generatedParam = checkers.next();
+			try {
+				result.put(generatedParam);
+				++numberOfGeneratedParams;
+			} catch (InterruptedException e) {
+				logger.log(Level.SEVERE,
+						"[" + Thread.currentThread().getName() + "] " + "Property code generation is interrupted:", e);
+				Thread.currentThread().interrupt();
+				break;
 			}
+		}
+		return numberOfGeneratedParams;
+	}
 
-			for (final PropertyToAlloyCode alloyCodeGenerator : propertyBuilder.createObjects("", "",
-					expressionPredicate.predicateCall, property, expressionPredicate.predicateName, pattern,
-					field.label)) {
-
-				if (excludedChecks.contains(alloyCodeGenerator.getPredName())) {
-					logger.log(Level.INFO,
-							Utils.threadName() + "The property was generated and tested before: " + alloyCodeGenerator);
-					continue;
-				}
+	/**
+	 * The checks on a pattern that is implied by, or implies, more patterns
+	 * prune more of the implication lattices once their results are known. So
+	 * they get a lower priority number and are processed earlier. The priority
+	 * is the number of the patterns in the lattices that the check cannot
+	 * decide.
+	 * 
+	 * @param pattern
+	 * @param coder
+	 * @return
+	 */
+	static int prioritize(final String pattern, final PropertyToAlloyCode coder) {
+		return patternPriorities.computeIfAbsent(coder.getClass().getName() + ":" + pattern, key -> {
+			int undecided = 0;
+			for (ImplicationLattic il : coder.getImplicationLattices().orElse(Collections.emptyList())) {
 				try {
-					final AlloyProcessingParam generatedParam = new AlloyProcessingParam(sessionID, 0, alloyProcessingTime,
-							alloyCodeGenerator);
-					result.put(generatedParam);
-					++numberOfGeneratedParams;
-				} catch (Exception e) {
-					logger.log(Level.SEVERE,
-							"[" + Thread.currentThread().getName() + "] " + "Property code generation is failed:", e);
-					e.printStackTrace();
-					continue;
+					undecided += il.getAllPatterns().size();
+					if (il.hasPattern(pattern))
+						undecided -= il.getAllImpliedProperties(pattern).size() + il.getAllRevImpliedProperties(pattern).size();
+				} catch (Err e) {
+					logger.log(Level.WARNING, Utils.threadName() + "The pattern cannot be prioritized: " + pattern, e);
 				}
 			}
-		}
-		return numberOfGeneratedParams;
+			return Math.max(undecided, 0);
+		});
 	}
 
 	/**
@@ -295,6 +404,16 @@ public class ExpressionPropertyGenerator implements Runnable, ThreadToBeMonitore
 		return generatePatternCheckers(this.toBeCheckProperties, this.generatedStorage);
 	}
 
+	/**
+	 * The checks of the properties to be checked, generated once they are
+	 * pulled. Nothing is put in the generated storage.
+	 * 
+	 * @return
+	 */
+	public Iterator<AlloyProcessingParam> iterator() {
+		return new PatternCheckers(patternToProperty.propertyCalls, this.toBeCheckProperties);
+	}
+
 	/**
 	 * generate AlloyProcessingParam for relational patterns
 	 * 
@@ -459,12 +578,27 @@ public class ExpressionPropertyGenerator implements Runnable, ThreadToBeMonitore
 
 		public ExpressionPropertyGenerator createWithHistory(final Publisher<AlloyProcessingParam> generatedStorage,
 				final Set<String> toBeCheckProperties, Set<String> excludedChecks) throws Err, IOException {
+			return createWithHistory(generatedStorage, toBeCheckProperties, FingerprintSet.of(excludedChecks));
+		}
+
+		/**
+		 * The generated checks are added to the excluded checks, so the
+		 * generators sharing it do not generate a check twice.
+		 */
+		public ExpressionPropertyGenerator createWithHistory(final Publisher<AlloyProcessingParam> generatedStorage,
+				final Set<String> toBeCheckProperties, FingerprintSet excludedChecks) throws Err, IOException {
 
 			return new ExpressionPropertyGenerator(sessionID, generatedStorage, toBeAnalyzedCode,
 					relationalPropModuleOriginal, temporalPropModuleOriginal, fieldName,
-					propertyToAlloyCode.createItself(), expression, scope, excludedChecks, toBeCheckProperties,
-					dependecyFiles, getPatterToProperty(toBeAnalyzedCode, relationalPropModuleOriginal,
-							temporalPropModuleOriginal, fieldName), alloyProcessingTime);
+					propertyToAlloyCode.createItself(), expression, scope, excludedChecks,
+					Optional.ofNullable(toBeCheckProperties), dependecyFiles, getPatterToProperty(toBeAnalyzedCode,
+							relationalPropModuleOriginal, temporalPropModuleOriginal, fieldName),
+					alloyProcessingTime);
+		}
+
+		public ExpressionPropertyGenerator createWithHistory(final Publisher<AlloyProcessingParam> generatedStorage,
+				FingerprintSet excludedChecks) throws Err, IOException {
+			return createWithHistory(generatedStorage, null, excludedChecks);
 		}
 	}
 }
@@ -65,15 +65,18 @@ public class InconExpressionToAlloyCode extends PropertyToAlloyCode {
 	protected String generateAlloyCode() {
 		String source = "";
 
-		source += generatePrepend();
-		source += '\n' + generatePredicateBody(predBodyA);
-		source += '\n' + generatePredicateBody(predBodyB);
+		source += generateWorldCode();
 		source += '\n' + commandStatement(predCallA, "");
 		source += scope;
 
 		return source;
 	}
 
+	@Override
+	public String generateCommandFormula() {
+		return commandFormula(predCallA, "");
+	}
+
 	@Override
 	public boolean isSymmetric() {
 		return true;
@@ -57,13 +57,10 @@ public class InconPropertyToAlloyCode extends PropertyToAlloyCode {
 		return "assert";
 	}
 
-	String commandStatement(final String predCallA, final String predCallB) {
-		
-		final String block = commandKeyWordBody() + " " + COMMAND_BLOCK_NAME
-				+ " {\n" + " (  some " + field + " implies not (" + predCallA + " "
-				+ commandOperator() + " " + predCallB + "))" + "\n}\n";
-
-		return block + commandKeyword() + " " + COMMAND_BLOCK_NAME;
+	@Override
+	String commandFormula(final String predCallA, final String predCallB) {
+		return " (  some " + field + " implies not (" + predCallA + " "
+				+ commandOperator() + " " + predCallB + "))";
 	}
 
 	@Override
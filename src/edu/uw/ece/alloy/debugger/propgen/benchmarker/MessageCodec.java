@@ -0,0 +1,473 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import edu.uw.ece.alloy.Compressor;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.agent.ProcessedResult.Status;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.RemoteProcess;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyProcessedResult;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyRequestMessage;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyResponseMessage;
+
+/**
+ * The binary format of the messages sent between the Feeder and the agents.
+ * Every payload starts with the format version and the kind of the message.
+ * The Alloy requests and responses, which are most of the traffic, are written
+ * field by field. Any other message is written with the Java serialization.
+ *
+ * The strings are interned per connection. The first time a string is sent, it
+ * is written in full and gets an id on both sides. Afterwards, only the id is
+ * sent. So, the predicate bodies, headers and dependencies are shipped once per
+ * connection. An Encoder and a Decoder hold the dictionary of one direction of
+ * one connection and the payloads have to be decoded in the order they are
+ * encoded.
+ *
+ * @author vajih
+ *
+ */
+public class MessageCodec {
+
+	public final static byte Version = 1;
+
+	/* The kinds of the payloads */
+	final static byte JavaSerialized = 0;
+	final static byte AlloyRequest = 1;
+	final static byte AlloyResponse = 2;
+
+	/* The string references */
+	final static int NullString = 0;
+	final static int LiteralString = 1;
+	final static int DefinedString = 2;
+	final static int FirstStringId = 3;
+
+	/*
+	 * The strings beyond this size are sent as literals, so a long session
+	 * cannot grow the dictionary without a bound.
+	 */
+	final static int MaxDictionarySize = 1 << 16;
+
+	/* The coders and params that can be made again from their fields. */
+	final static Map<String, PropertyToAlloyCode> Coders = new HashMap<>();
+	final static Map<String, AlloyProcessingParam> Params = new HashMap<>();
+
+	static {
+		for (PropertyToAlloyCode coder : new PropertyToAlloyCode[] {
+				IfPropertyToAlloyCode.EMPTY_CONVERTOR,
+				IffPropertyToAlloyCode.EMPTY_CONVERTOR,
+				AndPropertyToAlloyCode.EMPTY_CONVERTOR,
+				VacPropertyToAlloyCode.EMPTY_CONVERTOR,
+				InconPropertyToAlloyCode.EMPTY_CONVERTOR,
+				InconExpressionToAlloyCode.EMPTY_CONVERTOR })
+			Coders.put(coder.getClass().getName(), coder);
+		for (AlloyProcessingParam param : new AlloyProcessingParam[] {
+				AlloyProcessingParam.EMPTY_PARAM,
+				AlloyProcessingParamLazy.EMPTY_PARAM })
+			Params.put(param.getClass().getName(), param);
+	}
+
+	/**
+	 * Encodes the messages sent on one connection.
+	 */
+	public static class Encoder {
+
+		private final Map<String, Integer> dictionary = new HashMap<>();
+		/* The strings defined by the message being encoded. */
+		private final List<String> defined = new ArrayList<>();
+		/* The largest payload, in bytes. */
+		private final int maxSize;
+
+		public Encoder(final int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		public Encoder() {
+			this(Integer.MAX_VALUE);
+		}
+
+		/**
+		 * Encodes the message. If the encoding fails or the payload is larger
+		 * than maxSize, the strings defined by the message are forgotten, so the
+		 * dictionary stays in sync with the decoder that never sees it.
+		 *
+		 * @param message
+		 * @return The payload to be sent.
+		 * @throws IOException
+		 */
+		public byte[] encode(final Serializable message) throws IOException {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(bytes);
+			defined.clear();
+			try {
+				out.writeByte(Version);
+				if (message instanceof AlloyRequestMessage
+						&& isEncodable((AlloyRequestMessage) message)) {
+					out.writeByte(AlloyRequest);
+					writeRequest(out, (AlloyRequestMessage) message);
+				} else if (message instanceof AlloyResponseMessage
+						&& isEncodable((AlloyResponseMessage) message)) {
+					out.writeByte(AlloyResponse);
+					writeResponse(out, (AlloyResponseMessage) message);
+				} else {
+					out.writeByte(JavaSerialized);
+					out.flush();
+					final ObjectOutputStream oos = new ObjectOutputStream(bytes);
+					oos.writeObject(message);
+					oos.flush();
+				}
+				out.flush();
+				if (bytes.size() > maxSize)
+					throw new IOException("The message of " + bytes.size()
+							+ " bytes is larger than a frame.");
+			} catch (IOException | RuntimeException e) {
+				for (String string : defined)
+					dictionary.remove(string);
+				throw e;
+			} finally {
+				defined.clear();
+			}
+			return bytes.toByteArray();
+		}
+
+		boolean isEncodable(final AlloyRequestMessage message) {
+			return message.getClass() == AlloyRequestMessage.class
+					&& isEncodable(message.getProcessingParam());
+		}
+
+		boolean isEncodable(final AlloyResponseMessage message) {
+			return message.getClass() == AlloyResponseMessage.class
+					&& message.getResult() != null
+					&& message.getResult().getClass() == AlloyProcessedResult.class
+					&& isEncodable(message.getResult().getParam());
+		}
+
+		boolean isEncodable(final AlloyProcessingParam param) {
+			if (param == null || param.priority == null || param.timeout == null
+					|| param.alloyCoder == null || param.dBConnectionInfo == null
+					|| param.dBConnectionInfo.getClass() != DBConnectionInfo.class)
+				return false;
+			if (!Params.containsKey(param.getClass().getName())
+					|| !Coders.containsKey(param.alloyCoder.getClass().getName()))
+				return false;
+			for (Dependency dependency : param.alloyCoder.dependencies)
+				if (dependency.getClass() != Dependency.class)
+					return false;
+			return true;
+		}
+
+		void writeRequest(final DataOutputStream out,
+				final AlloyRequestMessage message) throws IOException {
+			writeProcess(out, message.process);
+			out.writeLong(message.creationTime);
+			writeParam(out, message.getProcessingParam());
+		}
+
+		void writeResponse(final DataOutputStream out,
+				final AlloyResponseMessage message) throws IOException {
+			final AlloyProcessedResult result = message.getResult();
+			writeProcess(out, message.process);
+			out.writeLong(message.creationTime);
+			writeParam(out, result.getParam());
+			writeVarInt(out, result.status.ordinal());
+			out.writeLong(result.clauses);
+			out.writeLong(result.evalInsts);
+			out.writeLong(result.trasnalationTime);
+			out.writeLong(result.totalVaraibles);
+			out.writeLong(result.solveTime);
+			out.writeLong(result.evalTime);
+			out.writeInt(result.sat);
+		}
+
+		void writeProcess(final DataOutputStream out, final RemoteProcess process)
+				throws IOException {
+			out.writeBoolean(process != null && process.getAddress() != null);
+			if (process == null || process.getAddress() == null)
+				return;
+			writeString(out, process.getAddress().getHostString());
+			writeVarInt(out, process.getAddress().getPort());
+		}
+
+		void writeParam(final DataOutputStream out,
+				final AlloyProcessingParam param) throws IOException {
+			writeString(out, param.getClass().getName());
+			out.writeInt(param.priority);
+			out.writeLong(param.timeout);
+			writeUUID(out, param.analyzingSessionID);
+			writeFile(out, param.tmpLocalDirectory);
+			writeCoder(out, param.alloyCoder);
+			final DBConnectionInfo info = param.dBConnectionInfo;
+			writeString(out, info.address);
+			writeString(out, info.username);
+			writeString(out, info.password);
+			writeString(out, info.database);
+			writeString(out, info.tablename);
+		}
+
+		void writeCoder(final DataOutputStream out,
+				final PropertyToAlloyCode coder) throws IOException {
+			writeString(out, coder.getClass().getName());
+			writeString(out, coder.predBodyA);
+			writeString(out, coder.predBodyB);
+			writeString(out, coder.predCallA);
+			writeString(out, coder.predCallB);
+			writeString(out, coder.predNameA);
+			writeString(out, coder.predNameB);
+			writeString(out, coder.header);
+			writeString(out, coder.scope);
+			writeString(out, coder.field);
+			writeVarInt(out, coder.dependencies.size());
+			for (Dependency dependency : coder.dependencies) {
+				writeFile(out, dependency.path);
+				writeString(out, dependency.content);
+				writeBytes(out, dependency.pathCompressed);
+				writeBytes(out, dependency.contentCompressed);
+				writeVarInt(out, dependency.compressedStatus.ordinal());
+			}
+		}
+
+		void writeUUID(final DataOutputStream out, final UUID uuid)
+				throws IOException {
+			out.writeBoolean(uuid != null);
+			if (uuid == null)
+				return;
+			out.writeLong(uuid.getMostSignificantBits());
+			out.writeLong(uuid.getLeastSignificantBits());
+		}
+
+		void writeFile(final DataOutputStream out, final File file)
+				throws IOException {
+			writeString(out, file == null ? null : file.getPath());
+		}
+
+		void writeBytes(final DataOutputStream out, final byte[] bytes)
+				throws IOException {
+			writeVarInt(out, bytes.length);
+			out.write(bytes);
+		}
+
+		void writeString(final DataOutputStream out, final String string)
+				throws IOException {
+			if (string == null) {
+				writeVarInt(out, NullString);
+				return;
+			}
+			final Integer id = dictionary.get(string);
+			if (id != null) {
+				writeVarInt(out, FirstStringId + id);
+				return;
+			}
+			if (dictionary.size() < MaxDictionarySize) {
+				dictionary.put(string, dictionary.size());
+				defined.add(string);
+				writeVarInt(out, DefinedString);
+			} else {
+				writeVarInt(out, LiteralString);
+			}
+			writeBytes(out, string.getBytes(StandardCharsets.UTF_8));
+		}
+
+	}
+
+	/**
+	 * Decodes the messages received on one connection.
+	 */
+	public static class Decoder {
+
+		private final List<String> dictionary = new ArrayList<>();
+		private final Map<String, RemoteProcess> processes = new HashMap<>();
+
+		/**
+		 * Decodes a payload made by the Encoder of the other side of the
+		 * connection. Once a payload fails to be decoded, the dictionary cannot
+		 * be trusted and the connection has to be dropped.
+		 *
+		 * @param payload
+		 * @return
+		 * @throws IOException
+		 * @throws ClassNotFoundException
+		 */
+		public Object decode(final byte[] payload)
+				throws IOException, ClassNotFoundException {
+			final ByteArrayInputStream bytes = new ByteArrayInputStream(payload);
+			final DataInputStream in = new DataInputStream(bytes);
+			final byte version = in.readByte();
+			if (version != Version)
+				throw new IOException("Unknown message format version: " + version);
+			final byte kind = in.readByte();
+			switch (kind) {
+			case AlloyRequest:
+				return readRequest(in);
+			case AlloyResponse:
+				return readResponse(in);
+			case JavaSerialized:
+				try (ObjectInputStream ois = new ObjectInputStream(bytes)) {
+					return ois.readObject();
+				}
+			default:
+				throw new IOException("Unknown message kind: " + kind);
+			}
+		}
+
+		AlloyRequestMessage readRequest(final DataInputStream in)
+				throws IOException {
+			final RemoteProcess process = readProcess(in);
+			final long creationTime = in.readLong();
+			return new AlloyRequestMessage(process, creationTime, readParam(in));
+		}
+
+		AlloyResponseMessage readResponse(final DataInputStream in)
+				throws IOException {
+			final RemoteProcess process = readProcess(in);
+			final long creationTime = in.readLong();
+			final AlloyProcessingParam param = readParam(in);
+			final Status status = Status.values()[readVarInt(in)];
+			final long clauses = in.readLong();
+			final long evalInsts = in.readLong();
+			final long trasnalationTime = in.readLong();
+			final long totalVaraibles = in.readLong();
+			final long solveTime = in.readLong();
+			final long evalTime = in.readLong();
+			final int sat = in.readInt();
+			return new AlloyResponseMessage(process, creationTime,
+					new AlloyProcessedResult(param, status, clauses, evalInsts,
+							trasnalationTime, totalVaraibles, solveTime, evalTime, sat));
+		}
+
+		RemoteProcess readProcess(final DataInputStream in) throws IOException {
+			if (!in.readBoolean())
+				return null;
+			final String host = readString(in);
+			final int port = readVarInt(in);
+			// Resolve the address once per connection.
+			return processes.computeIfAbsent(host + ":" + port,
+					key -> new RemoteProcess(new InetSocketAddress(host, port)));
+		}
+
+		AlloyProcessingParam readParam(final DataInputStream in)
+				throws IOException {
+			final AlloyProcessingParam prototype = lookUp(Params, readString(in));
+			final int priority = in.readInt();
+			final long timeout = in.readLong();
+			final UUID analyzingSessionID = readUUID(in);
+			final File tmpLocalDirectory = readFile(in);
+			final PropertyToAlloyCode alloyCoder = readCoder(in);
+			final DBConnectionInfo info = new DBConnectionInfo(readString(in),
+					readString(in), readString(in), readString(in), readString(in));
+			return prototype.createIt(analyzingSessionID, alloyCoder, priority,
+					timeout, tmpLocalDirectory, info);
+		}
+
+		PropertyToAlloyCode readCoder(final DataInputStream in)
+				throws IOException {
+			final PropertyToAlloyCode prototype = lookUp(Coders, readString(in));
+			final String predBodyA = readString(in);
+			final String predBodyB = readString(in);
+			final String predCallA = readString(in);
+			final String predCallB = readString(in);
+			final String predNameA = readString(in);
+			final String predNameB = readString(in);
+			final String header = readString(in);
+			final String scope = readString(in);
+			final String field = readString(in);
+			final List<Dependency> dependencies = new LinkedList<>();
+			for (int i = readVarInt(in); i > 0; --i) {
+				final File path = readFile(in);
+				final String content = readString(in);
+				final byte[] pathCompressed = readBytes(in);
+				final byte[] contentCompressed = readBytes(in);
+				final Compressor.STATE compressedStatus = Compressor.STATE
+						.values()[readVarInt(in)];
+				dependencies.add(new Dependency(path, content, pathCompressed,
+						contentCompressed, compressedStatus));
+			}
+			return prototype.createIt(predBodyA, predBodyB, predCallA, predCallB,
+					predNameA, predNameB, dependencies,
+					header, scope, field);
+		}
+
+		UUID readUUID(final DataInputStream in) throws IOException {
+			if (!in.readBoolean())
+				return null;
+			final long most = in.readLong();
+			return new UUID(most, in.readLong());
+		}
+
+		File readFile(final DataInputStream in) throws IOException {
+			final String path = readString(in);
+			return path == null ? null : new File(path);
+		}
+
+		byte[] readBytes(final DataInputStream in) throws IOException {
+			final byte[] bytes = new byte[readVarInt(in)];
+			in.readFully(bytes);
+			return bytes;
+		}
+
+		String readString(final DataInputStream in) throws IOException {
+			final int reference = readVarInt(in);
+			switch (reference) {
+			case NullString:
+				return null;
+			case LiteralString:
+				return new String(readBytes(in), StandardCharsets.UTF_8);
+			case DefinedString:
+				final String string = new String(readBytes(in),
+						StandardCharsets.UTF_8);
+				dictionary.add(string);
+				return string;
+			default:
+				final int id = reference - FirstStringId;
+				if (id >= dictionary.size())
+					throw new IOException("Unknown string id: " + id);
+				return dictionary.get(id);
+			}
+		}
+
+		<T> T lookUp(final Map<String, T> prototypes, final String className)
+				throws IOException {
+			final T prototype = prototypes.get(className);
+			if (prototype == null)
+				throw new IOException("Cannot decode an instance of: " + className);
+			return prototype;
+		}
+
+	}
+
+	static void writeVarInt(final DataOutputStream out, int value)
+			throws IOException {
+		if (value < 0)
+			throw new IOException("A negative size or id: " + value);
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	static int readVarInt(final DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			final int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("A malformed variable length int.");
+	}
+
+}
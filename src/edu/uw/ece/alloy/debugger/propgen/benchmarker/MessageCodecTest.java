@@ -0,0 +1,128 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.agent.ProcessedResult.Status;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.RemoteProcess;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyDiedMessage;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyProcessedResult;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyRequestMessage;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyResponseMessage;
+
+/**
+ * @author vajih
+ *
+ */
+public class MessageCodecTest {
+
+	final RemoteProcess process = new RemoteProcess(
+			new InetSocketAddress("localhost", 45673));
+	final String header = "sig A{r: set A}\n";
+
+	MessageCodec.Encoder encoder;
+	MessageCodec.Decoder decoder;
+
+	@Before
+	public void setUp() {
+		encoder = new MessageCodec.Encoder();
+		decoder = new MessageCodec.Decoder();
+	}
+
+	AlloyProcessingParam param(final String nameA, final String nameB) {
+		final ArrayList<Dependency> dependencies = new ArrayList<>();
+		dependencies.add(new Dependency(new File("relational_props.als"),
+				"module relational_props"));
+		final PropertyToAlloyCode coder = IfPropertyToAlloyCode.EMPTY_CONVERTOR
+				.createIt("pred " + nameA + "[r: A->A]{}",
+						"pred " + nameB + "[r: A->A]{}", nameA + "[r]", nameB + "[r]",
+						nameA, nameB, dependencies, header, "for 3", "r");
+		return new AlloyProcessingParam(UUID.randomUUID(), 3, 1000, coder)
+				.changeTmpLocalDirectory(new File("tmp"));
+	}
+
+	@Test
+	public void testRequestRoundTrip() throws Exception {
+		final AlloyRequestMessage sent = new AlloyRequestMessage(process, 42,
+				param("reflexive", "symmetric"));
+
+		final AlloyRequestMessage received = (AlloyRequestMessage) decoder
+				.decode(encoder.encode(sent));
+
+		assertEquals(sent, received);
+		assertEquals(sent.getProcessingParam().getAlloyCoder().get().getClass(),
+				received.getProcessingParam().getAlloyCoder().get().getClass());
+		assertEquals(sent.getProcessingParam().getTimeout(),
+				received.getProcessingParam().getTimeout());
+	}
+
+	@Test
+	public void testResponseRoundTrip() throws Exception {
+		final AlloyResponseMessage sent = new AlloyResponseMessage(process, 42,
+				new AlloyProcessedResult(param("reflexive", "symmetric"),
+						Status.TIMEOUT, 1, 2, 3, 4, 5, 6, -1));
+
+		final AlloyResponseMessage received = (AlloyResponseMessage) decoder
+				.decode(encoder.encode(sent));
+
+		assertEquals(sent, received);
+		assertEquals(sent.getResult().getParam(), received.getResult().getParam());
+		assertEquals(sent.getResult().status, received.getResult().status);
+		assertEquals(sent.getResult().asRecord(), received.getResult().asRecord());
+	}
+
+	@Test
+	public void testStringsAreSentOnce() throws Exception {
+		final byte[] first = encoder.encode(
+				new AlloyRequestMessage(process, 1, param("reflexive", "symmetric")));
+		final byte[] second = encoder.encode(
+				new AlloyRequestMessage(process, 2, param("symmetric", "reflexive")));
+
+		decoder.decode(first);
+		assertEquals(2, ((AlloyRequestMessage) decoder.decode(second)).creationTime);
+		assertTrue(second.length * 2 < first.length);
+	}
+
+	@Test
+	public void testRejectedMessageDefinesNoString() throws Exception {
+		final AlloyRequestMessage small = new AlloyRequestMessage(process, 1,
+				param("reflexive", "symmetric"));
+		encoder = new MessageCodec.Encoder(
+				new MessageCodec.Encoder().encode(small).length);
+		try {
+			encoder.encode(new AlloyRequestMessage(process, 2,
+					param("transitive", "irreflexive")));
+			fail("A message larger than a frame is encoded.");
+		} catch (IOException e) {
+			// It is rejected.
+		}
+		// The next messages do not refer to the strings of the rejected one.
+		assertEquals(1, ((AlloyRequestMessage) decoder.decode(encoder.encode(small))).creationTime);
+		assertEquals(3, ((AlloyRequestMessage) decoder.decode(encoder.encode(new AlloyRequestMessage(
+				process, 3, param("transitive", "reflexive"))))).creationTime);
+	}
+
+	@Test
+	public void testOtherMessagesAreSerialized() throws Exception {
+		final AlloyDiedMessage sent = new AlloyDiedMessage(process, 42);
+		assertEquals(sent, decoder.decode(encoder.encode(sent)));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownVersionIsRejected() throws Exception {
+		final byte[] payload = encoder.encode(new AlloyDiedMessage(process, 42));
+		payload[0] = MessageCodec.Version + 1;
+		decoder.decode(payload);
+	}
+
+}
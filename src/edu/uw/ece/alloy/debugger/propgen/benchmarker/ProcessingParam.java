@@ -62,13 +62,7 @@ public abstract class ProcessingParam
 		if (o == null)
 			return -1;
 
-		if (o.priority == this.priority)
-			return 0;
-
-		if (o.priority < this.priority)
-			return 1;
-
-		return -1;
+		return Integer.compare(getPriority().orElse(0), o.getPriority().orElse(0));
 	}
 
 	public abstract ProcessingParam createItself();
@@ -1,16 +1,19 @@
 package edu.uw.ece.alloy.debugger.propgen.benchmarker;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import edu.uw.ece.alloy.Compressor;
 import edu.uw.ece.alloy.debugger.knowledgebase.BinaryImplicationLatticDeclarative;
-import edu.uw.ece.alloy.debugger.knowledgebase.BinaryImplicationLatticImperative;
 import edu.uw.ece.alloy.debugger.knowledgebase.ImplicationLattic;
-import edu.uw.ece.alloy.debugger.knowledgebase.TernaryImplicationLatticImperative;
+import edu.uw.ece.alloy.debugger.knowledgebase.KnowledgeBaseSnapshot;
+import edu.uw.ece.alloy.util.Utils;
 
 public class PropertyToAlloyCode implements Serializable {
 
@@ -29,7 +32,14 @@ public class PropertyToAlloyCode implements Serializable {
 
 	public final List<Dependency> dependencies;
 
-	final transient List<ImplicationLattic> implications;
+	/*
+	 * Loading the lattices reads the pattern files, so they are made on the first
+	 * use. It also makes them available after the object is received.
+	 */
+	transient List<ImplicationLattic> implications;
+
+	/* Computed on the first use. */
+	transient String modelFingerprint;
 
 	protected PropertyToAlloyCode(String predBodyA, String predBodyB,
 			String predCallA, String predCallB, String predNameA, String predNameB,
@@ -48,12 +58,6 @@ public class PropertyToAlloyCode implements Serializable {
 		this.header = header;
 		this.scope = scope;
 		this.field = field;
-		implications = new LinkedList<>();
-		/* The BinaryImplicationLattic and TernaryImplicationLAttice are not
-		* connected to the given relational and temporal patterns stored in a request message
-		*/
-		implications.add(new BinaryImplicationLatticImperative());
-		implications.add(new TernaryImplicationLatticImperative());
 	}
 
 	public PropertyToAlloyCode() {
@@ -82,15 +86,95 @@ public class PropertyToAlloyCode implements Serializable {
 
 		String source = "";
 
-		source += generatePrepend();
-		source += '\n' + generatePredicateBody(predBodyA);
-		source += '\n' + generatePredicateBody(predBodyB);
+		source += generateWorldCode();
 		source += '\n' + commandStatement(predCallA, predCallB);
 		source += " " + scope;
 
 		return source;
 	}
 
+	/**
+	 * The generated source without the command block. The world part is shared
+	 * by all the checks generated from the same header, so it can be parsed
+	 * once and cached.
+	 * 
+	 * @return
+	 */
+	public String generateWorldCode() {
+
+		String source = "";
+
+		source += generatePrepend();
+		for (String body : generatePredicateBodies())
+			source += '\n' + body;
+
+		return source;
+	}
+
+	/**
+	 * One world for a batch of checks sharing the same prepend, i.e. the prepend
+	 * followed by the distinct predicate bodies of all the checks.
+	 * 
+	 * @param coders
+	 *          The coders with the same batch key.
+	 * @return
+	 */
+	public static String generateWorldCode(
+			final List<PropertyToAlloyCode> coders) {
+
+		final Set<String> bodies = new LinkedHashSet<>();
+		for (PropertyToAlloyCode coder : coders)
+			bodies.addAll(coder.generatePredicateBodies());
+
+		String source = "";
+
+		source += coders.get(0).generatePrepend();
+		for (String body : bodies)
+			source += '\n' + body;
+
+		return source;
+	}
+
+	/**
+	 * The coders with the same batch key can be checked together over the world
+	 * made by generateWorldCode(List).
+	 * 
+	 * @return
+	 */
+	public String batchKey() {
+		return scope + '\0' + generatePrepend();
+	}
+
+	/**
+	 * The predicate bodies that the command formula calls.
+	 * 
+	 * @return
+	 */
+	protected List<String> generatePredicateBodies() {
+		return Arrays.asList(generatePredicateBody(predBodyA),
+				generatePredicateBody(predBodyB));
+	}
+
+	/**
+	 * The formula inside the command block. It is resolved against the world
+	 * generated by generateWorldCode.
+	 * 
+	 * @return
+	 */
+	public String generateCommandFormula() {
+		return commandFormula(predCallA, predCallB);
+	}
+
+	/**
+	 * Whether the command block is checked, i.e. its formula has to be negated
+	 * to find a counterexample.
+	 * 
+	 * @return
+	 */
+	public boolean isCheckCommand() {
+		return commandKeyword().equals("check");
+	}
+
 	protected String generatePrepend() {
 
 		return header;
@@ -114,11 +198,14 @@ public class PropertyToAlloyCode implements Serializable {
 		throw new RuntimeException("Invalid call!");
 	}
 
+	String commandFormula(final String predCallA, final String predCallB) {
+		return " (" + predCallA + " " + commandOperator() + " " + predCallB + ")";
+	}
+
 	String commandStatement(final String predCallA, final String predCallB) {
 
 		final String block = commandKeyWordBody() + " " + COMMAND_BLOCK_NAME
-				+ " {\n" + " (" + predCallA + " " + commandOperator() + " " + predCallB
-				+ ")" + "\n}\n";
+				+ " {\n" + commandFormula(predCallA, predCallB) + "\n}\n";
 
 		return block + commandKeyword() + " " + COMMAND_BLOCK_NAME;
 	}
@@ -247,7 +334,15 @@ public class PropertyToAlloyCode implements Serializable {
 		return isEqual(other);
 	}
 
-	protected Optional<List<ImplicationLattic>> getImplicationLattices() {
+	protected synchronized Optional<List<ImplicationLattic>> getImplicationLattices() {
+		if (implications == null) {
+			implications = new LinkedList<>();
+			/* The BinaryImplicationLattic and TernaryImplicationLAttice are not
+			* connected to the given relational and temporal patterns stored in a request message
+			*/
+			implications.add(KnowledgeBaseSnapshot.getStructuralImplication());
+			implications.add(KnowledgeBaseSnapshot.getTemporalImplication());
+		}
 		return Optional.ofNullable(implications);
 	}
 
@@ -296,6 +391,24 @@ public class PropertyToAlloyCode implements Serializable {
 		return Collections.unmodifiableList(dependencies);
 	}
 
+	/**
+	 * A hash of the model the check runs against: the header, the predicate
+	 * bodies and the dependencies. Two checks of the same patterns have the
+	 * same outcome if their fingerprints are equal.
+	 * 
+	 * @return
+	 */
+	public String getModelFingerprint() {
+		if (modelFingerprint == null) {
+			final StringBuilder model = new StringBuilder();
+			model.append(header).append('\n').append(predBodyA).append('\n').append(predBodyB);
+			for (Dependency dependency : dependencies)
+				model.append('\n').append(dependency.path.getName()).append('\n').append(dependency.content);
+			modelFingerprint = Utils.digest(model.toString());
+		}
+		return modelFingerprint;
+	}
+
 	/**
 	 * What would be the desired sat answer for the property to be checked. sat ==
 	 * 1 SAT sat == -1 UnSAT sat == 0 Unknown
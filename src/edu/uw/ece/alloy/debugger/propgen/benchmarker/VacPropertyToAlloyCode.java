@@ -1,5 +1,6 @@
 package edu.uw.ece.alloy.debugger.propgen.benchmarker;
 
+import java.util.Collections;
 import java.util.List;
 
 public class VacPropertyToAlloyCode extends PropertyToAlloyCode {
@@ -49,17 +50,26 @@ public class VacPropertyToAlloyCode extends PropertyToAlloyCode {
 	protected String generateAlloyCode() {
 		String source = "";
 
-		source += generatePrepend();
-		source += '\n' + generatePredicateBody(predBodyA);
+		source += generateWorldCode();
 		source += '\n' + commandStatement(predCallA, predCallB);
 		source += scope;
 
 		return source;
 	}
 
+	@Override
+	protected List<String> generatePredicateBodies() {
+		return Collections.singletonList(generatePredicateBody(predBodyA));
+	}
+
+	@Override
+	String commandFormula(final String predCallA, final String predCallB) {
+		return " some r " + commandOperator() + " " + predCallA;
+	}
+
 	@Override
 	String commandStatement(final String predCallA, final String predCallB) {
-		return commandKeyword() + "{ some r " + commandOperator() + " " + predCallA
+		return commandKeyword() + "{" + commandFormula(predCallA, predCallB)
 				+ "}";
 	}
 
@@ -3,13 +3,22 @@ package edu.uw.ece.alloy.debugger.propgen.benchmarker.agent;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import edu.mit.csail.sdg.alloy4.A4Reporter;
+import edu.mit.csail.sdg.alloy4.Cancellation;
 import edu.mit.csail.sdg.alloy4.Err;
+import edu.mit.csail.sdg.alloy4compiler.translator.A4BatchSolution;
 import edu.uw.ece.alloy.Configuration;
 import edu.uw.ece.alloy.MyReporter;
 import edu.uw.ece.alloy.debugger.exec.A4CommandExecuter;
@@ -30,9 +39,29 @@ public class AlloyExecuter implements Runnable, ThreadToBeMonitored {
 	// Configurations
 	final static public int MaxInterrupt = Integer.parseInt(Configuration.getProp("max_alloy_executer_intterupts"));
 	final static public int MaxRetryOnFail = Integer.parseInt(Configuration.getProp("self_monitor_retry_attempt"));
+	/* The parsed worlds are reused and only the command block is parsed per check. */
+	final static public boolean UseWorldCache = Boolean.valueOf(Configuration.getProp("is_world_cache_enable_on_agent"));
+	/* The checks sharing a world and scope are translated once and solved under assumptions. */
+	final static public int BatchSize = Integer.parseInt(Configuration.getProp("alloy_batch_size"));
+	final static public boolean UseBatch = BatchSize > 1 && (UseWorldCache || AlloyProcessingParam.memoryOnly);
+
+	/*
+	 * One timer for all the executers. A timed out check is cancelled, so its
+	 * translation or SAT search stops and the thread takes the next check.
+	 */
+	final static ScheduledThreadPoolExecutor timeoutTimer = new ScheduledThreadPoolExecutor(1, r -> {
+		final Thread timer = new Thread(r, "AlloyExecuter-timeout");
+		timer.setDaemon(true);
+		return timer;
+	});
+
+	static {
+		timeoutTimer.setRemoveOnCancelPolicy(true);
+	}
 
 	private Thread executerThread = new Thread(this);
-	Thread timeoutThread;
+	/* The cancellation of the check being processed. */
+	protected volatile Cancellation cancellation = new Cancellation();
 
 	protected Subscriber<AlloyProcessingParam> queue;
 	private final List<PostProcess> postProcesses = Collections.synchronizedList(new LinkedList<PostProcess>());
@@ -148,6 +177,31 @@ public class AlloyExecuter implements Runnable, ThreadToBeMonitored {
 		return queue.size();
 	}
 
+	/**
+	 * Starts the cancellation of a check that is processed for the given
+	 * timeout.
+	 * 
+	 * @return the timer that has to be cancelled once the check is processed.
+	 */
+	protected ScheduledFuture<?> startTimeout(final Cancellation cancellation, final long timeout,
+			final String name) {
+		this.cancellation = cancellation;
+		final long start = System.currentTimeMillis();
+		return timeoutTimer.schedule(() -> {
+			if (Configuration.IsInDeubbungMode)
+				logger.warning(Utils.threadName() + name + " is timed out after " + (System.currentTimeMillis() - start)
+						+ " millisecond");
+			cancellation.cancel();
+		}, timeout, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Cancels the check being processed, so the executer thread is freed.
+	 */
+	public void cancelCurrent() {
+		cancellation.cancel();
+	}
+
 	public static void main(String...args){
 		try {
 			long start = System.currentTimeMillis();
@@ -169,7 +223,46 @@ public class AlloyExecuter implements Runnable, ThreadToBeMonitored {
 	 */
 	private synchronized void runAlloy() throws InterruptedException {
 
-		AlloyProcessingParam lastProccessing = queue.take();
+		final AlloyProcessingParam head = queue.take();
+		if (!UseBatch) {
+			runAlloy(head);
+			return;
+		}
+
+		// The waiting params are grouped by their world and scope. A group with
+		// more than one param is checked over a single translation.
+		final List<AlloyProcessingParam> taken = new ArrayList<>();
+		taken.add(head);
+		while (taken.size() < BatchSize && !queue.isEmpty()) {
+			final AlloyProcessingParam next = queue.poll();
+			if (next == null)
+				break;
+			taken.add(next);
+		}
+		final Map<String, List<AlloyProcessingParam>> batches = new LinkedHashMap<>();
+		for (AlloyProcessingParam param : taken) {
+			batches.computeIfAbsent(batchKey(param), k -> new ArrayList<>()).add(param);
+		}
+		for (List<AlloyProcessingParam> batch : batches.values()) {
+			if (batch.size() == 1)
+				runAlloy(batch.get(0));
+			else
+				runAlloyBatch(batch);
+		}
+	}
+
+	/**
+	 * Params with the same key have the same prepend and scope, so they can be
+	 * checked in one batch.
+	 */
+	private static String batchKey(final AlloyProcessingParam param) {
+		if (!param.getAlloyCoder().isPresent())
+			return String.valueOf(System.identityHashCode(param));
+		return param.getAlloyCoder().get().batchKey();
+	}
+
+	private void runAlloy(AlloyProcessingParam lastProccessing) throws InterruptedException {
+
 		//System.out.println("runAlloy taken->"+lastProccessing.getAlloyCoder().get().srcName());
 		final AlloyProcessingParam originalLastProcessing = lastProccessing;
 		try {
@@ -189,34 +282,31 @@ public class AlloyExecuter implements Runnable, ThreadToBeMonitored {
 			logger.info("[" + Thread.currentThread().getName() + "]" + " Start processing " + lastProccessing);
 
 		AlloyProcessedResult rep = new AlloyProcessedResult(originalLastProcessing);
+		final Cancellation cancellation = new Cancellation();
+		// The results are still written in rep; the wrapper only carries the cancellation.
+		final A4Reporter reporter = new A4Reporter(rep, cancellation);
+		final ScheduledFuture<?> timeout = startTimeout(cancellation, originalLastProcessing.getTimeout().get(),
+				originalLastProcessing.getAlloyCoder().map(PropertyToAlloyCode::getPredName).orElse("A check"));
 		try {
 
-			timeoutThread = new Thread(new Runnable() {
-				@Override
-				public void run() {
-					try {
-						Thread.sleep(originalLastProcessing.getTimeout().get());
-						if (Configuration.IsInDeubbungMode)
-							logger.warning(Utils.threadName()
-									+ originalLastProcessing.getAlloyCoder().get().getPredName()
-									+ " is timed out after " + (System.currentTimeMillis() - time) + " millisecond");
-						recordATimeout(originalLastProcessing);
-					} catch (InterruptedException e) {
-						logger.warning(Utils.threadName() + "timeout thread is interrupted in AlloyExecuter!" + e);
-					}
+			try {
+				if (UseWorldCache || AlloyProcessingParam.memoryOnly) {
+					A4CommandExecuter.getInstance().run(
+							lastProccessing.getAlloyCoder().orElseThrow(RuntimeException::new),
+							lastProccessing.getSrcPath().orElseThrow(RuntimeException::new).getAbsolutePath(), reporter);
+				} else {
+					A4CommandExecuter.getInstance().run(
+							lastProccessing.getSrcPath().orElseThrow(RuntimeException::new).getAbsolutePath(), reporter,
+							PropertyToAlloyCode.COMMAND_BLOCK_NAME);
 				}
-			});
-
-			A4CommandExecuter.getInstance().run(
-					lastProccessing.getSrcPath().orElseThrow(RuntimeException::new).getAbsolutePath(), rep,
-					PropertyToAlloyCode.COMMAND_BLOCK_NAME);
+			} finally {
+				// stop the timeout timer
+				timeout.cancel(false);
+			}
 			int logAfterTime = 10000;
 			if ((rep.trasnalationTime + rep.solveTime ) > logAfterTime){
 				System.out.println("Processing <translation="+rep.trasnalationTime + ", solve=" + rep.solveTime +"> took more than "+logAfterTime + "\t" + lastProccessing.getSrcPath().get().getAbsolutePath());
 			}
-			
-			// stop the timeout timer
-			timeoutThread.interrupt();
 
 			if (Configuration.IsInDeubbungMode)
 				logger.info("[" + Thread.currentThread().getName() + "]" + " Prcessing " + lastProccessing + " took "
@@ -234,6 +324,13 @@ public class AlloyExecuter implements Runnable, ThreadToBeMonitored {
 			}
 
 		} catch (Err e) {
+			if (cancellation.isCancelled()) {
+				// The translation or the search is stopped by the timeout.
+				recordATimeout(originalLastProcessing);
+				processed.incrementAndGet();
+				livenessStatus.setProcessed(processed.get());
+				return;
+			}
 			e.printStackTrace();
 			runPostProcesses(new AlloyProcessedResult(lastProccessing, Status.FAILED));
 			logger.severe("[" + Thread.currentThread().getName() + "] " + " The Alloy processor failed on processing: "
@@ -244,6 +341,121 @@ public class AlloyExecuter implements Runnable, ThreadToBeMonitored {
 
 	}
 
+	/**
+	 * Checks all the params over one translation of their shared world and
+	 * scope. Each param still gets its own result, with the shared translation
+	 * numbers and its own solving time.
+	 * 
+	 * Each param is solved under its own timeout, and the translation under the
+	 * shortest one. If a param times out, the params decided before it are
+	 * reported, it is recorded as a timeout, and the params after it are
+	 * checked one by one.
+	 * 
+	 * @param batch
+	 *          The params sharing the same world and scope.
+	 * @throws InterruptedException
+	 */
+	private void runAlloyBatch(final List<AlloyProcessingParam> batch) throws InterruptedException {
+
+		final List<AlloyProcessingParam> localized = new ArrayList<>(batch.size());
+		final List<PropertyToAlloyCode> coders = new ArrayList<>(batch.size());
+		long translationTimeout = Long.MAX_VALUE;
+		for (AlloyProcessingParam original : batch) {
+			AlloyProcessingParam param = original;
+			try {
+				param = original.changeTmpLocalDirectory(tmpLocalDirectory).prepareToUse();
+			} catch (Exception e1) {
+				logger.severe(Utils.threadName() + " The param: " + original + " cannot be localized");
+				e1.printStackTrace();
+			}
+			localized.add(param);
+			coders.add(param.getAlloyCoder().orElseThrow(RuntimeException::new));
+			translationTimeout = Math.min(translationTimeout, original.getTimeout().get());
+		}
+
+		long time = System.currentTimeMillis();
+		if (Configuration.IsInDeubbungMode)
+			logger.info("[" + Thread.currentThread().getName() + "]" + " Start processing a batch of " + batch.size());
+
+		final Cancellation cancellation = new Cancellation();
+		this.cancellation = cancellation;
+		/* The index of the param whose timeout cancelled the batch; -1 for the translation. */
+		final AtomicInteger timedOut = new AtomicInteger(Integer.MIN_VALUE);
+		final AtomicReference<ScheduledFuture<?>> batchTimeout = new AtomicReference<>(
+				startBatchTimeout(cancellation, timedOut, -1, translationTimeout));
+		final A4Reporter reporter = new A4Reporter(MyReporter.NOP, cancellation) {
+			@Override
+			public void solveBatchFormula(int i) {
+				batchTimeout.getAndSet(startBatchTimeout(cancellation, timedOut, i, batch.get(i).getTimeout().get()))
+						.cancel(false);
+			}
+		};
+
+		final A4BatchSolution solution;
+		try {
+			solution = A4CommandExecuter.getInstance().runBatchThenGetAnswers(coders,
+					localized.get(0).getSrcPath().orElseThrow(RuntimeException::new).getAbsolutePath(), reporter);
+		} catch (Err e) {
+			batchTimeout.get().cancel(false);
+			if (cancellation.isCancelled()) {
+				logger.warning(Utils.threadName() + "A batch of " + batch.size()
+						+ " is not translated in time, so the params are processed one by one.");
+			} else {
+				e.printStackTrace();
+				logger.severe("[" + Thread.currentThread().getName() + "] "
+						+ " The Alloy processor failed on a batch, so the params are processed one by one.");
+			}
+			for (AlloyProcessingParam param : batch)
+				runAlloy(param);
+			return;
+		}
+
+		// stop the timeout timer
+		batchTimeout.get().cancel(false);
+
+		if (Configuration.IsInDeubbungMode)
+			logger.info("[" + Thread.currentThread().getName() + "]" + " Prcessing a batch of " + batch.size()
+					+ " took " + (System.currentTimeMillis() - time) + " sec and result is: " + solution);
+
+		for (int i = 0; i < solution.decided(); ++i) {
+			final AlloyProcessedResult rep = new AlloyProcessedResult(batch.get(i), Status.NORMAL, solution.clauses, 0,
+					solution.translationTime, solution.totalVars, solution.solveTime(i), 0,
+					solution.satisfiable(i) ? 1 : -1);
+			runPostProcesses(rep);
+			processed.incrementAndGet();
+			livenessStatus.setProcessed(processed.get());
+			livenessStatus.setTobeProcessed(queue.size());
+			for (AlloyProcessedResult inferredResult : inferProperties(rep)) {
+				runPostProcesses(inferredResult);
+			}
+		}
+		for (int i = solution.decided(); i < batch.size(); ++i) {
+			if (i == timedOut.get()) {
+				recordATimeout(batch.get(i));
+				processed.incrementAndGet();
+				livenessStatus.setProcessed(processed.get());
+			} else {
+				runAlloy(batch.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Starts the timeout of the index-th param of a batch; -1 stands for the
+	 * translation. The index is recorded before the batch is cancelled.
+	 */
+	private ScheduledFuture<?> startBatchTimeout(final Cancellation cancellation, final AtomicInteger timedOut,
+			final int index, final long timeout) {
+		final long start = System.currentTimeMillis();
+		return timeoutTimer.schedule(() -> {
+			if (Configuration.IsInDeubbungMode)
+				logger.warning(Utils.threadName() + (index < 0 ? "The translation" : "The param " + index)
+						+ " of a batch is timed out after " + (System.currentTimeMillis() - start) + " millisecond");
+			timedOut.set(index);
+			cancellation.cancel();
+		}, timeout, TimeUnit.MILLISECONDS);
+	}
+
 	/**
 	 * There was maxInterrupt/2 number of interrupt happened
 	 * 
@@ -295,14 +507,14 @@ public class AlloyExecuter implements Runnable, ThreadToBeMonitored {
 					logger.info("[" + Thread.currentThread().getName() + "]"
 							+ " The AlloyExecuter thread is interrupted again and again. Replace the thread now. ");
 				this.stopMe();
+				cancelCurrent();
 				executerThread.interrupt();
-				timeoutThread.interrupt();
 				executerThread = new Thread(this);
 				executerThread.start();
 			} else {
 				logger.severe("[" + Thread.currentThread().getName() + "]" + " Interrupt the AlloyExecuter thread. ");
+				cancelCurrent();
 				executerThread.interrupt();
-				timeoutThread.interrupt();
 			}
 			recoveryAttempts.incrementAndGet();
 		}
@@ -322,7 +534,12 @@ public class AlloyExecuter implements Runnable, ThreadToBeMonitored {
 				logger.log(Level.SEVERE, "[" + Thread.currentThread().getName() + "]"
 						+ "Failed to send a Suicide signal on PID: " + interfacE.getHostProcess(), e);
 			}
-			Runtime.getRuntime().halt(0);
+			// The running check is cancelled and the process exits normally, so
+			// the shutdown hooks still run.
+			stopMe();
+			cancelCurrent();
+			executerThread.interrupt();
+			System.exit(0);
 		}
 	}
 
@@ -6,9 +6,13 @@ package edu.uw.ece.alloy.debugger.propgen.benchmarker.agent;
 import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -18,15 +22,19 @@ import com.mysql.fabric.xmlrpc.base.Param;
 import edu.mit.csail.sdg.alloy4.Pair;
 import edu.mit.csail.sdg.alloy4.Util;
 import edu.uw.ece.alloy.Configuration;
+import edu.uw.ece.alloy.debugger.exec.A4CommandExecuter;
 import edu.uw.ece.alloy.debugger.infrastructure.Runner;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.AlloyProcessingParam;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.agent.ProcessedResult.Status;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.ReportLiveness;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.communication.Queue;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.InvalidParameterException;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.RequestMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.SetupMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyLivenessMessage;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyProcessedResult;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyReadyMessage;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyResponseMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloySetupDoneMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.watchdogs.ThreadMonitor;
 import edu.uw.ece.alloy.util.LazyFile;
@@ -54,6 +62,10 @@ public final class AlloyRunner extends Runner {
 			.parseBoolean(Configuration.getProp("do_clean_source_after_computation"));
 	final public static boolean DoLogOnFile = Boolean.parseBoolean(Configuration.getProp("do_log_on_file"));
 	final public static boolean DoLogOnDB = Boolean.parseBoolean(Configuration.getProp("do_log_on_db"));
+	/* The solver threads sharing the queue, the parsed worlds and the writers. 0 means one per core. */
+	final public static int Workers = Integer.parseInt(Configuration.getProp("alloy_executer_workers")) > 0
+			? Integer.parseInt(Configuration.getProp("alloy_executer_workers"))
+			: Runtime.getRuntime().availableProcessors();
 
 	protected final static Logger logger = Logger
 			.getLogger(AlloyRunner.class.getName() + "--" + Thread.currentThread().getName());
@@ -68,10 +80,12 @@ public final class AlloyRunner extends Runner {
 	protected final long livenessInterval;
 	protected final int maxLivenessFailed;
 	protected final boolean logOnFile, logOnDB, removeContent;
+	protected final int workers;
 
 	protected ServerSocketInterface inputInterface;
 	protected Queue<AlloyProcessingParam> feedingQueue;
-	protected AlloyExecuter executer;
+	protected final List<AlloyExecuter> executers = new ArrayList<>();
+	protected WorkersLivenessStatus workersLiveness;
 	protected PostProcess.FileWrite fileWriter;
 	protected PostProcess.SocketWriter socketWriter;
 	protected PostProcess.DBWriter dbWriter;
@@ -93,16 +107,52 @@ public final class AlloyRunner extends Runner {
 		}
 	};
 
+	/**
+	 * Sends back up to the given number of waiting tasks, so the center can send
+	 * them to another process. The tasks with the lowest priority are sent back,
+	 * so the urgent ones are not delayed by the move.
+	 */
+	protected Consumer<Integer> withdrawParamsFromQueue = (Integer count) -> {
+		for (int i = 0; i < count; ++i) {
+			final AlloyProcessingParam param = feedingQueue.pollLast();
+			if (param == null)
+				break;
+			inputInterface.sendMessage(new AlloyResponseMessage(
+					new AlloyProcessedResult(param, Status.WITHDRAWN), inputInterface.getHostProcess()));
+		}
+		liveness.setTobeProcessed(feedingQueue.size());
+	};
+
+	/**
+	 * Drops the waiting tasks of a session whose outcomes are known at the
+	 * center. Each dropped task is answered, so the center stops waiting for it.
+	 */
+	protected BiConsumer<UUID, Set<String>> pruneParamsFromQueue = (UUID sessionID, Set<String> predNames) -> {
+		for (AlloyProcessingParam param : feedingQueue.toList()) {
+			if (!sessionID.equals(param.getAnalyzingSessionID().orElse(null)) || !param.getAlloyCoder().isPresent()
+					|| !predNames.contains(param.getAlloyCoder().get().getPredName()))
+				continue;
+			if (feedingQueue.remove(param))
+				inputInterface.sendMessage(new AlloyResponseMessage(new AlloyProcessedResult(param, Status.PRUNED),
+						inputInterface.getHostProcess()));
+		}
+		liveness.setTobeProcessed(feedingQueue.size());
+	};
+
 	protected Consumer<List<LazyFile>> copyDependecyFiles = (List<LazyFile> files) -> {
 		files.stream().forEach(file -> {
-			file.unload(tmpLocalDirectory);
+			if (AlloyProcessingParam.memoryOnly)
+				A4CommandExecuter.getInstance().registerLibrary(
+						new File(tmpLocalDirectory, file.getName()).getAbsolutePath(), file.content);
+			else
+				file.unload(tmpLocalDirectory);
 		});
 		inputInterface.sendMessage(new AlloySetupDoneMessage(inputInterface.getHostProcess()));
 	};
 
 	protected AlloyRunner(InetSocketAddress localSocket, InetSocketAddress remoteSocket, File tmpLocalDirectory,
 			long threadMonitoringInterval, long livenessInterval, int maxLivenessFailed, final boolean logOnFile,
-			final boolean logOnDB, final boolean removeContent) {
+			final boolean logOnDB, final boolean removeContent, final int workers) {
 		this.localSocket = localSocket;
 		this.remoteSocket = remoteSocket;
 		this.tmpLocalDirectory = tmpLocalDirectory;
@@ -112,6 +162,7 @@ public final class AlloyRunner extends Runner {
 		this.logOnFile = logOnFile;
 		this.logOnDB = logOnDB;
 		this.removeContent = removeContent;
+		this.workers = workers;
 		this.tobeProcessed = 0;
 		initiate();
 	}
@@ -119,7 +170,7 @@ public final class AlloyRunner extends Runner {
 	protected AlloyRunner(InetSocketAddress localSocket, InetSocketAddress remoteSocket) {
 		this(localSocket, remoteSocket, new File(TmpDirectoryRoot, String.valueOf(localSocket.getPort())),
 				SelfMonitorInterval, LivenessIntervalInMS, MaxLivenessFailTry, DoLogOnFile, DoLogOnDB,
-				RemoveSourceAfter);
+				RemoveSourceAfter, Workers);
 	}
 
 	protected void initiate() {
@@ -168,16 +219,22 @@ public final class AlloyRunner extends Runner {
 		});
 
 		// Queue that are shared between inputinterface and
-		feedingQueue = new Queue<>();
+		feedingQueue = Queue.prioritized();
 
-		executer = new AlloyExecuter(feedingQueue, liveness, inputInterface, tmpLocalDirectory);
-		localThreadsMonitor.addThreadToBeMonitored(executer);
+		// The workers take from the same queue, and each one reports its own
+		// liveness and is monitored on its own.
+		workersLiveness = new WorkersLivenessStatus(liveness, workers);
+		for (int i = 0; i < workers; ++i) {
+			executers.add(new AlloyExecuter(feedingQueue, workersLiveness.worker(i), inputInterface, tmpLocalDirectory));
+		}
 
 		inputInterface.MessageReceived.addListener(new MessageEventListener<MessageReceivedEventArgs>() {
 			@Override
 			public void actionOn(RequestMessage requestMessage, MessageReceivedEventArgs messageArgs) {
 				final Map<String, Object> context = new HashMap<>();
 				context.put("addNewParamInQueue", addNewParamInQueue);
+				context.put("withdrawParamsFromQueue", withdrawParamsFromQueue);
+				context.put("pruneParamsFromQueue", pruneParamsFromQueue);
 				try {
 					requestMessage.onAction(context);
 				} catch (InvalidParameterException e) {
@@ -191,26 +248,29 @@ public final class AlloyRunner extends Runner {
 		dbWriter = new PostProcess.DBWriter(inputInterface.getHostProcess());
 		cleanAfterProcessed = new PostProcess.CleanAfterProccessed();
 
-		// Sending back a response is mandatory.
-		executer.resgisterPostProcess(socketWriter);
-		localThreadsMonitor.addThreadToBeMonitored(executer);
-		if (logOnFile) {
-			executer.resgisterPostProcess(fileWriter);
-			localThreadsMonitor.addThreadToBeMonitored(fileWriter);
+		// The writers are shared by the workers. Sending back a response is
+		// mandatory.
+		for (AlloyExecuter executer : executers) {
+			executer.resgisterPostProcess(socketWriter);
+			if (logOnFile)
+				executer.resgisterPostProcess(fileWriter);
+			if (logOnDB)
+				executer.resgisterPostProcess(dbWriter);
+			if (removeContent)
+				executer.resgisterPostProcess(cleanAfterProcessed);
+			localThreadsMonitor.addThreadToBeMonitored(executer);
 		}
-		if (logOnDB) {
-			executer.resgisterPostProcess(dbWriter);
+		if (logOnFile)
+			localThreadsMonitor.addThreadToBeMonitored(fileWriter);
+		if (logOnDB)
 			localThreadsMonitor.addThreadToBeMonitored(dbWriter);
-		}
-		if (removeContent) {
-			executer.resgisterPostProcess(cleanAfterProcessed);
+		if (removeContent)
 			localThreadsMonitor.addThreadToBeMonitored(cleanAfterProcessed);
-		}
 
 	}
 
 	public void start() {
-		executer.startThread();
+		executers.forEach(AlloyExecuter::startThread);
 		socketWriter.startThread();
 		inputInterface.startThread();
 
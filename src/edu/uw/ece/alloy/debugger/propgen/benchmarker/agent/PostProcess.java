@@ -1,6 +1,5 @@
 package edu.uw.ece.alloy.debugger.propgen.benchmarker.agent;
 
-import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -12,6 +11,7 @@ import com.google.common.base.Optional;
 import edu.mit.csail.sdg.alloy4.Err;
 import edu.mit.csail.sdg.alloy4.Util;
 import edu.uw.ece.alloy.Configuration;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.DBBatchWriter;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.DBConnectionInfo;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.DBConnectionPool;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.DBLogger;
@@ -240,6 +240,11 @@ public abstract class PostProcess implements Runnable, ThreadToBeMonitored {
 		}
 	}
 
+	/**
+	 * Hands the results to a write-behind batch writer, so neither the executer
+	 * nor this thread waits for the database, unless the writer's buffer is
+	 * full.
+	 */
 	public static class DBWriter extends PostProcess {
 
 		final RemoteProcess host;
@@ -257,8 +262,11 @@ public abstract class PostProcess implements Runnable, ThreadToBeMonitored {
 		// A map from url, that sent from server, to a connection pool.
 		final Map<DBConnectionInfo, DBConnectionPool> connections = new HashMap<>();
 
-		protected DBConnectionPool getConnection(
-				final DBConnectionInfo dBConnectionInfo) throws SQLException {
+		protected final DBBatchWriter batchWriter = new DBBatchWriter(
+				dBConnectionInfo -> DBLogger.createDatabaseOperationsObject(getConnection(dBConnectionInfo)));
+
+		protected synchronized DBConnectionPool getConnection(
+				final DBConnectionInfo dBConnectionInfo) {
 			if (!connections.containsKey(dBConnectionInfo)) {
 				connections.put(dBConnectionInfo,
 						new MySQLDBConnectionPool(dBConnectionInfo));
@@ -267,16 +275,36 @@ public abstract class PostProcess implements Runnable, ThreadToBeMonitored {
 		}
 
 		@Override
-		protected void action(AlloyProcessedResult result) {
+		protected void action(AlloyProcessedResult result)
+				throws InterruptedException {
 			try {
-				(DBLogger.createDatabaseOperationsObject(
-						getConnection(result.getParam().getDBConnectionInfo().get())))
-								.insertResult(result, host + "");
-			} catch (SQLException e) {
+				batchWriter.put(result.getParam().getDBConnectionInfo().get(), result,
+						host + "");
+			} catch (RuntimeException e) {
 				logger.severe(Utils.threadName()
 						+ " Error happened in insertin the result into the database." + e);
 			}
 		}
+
+		/**
+		 * Writes the buffered results on the caller thread.
+		 */
+		public void flush() {
+			batchWriter.flush();
+		}
+
+		@Override
+		public void startThread() {
+			batchWriter.startThread();
+			super.startThread();
+		}
+
+		@Override
+		public void cancelThread() {
+			super.cancelThread();
+			batchWriter.cancelThread();
+		}
+
 	}
 
 	public static class CleanAfterProccessed extends PostProcess {
@@ -45,7 +45,7 @@ public class PostProcessTester {
 	}
 
 	@Test
-	public void testDBWriter() {
+	public void testDBWriter() throws InterruptedException {
 
 		// Database setup
 		DBConnectionInfo connectionInfo = new DBConnectionInfo(
@@ -89,6 +89,7 @@ public class PostProcessTester {
 		result.trasnalationTime = 50;
 
 		dbWriter.action(result);
+		dbWriter.flush();
 
 		// Check whether the result is stored properly.
 		try (Connection connection = dbConnection.getPooledConnection()) {
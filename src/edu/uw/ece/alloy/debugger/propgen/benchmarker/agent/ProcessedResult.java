@@ -13,7 +13,8 @@ public abstract class ProcessedResult extends MyReporter {
 	protected final ProcessingParam param;
 
 	public static enum Status {
-		NORMAL, TIMEOUT, FAILED, INFERRED
+		NORMAL, TIMEOUT, FAILED, INFERRED, WITHDRAWN, // Sent back unprocessed to be sent to another process.
+		PRUNED // Dropped unprocessed, as its outcome is inferred from the other results.
 	};
 
 	public final Status status;
@@ -39,6 +40,14 @@ public abstract class ProcessedResult extends MyReporter {
 		return status.equals(Status.INFERRED);
 	}
 
+	public boolean isWithdrawn() {
+		return status.equals(Status.WITHDRAWN);
+	}
+
+	public boolean isPruned() {
+		return status.equals(Status.PRUNED);
+	}
+
 	public boolean isNormal() {
 		return status.equals(Status.NORMAL);
 	}
@@ -0,0 +1,74 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.agent;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.UpdateLivenessStatus;
+
+/**
+ * Keeps the liveness of each worker of an agent. Every worker reports
+ * through its own view, and the liveness of the agent gets the total.
+ *
+ * @author vajih
+ *
+ */
+public class WorkersLivenessStatus {
+
+	protected final UpdateLivenessStatus agent;
+	protected final AtomicIntegerArray processed;
+
+	public WorkersLivenessStatus(final UpdateLivenessStatus agent, final int workers) {
+		if (workers < 1)
+			throw new IllegalArgumentException("An agent needs at least one worker: " + workers);
+		this.agent = agent;
+		this.processed = new AtomicIntegerArray(workers);
+	}
+
+	/**
+	 * @param worker
+	 * @return The status that the given worker updates.
+	 */
+	public UpdateLivenessStatus worker(final int worker) {
+		if (worker < 0 || worker >= processed.length())
+			throw new IndexOutOfBoundsException("No worker: " + worker);
+		return new UpdateLivenessStatus() {
+			@Override
+			public void setProcessed(int processed) {
+				// The total of a later update should not be overwritten by an earlier one.
+				synchronized (WorkersLivenessStatus.this) {
+					WorkersLivenessStatus.this.processed.set(worker, processed);
+					agent.setProcessed(getProcessed());
+				}
+			}
+
+			@Override
+			public void setTobeProcessed(int tobeProcessed) {
+				// The workers share the queue.
+				agent.setTobeProcessed(tobeProcessed);
+			}
+		};
+	}
+
+	public int getWorkers() {
+		return processed.length();
+	}
+
+	public int getProcessed(final int worker) {
+		return processed.get(worker);
+	}
+
+	/**
+	 * @return The number of tasks processed by all the workers.
+	 */
+	public int getProcessed() {
+		int total = 0;
+		for (int i = 0; i < processed.length(); ++i)
+			total += processed.get(i);
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		return "WorkersLivenessStatus [processed=" + processed + "]";
+	}
+
+}
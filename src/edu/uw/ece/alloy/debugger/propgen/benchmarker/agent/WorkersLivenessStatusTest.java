@@ -0,0 +1,54 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.agent;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.UpdateLivenessStatus;
+
+/**
+ * @author vajih
+ *
+ */
+public class WorkersLivenessStatusTest {
+
+	int processed = 0, tobeProcessed = 0;
+
+	final UpdateLivenessStatus agent = new UpdateLivenessStatus() {
+		@Override
+		public void setTobeProcessed(int tobeProcessed) {
+			WorkersLivenessStatusTest.this.tobeProcessed = tobeProcessed;
+		}
+
+		@Override
+		public void setProcessed(int processed) {
+			WorkersLivenessStatusTest.this.processed = processed;
+		}
+	};
+
+	@Test
+	public void testTheAgentGetsTheTotal() {
+		final WorkersLivenessStatus workers = new WorkersLivenessStatus(agent, 3);
+		workers.worker(0).setProcessed(2);
+		workers.worker(2).setProcessed(5);
+		workers.worker(0).setProcessed(3);
+
+		assertEquals(8, processed);
+		assertEquals(3, workers.getProcessed(0));
+		assertEquals(0, workers.getProcessed(1));
+		assertEquals(5, workers.getProcessed(2));
+	}
+
+	@Test
+	public void testTheQueueIsShared() {
+		final WorkersLivenessStatus workers = new WorkersLivenessStatus(agent, 2);
+		workers.worker(1).setTobeProcessed(7);
+		assertEquals(7, tobeProcessed);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAnAgentHasWorkers() {
+		new WorkersLivenessStatus(agent, 0);
+	}
+
+}
@@ -0,0 +1,79 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.center;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Each active process has a window of credits. A task sent to a process takes
+ * one credit and its response gives it back, so the tasks taken by the
+ * process, i.e. doingTasks, never pass the window. The next task goes to the
+ * process with the most credits left. A slow process stops receiving tasks once
+ * its window is full, while the other processes keep taking them.
+ * 
+ * A process is lagging if it has tasks waiting in its queue while another
+ * process is idle. The waiting tasks are shared with the idle processes.
+ * 
+ * @author vajih
+ *
+ */
+public class CreditDispatchPolicy implements DispatchPolicy {
+
+	public final int window;
+
+	public CreditDispatchPolicy(final int window) {
+		if (window < 1)
+			throw new IllegalArgumentException("The credit window has to be positive: " + window);
+		this.window = window;
+	}
+
+	public int credits(final RemoteProcessRecord record) {
+		return window - Math.max(record.doingTasks, 0);
+	}
+
+	/*
+	 * The most credits first. Among the same credits, the process with fewer sent
+	 * tasks, so the tasks are spread when all the processes are idle.
+	 */
+	protected final Comparator<RemoteProcessRecord> order = Comparator
+			.comparingInt((RemoteProcessRecord record) -> -credits(record))
+			.thenComparingInt(record -> record.sentTasks);
+
+	@Override
+	public Optional<RemoteProcess> select(final Collection<RemoteProcessRecord> records) {
+		return records.stream().filter(record -> record.isActive() && credits(record) > 0).min(order)
+				.map(RemoteProcessRecord::getPId);
+	}
+
+	@Override
+	public Map<RemoteProcess, Integer> findLagging(final Collection<RemoteProcessRecord> records) {
+		final List<RemoteProcessRecord> active = records.stream().filter(RemoteProcessRecord::isActive)
+				.collect(Collectors.toList());
+		final long idle = active.stream().filter(record -> record.doingTasks <= 0).count();
+		if (idle == 0)
+			return Collections.emptyMap();
+
+		final Map<RemoteProcess, Integer> result = new HashMap<>();
+		for (RemoteProcessRecord record : active) {
+			// One task is being processed, the rest are waiting.
+			final int waiting = record.doingTasks - 1;
+			if (waiting <= 0)
+				continue;
+			// Keep a fair share of the waiting tasks and give the rest back.
+			final int share = (int) (waiting / (idle + 1));
+			result.put(record.getPId(), waiting - share);
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	@Override
+	public String toString() {
+		return "CreditDispatchPolicy [window=" + window + "]";
+	}
+
+}
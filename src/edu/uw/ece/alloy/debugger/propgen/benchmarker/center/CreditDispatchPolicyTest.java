@@ -0,0 +1,65 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.center;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.RemoteProcessRecord.Status;
+
+/**
+ * @author vajih
+ *
+ */
+public class CreditDispatchPolicyTest {
+
+	final CreditDispatchPolicy policy = new CreditDispatchPolicy(4);
+
+	final RemoteProcess p1 = new RemoteProcess(new InetSocketAddress("localhost", 45681));
+	final RemoteProcess p2 = new RemoteProcess(new InetSocketAddress("localhost", 45682));
+	final RemoteProcess p3 = new RemoteProcess(new InetSocketAddress("localhost", 45683));
+
+	RemoteProcessRecord record(final RemoteProcess process, final int doingTasks, final int sentTasks,
+			final Status status) {
+		return new RemoteProcessRecord(process, 0, doingTasks, sentTasks, status, null, 0, 0);
+	}
+
+	@Test
+	public void testTheMostCreditsIsSelected() {
+		assertEquals(p2, policy.select(Arrays.asList(record(p1, 3, 10, Status.WORKING),
+				record(p2, 1, 20, Status.WORKING), record(p3, 2, 5, Status.WORKING))).get());
+	}
+
+	@Test
+	public void testFewerSentTasksBreaksTheTie() {
+		assertEquals(p3, policy.select(Arrays.asList(record(p1, 0, 10, Status.IDLE),
+				record(p2, 0, 20, Status.IDLE), record(p3, 0, 5, Status.IDLE))).get());
+	}
+
+	@Test
+	public void testFullOrInactiveProcessesAreNotSelected() {
+		assertFalse(policy.select(Arrays.asList(record(p1, 4, 0, Status.WORKING),
+				record(p2, 0, 0, Status.INITIATED), record(p3, 0, 0, Status.KILLING))).isPresent());
+	}
+
+	@Test
+	public void testNoLaggingWithoutAnIdleProcess() {
+		assertTrue(policy.findLagging(Arrays.asList(record(p1, 4, 0, Status.WORKING),
+				record(p2, 1, 0, Status.WORKING))).isEmpty());
+	}
+
+	@Test
+	public void testWaitingTasksAreSharedWithTheIdleProcesses() {
+		final Map<RemoteProcess, Integer> lagging = policy.findLagging(Arrays.asList(
+				record(p1, 7, 0, Status.WORKING), record(p2, 0, 0, Status.IDLE), record(p3, 1, 0, Status.WORKING)));
+		// Six tasks are waiting on p1 and three of them go to p2.
+		assertEquals(1, lagging.size());
+		assertEquals(Integer.valueOf(3), lagging.get(p1));
+	}
+
+}
@@ -0,0 +1,33 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.center;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Decides which remote process receives the next task, given the records of
+ * the processes. It also finds the processes whose waiting tasks are better to
+ * be moved to the other processes.
+ * 
+ * @author vajih
+ *
+ */
+public interface DispatchPolicy {
+
+	/**
+	 * @param records
+	 *            The records of the registered processes.
+	 * @return The process to send the next task, or empty if no process can
+	 *         take a new task now.
+	 */
+	public Optional<RemoteProcess> select(final Collection<RemoteProcessRecord> records);
+
+	/**
+	 * @param records
+	 *            The records of the registered processes.
+	 * @return The lagging processes mapped to the number of their waiting tasks
+	 *         to be taken back.
+	 */
+	public Map<RemoteProcess, Integer> findLagging(final Collection<RemoteProcessRecord> records);
+
+}
@@ -6,6 +6,7 @@ import java.net.InetSocketAddress;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -13,9 +14,15 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.logging.Level;
@@ -30,8 +37,10 @@ import edu.uw.ece.alloy.debugger.infrastructure.Runner;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.AlloyProcessingParam;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.ExpressionPropertyGenerator;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.ExpressionPropertyGenerator.Builder;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.ProcessingParam;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.ProcessorUtil;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.agent.AlloyRunner;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.agent.ProcessedResult.Status;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.communication.Publisher;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.communication.Queue;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.DiedMessage;
@@ -39,13 +48,16 @@ import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.DoneMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.InvalidParameterException;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.LivenessMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.ReadyMessage;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.RemoteMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.RequestMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.ResponseMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.SetupMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyProcessedResult;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyPruneMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyRequestMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyResponseMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloySetupMessage;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyWithdrawMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.debugger.PatternLivenessMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.debugger.PatternProcessedResult;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.debugger.PatternProcessingParam;
@@ -55,6 +67,7 @@ import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.debugger.PatternSetup
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.watchdogs.RemoteProcessMonitor;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.watchdogs.ThreadMonitor;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.watchdogs.ThreadToBeMonitored;
+import edu.uw.ece.alloy.util.FingerprintSet;
 import edu.uw.ece.alloy.util.LazyFile;
 import edu.uw.ece.alloy.util.SendOnServerSocketInterface;
 import edu.uw.ece.alloy.util.ServerSocketInterface;
@@ -85,14 +98,24 @@ public final class ExpressionAnalyzerRunner extends Runner {
 		final PatternProcessingParam param;
 		final ExpressionPropertyGenerator.Builder expressionGeneratorBuilder;
 		/* Generated and sent properties */
-		final Set<String> generatedProperties;
+		final FingerprintSet generatedProperties;
+		/* The generators of the session that the feeder has not exhausted. */
+		final AtomicInteger pendingSources = new AtomicInteger(0);
+		/*
+		 * The tasks pulled from the generators that the feeder has neither sent
+		 * nor dropped yet. The monitor does not know them until they are sent.
+		 */
+		final Set<AlloyProcessingParam> unsentTasks = ConcurrentHashMap.newKeySet();
 		/* Queue for caching the responses */
-		final Queue<ResponseMessage> responseQueue = new Queue<>();
+		final ConcurrentLinkedQueue<ResponseMessage> responseQueue = new ConcurrentLinkedQueue<>();
 		/*
-		 * The task that is processing the responses. It is shared to end the
-		 * task.
+		 * True while a drain of the responses is submitted or running. A session
+		 * waiting for responses holds no thread; the responses are drained on
+		 * the shared executor, one drain per session at a time.
 		 */
-		final Future<?> processingResponseTask;
+		final AtomicBoolean draining = new AtomicBoolean(false);
+		/* The result is sent once, either on done or on the timeout. */
+		final AtomicBoolean finished = new AtomicBoolean(false);
 		final ExecutorService threadExecutor;
 		final SendOnServerSocketInterface interfacE;
 		/*
@@ -100,11 +123,10 @@ public final class ExpressionAnalyzerRunner extends Runner {
 		 * the PatternProcessedREsult and returned later.
 		 */
 		final Set<AlloyProcessedResult> validResults;
-		/*
-		 * A thread sleep for a given time, then wakes up and finishes the
-		 * session.
-		 */
-		final Thread timeoutThread;
+		/* Finishes the session after the timeout, on the shared timer. */
+		volatile Optional<ScheduledFuture<?>> timeoutTask = Optional.empty();
+		/* The checks whose outcomes are known in this session. */
+		final PruningIndex pruningIndex = new PruningIndex();
 
 		public ExpressionAnalyzingSession(final PatternProcessingParam param, final long alloyProcessingTime)
 				throws Exception {
@@ -119,7 +141,7 @@ public final class ExpressionAnalyzerRunner extends Runner {
 			this.timeout = param.getTimeout().orElse(Long.MAX_VALUE);
 			this.param = param.changeTmpLocalDirectory(tmpLocalDirectory).prepareToUse();
 
-			this.generatedProperties = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			this.generatedProperties = new FingerprintSet();
 
 			expressionGeneratorBuilder = new Builder(id, alloyProcessingTime,
 					param.getFile("toBeAnalyzedCode").orElseThrow(RuntimeException::new),
@@ -132,30 +154,121 @@ public final class ExpressionAnalyzerRunner extends Runner {
 					param.getExpression().orElseThrow(RuntimeException::new),
 					param.getScope().orElseThrow(RuntimeException::new),
 					param.getFiles().orElseThrow(RuntimeException::new));
-			this.validResults = new HashSet<>();
+			// The timeout sends the result while a drain might add to it.
+			this.validResults = Collections.newSetFromMap(new ConcurrentHashMap<AlloyProcessedResult, Boolean>());
 			this.interfacE = interfacE;
 			this.threadExecutor = threadExecutor;
-			processingResponseTask = sessionThreadExecutor.submit(() -> {
-				processResponseMessaes();
-			});
+			System.out.println("Session is created for " + param.getExpression().get() + " over field="
+					+ param.getFieldName().get() + " coder=" + param.getPropertyToAlloyCode().get());
+		}
+
+		/**
+		 * Records the outcome of the result and the outcomes inferred from it.
+		 * The tasks of the newly known checks that are already sent are dropped
+		 * from the processes' queues.
+		 * 
+		 * @param result
+		 */
+		public void prune(final AlloyProcessedResult result) {
+			final Set<String> decided = pruningIndex.record(result);
+			if (decided.isEmpty())
+				return;
+			for (Map.Entry<RemoteProcess, Set<ProcessingParam>> inFlight : monitor.getInFlight(getSessionID())
+					.entrySet()) {
+				final Set<String> predNames = inFlight.getValue().stream()
+						.filter(p -> pruningIndex.isDecided((AlloyProcessingParam) p))
+						.map(p -> ((AlloyProcessingParam) p).getAlloyCoder().get().getPredName())
+						.collect(Collectors.toSet());
+				if (!predNames.isEmpty())
+					distributerInterface.sendMessage(new AlloyPruneMessage(inFlight.getKey(), getSessionID(), predNames),
+							inFlight.getKey());
+			}
+		}
+
+		public boolean isDecided(final AlloyProcessingParam param) {
+			return pruningIndex.isDecided(param);
+		}
+
+		/**
+		 * Answers a check whose outcome is in the outcome cache, as if an Alloy
+		 * process has responded.
+		 * 
+		 * @param param
+		 * @param sat
+		 */
+		public void answerFromCache(final AlloyProcessingParam param, final int sat) {
+			final AlloyProcessedResult result = new AlloyProcessedResult(param, Status.NORMAL, 0, 0, 0, 0, 0, 0, sat);
+			prune(result);
+			followUp(new AlloyResponseMessage(result, distributerInterface.getHostProcess()));
+		}
+
+		/**
+		 * Once a task is dropped, the session might have nothing else to wait
+		 * for.
+		 */
+		public void checkDone() {
+			if (isDone()) {
+				responseQueue.add(ResponseMessage.createEmptyResponseMessage());
+				scheduleDrain();
+			}
+		}
+
+		/**
+		 * The session is done once its generators are exhausted, the pulled
+		 * tasks are handed over and all the sent tasks are responded.
+		 */
+		boolean isDone() {
+			return pendingSources.get() == 0 && unsentTasks.isEmpty() && monitor.sessionIsDone(getSessionID());
+		}
+
+		/**
+		 * The feeder sent the task and the monitor registered it, or the feeder
+		 * dropped it. Either way, the session does not wait for it here anymore.
+		 * 
+		 * @param param
+		 */
+		void handedOver(final AlloyProcessingParam param) {
+			unsentTasks.remove(param);
+		}
+
+		/**
+		 * Counts the generator as pending until the feeder exhausts it, and each
+		 * task pulled from it as unsent until it is handed over.
+		 * 
+		 * @param generator
+		 * @return
+		 */
+		Iterator<AlloyProcessingParam> track(final Iterator<AlloyProcessingParam> generator) {
+			pendingSources.incrementAndGet();
+			return new Iterator<AlloyProcessingParam>() {
+				boolean exhausted = false;
 
-			timeoutThread = new Thread(new Runnable() {
 				@Override
-				public void run() {
+				public boolean hasNext() {
+					if (exhausted)
+						return false;
+					boolean hasNext = false;
 					try {
-						Thread.sleep(timeout);
-						if (Configuration.IsInDeubbungMode)
-							logger.warning(Utils.threadName() + " session " + getSessionID() + " is timed out after "
-									+ (System.currentTimeMillis() - creationTime) + " millisecond");
-						doneOnWait();
-					} catch (InterruptedException e) {
-						logger.warning(
-								Utils.threadName() + "timeout thread is interrupted in Expression Analyzer!" + e);
+						hasNext = generator.hasNext();
+					} catch (RuntimeException e) {
+						logger.log(Level.SEVERE, Utils.threadName() + "The generator of session " + getSessionID()
+								+ " failed.", e);
+					}
+					if (!hasNext) {
+						exhausted = true;
+						pendingSources.decrementAndGet();
+						checkDone();
 					}
+					return hasNext;
 				}
-			});
-			System.out.println("Session is created for " + param.getExpression().get() + " over field="
-					+ param.getFieldName().get() + " coder=" + param.getPropertyToAlloyCode().get());
+
+				@Override
+				public AlloyProcessingParam next() {
+					final AlloyProcessingParam param = generator.next();
+					unsentTasks.add(param);
+					return param;
+				}
+			};
 		}
 
 		public void addGeneratedProperties(String propertyName) {
@@ -172,92 +285,107 @@ public final class ExpressionAnalyzerRunner extends Runner {
 			return id;
 		}
 
-		public Optional<Future<?>> getProcessingTask() {
-			return Optional.ofNullable(processingResponseTask);
-		}
-
 		@Override
 		public void start() {
 			try {
-				timeoutThread.start();
-				// Start generating Alloy processing params
+				if (timeout < Long.MAX_VALUE)
+					timeoutTask = Optional.of(sessionTimer.schedule(() -> {
+						if (Configuration.IsInDeubbungMode)
+							logger.warning(Utils.threadName() + " session " + getSessionID() + " is timed out after "
+									+ (System.currentTimeMillis() - creationTime) + " millisecond");
+						doneOnWait();
+					}, timeout, TimeUnit.MILLISECONDS));
+				// Start generating Alloy processing params, as fast as the
+				// feeder sends them.
 				System.out.println("Start session............");
-				expressionGeneratorBuilder.create(feedingQueue).startThread();
+				feeder.addSource(
+						track(expressionGeneratorBuilder.createWithHistory(feedingQueue, generatedProperties).iterator()));
 			} catch (Exception e1) {
 				e1.printStackTrace();
 			}
 		}
 
 		/**
-		 * Processing the following response. A queue is shared between the
-		 * session and response follow up action.
+		 * Submits a drain of the responses, unless one is already submitted or
+		 * running.
 		 */
-		void processResponseMessaes() {
-			while (true) {
-				ResponseMessage message;
-				try {
-					int generatedPropsCount = 0;
-					message = responseQueue.take();
+		void scheduleDrain() {
+			if (finished.get() || !draining.compareAndSet(false, true))
+				return;
+			try {
+				threadExecutor.execute(this::drainResponseMessages);
+			} catch (RejectedExecutionException e) {
+				draining.set(false);
+				logger.log(Level.SEVERE, Utils.threadName() + "The responses of session " + getSessionID()
+						+ " cannot be processed.", e);
+			}
+		}
 
+		/**
+		 * Processes the waiting responses and returns once the queue is empty.
+		 * A response that arrives while returning submits another drain.
+		 */
+		void drainResponseMessages() {
+			do {
+				ResponseMessage message;
+				while (!finished.get() && (message = responseQueue.poll()) != null) {
 					if (message.isEmptyResponseMessage()) {
-						if (responseQueue.isEmpty()) {
+						// A response might have added a generator since.
+						if (responseQueue.isEmpty() && isDone()) {
 							done();
-							break;
+							return;
 						}
 						continue;
 					}
+					processResponseMessage(message);
+				}
+				draining.set(false);
+			} while (!finished.get() && !responseQueue.isEmpty() && draining.compareAndSet(false, true));
+		}
 
-					AlloyProcessingParam param = (AlloyProcessingParam) message.getResult().getParam();
-
-					AlloyProcessedResult result = (AlloyProcessedResult) message.getResult();
-
-					if (message.getResult().isNormal()
-							&& result.getParam().getAlloyCoder()
-									.orElseThrow(
-											() -> new RuntimeException("Alloy Coder cannot be Null in a response."))
-									.isDesiredSAT(result.sat)
-							&& (expressionGeneratorBuilder.inPatterns(param.getAlloyCoder().get().predNameA)
-									|| expressionGeneratorBuilder.inPatterns(param.getAlloyCoder().get().predNameB))) {
-						validResults.add(result);
-					}
-
-					// second: find out whether more properties are required to
-					// be checked.
-					try {
-
-						Set<String> nextProperties = new HashSet<>(param.getAlloyCoder().get().createItself()
-								.getToBeCheckedProperties(message.getResult().sat));
-						if (!nextProperties.isEmpty()) {
-							generatedPropsCount = expressionGeneratorBuilder
-									.createWithHistory(feedingQueue, nextProperties, generatedProperties)
-									.generatePatternCheckers();
-						} else {
-							logger.log(Level.INFO,
-									Utils.threadName() + "The next properties are empty for:" + message.getResult());
-						}
-					} catch (Err | IOException e) {
-						logger.log(Level.SEVERE, Utils.threadName() + "Next properties failed to be added.", e);
-						e.printStackTrace();
-					}
+		/**
+		 * Processing the following response. The responses of a session are
+		 * processed one at a time.
+		 */
+		void processResponseMessage(final ResponseMessage message) {
+			AlloyProcessingParam param = (AlloyProcessingParam) message.getResult().getParam();
+
+			AlloyProcessedResult result = (AlloyProcessedResult) message.getResult();
+
+			if (message.getResult().isNormal()
+					&& result.getParam().getAlloyCoder()
+							.orElseThrow(() -> new RuntimeException("Alloy Coder cannot be Null in a response."))
+							.isDesiredSAT(result.sat)
+					&& (expressionGeneratorBuilder.inPatterns(param.getAlloyCoder().get().predNameA)
+							|| expressionGeneratorBuilder.inPatterns(param.getAlloyCoder().get().predNameB))) {
+				validResults.add(result);
+			}
 
-				} catch (InterruptedException e1) {
-					logger.log(Level.SEVERE, Utils.threadName() + "The thread is interrupted.", e1);
+			// second: find out whether more properties are required to
+			// be checked.
+			try {
+				Set<String> nextProperties = new HashSet<>(
+						param.getAlloyCoder().get().createItself().getToBeCheckedProperties(message.getResult().sat));
+				if (!nextProperties.isEmpty()) {
+					feeder.addSource(track(expressionGeneratorBuilder
+							.createWithHistory(feedingQueue, nextProperties, generatedProperties).iterator()));
+				} else {
+					logger.log(Level.INFO,
+							Utils.threadName() + "The next properties are empty for:" + message.getResult());
 				}
+			} catch (Err | IOException e) {
+				logger.log(Level.SEVERE, Utils.threadName() + "Next properties failed to be added.", e);
+				e.printStackTrace();
 			}
 		}
 
 		@Override
 		public void followUp(ResponseMessage message) {
-			try {
-				responseQueue.put(message);
-				if (monitor.sessionIsDone(getSessionID())) {
-					responseQueue.put(ResponseMessage.createEmptyResponseMessage());
-				}
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-				logger.log(Level.SEVERE, Utils.threadName() + "Fail on putting a new response message: <" + message
-						+ "> in the Processing queue", e);
+			responseQueue.add(message);
+			if (isDone()) {
+				responseQueue.add(ResponseMessage.createEmptyResponseMessage());
 			}
+			scheduleDrain();
 		}
 
 		/**
@@ -265,24 +393,25 @@ public final class ExpressionAnalyzerRunner extends Runner {
 		 */
 		protected void sendResult() {
 			PatternProcessedResult result = new PatternProcessedResult(param,
-					Collections.unmodifiableSet(validResults));
+					Collections.unmodifiableSet(new HashSet<>(validResults)));
 			PatternResponseMessage message = new PatternResponseMessage(result, interfacE.getHostProcess());
 			interfacE.sendMessage(message);
 		}
 
 		@Override
 		public void done() {
+			if (!finished.compareAndSet(false, true))
+				return;
+			// stop the timeout timer
+			timeoutTask.ifPresent(t -> t.cancel(false));
 			sendResult();
-			getProcessingTask().orElseThrow(() -> new RuntimeException("The Processing Task should not be NULL!"))
-					.cancel(true);
-			// finish the timeout thread.
-			timeoutThread.interrupt();
 		}
 
 		@Override
 		public void doneOnWait() {
-			getProcessingTask().orElseThrow(() -> new RuntimeException("The Processing Task should not be NULL!"))
-					.cancel(true);
+			if (!finished.compareAndSet(false, true))
+				return;
+			responseQueue.clear();
 			sendResult();
 		}
 
@@ -297,6 +426,22 @@ public final class ExpressionAnalyzerRunner extends Runner {
 	final public static String TemporaryLocalDirectory = Configuration.getProp("temporary_directory");
 	final static int ProccessNumber = Integer.parseInt(Configuration.getProp("alloy_processes_number"));
 	final static long AlloyProcessingTime = Long.valueOf(Configuration.getProp("alloy_prcessing_timeout"));
+	/* The threads that drain the responses of all the sessions. */
+	final static int SessionThreads = Integer.parseInt(Configuration.getProp("session_threads"));
+
+	/*
+	 * One timer for the timeouts of all the sessions, so a session costs no
+	 * thread while it waits.
+	 */
+	final static ScheduledThreadPoolExecutor sessionTimer = new ScheduledThreadPoolExecutor(1, r -> {
+		final Thread timer = new Thread(r, "ExpressionAnalyzingSession-timeout");
+		timer.setDaemon(true);
+		return timer;
+	});
+
+	static {
+		sessionTimer.setRemoveOnCancelPolicy(true);
+	}
 
 	protected final static Logger logger = Logger
 			.getLogger(ExpressionAnalyzerRunner.class.getName() + "--" + Thread.currentThread().getName());
@@ -314,11 +459,13 @@ public final class ExpressionAnalyzerRunner extends Runner {
 	final protected ExecutorService sessionThreadExecutor;
 
 	protected RemoteProcessMonitor monitor;
-	protected ThreadToBeMonitored feeder;
+	protected Feeder<AlloyProcessingParam> feeder;
 	protected ReportLiveness<PatternLivenessMessage> liveness;
 	protected ServerSocketInterface inputInterface, distributerInterface;
 	protected Queue<AlloyProcessingParam> feedingQueue, backlogFeedingQueue;
 	protected RemoteProcessManager processManager;
+	/* The outcomes solved before, shared by all the sessions. */
+	protected OutcomeCache outcomeCache;
 
 	/*
 	 * A local directory that stores the required files such as alloy file or
@@ -366,7 +513,7 @@ public final class ExpressionAnalyzerRunner extends Runner {
 		this(localSocket, remoteSocket, ProcessorUtil.findEmptyLocalSocket(localSocket.getPort()),
 				new File(TemporaryLocalDirectory), new LinkedList<>(), PriodicalMonitoringThreadsReportInMS,
 				SelfMonitorInterval, LivenessIntervalInMS, MaxLivenessFailTry, AlloyProcessingTime,
-				Executors.newFixedThreadPool(10));
+				Executors.newFixedThreadPool(SessionThreads));
 	}
 
 	/**
@@ -377,16 +524,6 @@ public final class ExpressionAnalyzerRunner extends Runner {
 			PatternProcessingParam param) -> {
 		Optional<ExpressionAnalyzingSession> session = Optional.empty();
 
-		processManager.replaceAllProcesses();
-
-		while (processManager.allProcessesIDLE()) {
-			try {
-				Thread.sleep(10);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
-
 		try {
 			session = Optional.of(new ExpressionAnalyzingSession(param, alloyProcessingTime));
 			analyzingSessions.put(param.getAnalyzingSessionID().get(), session.get());
@@ -480,6 +617,8 @@ public final class ExpressionAnalyzerRunner extends Runner {
 			}
 		});
 
+		outcomeCache = new OutcomeCache();
+
 		// interface for distributing tasks among alloy executers.
 		distributerInterface = new ServerSocketInterface(this.distributorSocket);
 
@@ -488,6 +627,9 @@ public final class ExpressionAnalyzerRunner extends Runner {
 		distributerInterface.MessageSent.addListener(new MessageEventListener<MessageSentEventArgs>() {
 			@Override
 			public void actionOn(RequestMessage requestMessage, MessageSentEventArgs event) {
+				// Only the tasks are monitored, not the requests to withdraw them.
+				if (!(requestMessage instanceof AlloyRequestMessage))
+					return;
 				AlloyRequestMessage alloyRequestMessage = (AlloyRequestMessage) requestMessage;
 				AlloyProcessingParam alloyProcessingParam = (AlloyProcessingParam) alloyRequestMessage
 						.getProcessingParam();
@@ -497,6 +639,7 @@ public final class ExpressionAnalyzerRunner extends Runner {
 
 				// register the message in the monitor
 				monitor.addMessage(event.getRemoteProcess(), requestMessage.getProcessingParam());
+				analyzingSessions.get(sessionID).handedOver(alloyProcessingParam);
 			}
 		});
 
@@ -508,6 +651,18 @@ public final class ExpressionAnalyzerRunner extends Runner {
 				// System.out.println("resonse
 				// dm->"+((AlloyProcessingParam)responseMessage.getResult().getParam()).getAlloyCoder().get().srcName());
 				monitor.processResponded(responseMessage.getResult(), responseMessage.process);
+				// A withdrawn task is sent again, so it is not a result yet.
+				if (responseMessage.getResult().isWithdrawn())
+					return;
+				final Optional<ExpressionAnalyzingSession> session = getSession
+						.apply((AlloyProcessingParam) responseMessage.getResult().getParam());
+				// A pruned task has no result, but it might be the last one.
+				if (responseMessage.getResult().isPruned()) {
+					session.ifPresent(ExpressionAnalyzingSession::checkDone);
+					return;
+				}
+				outcomeCache.record((AlloyProcessedResult) responseMessage.getResult());
+				session.ifPresent(s -> s.prune((AlloyProcessedResult) responseMessage.getResult()));
 				// System.out.println("resonse after
 				// dm->"+((AlloyProcessingParam)responseMessage.getResult().getParam()).getAlloyCoder().get().srcName());
 				final Map<String, Object> context = new HashMap<>();
@@ -569,9 +724,10 @@ public final class ExpressionAnalyzerRunner extends Runner {
 		});
 
 		// Queue that are shared between feeder and generator
-		feedingQueue = new Queue<>(20);
+		// Both are prioritized, so the checks pruning more run first.
+		feedingQueue = Queue.prioritized(20);
 		// Queue that is shared between monitor and feeder
-		backlogFeedingQueue = new Queue<>(100);
+		backlogFeedingQueue = Queue.prioritized(100);
 
 		processManager = new RemoteProcessManager(distributerInterface.getHostProcess().address, AlloyRunner.class,
 				ProccessNumber);
@@ -581,6 +737,31 @@ public final class ExpressionAnalyzerRunner extends Runner {
 			protected RequestMessage createRequestMessage(RemoteProcess process, AlloyProcessingParam param) {
 				return new AlloyRequestMessage(process, param);
 			}
+
+			@Override
+			protected boolean isRedundant(AlloyProcessingParam param) {
+				final Optional<ExpressionAnalyzingSession> session = getSession.apply(param);
+				if (!session.isPresent())
+					return false;
+				if (session.get().isDecided(param)) {
+					monitor.prune(param);
+					session.get().handedOver(param);
+					session.get().checkDone();
+					return true;
+				}
+				// Solved in an earlier session or run.
+				final Optional<Integer> sat = outcomeCache.lookup(param);
+				if (!sat.isPresent())
+					return false;
+				session.get().handedOver(param);
+				session.get().answerFromCache(param, sat.get());
+				return true;
+			}
+
+			@Override
+			protected Optional<RemoteMessage> createWithdrawMessage(RemoteProcess process, int count) {
+				return Optional.of(new AlloyWithdrawMessage(process, count));
+			}
 		};
 
 		// liveness messages are sent to the initiator
@@ -611,6 +792,7 @@ public final class ExpressionAnalyzerRunner extends Runner {
 					for (ThreadToBeMonitored t : monitoredThreads) {
 						sb.append(t.getStatus()).append("\n");
 					}
+					sb.append(outcomeCache).append("\n");
 					// System.out.println(sb);
 					logger.info(sb.toString());
 					sb.delete(0, sb.length() - 1);
@@ -3,12 +3,21 @@
  */
 package edu.uw.ece.alloy.debugger.propgen.benchmarker.center;
 
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+
 import edu.uw.ece.alloy.Configuration;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.ProcessingParam;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.communication.Queue;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.RemoteMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.RequestMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.watchdogs.ThreadToBeMonitored;
 import edu.uw.ece.alloy.util.RetryingThread;
@@ -17,7 +26,8 @@ import edu.uw.ece.alloy.util.ServerSocketInterface;
 /**
  * Feeder is the storage that keeps tasks to be sent before distributed to
  * remote processors. In collaboration with processmanager, it distributes the
- * tasks among remote processes
+ * tasks among remote processes. The tasks are either added to the queue, or
+ * pulled from the lazy sources only as fast as they are sent.
  * 
  * @author vajih
  *
@@ -31,6 +41,13 @@ public abstract class Feeder<T extends ProcessingParam>
 	final public static boolean PREVENT_DUPLICATION = Boolean
 			.parseBoolean(Configuration.getProp("prevent_generation_duplication"));
 
+	final public static long RebalanceInterval = Long
+			.parseLong(Configuration.getProp("dispatch_rebalance_interval"));
+
+	/* How many tasks pulled from the sources might wait in the queue. */
+	final public static int Lookahead = Integer
+			.parseInt(Configuration.getProp("feeder_lookahead"));
+
 	final Queue<T> queue;
 	/*
 	 * This buffer stores as a second buffer. The content is eventually merged
@@ -40,9 +57,18 @@ public abstract class Feeder<T extends ProcessingParam>
 	 */
 	final Queue<T> backLogQueue;
 
+	/*
+	 * The sources that are not exhausted, pulled in the round robin order.
+	 * Guarded by itself.
+	 */
+	final LinkedList<PeekingIterator<T>> sources = new LinkedList<>();
+
 	final ProcessDistributer processes;
 
-	final Thread sender, merger;
+	final Thread sender, merger, rebalancer;
+
+	/* When the waiting tasks of a process were taken back the last time. */
+	final Map<RemoteProcess, Long> lastWithdrawn = new ConcurrentHashMap<>();
 
 	/* Interface to send messages */
 	final ServerSocketInterface distributerInterface;
@@ -67,14 +93,25 @@ public abstract class Feeder<T extends ProcessingParam>
 				}
 			}
 		}, 100);
+		rebalancer = new RetryingThread(new Runnable() {
+			public void run() {
+				try {
+					Thread.sleep(RebalanceInterval);
+					rebalance();
+				} catch (InterruptedException e) {
+					logger.log(Level.SEVERE, "[" + Thread.currentThread().getName() + "]"
+							+ "The thread is interuppted.", e);
+					throw new RuntimeException(e);
+				}
+			}
+		}, 100);
 	}
 
 	public Feeder(final ProcessDistributer processes,
 			final ServerSocketInterface distributerInterface, int bufferSize,
 			int backLogBufferSize) {
 		this(processes, distributerInterface,
-				bufferSize > 0 ? new Queue<>(bufferSize) : new Queue<>(),
-				backLogBufferSize > 0 ? new Queue<>(backLogBufferSize) : new Queue<>());
+				Queue.prioritized(bufferSize), Queue.prioritized(backLogBufferSize));
 	}
 
 	public Feeder(final ProcessDistributer processes,
@@ -104,7 +141,51 @@ public abstract class Feeder<T extends ProcessingParam>
 							+ queue.size());
 	}
 
+	/**
+	 * Adds a lazy source of tasks. A task is pulled from the source once there
+	 * is a room in the queue, so the tasks are made as fast as they are sent
+	 * and not all at once.
+	 * 
+	 * @param source
+	 */
+	public void addSource(final Iterator<? extends T> source) {
+		synchronized (sources) {
+			sources.addLast(Iterators.peekingIterator(source));
+		}
+		refill();
+	}
+
+	/**
+	 * Pulls from the sources until the queue has the lookahead tasks or the
+	 * sources are exhausted. It never waits for a room in the queue; the task
+	 * that does not fit stays in its source.
+	 */
+	public void refill() {
+		synchronized (sources) {
+			while (!sources.isEmpty() && queue.size() < Lookahead) {
+				final PeekingIterator<T> source = sources.removeFirst();
+				try {
+					if (!source.hasNext())
+						continue;
+					if (!queue.offer(source.peek())) {
+						sources.addFirst(source);
+						return;
+					}
+					source.next();
+					if (source.hasNext())
+						sources.addLast(source);
+				} catch (RuntimeException e) {
+					logger.log(Level.SEVERE, "[" + Thread.currentThread().getName() + "]"
+							+ "The source is dropped as it failed to make a task.", e);
+				}
+			}
+		}
+	}
+
 	public void clear() {
+		synchronized (sources) {
+			sources.clear();
+		}
 		queue.clear();
 	}
 
@@ -137,6 +218,32 @@ public abstract class Feeder<T extends ProcessingParam>
 	protected abstract RequestMessage createRequestMessage(RemoteProcess process,
 			T param);
 
+	/**
+	 * A task whose outcome is already known is not sent. By default, every task
+	 * is sent.
+	 * 
+	 * @param param
+	 * @return true if the task is not needed anymore.
+	 */
+	protected boolean isRedundant(T param) {
+		return false;
+	}
+
+	/**
+	 * Makes a message asking a process to send back its waiting tasks. The
+	 * tasks come back as responses and are merged through the backlog. By
+	 * default, the tasks are not taken back.
+	 * 
+	 * @param process
+	 * @param count
+	 *          How many waiting tasks to send back.
+	 * @return
+	 */
+	protected Optional<RemoteMessage> createWithdrawMessage(RemoteProcess process,
+			int count) {
+		return Optional.empty();
+	}
+
 	/**
 	 * Pick a request from the queue and send it to a process.
 	 * 
@@ -149,7 +256,8 @@ public abstract class Feeder<T extends ProcessingParam>
 		T e;
 		try {
 			// take a request, if something is in the queue. Otherwise the thread
-			// parks here.
+			// parks here until a task or a source is added.
+			refill();
 			e = queue.take();
 			//System.out.println("feeder 1->"+e.hashCode());
 			if (Configuration.IsInDeubbungMode)
@@ -165,8 +273,15 @@ public abstract class Feeder<T extends ProcessingParam>
 			logger.info("[" + Thread.currentThread().getName() + "]"
 					+ "Message is taken " + e);
 
-		// Find a processor to process the request.
-		RemoteProcess process = processes.getActiveRandomeProcess();
+		if (isRedundant(e)) {
+			if (Configuration.IsInDeubbungMode)
+				logger.info("[" + Thread.currentThread().getName() + "]"
+						+ "The outcome is known, so it is not sent: " + e);
+			return;
+		}
+
+		// Find a processor with a free credit to process the request.
+		RemoteProcess process = processes.acquireProcess();
 
 		if (Configuration.IsInDeubbungMode)
 			logger.info(
@@ -183,12 +298,39 @@ public abstract class Feeder<T extends ProcessingParam>
 		} catch (Throwable t) {
 			logger.log(Level.SEVERE, "[" + Thread.currentThread().getName() + "] "
 					+ "The command cannot be sent.", t);
+			processes.releaseProcess(process);
 			addProcessTaskToBacklog(e);
 			throw t;
 		}
 
 	}
 
+	/**
+	 * Once no task is left to be sent, the waiting tasks of the lagging
+	 * processes are taken back to be sent to the idle ones. A process is asked
+	 * once per interval, so its answer is received before asking again.
+	 */
+	protected void rebalance() {
+		if (!queue.isEmpty() || !backLogQueue.isEmpty())
+			return;
+		final long now = System.currentTimeMillis();
+		for (Map.Entry<RemoteProcess, Integer> lagging : processes
+				.getLaggingProcesses().entrySet()) {
+			final RemoteProcess process = lagging.getKey();
+			if (now - lastWithdrawn.getOrDefault(process, 0L) < 2 * RebalanceInterval)
+				continue;
+			final Optional<RemoteMessage> message = createWithdrawMessage(process,
+					lagging.getValue());
+			if (!message.isPresent())
+				return;
+			if (Configuration.IsInDeubbungMode)
+				logger.info("[" + Thread.currentThread().getName() + "]"
+						+ "Taking back " + lagging.getValue() + " tasks from " + process);
+			lastWithdrawn.put(process, now);
+			distributerInterface.sendMessage(message.get(), process);
+		}
+	}
+
 	private void merge() throws InterruptedException {
 
 		if (Configuration.IsInDeubbungMode)
@@ -222,21 +364,29 @@ public abstract class Feeder<T extends ProcessingParam>
 	public void startThread() {
 		sender.start();
 		merger.start();
+		rebalancer.start();
 	}
 
 	public void cancelThread() {
 		sender.interrupt();
 		merger.interrupt();
+		rebalancer.interrupt();
 	}
 
 	public void changePriority(final int newPriority) {
 		sender.setPriority(newPriority);
 		merger.setPriority(newPriority);
+		rebalancer.setPriority(newPriority);
 	}
 
 	public String getStatus() {
+		final int sourcesNumber;
+		synchronized (sources) {
+			sourcesNumber = sources.size();
+		}
 		return (new StringBuilder()).append("New messages added=")
-				.append(queue.size()).append("\nMessages to be sent=")
+				.append(queue.size()).append("\nSources to be pulled=")
+				.append(sourcesNumber).append("\nMessages to be sent=")
 				.append(queue.size()).append("\nMessages to be merged=")
 				.append(backLogQueue.size()).toString();
 	}
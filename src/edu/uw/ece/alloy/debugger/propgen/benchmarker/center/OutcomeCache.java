@@ -0,0 +1,218 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.center;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.uw.ece.alloy.Configuration;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.AlloyProcessingParam;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.PropertyToAlloyCode;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyProcessedResult;
+import edu.uw.ece.alloy.util.Utils;
+
+/**
+ * The outcomes of the solved checks, kept across the sessions and the runs. A
+ * check is known by its patterns, operator, field, scope and the fingerprint
+ * of the model it is checked against, so a check solved once is not sent to
+ * an Alloy process again.
+ *
+ * The outcomes are kept in memory, indexed by the hash of their key, and
+ * appended to a log file as they are recorded. The log is read back on
+ * start-up and compacted if it has many overwritten outcomes. Only the
+ * normal outcomes are kept; a timeout or a failure depends on the run.
+ *
+ * @author vajih
+ *
+ */
+public class OutcomeCache {
+
+	protected final static Logger logger = Logger
+			.getLogger(OutcomeCache.class.getName() + "--" + Thread.currentThread().getName());
+
+	public final static String pathToCache = Configuration.getProp("outcome_cache");
+
+	final static String Separator = ",";
+
+	/* Empty if the cache is only in memory. */
+	protected final Optional<File> file;
+	/* key hash -> sat */
+	protected final Map<String, Integer> outcomes = new ConcurrentHashMap<>();
+	/* Guarded by this. */
+	protected Writer log;
+
+	protected final AtomicLong hits = new AtomicLong(0);
+	protected final AtomicLong misses = new AtomicLong(0);
+
+	public OutcomeCache(final Optional<File> file) {
+		this.file = file;
+		file.ifPresent(this::load);
+	}
+
+	public OutcomeCache(final File file) {
+		this(Optional.of(file));
+	}
+
+	/**
+	 * The cache at outcome_cache, or only in memory if the path is empty.
+	 */
+	public OutcomeCache() {
+		this(pathToCache == null || pathToCache.trim().isEmpty() ? Optional.empty()
+				: Optional.of(new File(pathToCache)));
+	}
+
+	protected void load(final File file) {
+		int lines = 0;
+		if (file.exists()) {
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					final String[] row = line.split(Separator);
+					if (row.length != 2)
+						continue;
+					try {
+						outcomes.put(row[0], Integer.parseInt(row[1]));
+						++lines;
+					} catch (NumberFormatException nfe) {
+						logger.warning(Utils.threadName() + "A bad outcome is skipped: " + line);
+					}
+				}
+			} catch (IOException e) {
+				logger.log(Level.WARNING, Utils.threadName() + "The outcome cache cannot be read: " + file, e);
+			}
+		}
+		try {
+			if (lines > 2 * outcomes.size())
+				compact(file);
+			final File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null && !parent.exists())
+				parent.mkdirs();
+			log = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			logger.log(Level.WARNING,
+					Utils.threadName() + "The outcome cache cannot be written, so it is kept in memory: " + file, e);
+		}
+		logger.info(Utils.threadName() + outcomes.size() + " outcomes are loaded from: " + file);
+	}
+
+	/* Rewrites the log with one line per outcome. */
+	protected void compact(final File file) throws IOException {
+		final File tmp = new File(file.getAbsolutePath() + ".tmp");
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+			for (Map.Entry<String, Integer> outcome : outcomes.entrySet())
+				writer.write(outcome.getKey() + Separator + outcome.getValue() + "\n");
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * The hash of the check's composite key: the patterns and the operator, the
+	 * command and its formula, the field, the scope and the model fingerprint.
+	 * The operator alone does not tell the checks apart, e.g. an And and an
+	 * Incon check of the same patterns both use "and".
+	 */
+	public static String key(final PropertyToAlloyCode coder) {
+		return Utils.digest(coder.getPredName() + "\n" + (coder.isCheckCommand() ? "check" : "run") + "\n"
+				+ coder.generateCommandFormula() + "\n" + coder.field + "\n" + coder.scope + "\n"
+				+ coder.getModelFingerprint());
+	}
+
+	protected static Optional<String> key(final AlloyProcessingParam param) {
+		try {
+			return param.getAlloyCoder().map(OutcomeCache::key);
+		} catch (RuntimeException e) {
+			// The coder cannot make a key, e.g. it has no operator.
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * @param param
+	 * @return The sat of the check, if it is solved before.
+	 */
+	public Optional<Integer> lookup(final AlloyProcessingParam param) {
+		final Optional<Integer> result = key(param).map(outcomes::get);
+		(result.isPresent() ? hits : misses).incrementAndGet();
+		return result;
+	}
+
+	/**
+	 * Keeps the outcome of a normal result.
+	 *
+	 * @return true if the outcome is new.
+	 */
+	public boolean record(final AlloyProcessedResult result) {
+		if (!result.isNormal())
+			return false;
+		final Optional<String> key = key(result.getParam());
+		if (!key.isPresent())
+			return false;
+		final Integer old = outcomes.put(key.get(), result.sat);
+		if (old != null && old == result.sat)
+			return false;
+		append(key.get(), result.sat);
+		return true;
+	}
+
+	protected synchronized void append(final String key, final int sat) {
+		if (log == null)
+			return;
+		try {
+			log.write(key + Separator + sat + "\n");
+			log.flush();
+		} catch (IOException e) {
+			logger.log(Level.WARNING, Utils.threadName() + "The outcome is not stored on the disk: " + key, e);
+		}
+	}
+
+	public synchronized void close() {
+		if (log == null)
+			return;
+		try {
+			log.close();
+		} catch (IOException e) {
+			logger.log(Level.WARNING, Utils.threadName() + "The outcome cache is not closed properly.", e);
+		}
+		log = null;
+	}
+
+	public int size() {
+		return outcomes.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public double getHitRatio() {
+		final long total = hits.get() + misses.get();
+		return total == 0 ? 0 : (double) hits.get() / total;
+	}
+
+	@Override
+	public String toString() {
+		return "OutcomeCache [size=" + size() + ", hits=" + hits + ", misses=" + misses + ", file="
+				+ file.map(File::getPath).orElse("memory") + "]";
+	}
+
+}
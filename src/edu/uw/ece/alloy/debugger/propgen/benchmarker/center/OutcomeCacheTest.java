@@ -0,0 +1,111 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.center;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.AlloyProcessingParam;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.AndPropertyToAlloyCode;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.IfPropertyToAlloyCode;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.InconPropertyToAlloyCode;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.PropertyToAlloyCode;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.agent.ProcessedResult.Status;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyProcessedResult;
+
+/**
+ * @author vajih
+ *
+ */
+public class OutcomeCacheTest {
+
+	final File cacheFile = new File("tmp", "outcome_cache_test.csv");
+
+	AlloyProcessingParam param(final String pattern, final String header, final String scope) {
+		return new AlloyProcessingParam(UUID.randomUUID(), 0,
+				new IfPropertyToAlloyCode("", "", "", "", "expr", pattern, new ArrayList<>(), header, scope, "r") {
+					private static final long serialVersionUID = 1L;
+				});
+	}
+
+	AlloyProcessedResult result(final AlloyProcessingParam param, final Status status, final int sat) {
+		return new AlloyProcessedResult(param, status, 0, 0, 0, 0, 0, 0, sat);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		cacheFile.delete();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		cacheFile.delete();
+	}
+
+	@Test
+	public void testSolvedCheckIsFoundInAnotherSession() {
+		final OutcomeCache cache = new OutcomeCache(Optional.empty());
+		assertTrue(cache.record(result(param("acyclic", "sig A{}", "for 5"), Status.NORMAL, -1)));
+
+		assertEquals(Optional.of(-1), cache.lookup(param("acyclic", "sig A{}", "for 5")));
+		assertEquals(1, cache.getHits());
+		assertEquals(0, cache.getMisses());
+	}
+
+	@Test
+	public void testTheKeyHasTheModelAndTheScope() {
+		final OutcomeCache cache = new OutcomeCache(Optional.empty());
+		cache.record(result(param("acyclic", "sig A{}", "for 5"), Status.NORMAL, 1));
+
+		assertFalse(cache.lookup(param("acyclic", "sig B{}", "for 5")).isPresent());
+		assertFalse(cache.lookup(param("acyclic", "sig A{}", "for 6")).isPresent());
+		assertFalse(cache.lookup(param("total", "sig A{}", "for 5")).isPresent());
+		assertEquals(3, cache.getMisses());
+	}
+
+	AlloyProcessingParam param(final PropertyToAlloyCode converter) {
+		return new AlloyProcessingParam(UUID.randomUUID(), 0, converter.createIt("", "", "expr", "acyclic[r]", "expr",
+				"acyclic", new ArrayList<>(), "sig A{r: set A}", "for 5", "r"));
+	}
+
+	@Test
+	public void testChecksWithTheSameOperatorAreNotMixed() {
+		final OutcomeCache cache = new OutcomeCache(Optional.empty());
+		// Both are "expr and acyclic", but one runs it and the other checks it.
+		assertTrue(cache.record(result(param(AndPropertyToAlloyCode.EMPTY_CONVERTOR), Status.NORMAL, 1)));
+
+		assertFalse(cache.lookup(param(InconPropertyToAlloyCode.EMPTY_CONVERTOR)).isPresent());
+		assertEquals(Optional.of(1), cache.lookup(param(AndPropertyToAlloyCode.EMPTY_CONVERTOR)));
+	}
+
+	@Test
+	public void testTimeoutsAreNotKept() {
+		final OutcomeCache cache = new OutcomeCache(Optional.empty());
+		assertFalse(cache.record(result(param("acyclic", "sig A{}", "for 5"), Status.TIMEOUT, 0)));
+		assertFalse(cache.record(result(param("acyclic", "sig A{}", "for 5"), Status.FAILED, 0)));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testOutcomesAreKeptAcrossRuns() {
+		final OutcomeCache first = new OutcomeCache(cacheFile);
+		first.record(result(param("acyclic", "sig A{}", "for 5"), Status.NORMAL, 1));
+		first.record(result(param("total", "sig A{}", "for 5"), Status.NORMAL, -1));
+		first.close();
+
+		final OutcomeCache second = new OutcomeCache(cacheFile);
+		assertEquals(2, second.size());
+		assertEquals(Optional.of(1), second.lookup(param("acyclic", "sig A{}", "for 5")));
+		assertEquals(Optional.of(-1), second.lookup(param("total", "sig A{}", "for 5")));
+		second.close();
+	}
+
+}
@@ -1,8 +1,37 @@
 package edu.uw.ece.alloy.debugger.propgen.benchmarker.center;
 
+import java.util.Collections;
+import java.util.Map;
+
 public interface ProcessDistributer /*extends RemoteProcessLogger */{
 
 	public RemoteProcess getRandomProcess();
 
 	public RemoteProcess getActiveRandomeProcess();
-}
\ No newline at end of file
+
+	/**
+	 * Waits until a process can take a new task and charges the task to it.
+	 * 
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public default RemoteProcess acquireProcess() throws InterruptedException {
+		return getActiveRandomeProcess();
+	}
+
+	/**
+	 * Gives back the charge of a task that could not be sent to the process.
+	 * 
+	 * @param process
+	 */
+	public default void releaseProcess(final RemoteProcess process) {
+	}
+
+	/**
+	 * @return The processes that hold waiting tasks better to be sent to the
+	 *         other processes, and how many of them.
+	 */
+	public default Map<RemoteProcess, Integer> getLaggingProcesses() {
+		return Collections.emptyMap();
+	}
+}
@@ -0,0 +1,86 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.center;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The measured signals of a remote process: its heap after the last garbage
+ * collection, as reported in its liveness messages, the latency of its tasks
+ * and the number of its tasks that are hard timed out.
+ * 
+ * The mean latency of the first tasks is the baseline of the process. The
+ * latency drift is the moving average of the later tasks over the baseline.
+ * 
+ * @author vajih
+ *
+ */
+public class ProcessHealth {
+
+	/* The weight of a new latency in the moving average. */
+	final static double LatencyWeight = 0.2;
+
+	public final int baselineTasks;
+
+	protected volatile long heapAfterGC = -1;
+	protected volatile long maxHeap = -1;
+
+	/* Guarded by this. */
+	protected int tasks = 0;
+	protected double baselineLatency = 0;
+	protected double averageLatency = 0;
+
+	protected final AtomicInteger hardTimeouts = new AtomicInteger(0);
+
+	public ProcessHealth(final int baselineTasks) {
+		if (baselineTasks < 1)
+			throw new IllegalArgumentException("The baseline needs at least one task: " + baselineTasks);
+		this.baselineTasks = baselineTasks;
+	}
+
+	public void reportHeap(final long heapAfterGC, final long maxHeap) {
+		this.heapAfterGC = heapAfterGC;
+		this.maxHeap = maxHeap;
+	}
+
+	public synchronized void recordLatency(final long latency) {
+		++tasks;
+		if (tasks <= baselineTasks) {
+			baselineLatency += (latency - baselineLatency) / tasks;
+			averageLatency = baselineLatency;
+		} else {
+			averageLatency += LatencyWeight * (latency - averageLatency);
+		}
+	}
+
+	public void recordHardTimeout() {
+		hardTimeouts.incrementAndGet();
+	}
+
+	/**
+	 * @return The heap after GC over the max heap, or -1 if it is not reported.
+	 */
+	public double getHeapRatio() {
+		final long heap = heapAfterGC, max = maxHeap;
+		return heap < 0 || max <= 0 ? -1 : (double) heap / max;
+	}
+
+	/**
+	 * @return The recent latency over the baseline latency. It is 1 until the
+	 *         baseline is made.
+	 */
+	public synchronized double getLatencyDrift() {
+		if (tasks <= baselineTasks)
+			return 1;
+		return averageLatency / Math.max(baselineLatency, 1);
+	}
+
+	public int getHardTimeouts() {
+		return hardTimeouts.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ProcessHealth [heapRatio=" + getHeapRatio() + ", latencyDrift=" + getLatencyDrift()
+				+ ", hardTimeouts=" + getHardTimeouts() + "]";
+	}
+
+}
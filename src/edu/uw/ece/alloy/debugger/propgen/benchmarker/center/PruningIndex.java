@@ -0,0 +1,72 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.center;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.AlloyProcessingParam;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.PropertyToAlloyCode;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyProcessedResult;
+import edu.uw.ece.alloy.util.Utils;
+
+/**
+ * Keeps the checks of a session whose outcomes are known, either checked or
+ * inferred from a checked one over the implication lattices. A task for a
+ * known check is redundant, so it is not sent, or dropped from the agent
+ * queue if it is sent already.
+ *
+ * @author vajih
+ *
+ */
+public class PruningIndex {
+
+	protected final static Logger logger = Logger
+			.getLogger(PruningIndex.class.getName() + "--" + Thread.currentThread().getName());
+
+	/* The predicate names of the known checks. */
+	protected final Set<String> decided = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Records the check of the result and the checks inferred from it.
+	 *
+	 * @param result
+	 * @return The predicate names that were not known before.
+	 */
+	public Set<String> record(final AlloyProcessedResult result) {
+		if (!result.isNormal() && !result.isInferred())
+			return Collections.emptySet();
+		final PropertyToAlloyCode coder = result.getParam().getAlloyCoder().orElse(null);
+		if (coder == null)
+			return Collections.emptySet();
+
+		final Set<String> added = new HashSet<>();
+		if (decided.add(coder.getPredName()))
+			added.add(coder.getPredName());
+		if (result.isNormal()) {
+			try {
+				for (PropertyToAlloyCode inferred : coder.createItself().getInferedPropertiesCoder(result.sat))
+					if (decided.add(inferred.getPredName()))
+						added.add(inferred.getPredName());
+			} catch (RuntimeException e) {
+				logger.log(Level.WARNING, Utils.threadName() + "Nothing is inferred from: " + result, e);
+			}
+		}
+		return Collections.unmodifiableSet(added);
+	}
+
+	/**
+	 * @param param
+	 * @return true if the outcome of the param's check is known.
+	 */
+	public boolean isDecided(final AlloyProcessingParam param) {
+		return param.getAlloyCoder().map(coder -> decided.contains(coder.getPredName())).orElse(false);
+	}
+
+	public int size() {
+		return decided.size();
+	}
+
+}
@@ -0,0 +1,89 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.center;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.AlloyProcessingParam;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.IfPropertyToAlloyCode;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.PropertyToAlloyCode;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.agent.ProcessedResult.Status;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyProcessedResult;
+
+/**
+ * @author vajih
+ *
+ */
+public class PruningIndexTest {
+
+	/* A coder that infers the given patterns instead of reading the lattices. */
+	static class InferringCoder extends IfPropertyToAlloyCode {
+
+		private static final long serialVersionUID = 1L;
+		final List<String> inferred;
+
+		InferringCoder(final String pattern, final String... inferred) {
+			super("", "", "", "", "expr", pattern, new ArrayList<>(), "", "", "r");
+			this.inferred = Arrays.asList(inferred);
+		}
+
+		@Override
+		public PropertyToAlloyCode createItself() {
+			return this;
+		}
+
+		@Override
+		public List<PropertyToAlloyCode> getInferedPropertiesCoder(int sat) {
+			return inferred.stream().map(p -> new InferringCoder(p)).collect(Collectors.toList());
+		}
+	}
+
+	final UUID session = UUID.randomUUID();
+
+	AlloyProcessingParam param(final String pattern, final String... inferred) {
+		return new AlloyProcessingParam(session, 0, new InferringCoder(pattern, inferred));
+	}
+
+	@Test
+	public void testInferredChecksAreDecided() {
+		final PruningIndex index = new PruningIndex();
+		assertEquals(new HashSet<>(Arrays.asList(param("acyclic").getAlloyCoder().get().getPredName(),
+				param("irreflexive").getAlloyCoder().get().getPredName())),
+				index.record(new AlloyProcessedResult(param("acyclic", "irreflexive"), Status.NORMAL)));
+
+		assertTrue(index.isDecided(param("acyclic")));
+		assertTrue(index.isDecided(param("irreflexive")));
+		assertFalse(index.isDecided(param("total")));
+	}
+
+	@Test
+	public void testOnlyNewChecksAreReturned() {
+		final PruningIndex index = new PruningIndex();
+		index.record(new AlloyProcessedResult(param("acyclic", "irreflexive"), Status.NORMAL));
+
+		assertEquals(Collections.emptySet(),
+				index.record(new AlloyProcessedResult(param("irreflexive"), Status.INFERRED)));
+		assertEquals(2, index.size());
+	}
+
+	@Test
+	public void testUnfinishedChecksAreNotDecided() {
+		final PruningIndex index = new PruningIndex();
+		index.record(new AlloyProcessedResult(param("acyclic", "irreflexive"), Status.TIMEOUT));
+		index.record(new AlloyProcessedResult(param("total"), Status.WITHDRAWN));
+
+		assertEquals(0, index.size());
+		assertFalse(index.isDecided(param("acyclic")));
+	}
+
+}
@@ -0,0 +1,57 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.center;
+
+import java.util.Optional;
+
+import edu.uw.ece.alloy.Configuration;
+
+/**
+ * Decides whether a remote process has to be recycled by its measured health.
+ * A process is recycled if its heap after GC is nearly full, its tasks take
+ * much longer than they used to, or too many of its tasks are hard timed out.
+ * 
+ * @author vajih
+ *
+ */
+public class RecyclingPolicy {
+
+	public final static double MaxHeapRatio = Double.parseDouble(Configuration.getProp("recycle_heap_ratio"));
+	public final static double MaxLatencyDrift = Double.parseDouble(Configuration.getProp("recycle_latency_drift"));
+	public final static int MaxHardTimeouts = Integer.parseInt(Configuration.getProp("recycle_hard_timeouts"));
+	public final static int BaselineTasks = Integer.parseInt(Configuration.getProp("recycle_baseline_tasks"));
+
+	public final double maxHeapRatio;
+	public final double maxLatencyDrift;
+	public final int maxHardTimeouts;
+	public final int baselineTasks;
+
+	public RecyclingPolicy(final double maxHeapRatio, final double maxLatencyDrift, final int maxHardTimeouts,
+			final int baselineTasks) {
+		this.maxHeapRatio = maxHeapRatio;
+		this.maxLatencyDrift = maxLatencyDrift;
+		this.maxHardTimeouts = maxHardTimeouts;
+		this.baselineTasks = baselineTasks;
+	}
+
+	public RecyclingPolicy() {
+		this(MaxHeapRatio, MaxLatencyDrift, MaxHardTimeouts, BaselineTasks);
+	}
+
+	public ProcessHealth createHealth() {
+		return new ProcessHealth(baselineTasks);
+	}
+
+	/**
+	 * @param health
+	 * @return Why the process has to be recycled, or empty if it is healthy.
+	 */
+	public Optional<String> findReason(final ProcessHealth health) {
+		if (health.getHeapRatio() >= maxHeapRatio)
+			return Optional.of("The heap after GC is at " + health.getHeapRatio() + " of the max heap.");
+		if (health.getLatencyDrift() >= maxLatencyDrift)
+			return Optional.of("The latency is " + health.getLatencyDrift() + " times the baseline.");
+		if (health.getHardTimeouts() >= maxHardTimeouts)
+			return Optional.of(health.getHardTimeouts() + " tasks are hard timed out.");
+		return Optional.empty();
+	}
+
+}
@@ -4,6 +4,7 @@
 package edu.uw.ece.alloy.debugger.propgen.benchmarker.center;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -70,4 +71,14 @@ public interface RemoteProcessLogger {
 
 	void killAndReplaceProcess(final RemoteProcess process);
 
+	void reportHeapAfterGC(final RemoteProcess process, long heapAfterGC, long maxHeap);
+
+	void recordTaskLatency(final RemoteProcess process, long latency);
+
+	void recordHardTimeout(final RemoteProcess process);
+
+	Optional<RemoteProcess> drainUnhealthyProcess();
+
+	List<RemoteProcess> findDrainedProcesses();
+
 }
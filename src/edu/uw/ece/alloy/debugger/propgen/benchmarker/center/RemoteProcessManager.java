@@ -6,13 +6,19 @@ import java.net.InetSocketAddress;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,10 +55,15 @@ public class RemoteProcessManager /*
 	final static String ProcessLoggerConfig = Configuration.getProp("process_logger_config");
 
 	public final static int MaxFeedThreashold = Integer.valueOf(Configuration.getProp("max_feed_treashold"));
+	final static long DispatchWaitInMS = 100;
+	public final static int DispatchCreditWindow = Integer.valueOf(Configuration.getProp("dispatch_credit_window"));
+	public final static long DrainTimeout = Long.parseLong(Configuration.getProp("recycle_drain_timeout"));
 
 	final public InetSocketAddress localSocket;
 	final public int maxActiveProcessNumbers;
 	final public int maxDoingTasks;
+	/* Picks the process for the next task */
+	final protected DispatchPolicy dispatchPolicy;
 
 	/**
 	 * All access to remoteRunnerClass has to be done through
@@ -67,6 +78,20 @@ public class RemoteProcessManager /*
 	final ConcurrentMap<RemoteProcess, RemoteProcessRecord> activeProcesses = new ConcurrentHashMap<>();
 	/* Process that */
 	final ConcurrentMap<RemoteProcess, RemoteProcessRecord> deadProcesses = new ConcurrentHashMap<>();
+	/* The measured health of the active processes */
+	final ConcurrentMap<RemoteProcess, ProcessHealth> processesHealth = new ConcurrentHashMap<>();
+	/* When the draining processes stopped taking tasks. Guarded by activeProcesses. */
+	final Map<RemoteProcess, Long> drainingSince = new HashMap<>();
+	/*
+	 * The sessions sent directly to a process and not responded yet. Guarded by
+	 * activeProcesses.
+	 */
+	final Map<RemoteProcess, Set<UUID>> pendingSessions = new HashMap<>();
+	/* Told about the sessions left on a killed process. */
+	final List<BiConsumer<RemoteProcess, Set<UUID>>> killListeners = new CopyOnWriteArrayList<>();
+
+	protected RecyclingPolicy recyclingPolicy = new RecyclingPolicy();
+	protected long drainTimeout = DrainTimeout;
 
 	public RemoteProcessManager(InetSocketAddress localSocket, Class<?> remoteRunnerClass, int proccessNumber) {
 		// InetSocketAddress is immutable.
@@ -91,11 +116,18 @@ public class RemoteProcessManager /*
 
 	public RemoteProcessManager(InetSocketAddress localSocket, int maxActiveProcessNumbers, int maxDoingTasks,
 			Class<?> remoteRunnerClass) {
+		this(localSocket, maxActiveProcessNumbers, maxDoingTasks, remoteRunnerClass,
+				new CreditDispatchPolicy(Math.max(1, Math.min(maxDoingTasks, DispatchCreditWindow))));
+	}
+
+	public RemoteProcessManager(InetSocketAddress localSocket, int maxActiveProcessNumbers, int maxDoingTasks,
+			Class<?> remoteRunnerClass, DispatchPolicy dispatchPolicy) {
 		// InetSocketAddress is immutable.
 		this.localSocket = localSocket;
 		this.maxActiveProcessNumbers = maxActiveProcessNumbers;
 		this.maxDoingTasks = maxDoingTasks;
 		this.remoteRunnerClass = remoteRunnerClass;
+		this.dispatchPolicy = dispatchPolicy;
 	}
 
 	final Process bootProcess(RemoteProcess remoteSocket, Class<?> clazz) throws IOException {
@@ -124,7 +156,12 @@ public class RemoteProcessManager /*
 					+ process + " to: " + status);
 		synchronized (activeProcesses) {
 			if (activeProcesses.containsKey(process)) {
+				// A draining process stays draining until it is killed.
+				if (activeProcesses.get(process).status == Status.DRAINING
+						&& (status == Status.IDLE || status == Status.WORKING))
+					return;
 				activeProcesses.replace(process, activeProcesses.get(process).changeStatus(status));
+				activeProcesses.notifyAll();
 				if (Configuration.IsInDeubbungMode)
 					logger.log(Level.INFO, "[" + Thread.currentThread().getName() + "] " + "The status is chanaged PID:"
 							+ process + " to: " + status);
@@ -170,6 +207,8 @@ public class RemoteProcessManager /*
 	protected void changeRecord(final RemoteProcess process, RemoteProcessRecord newRecord) {
 		if (activeProcesses.containsKey(process)) {
 			activeProcesses.replace(process, newRecord);
+			// A waiting dispatcher might find a credit now.
+			activeProcesses.notifyAll();
 		} else {
 			logger.severe("The process is not found: " + activeProcesses);
 			//throw new RuntimeException();
@@ -229,7 +268,7 @@ public class RemoteProcessManager /*
 
 	@Override
 	public void IncreaseDoneTasks(final RemoteProcess process, int doneTasks) {
-		changeDoneTasks(process, activeProcesses.get(process) != null ? activeProcesses.get(process).doingTasks + doneTasks : 0);
+		changeDoneTasks(process, activeProcesses.get(process) != null ? activeProcesses.get(process).doneTasks + doneTasks : 0);
 	}
 
 	@Override
@@ -387,7 +426,11 @@ public class RemoteProcessManager /*
 
 	public void addProcess(RemoteProcess remoteProcess) throws IOException {
 		RemoteProcessRecord record = new RemoteProcessRecord(remoteProcess, bootProcess(remoteProcess));
-		activeProcesses.putIfAbsent(remoteProcess, record);
+		synchronized (activeProcesses) {
+			activeProcesses.putIfAbsent(remoteProcess, record);
+			processesHealth.put(remoteProcess, recyclingPolicy.createHealth());
+			activeProcesses.notifyAll();
+		}
 		if (Configuration.IsInDeubbungMode)
 			logger.log(Level.INFO, Utils.threadName() + "A process:" + remoteProcess + " is added to the process list "
 					+ activeProcesses);
@@ -450,6 +493,7 @@ public class RemoteProcessManager /*
 		if (Configuration.IsInDeubbungMode)
 			logger.log(Level.INFO, Utils.threadName() + "Kill a remote Process: " + process);
 		boolean result = false;
+		Set<UUID> leftSessions = null;
 		synchronized (activeProcesses) {
 			if (!activeProcesses.containsKey(process)) {
 				logger.log(Level.WARNING, "[" + Thread.currentThread().getName() + "]"
@@ -465,11 +509,18 @@ public class RemoteProcessManager /*
 				activeProcesses.get(process).process.destroyForcibly();
 				deadProcesses.putIfAbsent(process, activeProcesses.get(process));
 				activeProcesses.remove(process);
+				processesHealth.remove(process);
+				drainingSince.remove(process);
+				leftSessions = pendingSessions.remove(process);
 				logger.log(Level.WARNING, "[" + Thread.currentThread().getName() + "] " + "A process:" + process
 						+ " is killed to the process list " + activeProcesses);
 				result = true;
 			}
 		}
+		if (leftSessions != null && !leftSessions.isEmpty()) {
+			final Set<UUID> sessions = Collections.unmodifiableSet(leftSessions);
+			killListeners.forEach(listener -> listener.accept(process, sessions));
+		}
 		return result;
 	}
 
@@ -484,7 +535,128 @@ public class RemoteProcessManager /*
 		}
 	}
 
-	
+	/**
+	 * Records a session sent directly to the process, so the process is not
+	 * recycled while the session waits for its response.
+	 * 
+	 * @return false if the process is not active anymore, then the session
+	 *         has to be sent to another process.
+	 */
+	public boolean addPendingSession(final RemoteProcess process, final UUID sessionID) {
+		synchronized (activeProcesses) {
+			final RemoteProcessRecord record = activeProcesses.get(process);
+			if (record == null || !record.isActive())
+				return false;
+			pendingSessions.computeIfAbsent(process, p -> new HashSet<>()).add(sessionID);
+			return true;
+		}
+	}
+
+	public void removePendingSession(final RemoteProcess process, final UUID sessionID) {
+		synchronized (activeProcesses) {
+			final Set<UUID> sessions = pendingSessions.get(process);
+			if (sessions != null && sessions.remove(sessionID) && sessions.isEmpty())
+				pendingSessions.remove(process);
+		}
+	}
+
+	/**
+	 * The listener is called with the sessions pending on a process once the
+	 * process is killed, so they can be sent again or failed.
+	 */
+	public void addKillListener(final BiConsumer<RemoteProcess, Set<UUID>> listener) {
+		killListeners.add(listener);
+	}
+
+	public void setRecyclingPolicy(final RecyclingPolicy recyclingPolicy, final long drainTimeout) {
+		this.recyclingPolicy = recyclingPolicy;
+		this.drainTimeout = drainTimeout;
+	}
+
+	public ProcessHealth getProcessHealth(final RemoteProcess process) {
+		return processesHealth.computeIfAbsent(process, p -> recyclingPolicy.createHealth());
+	}
+
+	@Override
+	public void reportHeapAfterGC(final RemoteProcess process, long heapAfterGC, long maxHeap) {
+		getProcessHealth(process).reportHeap(heapAfterGC, maxHeap);
+	}
+
+	@Override
+	public void recordTaskLatency(final RemoteProcess process, long latency) {
+		getProcessHealth(process).recordLatency(latency);
+	}
+
+	@Override
+	public void recordHardTimeout(final RemoteProcess process) {
+		getProcessHealth(process).recordHardTimeout();
+	}
+
+	/**
+	 * Starts draining an unhealthy process: it takes no new task and the
+	 * traffic goes to the other processes. Only one process is drained at a
+	 * time, and only if another active process remains.
+	 * 
+	 * @return The process that started draining.
+	 */
+	@Override
+	public Optional<RemoteProcess> drainUnhealthyProcess() {
+		synchronized (activeProcesses) {
+			if (!drainingSince.isEmpty())
+				return Optional.empty();
+			if (activeProcesses.values().stream().filter(RemoteProcessRecord::isActive).count() < 2)
+				return Optional.empty();
+			for (RemoteProcessRecord record : activeProcesses.values()) {
+				if (!record.isActive())
+					continue;
+				final Optional<String> reason = recyclingPolicy.findReason(getProcessHealth(record.id));
+				if (reason.isPresent()) {
+					logger.log(Level.WARNING,
+							Utils.threadName() + "The process is drained to be recycled: " + record.id + " " + reason.get());
+					changeRecord(record.id, record.changeStatus(Status.DRAINING));
+					drainingSince.put(record.id, System.currentTimeMillis());
+					return Optional.of(record.id);
+				}
+			}
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * @return The draining processes that are done with their tasks or have
+	 *         drained longer than the drain timeout. A process with a pending
+	 *         session is never drained, since nothing else would respond to
+	 *         the session.
+	 */
+	@Override
+	public List<RemoteProcess> findDrainedProcesses() {
+		synchronized (activeProcesses) {
+			final long now = System.currentTimeMillis();
+			final List<RemoteProcess> result = new ArrayList<>();
+			for (RemoteProcess process : drainingSince.keySet()) {
+				final RemoteProcessRecord record = activeProcesses.get(process);
+				if (record != null && !pendingSessions.containsKey(process)
+						&& (record.doingTasks <= 0 || now - drainingSince.get(process) > drainTimeout))
+					result.add(process);
+			}
+			return Collections.unmodifiableList(result);
+		}
+	}
+
+	/**
+	 * Rolls the recycling one process at a time: the drained processes are
+	 * replaced and the next unhealthy process starts draining. The tasks left
+	 * on a process drained by the timeout are not sent again, so a process
+	 * with a pending session waits for the session to be responded.
+	 */
+	public void recycleUnhealthyProcesses() {
+		for (RemoteProcess process : findDrainedProcesses()) {
+			changeStatusToKILLING(process);
+			killAndReplaceProcess(process);
+		}
+		drainUnhealthyProcess();
+	}
+
 	public void replaceAllProcesses(){
 		List<RemoteProcess> prceosses = new ArrayList<>(activeProcesses.keySet());
 		for (RemoteProcess process: prceosses){
@@ -514,11 +686,51 @@ public class RemoteProcessManager /*
 	/**
 	 * Return the most idle process.
 	 * 
-	 * @return
+	 * @return null if no process can take a new task.
 	 */
 	public RemoteProcess getIdlerProcess() {
-		// TODO
-		throw new RuntimeException("Unimplemented");
+		synchronized (activeProcesses) {
+			return dispatchPolicy.select(activeProcesses.values()).orElse(null);
+		}
+	}
+
+	/**
+	 * Waits until the dispatch policy finds a process with a credit, then the
+	 * task is counted as sent and doing for that process.
+	 */
+	@Override
+	public RemoteProcess acquireProcess() throws InterruptedException {
+		synchronized (activeProcesses) {
+			RemoteProcess result;
+			while ((result = getIdlerProcess()) == null) {
+				if (Configuration.IsInDeubbungMode)
+					logger.info(Utils.threadName() + "No process has a credit, waiting: " + activeProcesses.values());
+				// Any change on the records notifies. The timeout covers the
+				// processes that become active without a record change.
+				activeProcesses.wait(DispatchWaitInMS);
+			}
+			final RemoteProcessRecord record = activeProcesses.get(result);
+			changeRecord(result, record.changeSentTasks(record.sentTasks + 1).changeDoingTasks(record.doingTasks + 1));
+			return result;
+		}
+	}
+
+	@Override
+	public void releaseProcess(final RemoteProcess process) {
+		synchronized (activeProcesses) {
+			final RemoteProcessRecord record = activeProcesses.get(process);
+			if (record == null)
+				return;
+			changeRecord(process, record.changeSentTasks(record.sentTasks - 1)
+					.changeDoingTasks(Math.max(record.doingTasks - 1, 0)));
+		}
+	}
+
+	@Override
+	public Map<RemoteProcess, Integer> getLaggingProcesses() {
+		synchronized (activeProcesses) {
+			return dispatchPolicy.findLagging(activeProcesses.values());
+		}
 	}
 
 	protected boolean isAccepting(final RemoteProcess process) {
@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.UUID;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -12,6 +13,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.ProcessorUtil;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.RemoteProcessRecord.Status;
 
 public class RemoteProcessManagerTest {
 
@@ -84,6 +86,93 @@ public class RemoteProcessManagerTest {
 		
 		assertEquals(remoteProcess, manager.getActiveRandomeProcess());
 	}
-	
+
+	RemoteProcess addIdleRecord() {
+		RemoteProcess remoteProcess = new RemoteProcess(ProcessorUtil.findEmptyLocalSocket());
+		manager.activeProcesses.put(remoteProcess,
+				new RemoteProcessRecord(remoteProcess, 0, 0, 0, Status.IDLE, null, 0, 0));
+		return remoteProcess;
+	}
+
+	@Test
+	public void testUnhealthyProcessesAreDrainedOneAtATime() {
+		manager.setRecyclingPolicy(new RecyclingPolicy(0.8, 3, 3, 2), 60000);
+		RemoteProcess a = addIdleRecord();
+		RemoteProcess b = addIdleRecord();
+		addIdleRecord();
+		manager.reportHeapAfterGC(a, 90, 100);
+		manager.reportHeapAfterGC(b, 95, 100);
+
+		RemoteProcess drained = manager.drainUnhealthyProcess().get();
+		assertTrue(drained.equals(a) || drained.equals(b));
+		assertEquals(Status.DRAINING, manager.getRemoteProcessStatus(drained));
+		assertFalse(manager.drainUnhealthyProcess().isPresent());
+
+		// The liveness reports do not bring it back.
+		manager.changeStatusToWORKING(drained);
+		assertEquals(Status.DRAINING, manager.getRemoteProcessStatus(drained));
+		assertNotEquals(drained, manager.getIdlerProcess());
+	}
+
+	@Test
+	public void testDrainedOnceItsTasksAreDone() {
+		manager.setRecyclingPolicy(new RecyclingPolicy(0.8, 3, 2, 2), 60000);
+		RemoteProcess a = addIdleRecord();
+		addIdleRecord();
+		manager.changeDoingTasks(a, 2);
+		manager.recordHardTimeout(a);
+		assertFalse(manager.drainUnhealthyProcess().isPresent());
+		manager.recordHardTimeout(a);
+		assertEquals(a, manager.drainUnhealthyProcess().get());
+
+		assertTrue(manager.findDrainedProcesses().isEmpty());
+		manager.changeDoingTasks(a, 0);
+		assertEquals(a, manager.findDrainedProcesses().get(0));
+	}
+
+	@Test
+	public void testProcessWithPendingSessionIsNotDrained() throws InterruptedException {
+		manager.setRecyclingPolicy(new RecyclingPolicy(0.8, 3, 2, 2), 0);
+		RemoteProcess a = addIdleRecord();
+		addIdleRecord();
+		UUID session = UUID.randomUUID();
+		assertTrue(manager.addPendingSession(a, session));
+		manager.changeDoingTasks(a, 2);
+		manager.recordHardTimeout(a);
+		manager.recordHardTimeout(a);
+		assertEquals(a, manager.drainUnhealthyProcess().get());
+		assertFalse(manager.addPendingSession(a, UUID.randomUUID()));
+
+		// Neither the drain timeout nor the done tasks kill it.
+		Thread.sleep(5);
+		assertTrue(manager.findDrainedProcesses().isEmpty());
+		manager.changeDoingTasks(a, 0);
+		assertTrue(manager.findDrainedProcesses().isEmpty());
+		manager.removePendingSession(a, session);
+		assertEquals(a, manager.findDrainedProcesses().get(0));
+	}
+
+	@Test
+	public void testTheLastActiveProcessIsNotDrained() {
+		manager.setRecyclingPolicy(new RecyclingPolicy(0.8, 3, 3, 2), 60000);
+		RemoteProcess a = addIdleRecord();
+		manager.reportHeapAfterGC(a, 99, 100);
+		assertFalse(manager.drainUnhealthyProcess().isPresent());
+	}
+
+	@Test
+	public void testLatencyDriftIsOverTheBaseline() {
+		RecyclingPolicy policy = new RecyclingPolicy(0.8, 3, 3, 2);
+		ProcessHealth health = policy.createHealth();
+		health.recordLatency(100);
+		health.recordLatency(100);
+		assertEquals(1, health.getLatencyDrift(), 0.001);
+		assertFalse(policy.findReason(health).isPresent());
+
+		for (int i = 0; i < 20; ++i)
+			health.recordLatency(1000);
+		assertTrue(health.getLatencyDrift() > 3);
+		assertTrue(policy.findReason(health).isPresent());
+	}
 
 }
@@ -20,7 +20,8 @@ public class RemoteProcessRecord {
 					// processed.
 		WORKING, // Working
 		KILLING, // Suicided to being killed.
-		NOANSWER
+		NOANSWER,
+		DRAINING // Takes no new task and is recycled once its tasks are done.
 	}
 
 	public final RemoteProcess id;
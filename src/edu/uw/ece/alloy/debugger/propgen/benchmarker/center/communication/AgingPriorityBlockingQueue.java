@@ -0,0 +1,348 @@
+/**
+ *
+ */
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.center.communication;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.ProcessingParam;
+
+/**
+ * A bounded blocking queue that returns the param with the lowest priority
+ * number first. To avoid starvation, a param gains one priority level per
+ * aging interval it waits. Since all the waiting params age at the same rate,
+ * the order between two params does not change while they wait, so a param is
+ * ranked once when it is inserted: rank = priority * agingInterval +
+ * insertionTime. The params with the same rank are returned in the order they
+ * are inserted. An empty param has no check to age, so it gets a fixed rank
+ * before all the others.
+ *
+ * @author vajih
+ *
+ */
+public class AgingPriorityBlockingQueue<T extends ProcessingParam> extends AbstractQueue<T>
+		implements BlockingQueue<T> {
+
+	/* The priority of a param without a priority. */
+	public final static int DefaultPriority = 0;
+	/* The priority of the empty params, e.g. AlloyProcessingParam.EMPTY_PARAM. */
+	public final static int EmptyPriority = Integer.MIN_VALUE;
+	/* The rank of the empty params. No other param gets it. */
+	public final static long EmptyRank = Long.MIN_VALUE;
+
+	private final static class Entry<T> implements Comparable<Entry<T>> {
+		final T item;
+		final long rank;
+		final long order;
+
+		Entry(final T item, final long rank, final long order) {
+			this.item = item;
+			this.rank = rank;
+			this.order = order;
+		}
+
+		@Override
+		public int compareTo(Entry<T> o) {
+			final int result = Long.compare(rank, o.rank);
+			return result != 0 ? result : Long.compare(order, o.order);
+		}
+	}
+
+	public final int capacity;
+	/* In ms. Zero means no aging. */
+	public final long agingInterval;
+	/* In ms; only the differences between its values matter. */
+	private final LongSupplier clock;
+
+	/* Guarded by lock. */
+	private final PriorityQueue<Entry<T>> heap = new PriorityQueue<>();
+	private long inserted = 0;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+	public AgingPriorityBlockingQueue(final int capacity, final long agingInterval, final LongSupplier clock) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity has to be positive: " + capacity);
+		if (agingInterval < 0)
+			throw new IllegalArgumentException("The aging interval cannot be negative: " + agingInterval);
+		this.capacity = capacity;
+		this.agingInterval = agingInterval;
+		this.clock = clock;
+	}
+
+	public AgingPriorityBlockingQueue(final int capacity, final long agingInterval) {
+		this(capacity, agingInterval, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+	}
+
+	public AgingPriorityBlockingQueue(final long agingInterval) {
+		this(Integer.MAX_VALUE, agingInterval);
+	}
+
+	protected long rank(final T item) {
+		final long priority = item.getPriority().orElse(DefaultPriority);
+		if (priority == EmptyPriority)
+			return EmptyRank;
+		if (agingInterval == 0)
+			return priority;
+		try {
+			return Math.addExact(Math.multiplyExact(priority, agingInterval), clock.getAsLong());
+		} catch (ArithmeticException e) {
+			return priority < 0 ? EmptyRank + 1 : Long.MAX_VALUE;
+		}
+	}
+
+	/* Has to be called while holding the lock and having a free space. */
+	private void insert(final T item) {
+		heap.add(new Entry<>(item, rank(item), inserted++));
+		notEmpty.signal();
+	}
+
+	/* Has to be called while holding the lock and having an item. */
+	private T dequeue() {
+		final T result = heap.poll().item;
+		notFull.signal();
+		return result;
+	}
+
+	@Override
+	public boolean offer(T e) {
+		if (e == null)
+			throw new NullPointerException();
+		lock.lock();
+		try {
+			if (heap.size() >= capacity)
+				return false;
+			insert(e);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(T e) throws InterruptedException {
+		if (e == null)
+			throw new NullPointerException();
+		lock.lockInterruptibly();
+		try {
+			while (heap.size() >= capacity)
+				notFull.await();
+			insert(e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(T e, long timeout, TimeUnit unit) throws InterruptedException {
+		if (e == null)
+			throw new NullPointerException();
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (heap.size() >= capacity) {
+				if (nanos <= 0)
+					return false;
+				nanos = notFull.awaitNanos(nanos);
+			}
+			insert(e);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T poll() {
+		lock.lock();
+		try {
+			return heap.isEmpty() ? null : dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (heap.isEmpty())
+				notEmpty.await();
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (heap.isEmpty()) {
+				if (nanos <= 0)
+					return null;
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the param that would be taken last, i.e. the one with the highest
+	 * rank. It scans the whole heap, so it is meant for the rare withdrawals.
+	 *
+	 * @return null if the queue is empty.
+	 */
+	public T pollLast() {
+		lock.lock();
+		try {
+			Entry<T> last = null;
+			for (Entry<T> entry : heap)
+				if (last == null || entry.compareTo(last) > 0)
+					last = entry;
+			if (last == null)
+				return null;
+			heap.remove(last);
+			notFull.signal();
+			return last.item;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T peek() {
+		lock.lock();
+		try {
+			return heap.isEmpty() ? null : heap.peek().item;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return heap.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		lock.lock();
+		try {
+			return capacity - heap.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super T> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super T> c, int maxElements) {
+		if (c == this)
+			throw new IllegalArgumentException();
+		lock.lock();
+		try {
+			int drained = 0;
+			while (drained < maxElements && !heap.isEmpty()) {
+				c.add(heap.poll().item);
+				++drained;
+			}
+			if (drained > 0)
+				notFull.signalAll();
+			return drained;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		lock.lock();
+		try {
+			final Iterator<Entry<T>> it = heap.iterator();
+			while (it.hasNext()) {
+				if (it.next().item.equals(o)) {
+					it.remove();
+					notFull.signal();
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		lock.lock();
+		try {
+			heap.clear();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The items in the order they are returned.
+	 */
+	protected List<T> snapshot() {
+		final List<Entry<T>> entries;
+		lock.lock();
+		try {
+			entries = new ArrayList<>(heap);
+		} finally {
+			lock.unlock();
+		}
+		entries.sort(null);
+		final List<T> result = new ArrayList<>(entries.size());
+		for (Entry<T> entry : entries)
+			result.add(entry.item);
+		return result;
+	}
+
+	/**
+	 * A weakly consistent iterator over a snapshot of the queue.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		final Iterator<T> snapshot = snapshot().iterator();
+		return new Iterator<T>() {
+			@Override
+			public boolean hasNext() {
+				return snapshot.hasNext();
+			}
+
+			@Override
+			public T next() {
+				return snapshot.next();
+			}
+		};
+	}
+
+}
@@ -0,0 +1,112 @@
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.center.communication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.AlloyProcessingParam;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.PropertyToAlloyCode;
+
+/**
+ * @author vajih
+ *
+ */
+public class AgingPriorityBlockingQueueTest {
+
+	AlloyProcessingParam param(final int priority) {
+		return new AlloyProcessingParam(UUID.randomUUID(), priority, PropertyToAlloyCode.EMPTY_CONVERTOR);
+	}
+
+	@Test
+	public void testLowerPriorityNumberIsTakenFirst() throws InterruptedException {
+		final AgingPriorityBlockingQueue<AlloyProcessingParam> queue = new AgingPriorityBlockingQueue<>(0);
+		final AlloyProcessingParam p3 = param(3), p1 = param(1), p2 = param(2), p1Later = param(1);
+		for (AlloyProcessingParam p : Arrays.asList(p3, p1, p2, p1Later))
+			queue.put(p);
+
+		assertEquals(p1, queue.take());
+		assertEquals(p1Later, queue.take());
+		assertEquals(p2, queue.take());
+		assertEquals(p3, queue.take());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void testWaitingParamsAge() throws InterruptedException {
+		final AtomicLong now = new AtomicLong(1000);
+		final AgingPriorityBlockingQueue<AlloyProcessingParam> queue = new AgingPriorityBlockingQueue<>(
+				Integer.MAX_VALUE, 10, now::get);
+		final AlloyProcessingParam old = param(5), young = param(5);
+		queue.put(old);
+		now.addAndGet(60);
+		final AlloyProcessingParam urgent = param(0);
+		queue.put(urgent);
+		queue.put(young);
+
+		// The old param waited longer than five aging intervals; the young one did not.
+		assertEquals(old, queue.take());
+		assertEquals(urgent, queue.take());
+		assertEquals(young, queue.take());
+	}
+
+	@Test
+	public void testEmptyParamIsTakenFirst() throws InterruptedException {
+		final AtomicLong now = new AtomicLong(0);
+		final AgingPriorityBlockingQueue<AlloyProcessingParam> queue = new AgingPriorityBlockingQueue<>(
+				Integer.MAX_VALUE, Long.MAX_VALUE / 2, now::get);
+		// A priority so low that its rank is clamped.
+		final AlloyProcessingParam lowest = param(-3);
+		queue.put(lowest);
+		final AlloyProcessingParam empty = param(AgingPriorityBlockingQueue.EmptyPriority);
+		queue.put(empty);
+
+		assertEquals(empty, queue.take());
+		assertEquals(lowest, queue.take());
+	}
+
+	@Test
+	public void testTheCapacityIsBounded() throws InterruptedException {
+		final AgingPriorityBlockingQueue<AlloyProcessingParam> queue = new AgingPriorityBlockingQueue<>(2, 0);
+		assertTrue(queue.offer(param(2)));
+		assertTrue(queue.offer(param(1)));
+		assertFalse(queue.offer(param(0)));
+		assertFalse(queue.offer(param(0), 10, TimeUnit.MILLISECONDS));
+		assertEquals(0, queue.remainingCapacity());
+
+		queue.take();
+		assertTrue(queue.offer(param(0)));
+	}
+
+	@Test
+	public void testIteratesInTakingOrder() throws InterruptedException {
+		final AgingPriorityBlockingQueue<AlloyProcessingParam> queue = new AgingPriorityBlockingQueue<>(0);
+		final AlloyProcessingParam p2 = param(2), p0 = param(0), p1 = param(1);
+		for (AlloyProcessingParam p : Arrays.asList(p2, p0, p1))
+			queue.put(p);
+
+		assertEquals(Arrays.asList(p0, p1, p2), new Queue<>(queue).toList());
+	}
+
+	@Test
+	public void testPollLastTakesTheLowestPriority() throws InterruptedException {
+		final AgingPriorityBlockingQueue<AlloyProcessingParam> queue = new AgingPriorityBlockingQueue<>(0);
+		final AlloyProcessingParam p2 = param(2), p0 = param(0), p2Later = param(2), p1 = param(1);
+		for (AlloyProcessingParam p : Arrays.asList(p2, p0, p2Later, p1))
+			queue.put(p);
+
+		assertEquals(p2Later, queue.pollLast());
+		assertEquals(p2, queue.pollLast());
+		assertEquals(p0, queue.take());
+		assertEquals(p1, queue.pollLast());
+		assertNull(queue.pollLast());
+	}
+
+}
@@ -9,12 +9,18 @@ import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
+import edu.uw.ece.alloy.Configuration;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.ProcessingParam;
+
 /**
  * @author vajih
  *
  */
 public class Queue<T> implements Publisher<T>, Subscriber<T> {
 
+	/* In ms, a waiting param gains one priority level. */
+	final public static long AgingInterval = Long.parseLong(Configuration.getProp("queue_aging_interval"));
+
 	final BlockingQueue<T> queue;
 
 	public Queue(int cap) {
@@ -25,11 +31,54 @@ public class Queue<T> implements Publisher<T>, Subscriber<T> {
 		queue = new LinkedBlockingQueue<>();
 	}
 
+	protected Queue(final BlockingQueue<T> queue) {
+		this.queue = queue;
+	}
+
+	/**
+	 * A queue that returns the params with the lower priority number first and
+	 * ages the waiting ones to avoid starvation.
+	 * 
+	 * @param cap
+	 *          If the cap is 0, it will be unlimited.
+	 * @param agingInterval
+	 *          In ms, a param waits to gain one priority level.
+	 * @return
+	 */
+	public static <P extends ProcessingParam> Queue<P> prioritized(final int cap, final long agingInterval) {
+		return new Queue<P>(cap > 0 ? new AgingPriorityBlockingQueue<>(cap, agingInterval)
+				: new AgingPriorityBlockingQueue<>(agingInterval));
+	}
+
+	public static <P extends ProcessingParam> Queue<P> prioritized(final int cap) {
+		return prioritized(cap, AgingInterval);
+	}
+
+	public static <P extends ProcessingParam> Queue<P> prioritized() {
+		return prioritized(0);
+	}
+
 	@Override
 	public T poll() {
 		return queue.poll();
 	}
 
+	/**
+	 * Removes the item that would be taken last: the one with the lowest
+	 * priority in a prioritized queue, or the newest one otherwise.
+	 * 
+	 * @return null if there is no item.
+	 */
+	@SuppressWarnings("unchecked")
+	public T pollLast() {
+		if (queue instanceof AgingPriorityBlockingQueue)
+			return (T) ((AgingPriorityBlockingQueue<?>) queue).pollLast();
+		T last = null;
+		for (T item : queue)
+			last = item;
+		return last != null && queue.remove(last) ? last : null;
+	}
+
 	@Override
 	public T take() throws InterruptedException {
 		return queue.take();
@@ -40,6 +89,26 @@ public class Queue<T> implements Publisher<T>, Subscriber<T> {
 		queue.put(p);
 	}
 
+	/**
+	 * Adds the item if there is a room and does not wait.
+	 * 
+	 * @param p
+	 * @return true if the item is added.
+	 */
+	public boolean offer(T p) {
+		return queue.offer(p);
+	}
+
+	/**
+	 * Removes an item that is not taken yet.
+	 * 
+	 * @param p
+	 * @return true if the item was in the queue.
+	 */
+	public boolean remove(T p) {
+		return queue.remove(p);
+	}
+
 	@Override
 	public void clear() {
 		queue.clear();
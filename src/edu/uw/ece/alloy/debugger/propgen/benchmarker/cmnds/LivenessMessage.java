@@ -3,6 +3,10 @@
  */
 package edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.util.Map;
 import java.util.logging.Level;
 
@@ -27,6 +31,9 @@ public abstract class LivenessMessage extends RemoteMessage {
 	public final int processed;
 	/* How many messages are in the queue to be processed */
 	public final int toBeProcessed;
+	/* The heap in use after the last GC on the sender, -1 if not known */
+	public final long heapAfterGC = measureHeapAfterGC();
+	public final long maxHeap = Runtime.getRuntime().maxMemory();
 
 	public LivenessMessage(RemoteProcess process, long creationTime,
 			int processed, int toBeProcessed) {
@@ -42,6 +49,27 @@ public abstract class LivenessMessage extends RemoteMessage {
 		this.toBeProcessed = toBeProcessed;
 	}
 
+	/**
+	 * The message is made on the reporting process, so its heap pools are
+	 * measured.
+	 * 
+	 * @return The sum of the heap pools after their last collection.
+	 */
+	protected static long measureHeapAfterGC() {
+		long used = 0;
+		boolean reported = false;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP)
+				continue;
+			final MemoryUsage usage = pool.getCollectionUsage();
+			if (usage == null)
+				continue;
+			used += usage.getUsed();
+			reported = true;
+		}
+		return reported ? used : -1;
+	}
+
 	@Override
 	public void onAction(Map<String, Object> context)
 			throws InvalidParameterException {
@@ -66,6 +94,7 @@ public abstract class LivenessMessage extends RemoteMessage {
 			manager.changeDoneTasks(process, processed);
 			manager.changeLastLiveTimeReported(process, creationTime);
 			manager.changeLastLiveTimeRecieved(process, System.currentTimeMillis());
+			manager.reportHeapAfterGC(process, heapAfterGC, maxHeap);
 
 			if (toBeProcessed <= 0) {
 				manager.changeStatusToIDLE(process);
@@ -86,7 +115,8 @@ public abstract class LivenessMessage extends RemoteMessage {
 	public String toString() {
 		return "LivenessMessage [process=" + process + ", creationTime="
 				+ creationTime + ", processed=" + processed + ", toBeProcessed="
-				+ toBeProcessed + "]";
+				+ toBeProcessed + ", heapAfterGC=" + heapAfterGC + ", maxHeap="
+				+ maxHeap + "]";
 	}
 
 }
@@ -4,19 +4,15 @@
 package edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.io.Serializable;
-import java.nio.channels.AsynchronousSocketChannel;
-import java.nio.channels.Channels;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.RemoteProcess;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyResponseMessage;
+import edu.uw.ece.alloy.util.MessageConnection;
 import edu.uw.ece.alloy.util.Utils;
 import edu.uw.ece.alloy.util.events.MessageEventArgs;
 
@@ -48,28 +44,22 @@ public abstract class RemoteMessage implements Serializable {
 		this(process, System.currentTimeMillis());
 	}
 
+	/**
+	 * Sends the message on the long-lived connection to the remote process and
+	 * waits until it is written. The messages of other threads to the same
+	 * process are pipelined on the same connection.
+	 * 
+	 * @param remoteProcess
+	 * @param message
+	 * @throws InterruptedException
+	 */
 	public static void sendAMessage(final RemoteProcess remoteProcess, Serializable message)
 			throws InterruptedException {
 
 		final Logger logger = Logger.getAnonymousLogger();
 
-		AsynchronousSocketChannel clientSocketChannel = null;
-		ObjectOutputStream oos = null;
-		OutputStream os = null;
 		try {
-			clientSocketChannel = AsynchronousSocketChannel.open();
-
-			Future<Void> connectFuture = clientSocketChannel.connect(remoteProcess.getAddress());
-			connectFuture.get(); // Wait until connection is done.
-			os = Channels.newOutputStream(clientSocketChannel);
-			oos = new ObjectOutputStream(os);
-
-			oos.writeObject(message);
-
-			oos.flush();
-
-			os.flush();
-
+			MessageConnection.to(remoteProcess).send(message).get();
 		} catch (IOException | ExecutionException e) {
 			logger.log(Level.SEVERE,
 					Utils.threadName() + "Failed on sending the done message " + message + " TO =" + remoteProcess, e);
@@ -78,31 +68,6 @@ public abstract class RemoteMessage implements Serializable {
 			logger.log(Level.SEVERE, Utils.threadName() + "Sending the done message is interrupted: " + message
 					+ " TO =" + remoteProcess, e);
 			throw e;
-		} finally {
-
-			if (oos != null)
-				try {
-					oos.close();
-				} catch (IOException e) {
-					logger.log(Level.SEVERE, Utils.threadName() + "Failed to close the output stream" + message
-							+ " TO =" + remoteProcess, e);
-				}
-
-			if (os != null)
-				try {
-					os.close();
-				} catch (IOException e) {
-					logger.log(Level.SEVERE, Utils.threadName() + "Failed to close the output stream" + message
-							+ " TO =" + remoteProcess, e);
-				}
-
-			if (clientSocketChannel != null && clientSocketChannel.isOpen())
-				try {
-					clientSocketChannel.close();
-				} catch (IOException e) {
-					logger.log(Level.SEVERE,
-							Utils.threadName() + "Failed to close the socket" + message + " TO =" + remoteProcess, e);
-				}
 		}
 	}
 
@@ -0,0 +1,82 @@
+/**
+ *
+ */
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.AlloyProcessingParam;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.ProcessingParam;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.RemoteProcess;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.InvalidParameterException;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.RequestMessage;
+
+/**
+ * Asks an Alloy process to drop the waiting tasks of a session whose outcomes
+ * are already known. The dropped tasks are sent back as pruned results.
+ *
+ * @author vajih
+ *
+ */
+public final class AlloyPruneMessage extends RequestMessage {
+
+	private static final long serialVersionUID = -4721386410967253118L;
+
+	public final UUID sessionID;
+	/* The predicate names of the checks to be dropped. */
+	public final Set<String> predNames;
+
+	public AlloyPruneMessage(final RemoteProcess process, final long creationTime, final UUID sessionID,
+			final Set<String> predNames) {
+		super(process, creationTime, AlloyProcessingParam.EMPTY_PARAM);
+		this.sessionID = sessionID;
+		this.predNames = Collections.unmodifiableSet(new HashSet<>(predNames));
+	}
+
+	public AlloyPruneMessage(final RemoteProcess process, final UUID sessionID, final Set<String> predNames) {
+		this(process, System.currentTimeMillis(), sessionID, predNames);
+	}
+
+	@Override
+	protected RequestMessage changeParam(ProcessingParam param) {
+		return new AlloyPruneMessage(this.process, this.creationTime, this.sessionID, this.predNames);
+	}
+
+	@Override
+	public void onAction(Map<String, Object> context) throws InvalidParameterException {
+		@SuppressWarnings("unchecked")
+		BiConsumer<UUID, Set<String>> pruneParamsFromQueue = (BiConsumer<UUID, Set<String>>) context
+				.get("pruneParamsFromQueue");
+		if (pruneParamsFromQueue == null)
+			throw new InvalidParameterException("pruneParamsFromQueue is not in the context.");
+		pruneParamsFromQueue.accept(sessionID, predNames);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + sessionID.hashCode();
+		result = prime * result + predNames.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!super.equals(obj))
+			return false;
+		final AlloyPruneMessage other = (AlloyPruneMessage) obj;
+		return sessionID.equals(other.sessionID) && predNames.equals(other.predNames);
+	}
+
+	@Override
+	public String toString() {
+		return "AlloyPruneMessage [sessionID=" + sessionID + ", predNames=" + predNames + ", process=" + process + "]";
+	}
+
+}
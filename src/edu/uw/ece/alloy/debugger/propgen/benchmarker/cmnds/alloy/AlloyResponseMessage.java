@@ -21,7 +21,7 @@ public class AlloyResponseMessage extends ResponseMessage {
 
 	private static final long serialVersionUID = -3938160835973911177L;
 
-	protected AlloyResponseMessage(RemoteProcess process, long creationTime,
+	public AlloyResponseMessage(RemoteProcess process, long creationTime,
 			AlloyProcessedResult result) {
 		super(process, creationTime, result);
 	}
@@ -0,0 +1,79 @@
+/**
+ *
+ */
+package edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.AlloyProcessingParam;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.ProcessingParam;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.RemoteProcess;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.InvalidParameterException;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.RequestMessage;
+
+/**
+ * Asks an Alloy process to send back some of its waiting tasks, so they can be
+ * sent to an idle process. The tasks are sent back as withdrawn results.
+ *
+ * @author vajih
+ *
+ */
+public final class AlloyWithdrawMessage extends RequestMessage {
+
+	private static final long serialVersionUID = 2361846513984432107L;
+
+	/* How many waiting tasks to be sent back. */
+	public final int count;
+
+	public AlloyWithdrawMessage(final RemoteProcess process,
+			final long creationTime, final int count) {
+		super(process, creationTime, AlloyProcessingParam.EMPTY_PARAM);
+		this.count = count;
+	}
+
+	public AlloyWithdrawMessage(final RemoteProcess process, final int count) {
+		super(process, AlloyProcessingParam.EMPTY_PARAM);
+		this.count = count;
+	}
+
+	@Override
+	protected RequestMessage changeParam(ProcessingParam param) {
+		return new AlloyWithdrawMessage(this.process, this.creationTime,
+				this.count);
+	}
+
+	@Override
+	public void onAction(Map<String, Object> context)
+			throws InvalidParameterException {
+		@SuppressWarnings("unchecked")
+		Consumer<Integer> withdrawParamsFromQueue = (Consumer<Integer>) context
+				.get("withdrawParamsFromQueue");
+		if (withdrawParamsFromQueue == null)
+			throw new InvalidParameterException(
+					"withdrawParamsFromQueue is not in the context.");
+		withdrawParamsFromQueue.accept(count);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + count;
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!super.equals(obj))
+			return false;
+		return count == ((AlloyWithdrawMessage) obj).count;
+	}
+
+	@Override
+	public String toString() {
+		return "AlloyWithdrawMessage [count=" + count + ", process=" + process
+				+ "]";
+	}
+
+}
@@ -182,6 +182,42 @@ public class RemoteProcessMonitor implements ThreadToBeMonitored, Runnable {
 		}
 	}
 
+	/**
+	 * A param that is not sent anymore is not waited for in its session. It is
+	 * in the session if it was sent before and is being retried.
+	 * 
+	 * @param param
+	 */
+	public void prune(final ProcessingParam param) {
+		synchronized (unresponsededParamInSession) {
+			final Set<ProcessingParam> params = unresponsededParamInSession
+					.get(param.getAnalyzingSessionID().get());
+			if (params != null)
+				params.remove(param);
+		}
+	}
+
+	/**
+	 * @param sessionId
+	 * @return The params of the session that are sent and not responded yet,
+	 *         per process.
+	 */
+	public Map<RemoteProcess, Set<ProcessingParam>> getInFlight(final UUID sessionId) {
+		final Map<RemoteProcess, Set<ProcessingParam>> result = new HashMap<>();
+		// A process might be removed in between, so its params are taken from
+		// the same entry.
+		synchronized (incompleteMessages) {
+			for (Map.Entry<RemoteProcess, Map<ProcessingParam, Map.Entry<Long, Integer>>> entry : incompleteMessages
+					.entrySet()) {
+				for (ProcessingParam param : entry.getValue().keySet()) {
+					if (sessionId.equals(param.getAnalyzingSessionID().orElse(null)))
+						result.computeIfAbsent(entry.getKey(), p -> new HashSet<>()).add(param);
+				}
+			}
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
 	public final String getStatusOnSessions() {
 		StringBuilder result = new StringBuilder();
 
@@ -367,6 +403,15 @@ public class RemoteProcessMonitor implements ThreadToBeMonitored, Runnable {
 			//		+ ((AlloyProcessingParam) result.getParam()).getAlloyCoder().get().srcName());
 			removeAndPushUndoneRequest(process, result.getParam());
 			processLogger.DecreaseDoingTasks(process);
+		} else if (result.isWithdrawn()) {
+			// The task is not started, so it is sent again without counting a retry.
+			removeMessageFromProcess(process, result.getParam());
+			pushUndoneRequest(process, result.getParam());
+			processLogger.DecreaseDoingTasks(process);
+		} else if (result.isPruned()) {
+			removeMessageFromProcess(process, result.getParam());
+			removeMessageFromSession(result.getParam());
+			processLogger.DecreaseDoingTasks(process);
 		} else if (result.isInferred()) {
 			//System.out.println("processResponded removed4->" + result.getParam().hashCode());
 			if (Configuration.IsInDeubbungMode)
@@ -376,6 +421,7 @@ public class RemoteProcessMonitor implements ThreadToBeMonitored, Runnable {
 		} else {
 			//System.out.println("processResponded removed5->"
 			//		+ ((AlloyProcessingParam) result.getParam()).getAlloyCoder().get().srcName());
+			recordLatency(process, result.getParam());
 			removeMessageFromProcess(process, result.getParam());
 			removeMessageFromSession(result.getParam());
 			processLogger.DecreaseDoingTasks(process);
@@ -387,6 +433,32 @@ public class RemoteProcessMonitor implements ThreadToBeMonitored, Runnable {
 		processLogger.changeLastLiveTimeRecieved(process);
 	}
 
+	/**
+	 * The time from sending the param to its response is recorded as a task
+	 * latency of the process.
+	 */
+	protected void recordLatency(final RemoteProcess process, final ProcessingParam param) {
+		final Map<ProcessingParam, Map.Entry<Long, Integer>> params = incompleteMessages.get(process);
+		final Map.Entry<Long, Integer> sent = params == null ? null : params.get(param);
+		if (sent != null)
+			processLogger.recordTaskLatency(process, System.currentTimeMillis() - sent.getKey());
+	}
+
+	/**
+	 * The drained processes are killed and their undone requests are sent to
+	 * the other processes. Then the next unhealthy process starts draining, so
+	 * the processes are recycled one at a time.
+	 */
+	protected void recycleUnhealthyProcesses() {
+		for (RemoteProcess process : processLogger.findDrainedProcesses()) {
+			logger.log(Level.WARNING, Utils.threadName() + "The drained process is recycled: " + process);
+			processLogger.changeStatusToKILLING(process);
+			removeAndPushUndoneRequests(process);
+			processLogger.killAndReplaceProcess(process);
+		}
+		processLogger.drainUnhealthyProcess();
+	}
+
 	public void holaProcessResponded(ProcessedResult result, RemoteProcess process) {
 		removeMessageFromProcess(process, result.getParam());
 		removeMessageFromSession(result.getParam());
@@ -518,10 +590,13 @@ public class RemoteProcessMonitor implements ThreadToBeMonitored, Runnable {
 				System.out.println("found the following obsolete processing units:" + timedOut);
 				for (RemoteProcess process : timedOut.keySet()) {
 					for (ProcessingParam param : timedOut.get(process)) {
+						processLogger.recordHardTimeout(process);
 						removeAndPushUndoneRequest(process, param);
 					}
 				}
 
+				recycleUnhealthyProcesses();
+
 				System.out.println("get status->" + getStatus());
 
 			} catch (InterruptedException e) {
@@ -92,8 +92,8 @@ public abstract class CmpstOrds extends Property {
 
 	@Override
 	public String genPredName() {
-		return super.genPredName() + order1.genPredName() + "_"
-				+ order2.genPredName();
+		return super.genPredName() + order1.getPredName() + "_"
+				+ order2.getPredName();
 	}
 
 	@Override
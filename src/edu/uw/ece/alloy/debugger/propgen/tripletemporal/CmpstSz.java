@@ -85,8 +85,8 @@ public abstract class CmpstSz extends Property {
 
 	@Override
 	public String genPredName() {
-		return super.genPredName() + size1.genPredName() + "_"
-				+ size2.genPredName();
+		return super.genPredName() + size1.getPredName() + "_"
+				+ size2.getPredName();
 	}
 
 	@Override
@@ -39,7 +39,7 @@ public abstract class Lclty extends Property {
 
 	@Override
 	public String genPredName() {
-		return super.genPredName() + side.genPredName();
+		return super.genPredName() + side.getPredName();
 	}
 
 	@Override
@@ -41,7 +41,7 @@ public abstract class Ord extends Property {
 
 	@Override
 	public String genPredName() {
-		return super.genPredName() + sizeProp.genPredName();
+		return super.genPredName() + sizeProp.getPredName();
 	}
 
 	@Override
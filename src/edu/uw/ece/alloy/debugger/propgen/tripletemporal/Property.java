@@ -55,6 +55,21 @@ public abstract class Property {
 		return this.getClass().getSimpleName() + "_";
 	}
 
+	/*
+	 * The name of a composite property is made of its components' names, and
+	 * the names are asked many times while enumerating. So it is made once.
+	 */
+	private String predName;
+
+	/**
+	 * @return The name made by genPredName, made once.
+	 */
+	public final String getPredName() {
+		if (predName == null)
+			predName = genPredName();
+		return predName;
+	}
+
 	protected String genParameters() {
 		return RName + ": univ->univ->univ, " + SName + ", " + MiddleName + ", "
 				+ EndName + ": univ, " + SFirst + ": univ, " + SNext + ": univ->univ";
@@ -75,7 +90,7 @@ public abstract class Property {
 
 		StringBuilder result = new StringBuilder();
 
-		result.append("pred ").append(genPredName()).append("[")
+		result.append("pred ").append(getPredName()).append("[")
 				.append(genParameters()).append("]{\n");
 		result.append(genBody()).append("\n}");
 		return result.toString();
@@ -88,7 +103,7 @@ public abstract class Property {
 
 		StringBuilder result = new StringBuilder();
 
-		result.append(genPredName()).append("[").append(genParametesCall())
+		result.append(getPredName()).append("[").append(genParametesCall())
 				.append("]\n");
 
 		return result.toString();
@@ -38,8 +38,8 @@ public abstract class SzPrpty extends Property {
 
 	@Override
 	public String genPredName() {
-		return super.genPredName() + growthLocality.genPredName()
-				+ empty.genPredName();
+		return super.genPredName() + growthLocality.getPredName()
+				+ empty.getPredName();
 	}
 
 	private String genBody(final String append) {
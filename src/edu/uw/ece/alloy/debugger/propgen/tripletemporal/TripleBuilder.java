@@ -10,6 +10,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import edu.mit.csail.sdg.alloy4.Pair;
@@ -71,39 +72,36 @@ public class TripleBuilder {
 				endConcreteFirst, middleConcreteNext, middleConcreteFirst);
 	}
 
-	public SzPrpty createSizeInstance(final Class<? extends SzPrpty> clazz, final Lclty local, final Emptnes empty)
-			throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
+	/* A property class has one constructor; it is looked up once. */
+	final static Map<Class<?>, Constructor<?>> constructors = new ConcurrentHashMap<>();
 
-		Constructor<?>[] constructors = clazz.getConstructors();
+	static Constructor<?> getConstructor(final Class<?> clazz) {
+		return constructors.computeIfAbsent(clazz, c -> {
+			final Constructor<?>[] found = c.getConstructors();
+			if (found.length != 1)
+				throw new RuntimeException("There has to be only one constructor for " + c);
+			return found[0];
+		});
+	}
 
-		if (constructors.length != 1)
-			throw new RuntimeException("There has to be only one constrcutor for " + clazz);
+	public SzPrpty createSizeInstance(final Class<? extends SzPrpty> clazz, final Lclty local, final Emptnes empty)
+			throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 
-		return (SzPrpty) constructors[0].newInstance(RName, SName, SNext, SFirst, MiddleName, EndName, RConcreteName,
+		return (SzPrpty) getConstructor(clazz).newInstance(RName, SName, SNext, SFirst, MiddleName, EndName, RConcreteName,
 				SConcreteName, SConcreteNext, SConcreteFirst, MConcreteName, EConcreteName, local, empty);
 	}
 
 	public Lclty createLocalityInstance(final Class<? extends Lclty> clazz, final Sd side)
 			throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 
-		Constructor<?>[] constructors = clazz.getConstructors();
-
-		if (constructors.length != 1)
-			throw new RuntimeException("There has to be only one constructor for " + clazz);
-
-		return (Lclty) constructors[0].newInstance(RName, SName, SNext, SFirst, MiddleName, EndName, RConcreteName,
+		return (Lclty) getConstructor(clazz).newInstance(RName, SName, SNext, SFirst, MiddleName, EndName, RConcreteName,
 				SConcreteName, SConcreteNext, SConcreteFirst, MConcreteName, EConcreteName, side, "", "");
 	}
 
 	public Sd createSideInstance(final Class<? extends Sd> clazz)
 			throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 
-		Constructor<?>[] constructors = clazz.getConstructors();
-
-		if (constructors.length != 1)
-			throw new RuntimeException("There has to be only one constrcutor for " + clazz);
-
-		return (Sd) constructors[0].newInstance(RName, SName, SNext, SFirst, MiddleName, EndName, RConcreteName,
+		return (Sd) getConstructor(clazz).newInstance(RName, SName, SNext, SFirst, MiddleName, EndName, RConcreteName,
 				SConcreteName, SConcreteNext, SConcreteFirst, MConcreteName, EConcreteName, EndNext, EndFirst,
 				MiddleNext, MiddleFirst, EndConcreteNext, EndConcreteFirst, MiddleConcreteNext, MiddleConcreteFirst);
 
@@ -112,24 +110,14 @@ public class TripleBuilder {
 	public Emptnes createEmptinessInstance(final Class<? extends Emptnes> clazz)
 			throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 
-		Constructor<?>[] constructors = clazz.getConstructors();
-
-		if (constructors.length != 1)
-			throw new RuntimeException("There has to be only one constrcutor for " + clazz);
-
-		return (Emptnes) constructors[0].newInstance(RName, SName, SNext, SFirst, MiddleName, EndName, RConcreteName,
+		return (Emptnes) getConstructor(clazz).newInstance(RName, SName, SNext, SFirst, MiddleName, EndName, RConcreteName,
 				SConcreteName, SConcreteNext, SConcreteFirst, MConcreteName, EConcreteName);
 	}
 
 	public Ord createOrderInstance(final Class<? extends Ord> clazz, final SzPrpty size)
 			throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 
-		Constructor<?>[] constructors = clazz.getConstructors();
-
-		if (constructors.length != 1)
-			throw new RuntimeException("There has to be only one constrcutor for " + clazz);
-
-		return (Ord) constructors[0].newInstance(RName, SName, SNext, SFirst, MiddleName, EndName, RConcreteName,
+		return (Ord) getConstructor(clazz).newInstance(RName, SName, SNext, SFirst, MiddleName, EndName, RConcreteName,
 				SConcreteName, SConcreteNext, SConcreteFirst, MConcreteName, EConcreteName, size);
 	}
 
@@ -137,12 +125,7 @@ public class TripleBuilder {
 			final Ord order2)
 			throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 
-		Constructor<?>[] constructors = clazz.getConstructors();
-
-		if (constructors.length != 1)
-			throw new RuntimeException("There has to be only one constrcutor for " + clazz);
-
-		return (CmpstOrds) constructors[0].newInstance(RName, SName, SNext, SFirst, MiddleName, EndName, RConcreteName,
+		return (CmpstOrds) getConstructor(clazz).newInstance(RName, SName, SNext, SFirst, MiddleName, EndName, RConcreteName,
 				SConcreteName, SConcreteNext, SConcreteFirst, MConcreteName, EConcreteName, order1, order2);
 	}
 
@@ -150,12 +133,7 @@ public class TripleBuilder {
 			final SzPrpty size2)
 			throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException {
 
-		Constructor<?>[] constructors = clazz.getConstructors();
-
-		if (constructors.length != 1)
-			throw new RuntimeException("There has to be only one constrcutor for " + clazz);
-
-		return (CmpstSz) constructors[0].newInstance(RName, SName, SNext, SFirst, MiddleName, EndName, RConcreteName,
+		return (CmpstSz) getConstructor(clazz).newInstance(RName, SName, SNext, SFirst, MiddleName, EndName, RConcreteName,
 				SConcreteName, SConcreteNext, SConcreteFirst, MConcreteName, EConcreteName, size1, size2);
 	}
 
@@ -175,7 +153,7 @@ public class TripleBuilder {
 	 */
 	public Map<String, Pair<String, String>> getAllPropertiesNamesAndContent() {
 		return getAllProperties(new TreeMap<String, Set<String>>()).stream()
-				.collect(Collectors.toMap(Property::genPredName, v -> new Pair<>(v.genPredCall(), v.generateProp())));
+				.collect(Collectors.toMap(Property::getPredName, v -> new Pair<>(v.genPredCall(), v.generateProp())));
 	}
 
 	protected Set<Property> getAllProperties() {
@@ -184,7 +162,7 @@ public class TripleBuilder {
 	
 	public Map<String, Integer> getAllPropertiesPriorities() {
 		return getAllProperties(new TreeMap<String, Set<String>>()).stream()
-				.collect(Collectors.toMap(Property::genPredName, Property::getPriority));
+				.collect(Collectors.toMap(Property::getPredName, Property::getPriority));
 	}
 
 	protected Set<Property> getAllProperties(Map<String, Set<String>> featureNames) {
@@ -244,13 +222,13 @@ public class TripleBuilder {
 										if (!compositeSizes.isConsistent())
 											continue;
 										// Add to the list here
-										revComposite.add(compositeSizes.genPredName());
+										revComposite.add(compositeSizes.getPredName());
 									}
 									for (CmpstSz compositeSizes : iterators.new CompositeSizesIterator(this, size,
 											size2)) {
 										if (!compositeSizes.isConsistent())
 											continue;
-										if (revComposite.contains(compositeSizes.genPredName()))
+										if (revComposite.contains(compositeSizes.getPredName()))
 											break;
 										// Add to the list here
 										preds.add(compositeSizes);
@@ -266,14 +244,14 @@ public class TripleBuilder {
 											if (!compositeOrders.isConsistent())
 												continue;
 											// Add to the list here
-											revComposite.add(compositeOrders.genPredName());
+											revComposite.add(compositeOrders.getPredName());
 										}
 
 										for (CmpstOrds compositeOrders : iterators.new CompositeOrdersIterator(this,
 												order, order2)) {
 											if (!compositeOrders.isConsistent())
 												continue;
-											if (revComposite.contains(compositeOrders.genPredName()))
+											if (revComposite.contains(compositeOrders.getPredName()))
 												break;
 											// Add to the list here
 											preds.add(compositeOrders);
@@ -325,14 +303,14 @@ public class TripleBuilder {
 								+ size.growthLocality.getClass().getSimpleName() + ","
 								+ size.growthLocality.side.getClass().getSimpleName() + ","
 								+ size.empty.getClass().getSimpleName();
-						preds.add(sizeCSV + "," + size.genPredName());
+						preds.add(sizeCSV + "," + size.getPredName());
 
 						for (Ord order : iterators.new OrderIterator(this, size)) {
 							if (!order.isConsistent())
 								continue;
 
 							final String orderCSV = order.getClass().getSimpleName() + sizeCSV;
-							preds.add(orderCSV + "," + order.genPredName());
+							preds.add(orderCSV + "," + order.getPredName());
 
 							if (IncludeCompostions) {
 								// Composite structures for two size and orders
@@ -346,13 +324,13 @@ public class TripleBuilder {
 										if (!compositeSizes.isConsistent())
 											continue;
 										// Add to the list here
-										revComposite.add(compositeSizes.genPredName());
+										revComposite.add(compositeSizes.getPredName());
 									}
 									for (CmpstSz compositeSizes : iterators.new CompositeSizesIterator(this, size,
 											size2)) {
 										if (!compositeSizes.isConsistent())
 											continue;
-										if (revComposite.contains(compositeSizes.genPredName()))
+										if (revComposite.contains(compositeSizes.getPredName()))
 											break;
 										// Add to the list here
 										// preds.put(compositeSizes.genPredName(),
@@ -372,14 +350,14 @@ public class TripleBuilder {
 											if (!compositeOrders.isConsistent())
 												continue;
 											// Add to the list here
-											revComposite.add(compositeOrders.genPredName());
+											revComposite.add(compositeOrders.getPredName());
 										}
 
 										for (CmpstOrds compositeOrders : iterators.new CompositeOrdersIterator(this,
 												order, order2)) {
 											if (!compositeOrders.isConsistent())
 												continue;
-											if (revComposite.contains(compositeOrders.genPredName()))
+											if (revComposite.contains(compositeOrders.getPredName()))
 												break;
 											// Add to the list here
 											// preds.put(compositeOrders.genPredName(),
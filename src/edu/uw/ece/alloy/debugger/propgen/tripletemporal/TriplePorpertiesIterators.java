@@ -1,9 +1,10 @@
 package edu.uw.ece.alloy.debugger.propgen.tripletemporal;
 
 import java.lang.reflect.Modifier;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.reflections.Reflections;
 
@@ -11,6 +12,31 @@ public class TriplePorpertiesIterators {
 
 	public final static String packageName = "edu.uw.ece.alloy.debugger.propgen.tripletemporal";
 
+	/*
+	 * The package is scanned once. A scan takes tens of ms and an enumeration
+	 * makes hundreds of iterators.
+	 */
+	final static class Scanned {
+		final static Reflections reflections = new Reflections(packageName);
+	}
+
+	/* type -> its concrete subtypes sorted by name. */
+	final static Map<Class<?>, Class<?>[]> concreteTypes = new ConcurrentHashMap<>();
+
+	/**
+	 * @param type
+	 * @return The concrete subtypes of the type in the package, sorted by
+	 *         name. The array is shared, so it should not be changed.
+	 */
+	static Class<?>[] getConcreteTypes(final Class<?> type) {
+		return concreteTypes.computeIfAbsent(type,
+				t -> Scanned.reflections.getSubTypesOf(t).stream()
+						.filter(a -> !Modifier.isAbstract(a.getModifiers()))
+						.sorted((Class<?> c1, Class<?> c2) -> c1.getName()
+								.compareTo(c2.getName()))
+						.toArray(Class<?>[]::new));
+	}
+
 	public final TripleBuilder tripleBuilder;
 
 	public TriplePorpertiesIterators(final TripleBuilder tripleBuilder) {
@@ -24,7 +50,7 @@ public class TriplePorpertiesIterators {
 
 		public SizeIterator(final TripleBuilder builder, final Lclty local,
 				final Emptnes empty) {
-			super(builder);
+			super(builder, SzPrpty.class);
 			this.local = local;
 			this.empty = empty;
 		}
@@ -52,7 +78,7 @@ public class TriplePorpertiesIterators {
 		final Sd side;
 
 		public LocalityIterator(final TripleBuilder builder, final Sd side) {
-			super(builder);
+			super(builder, Lclty.class);
 			this.side = side;
 		}
 
@@ -76,7 +102,7 @@ public class TriplePorpertiesIterators {
 	public class SideIterator extends PropertyIterator<Sd, SideIterator> {
 
 		public SideIterator(final TripleBuilder builder) {
-			super(builder);
+			super(builder, Sd.class);
 		}
 
 		@Override
@@ -100,7 +126,7 @@ public class TriplePorpertiesIterators {
 			extends PropertyIterator<Emptnes, EmptinessIterator> {
 
 		public EmptinessIterator(final TripleBuilder builder) {
-			super(builder);
+			super(builder, Emptnes.class);
 		}
 
 		@Override
@@ -125,7 +151,7 @@ public class TriplePorpertiesIterators {
 		final SzPrpty size;
 
 		public OrderIterator(final TripleBuilder builder, final SzPrpty size) {
-			super(builder);
+			super(builder, Ord.class);
 			this.size = size;
 		}
 
@@ -153,7 +179,7 @@ public class TriplePorpertiesIterators {
 
 		public CompositeOrdersIterator(final TripleBuilder builder,
 				final Ord order1, final Ord order2) {
-			super(builder);
+			super(builder, CmpstOrds.class);
 			this.order1 = order1;
 			this.order2 = order2;
 		}
@@ -182,7 +208,7 @@ public class TriplePorpertiesIterators {
 
 		public CompositeSizesIterator(final TripleBuilder builder,
 				final SzPrpty size1, final SzPrpty size2) {
-			super(builder);
+			super(builder, CmpstSz.class);
 			this.size1 = size1;
 			this.size2 = size2;
 		}
@@ -209,38 +235,25 @@ public class TriplePorpertiesIterators {
 
 		final TripleBuilder builder;
 
-		final Iterator iterator;
+		final Class<?>[] types;
+		int next = 0;
 
-		public PropertyIterator(final TripleBuilder builder) {
+		public PropertyIterator(final TripleBuilder builder, final Class<T> type) {
 			this.builder = builder;
-			Type sooper = getClass().getGenericSuperclass();
-			Type t = ((ParameterizedType) sooper).getActualTypeArguments()[0];
-
-			try {
-				iterator = (new Reflections(packageName)
-						.getSubTypesOf(Class.forName(t.getTypeName()))).stream()
-								.filter(a -> !Modifier.isAbstract(a.getModifiers()))
-								.sorted((Class c1, Class c2) -> c1.getName()
-										.compareTo(c2.getName()))
-								.iterator();
-				// iterator = (new Reflections(packageName).getSubTypesOf(Class.forName(
-				// t.getTypeName() ))).iterator();
-			} catch (ClassNotFoundException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-				throw new RuntimeException("Class not found");
-			}
+			this.types = getConcreteTypes(type);
 		}
 
 		@Override
 		public boolean hasNext() {
-			return iterator.hasNext();
+			return next < types.length;
 		}
 
 		@SuppressWarnings("unchecked")
 		@Override
 		public T next() {
-			return convertNext((Class<T>) iterator.next());
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return convertNext((Class<T>) types[next++]);
 		}
 
 		protected abstract T convertNext(Class<? extends T> t);
@@ -1,11 +1,14 @@
 package edu.uw.ece.alloy.debugger.propgen.tripletemporal;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -276,6 +279,33 @@ public class TriplePropsTester {
 
 	}
 
+	@Test
+	public void test_iterators_share_the_sorted_types() {
+		final List<String> sides = new LinkedList<>();
+		for (Sd side : iterators.new SideIterator(builder)) {
+			assertFalse(Modifier.isAbstract(side.getClass().getModifiers()));
+			sides.add(side.getClass().getName());
+		}
+		assertEquals(sides.stream().sorted().collect(Collectors.toList()), sides);
+
+		final List<String> again = new LinkedList<>();
+		for (Sd side : iterators.new SideIterator(builder))
+			again.add(side.getClass().getName());
+		assertEquals(sides, again);
+	}
+
+	@Test
+	public void test_pred_name_is_made_once() throws InstantiationException, IllegalAccessException,
+			IllegalArgumentException, InvocationTargetException {
+		final Sd side = builder.createSideInstance(SdMdl.class);
+		final Lclty local = builder.createLocalityInstance(Lcl.class, side);
+		final SzPrpty size = builder.createSizeInstance(SzNChng.class, local,
+				builder.createEmptinessInstance(EmptNon.class));
+		final Ord order = builder.createOrderInstance(OrdIncrs.class, size);
+		assertEquals(order.genPredName(), order.getPredName());
+		assertSame(order.getPredName(), order.getPredName());
+	}
+
 	@Test
 	public void test_generate_all_properties_csv() throws InstantiationException, IllegalAccessException,
 			IllegalArgumentException, InvocationTargetException, Err {
@@ -0,0 +1,112 @@
+package edu.uw.ece.alloy.util;
+
+import java.util.Collection;
+
+/**
+ * A set of strings that keeps a 64 bits fingerprint per string instead of
+ * the string. It costs 32 bytes per element at most, so the names of all the
+ * checks generated in a session can be kept. Two strings with the same
+ * fingerprint are taken as one; for a million strings, the chance of that is
+ * less than 1 in 10^7.
+ *
+ * @author vajih
+ *
+ */
+public class FingerprintSet {
+
+	/* Zero marks an empty slot, so no fingerprint is zero. */
+	private long[] slots;
+	private int size = 0;
+
+	public FingerprintSet(final int expectedSize) {
+		int capacity = 16;
+		while (capacity < 2 * expectedSize)
+			capacity <<= 1;
+		slots = new long[capacity];
+	}
+
+	public FingerprintSet() {
+		this(16);
+	}
+
+	public static FingerprintSet of(final Collection<String> strings) {
+		final FingerprintSet result = new FingerprintSet(strings.size());
+		for (String string : strings)
+			result.add(string);
+		return result;
+	}
+
+	/**
+	 * FNV-1a over the chars, mixed by the finalizer of MurmurHash3, so the low
+	 * bits are good for indexing.
+	 */
+	static long fingerprint(final String string) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < string.length(); ++i) {
+			h ^= string.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h == 0 ? 1 : h;
+	}
+
+	/**
+	 * @param string
+	 * @return true if the string was not in the set.
+	 */
+	public synchronized boolean add(final String string) {
+		final long fingerprint = fingerprint(string);
+		int i = (int) fingerprint & (slots.length - 1);
+		while (slots[i] != 0) {
+			if (slots[i] == fingerprint)
+				return false;
+			i = (i + 1) & (slots.length - 1);
+		}
+		slots[i] = fingerprint;
+		if (++size * 2 > slots.length)
+			grow();
+		return true;
+	}
+
+	public synchronized boolean contains(final String string) {
+		final long fingerprint = fingerprint(string);
+		int i = (int) fingerprint & (slots.length - 1);
+		while (slots[i] != 0) {
+			if (slots[i] == fingerprint)
+				return true;
+			i = (i + 1) & (slots.length - 1);
+		}
+		return false;
+	}
+
+	private void grow() {
+		final long[] old = slots;
+		slots = new long[old.length * 2];
+		for (long fingerprint : old) {
+			if (fingerprint == 0)
+				continue;
+			int i = (int) fingerprint & (slots.length - 1);
+			while (slots[i] != 0)
+				i = (i + 1) & (slots.length - 1);
+			slots[i] = fingerprint;
+		}
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public synchronized boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "FingerprintSet [size=" + size + ", capacity=" + slots.length + "]";
+	}
+
+}
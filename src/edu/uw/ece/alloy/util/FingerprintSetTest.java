@@ -0,0 +1,49 @@
+package edu.uw.ece.alloy.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * @author vajih
+ *
+ */
+public class FingerprintSetTest {
+
+	@Test
+	public void testAStringIsAddedOnce() {
+		final FingerprintSet set = new FingerprintSet();
+		assertTrue(set.add("predName___1_acyclic_next"));
+		assertFalse(set.add("predName___1_acyclic_next"));
+		assertTrue(set.add("predName___1_total_next"));
+		assertEquals(2, set.size());
+		assertTrue(set.contains("predName___1_total_next"));
+		assertFalse(set.contains("predName___2_total_next"));
+	}
+
+	@Test
+	public void testTheStringsAreKeptWhileGrowing() {
+		final FingerprintSet set = new FingerprintSet(1);
+		for (int i = 0; i < 10000; ++i)
+			assertTrue(set.add("check" + i));
+		assertEquals(10000, set.size());
+		for (int i = 0; i < 10000; ++i)
+			assertTrue(set.contains("check" + i));
+		assertFalse(set.contains("check10000"));
+	}
+
+	@Test
+	public void testOfCopiesTheStrings() {
+		final FingerprintSet set = FingerprintSet.of(Arrays.asList("a", "b", "a"));
+		assertEquals(2, set.size());
+		assertTrue(set.contains("a"));
+		assertFalse(set.contains(""));
+		assertTrue(set.add(""));
+		assertEquals(3, set.size());
+	}
+
+}
@@ -0,0 +1,114 @@
+package edu.uw.ece.alloy.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.uw.ece.alloy.Configuration;
+
+/**
+ * Reads the frames written by {@link MessageConnection} from an accepted
+ * connection without blocking a thread. The next read is issued only after the
+ * frames in the buffer are passed on, so the frames of one connection are
+ * delivered in the order they are sent. A frame declaring a length above
+ * MaxFrameSize closes the connection before anything is allocated for it.
+ *
+ * @author vajih
+ *
+ */
+public class FrameReader implements CompletionHandler<Integer, Void> {
+
+	protected final static Logger logger = Logger
+			.getLogger(FrameReader.class.getName() + "--"
+					+ Thread.currentThread().getName());
+
+	/* The size of the length prefix of a frame. */
+	final static int HeaderSize = Integer.BYTES;
+	final static int InitialBufferSize = 64 * 1024;
+	public final static int MaxFrameSize = Integer.parseInt(Configuration.getProp("max_frame_size"));
+
+	private final AsynchronousSocketChannel channel;
+	private final Consumer<byte[]> onFrame;
+	private final Consumer<Throwable> onClose;
+	private ByteBuffer buffer = ByteBuffer.allocate(InitialBufferSize);
+
+	/**
+	 * @param channel
+	 * @param onFrame
+	 *          Called with the payload of every frame.
+	 * @param onClose
+	 *          Called once the connection is closed or broken.
+	 */
+	public FrameReader(final AsynchronousSocketChannel channel,
+			final Consumer<byte[]> onFrame, final Consumer<Throwable> onClose) {
+		this.channel = channel;
+		this.onFrame = onFrame;
+		this.onClose = onClose;
+	}
+
+	public void start() {
+		channel.read(buffer, null, this);
+	}
+
+	@Override
+	public void completed(Integer read, Void attachment) {
+		if (read < 0) {
+			close(null);
+			return;
+		}
+
+		buffer.flip();
+		while (buffer.remaining() >= HeaderSize) {
+			final int length = buffer.getInt(buffer.position());
+			if (length < 0 || length > MaxFrameSize) {
+				close(new IOException("A corrupted frame with length " + length));
+				return;
+			}
+			if (buffer.remaining() < HeaderSize + length)
+				break;
+			buffer.getInt();
+			final byte[] payload = new byte[length];
+			buffer.get(payload);
+			try {
+				onFrame.accept(payload);
+			} catch (RuntimeException e) {
+				logger.log(Level.SEVERE,
+						Utils.threadName() + "Failed to process a received frame: ", e);
+			}
+		}
+		buffer.compact();
+
+		// Grow the buffer if the next frame does not fit.
+		if (buffer.position() >= HeaderSize) {
+			final int needed = HeaderSize + buffer.getInt(0);
+			if (needed > buffer.capacity()) {
+				final ByteBuffer bigger = ByteBuffer.allocate(needed);
+				buffer.flip();
+				bigger.put(buffer);
+				buffer = bigger;
+			}
+		}
+
+		channel.read(buffer, null, this);
+	}
+
+	@Override
+	public void failed(Throwable exc, Void attachment) {
+		close(exc);
+	}
+
+	private void close(final Throwable cause) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.log(Level.SEVERE,
+					Utils.threadName() + "Failed to close a connection: ", e);
+		}
+		onClose.accept(cause);
+	}
+
+}
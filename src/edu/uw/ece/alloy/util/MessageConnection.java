@@ -0,0 +1,306 @@
+package edu.uw.ece.alloy.util;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.uw.ece.alloy.Configuration;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.MessageCodec;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.RemoteProcess;
+
+/**
+ * A long-lived connection to a remote process. All the messages sent to the
+ * same process share one connection, no matter which thread sends them. Each
+ * message is written as a frame: the length of the payload as a 4-byte int
+ * followed by the payload.
+ *
+ * The payloads are encoded by {@link MessageCodec}, so the strings sent once
+ * on a connection are not sent again on it.
+ *
+ * The sends are pipelined. A frame is queued and the caller can wait for it to
+ * be written, while all the queued frames are written together in one gathering
+ * write. If the connection fails, the queued frames fail and the next send
+ * opens a new connection.
+ *
+ * A connection is opened outside of any lock shared between the processes,
+ * so a slow or dead process holds back only the senders to itself.
+ *
+ * @author vajih
+ *
+ */
+public class MessageConnection {
+
+	protected final static Logger logger = Logger
+			.getLogger(MessageConnection.class.getName() + "--"
+					+ Thread.currentThread().getName());
+
+	public final static long ConnectTimeout = Long.parseLong(Configuration.getProp("connection_connect_timeout"));
+
+	/* The open connections per remote process. */
+	private final static Map<RemoteProcess, MessageConnection> connections = new ConcurrentHashMap<>();
+	/* The connections being opened per remote process. */
+	private final static Map<RemoteProcess, CompletableFuture<MessageConnection>> opening = new ConcurrentHashMap<>();
+
+	private final static class Frame {
+		final ByteBuffer buffer;
+		final CompletableFuture<Void> written = new CompletableFuture<>();
+
+		Frame(final byte[] payload) {
+			buffer = ByteBuffer.allocate(FrameReader.HeaderSize + payload.length);
+			buffer.putInt(payload.length).put(payload).flip();
+		}
+	}
+
+	private final RemoteProcess remoteProcess;
+	private final AsynchronousSocketChannel channel;
+
+	/* Guarded by this. */
+	private final MessageCodec.Encoder encoder = new MessageCodec.Encoder(
+			FrameReader.MaxFrameSize);
+	private final ArrayDeque<Frame> queued = new ArrayDeque<>();
+	private final List<Frame> inFlight = new ArrayList<>();
+	private boolean closed = false;
+
+	private MessageConnection(final RemoteProcess remoteProcess,
+			final AsynchronousSocketChannel channel) {
+		this.remoteProcess = remoteProcess;
+		this.channel = channel;
+	}
+
+	/**
+	 * Returns the open connection to the remote process, or opens one. If
+	 * another thread is opening it, the caller waits for that thread instead.
+	 *
+	 * @param remoteProcess
+	 * @return
+	 * @throws IOException
+	 *           if the connection is not opened in ConnectTimeout.
+	 * @throws InterruptedException
+	 */
+	public static MessageConnection to(final RemoteProcess remoteProcess)
+			throws IOException, InterruptedException {
+		MessageConnection connection = connections.get(remoteProcess);
+		if (connection != null)
+			return connection;
+
+		final CompletableFuture<MessageConnection> opened = new CompletableFuture<>();
+		final CompletableFuture<MessageConnection> other = opening
+				.putIfAbsent(remoteProcess, opened);
+		if (other != null)
+			return await(remoteProcess, other);
+		try {
+			// The thread opened it before might be just done.
+			connection = connections.get(remoteProcess);
+			if (connection == null) {
+				connection = open(remoteProcess);
+				connections.put(remoteProcess, connection);
+				// It might be closed before being put.
+				if (!connection.isOpen())
+					connections.remove(remoteProcess, connection);
+			}
+			opened.complete(connection);
+			return connection;
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			opened.completeExceptionally(e);
+			throw e;
+		} finally {
+			opening.remove(remoteProcess, opened);
+		}
+	}
+
+	private static MessageConnection await(final RemoteProcess remoteProcess,
+			final CompletableFuture<MessageConnection> opened)
+			throws IOException, InterruptedException {
+		try {
+			return opened.get(ConnectTimeout, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			throw new IOException("Cannot connect to " + remoteProcess,
+					e.getCause());
+		} catch (TimeoutException e) {
+			throw new IOException("Timed out on connecting to " + remoteProcess);
+		}
+	}
+
+	private static MessageConnection open(final RemoteProcess remoteProcess)
+			throws IOException, InterruptedException {
+		final AsynchronousSocketChannel channel = AsynchronousSocketChannel.open();
+		try {
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			channel.connect(remoteProcess.getAddress()).get(ConnectTimeout,
+					TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			channel.close();
+			throw new IOException("Cannot connect to " + remoteProcess, e.getCause());
+		} catch (TimeoutException e) {
+			channel.close();
+			throw new IOException("Timed out on connecting to " + remoteProcess);
+		} catch (InterruptedException e) {
+			channel.close();
+			throw e;
+		}
+		if (Configuration.IsInDeubbungMode)
+			logger.info(Utils.threadName() + "A connection is opened to: "
+					+ remoteProcess);
+		final MessageConnection connection = new MessageConnection(remoteProcess,
+				channel);
+		connection.watchClosing();
+		return connection;
+	}
+
+	/**
+	 * Encodes the message and queues it to be sent. The encoder keeps the
+	 * strings already sent on this connection, so encoding and queuing are done
+	 * together to keep the frames in the order they are encoded.
+	 *
+	 * @param message
+	 * @return A future that is done once the whole frame is written.
+	 * @throws IOException
+	 *           if the message cannot be encoded or is larger than a frame;
+	 *           nothing is sent then.
+	 */
+	public synchronized CompletableFuture<Void> send(final Serializable message)
+			throws IOException {
+		return send(encoder.encode(message));
+	}
+
+	private CompletableFuture<Void> send(final byte[] payload) {
+		final Frame frame = new Frame(payload);
+		synchronized (this) {
+			if (closed) {
+				frame.written.completeExceptionally(
+						new IOException("The connection is closed: " + remoteProcess));
+				return frame.written;
+			}
+			queued.add(frame);
+			if (inFlight.isEmpty())
+				writeQueued();
+		}
+		return frame.written;
+	}
+
+	/*
+	 * Writes the in-flight frames followed by the queued ones. Has to be called
+	 * while holding the lock on this.
+	 */
+	private void writeQueued() {
+		inFlight.addAll(queued);
+		queued.clear();
+		final ByteBuffer[] buffers = new ByteBuffer[inFlight.size()];
+		for (int i = 0; i < buffers.length; ++i)
+			buffers[i] = inFlight.get(i).buffer;
+		channel.write(buffers, 0, buffers.length, 0L,
+				TimeUnit.MILLISECONDS, buffers,
+				new CompletionHandler<Long, ByteBuffer[]>() {
+					@Override
+					public void completed(Long result, ByteBuffer[] buffers) {
+						onWritten();
+					}
+
+					@Override
+					public void failed(Throwable exc, ByteBuffer[] buffers) {
+						close(exc);
+					}
+				});
+	}
+
+	private void onWritten() {
+		final List<Frame> done = new ArrayList<>();
+		synchronized (this) {
+			if (closed)
+				return;
+			while (!inFlight.isEmpty() && !inFlight.get(0).buffer.hasRemaining())
+				done.add(inFlight.remove(0));
+			// After a partial write, the rest of the in-flight frames go first.
+			if (!inFlight.isEmpty() || !queued.isEmpty())
+				writeQueued();
+		}
+		for (Frame frame : done)
+			frame.written.complete(null);
+	}
+
+	/**
+	 * Nothing is expected to be read on a sending connection. A read is kept
+	 * pending, so the connection is dropped as soon as the other side closes it.
+	 */
+	private void watchClosing() {
+		final ByteBuffer buffer = ByteBuffer.allocate(1);
+		channel.read(buffer, null, new CompletionHandler<Integer, Void>() {
+			@Override
+			public void completed(Integer result, Void attachment) {
+				if (result < 0) {
+					close(new IOException("The connection is closed by " + remoteProcess));
+				} else {
+					buffer.clear();
+					channel.read(buffer, null, this);
+				}
+			}
+
+			@Override
+			public void failed(Throwable exc, Void attachment) {
+				close(exc);
+			}
+		});
+	}
+
+	private void close(final Throwable cause) {
+		final List<Frame> failed = new ArrayList<>();
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			failed.addAll(inFlight);
+			failed.addAll(queued);
+			inFlight.clear();
+			queued.clear();
+		}
+		connections.remove(remoteProcess, this);
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.log(Level.SEVERE,
+					Utils.threadName() + "Failed to close the connection to " + remoteProcess, e);
+		}
+		if (Configuration.IsInDeubbungMode)
+			logger.log(Level.INFO, Utils.threadName() + "The connection to "
+					+ remoteProcess + " is closed.", cause);
+		for (Frame frame : failed)
+			frame.written.completeExceptionally(cause);
+	}
+
+	public void close() {
+		close(new IOException("The connection is closed locally: " + remoteProcess));
+	}
+
+	public synchronized boolean isOpen() {
+		return !closed;
+	}
+
+	/**
+	 * Closes all the connections opened in this process.
+	 */
+	public static void closeAll() {
+		for (MessageConnection connection : new ArrayList<>(connections.values()))
+			connection.close();
+	}
+
+	@Override
+	public String toString() {
+		return "MessageConnection [remoteProcess=" + remoteProcess + ", open="
+				+ isOpen() + "]";
+	}
+
+}
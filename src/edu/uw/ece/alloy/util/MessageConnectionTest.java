@@ -0,0 +1,99 @@
+package edu.uw.ece.alloy.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.DataOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.RemoteProcess;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyDiedMessage;
+
+/**
+ * @author vajih
+ *
+ */
+public class MessageConnectionTest {
+
+	final InetSocketAddress senderHost = new InetSocketAddress("localhost", 45671);
+	final InetSocketAddress receiverHost = new InetSocketAddress("localhost", 45672);
+
+	ServerSocketInterface receiver, sender;
+	final List<Long> received = Collections.synchronizedList(new ArrayList<>());
+	final AtomicInteger failed = new AtomicInteger(0);
+
+	@Before
+	public void setUp() throws Exception {
+		receiver = new ServerSocketInterface(receiverHost);
+		receiver.MessageReceived.addListener((s, e) -> received.add(e.getMessage().creationTime));
+		receiver.startThread();
+		Thread.sleep(200);
+
+		sender = new ServerSocketInterface(senderHost, receiverHost);
+		sender.MessageFailed.addListener((s, e) -> failed.incrementAndGet());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		MessageConnection.closeAll();
+		receiver.cancelThread();
+		// The port is released once the listener is stopped.
+		receiver.getThread().join(1000);
+	}
+
+	@Test
+	public void testMessagesArriveInOrderOnOneConnection() throws Exception {
+		final int count = 1000;
+		for (long i = 0; i < count; ++i)
+			sender.sendMessage(new AlloyDiedMessage(new RemoteProcess(senderHost), i));
+
+		for (int wait = 0; received.size() < count && wait < 100; ++wait)
+			Thread.sleep(100);
+
+		assertEquals(0, failed.get());
+		assertEquals(count, received.size());
+		for (int i = 0; i < count; ++i)
+			assertEquals(Long.valueOf(i), received.get(i));
+	}
+
+	@Test
+	public void testReconnectsAfterTheConnectionIsClosed() throws Exception {
+		sender.sendMessage(new AlloyDiedMessage(new RemoteProcess(senderHost), 0));
+		MessageConnection.closeAll();
+		sender.sendMessage(new AlloyDiedMessage(new RemoteProcess(senderHost), 1));
+
+		for (int wait = 0; received.size() < 2 && wait < 100; ++wait)
+			Thread.sleep(100);
+
+		assertEquals(0, failed.get());
+		assertEquals(2, received.size());
+	}
+
+	@Test
+	public void testOversizedFrameClosesTheConnection() throws Exception {
+		try (Socket socket = new Socket(receiverHost.getHostName(), receiverHost.getPort())) {
+			socket.setSoTimeout(10000);
+			final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeInt(FrameReader.MaxFrameSize + 1);
+			out.flush();
+			// The receiver closes its side instead of waiting for the payload.
+			assertEquals(-1, socket.getInputStream().read());
+		}
+
+		// The other connections are not affected.
+		sender.sendMessage(new AlloyDiedMessage(new RemoteProcess(senderHost), 0));
+		for (int wait = 0; received.isEmpty() && wait < 100; ++wait)
+			Thread.sleep(100);
+		assertEquals(0, failed.get());
+		assertEquals(1, received.size());
+	}
+
+}
@@ -1,18 +1,16 @@
 package edu.uw.ece.alloy.util;
 
-import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.net.InetSocketAddress;
 import java.net.SocketOption;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousServerSocketChannel;
 import java.nio.channels.AsynchronousSocketChannel;
-import java.nio.channels.Channels;
 import java.nio.channels.CompletionHandler;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -21,6 +19,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import edu.uw.ece.alloy.Configuration;
+import edu.uw.ece.alloy.debugger.propgen.benchmarker.MessageCodec;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.center.RemoteProcess;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.RemoteMessage;
 import edu.uw.ece.alloy.debugger.propgen.benchmarker.cmnds.alloy.AlloyResponseMessage;
@@ -45,6 +44,9 @@ public class ServerSocketInterface implements Runnable, ThreadToBeMonitored, Sen
 	public final Event<MessageSentEventArgs> MessageFailed;
 	public final Event<MessageReceivedEventArgs> MessageReceived;
 
+	/* The accepted connections that are still being read. */
+	protected final Set<AsynchronousSocketChannel> openConnections = ConcurrentHashMap.newKeySet();
+
 	public ServerSocketInterface(final int hostPort, final int remotePort) {
 		this(new InetSocketAddress(hostPort), new InetSocketAddress(remotePort));
 	}
@@ -161,78 +163,33 @@ public class ServerSocketInterface implements Runnable, ThreadToBeMonitored, Sen
 			Future<AsynchronousSocketChannel> serverFuture = null;
 			
 			AsynchronousSocketChannel clientSocket = null;
-			InputStream connectionInputStream = null;
-			ObjectInputStream ois = null;
 
 			while (!Thread.currentThread().isInterrupted()) {
 				//System.out.println("Thread count:"+java.lang.Thread.activeCount());
 				try {
 					if (Configuration.IsInDeubbungMode) {
-						logger.info(Utils.threadName() + "waiting for a request: " + hostProcess);
+						logger.info(Utils.threadName() + "waiting for a connection: " + hostProcess);
 					}
 
 					
 					 serverFuture = serverSocketChannel.accept();
-					if (Configuration.IsInDeubbungMode) {
-						logger.info(Utils.threadName() + "a message is received on: " + hostProcess);
-					}
-					
 					
-					//try{
 					clientSocket = serverFuture.get();
-					/*}catch (TimeoutException te){
-						te.printStackTrace();
-					}*/
-					//System.out.println("clientSocket->"+ clientSocket.isOpen() + " ,"+clientSocket.getLocalAddress()+", "+clientSocket.getRemoteAddress() );
-					if ((clientSocket != null) && (clientSocket.isOpen())) {
-						
-						connectionInputStream = Channels.newInputStream(clientSocket);
-						ois = new ObjectInputStream(connectionInputStream);
-
-						RemoteMessage message = (RemoteMessage) ois.readObject();
-
-						//System.out.println("recevied message is->" + message.toString());
-
-						
-
-						this.onMessageReceived(new MessageReceivedEventArgs(message,
-								new RemoteProcess((InetSocketAddress) clientSocket.getRemoteAddress())));
+					if (Configuration.IsInDeubbungMode) {
+						logger.info(Utils.threadName() + "a connection is accepted on: " + hostProcess);
+					}
 
-						
+					// A sender keeps its connection open and sends all its messages on it.
+					if ((clientSocket != null) && (clientSocket.isOpen())) {
+						readMessages(clientSocket);
 					}
-				} catch (IOException | InterruptedException | ExecutionException e) {
+				} catch (IOException | ExecutionException e) {
 					logger.log(Level.SEVERE, Utils.threadName() + "Error while listening for request: ", e);
 					e.printStackTrace();
-					e.fillInStackTrace();
-					e.printStackTrace();
 					//throw new RuntimeException(e);
-				} finally {
-
-					if (ois != null) {
-						try {
-							ois.close();
-						} catch (IOException e) {
-							logger.log(Level.SEVERE, Utils.threadName() + "Error while closing InputOutputstream: ", e);
-						}
-					}
-
-					if (connectionInputStream != null) {
-						try {
-							connectionInputStream.close();
-						} catch (IOException e) {
-							logger.log(Level.SEVERE,
-									Utils.threadName() + "Error while closing Connection Inputputstream: ", e);
-						}
-					}
-
-					if (clientSocket != null && clientSocket.isOpen()) {
-						try {
-							clientSocket.close();
-						} catch (IOException e) {
-							logger.log(Level.SEVERE, Utils.threadName() + "Error while closing Client socket: ", e);
-						}
-					}
-					
+				} catch (InterruptedException e) {
+					logger.log(Level.SEVERE, Utils.threadName() + "Listening is interrupted: ", e);
+					Thread.currentThread().interrupt();
 				}
 			}
 
@@ -249,11 +206,52 @@ public class ServerSocketInterface implements Runnable, ThreadToBeMonitored, Sen
 			  logger.log(Level.SEVERE, Utils.threadName() +
 			  "Error while closing AsynchronousServerSocketChannel socket: ",
 			  e); } }
-			 
+
+			for (AsynchronousSocketChannel connection : openConnections) {
+				try {
+					connection.close();
+				} catch (IOException e) {
+					logger.log(Level.SEVERE, Utils.threadName() + "Error while closing Client socket: ", e);
+				}
+			}
+			openConnections.clear();
 		}
 
 	}
 
+	/**
+	 * Reads the framed messages of an accepted connection until it is closed.
+	 * The reading does not block the listening thread.
+	 * 
+	 * @param clientSocket
+	 * @throws IOException
+	 */
+	protected void readMessages(final AsynchronousSocketChannel clientSocket) throws IOException {
+		final RemoteProcess sender = new RemoteProcess((InetSocketAddress) clientSocket.getRemoteAddress());
+		openConnections.add(clientSocket);
+		final MessageCodec.Decoder decoder = new MessageCodec.Decoder();
+		new FrameReader(clientSocket, payload -> {
+			final RemoteMessage message;
+			try {
+				message = (RemoteMessage) decoder.decode(payload);
+			} catch (IOException | ClassNotFoundException | RuntimeException e) {
+				// The strings of the next messages might be defined in this one.
+				logger.log(Level.SEVERE, Utils.threadName() + "A received message cannot be read from: " + sender, e);
+				try {
+					clientSocket.close();
+				} catch (IOException ce) {
+					logger.log(Level.SEVERE, Utils.threadName() + "Error while closing Client socket: ", ce);
+				}
+				return;
+			}
+			this.onMessageReceived(new MessageReceivedEventArgs(message, sender));
+		} , cause -> {
+			openConnections.remove(clientSocket);
+			if (cause != null)
+				logger.log(Level.SEVERE, Utils.threadName() + "The connection from " + sender + " is broken: ", cause);
+		}).start();
+	}
+
 	// protected abstract void onReceivedMessage(final RemoteMessage message);
 
 	protected void onListeningStarted() {
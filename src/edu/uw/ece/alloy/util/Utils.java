@@ -15,6 +15,7 @@ import java.io.UncheckedIOException;
 import java.lang.ProcessBuilder.Redirect;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -22,6 +23,8 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -477,4 +480,25 @@ public class Utils {
 
 	}
 
+	/**
+	 * Content hash of the given string in hex. It is used as a key for caching
+	 * contents, so two equal strings always have the same digest.
+	 * 
+	 * @param content
+	 * @return
+	 */
+	public static String digest(final String content) {
+		try {
+			final MessageDigest md = MessageDigest.getInstance("SHA-256");
+			final byte[] hash = md.digest(content.getBytes(StandardCharsets.UTF_8));
+			final StringBuilder result = new StringBuilder(hash.length * 2);
+			for (byte b : hash) {
+				result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return result.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 }
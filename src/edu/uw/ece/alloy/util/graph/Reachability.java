@@ -0,0 +1,187 @@
+package edu.uw.ece.alloy.util.graph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * All-pairs reachability of a directed graph over the nodes 0..n-1. The
+ * strongly connected components are found first, then the reachable nodes of
+ * each component are closed over the condensed graph as bitsets. The
+ * components come out of Tarjan's algorithm in a reverse topological order, so
+ * a component is closed once all of its successors are closed.
+ *
+ * A node reaches another node if there is a non-empty path between them. So,
+ * a node reaches itself only if it is on a cycle.
+ *
+ * @author vajih
+ *
+ */
+public class Reachability {
+
+	private final static int WordSize = Long.SIZE;
+
+	public final int size;
+	/* node -> its component */
+	private final int[] component;
+	/* component -> the nodes reachable from the component */
+	private final long[][] reachable;
+	/* component -> the number of its nodes */
+	private final int[] componentSize;
+
+	/**
+	 * @param size
+	 *          The number of nodes.
+	 * @param edges
+	 *          from -> tos. A missing node has no outgoing edge.
+	 */
+	public Reachability(final int size, final Map<Integer, ? extends Collection<Integer>> edges) {
+		this.size = size;
+		final int[][] successors = new int[size][];
+		for (int from = 0; from < size; ++from) {
+			final Collection<Integer> tos = edges.containsKey(from) ? edges.get(from) : Collections.emptySet();
+			successors[from] = new int[tos.size()];
+			int i = 0;
+			for (Integer to : tos) {
+				if (to < 0 || to >= size)
+					throw new IllegalArgumentException("The node is out of range: " + from + "->" + to);
+				successors[from][i++] = to;
+			}
+		}
+
+		component = new int[size];
+		final int components = findComponents(successors);
+		componentSize = new int[components];
+		for (int node = 0; node < size; ++node)
+			++componentSize[component[node]];
+
+		final int words = (size + WordSize - 1) / WordSize;
+		reachable = new long[components][words];
+		// The members of each component, grouped in one pass.
+		final int[] start = new int[components + 1];
+		for (int c = 0; c < components; ++c)
+			start[c + 1] = start[c] + componentSize[c];
+		final int[] members = new int[size];
+		final int[] filled = Arrays.copyOf(start, components);
+		for (int node = 0; node < size; ++node)
+			members[filled[component[node]]++] = node;
+
+		// Successor components have lower indices, so they are closed first.
+		for (int c = 0; c < components; ++c) {
+			final long[] bits = reachable[c];
+			for (int m = start[c]; m < start[c + 1]; ++m) {
+				final int from = members[m];
+				for (int to : successors[from]) {
+					final int d = component[to];
+					set(bits, to);
+					if (d != c) {
+						final long[] other = reachable[d];
+						for (int w = 0; w < words; ++w)
+							bits[w] |= other[w];
+					}
+				}
+			}
+			// The nodes of a cycle reach each other.
+			if (componentSize[c] > 1)
+				for (int m = start[c]; m < start[c + 1]; ++m)
+					set(bits, members[m]);
+		}
+	}
+
+	/*
+	 * An iterative Tarjan's algorithm. Returns the number of components and
+	 * fills 'component'. Components are numbered in a reverse topological order.
+	 */
+	private int findComponents(final int[][] successors) {
+		final int[] index = new int[size];
+		final int[] low = new int[size];
+		final boolean[] onStack = new boolean[size];
+		final int[] stack = new int[size];
+		final int[] callNode = new int[size];
+		final int[] callEdge = new int[size];
+		Arrays.fill(index, -1);
+		int stackTop = 0, nextIndex = 0, components = 0;
+
+		for (int root = 0; root < size; ++root) {
+			if (index[root] != -1)
+				continue;
+			int depth = 0;
+			callNode[0] = root;
+			callEdge[0] = 0;
+			index[root] = low[root] = nextIndex++;
+			stack[stackTop++] = root;
+			onStack[root] = true;
+
+			while (depth >= 0) {
+				final int node = callNode[depth];
+				if (callEdge[depth] < successors[node].length) {
+					final int next = successors[node][callEdge[depth]++];
+					if (index[next] == -1) {
+						index[next] = low[next] = nextIndex++;
+						stack[stackTop++] = next;
+						onStack[next] = true;
+						++depth;
+						callNode[depth] = next;
+						callEdge[depth] = 0;
+					} else if (onStack[next]) {
+						low[node] = Math.min(low[node], index[next]);
+					}
+					continue;
+				}
+				if (low[node] == index[node]) {
+					int member;
+					do {
+						member = stack[--stackTop];
+						onStack[member] = false;
+						component[member] = components;
+					} while (member != node);
+					++components;
+				}
+				--depth;
+				if (depth >= 0)
+					low[callNode[depth]] = Math.min(low[callNode[depth]], low[node]);
+			}
+		}
+		return components;
+	}
+
+	private static void set(final long[] bits, final int i) {
+		bits[i / WordSize] |= 1L << (i % WordSize);
+	}
+
+	public boolean hasPath(final int from, final int to) {
+		return (reachable[component[from]][to / WordSize] & (1L << (to % WordSize))) != 0;
+	}
+
+	/**
+	 * @return The number of the nodes reachable from the node.
+	 */
+	public int count(final int from) {
+		int result = 0;
+		for (long word : reachable[component[from]])
+			result += Long.bitCount(word);
+		return result;
+	}
+
+	/**
+	 * Calls the action for each node reachable from the node, in the increasing
+	 * order.
+	 */
+	public void forEach(final int from, final IntConsumer action) {
+		final long[] bits = reachable[component[from]];
+		for (int w = 0; w < bits.length; ++w) {
+			long word = bits[w];
+			while (word != 0) {
+				action.accept(w * WordSize + Long.numberOfTrailingZeros(word));
+				word &= word - 1;
+			}
+		}
+	}
+
+	public boolean inSameComponent(final int a, final int b) {
+		return component[a] == component[b];
+	}
+
+}
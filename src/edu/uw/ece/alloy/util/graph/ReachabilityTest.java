@@ -0,0 +1,72 @@
+package edu.uw.ece.alloy.util.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * @author vajih
+ *
+ */
+public class ReachabilityTest {
+
+	void addEdge(final Map<Integer, Set<Integer>> edges, int from, int to) {
+		edges.computeIfAbsent(from, k -> new HashSet<>()).add(to);
+	}
+
+	@Test
+	public void testChainAndCycle() {
+		final Map<Integer, Set<Integer>> edges = new HashMap<>();
+		// 0->1->2->3->1, 4 alone
+		addEdge(edges, 0, 1);
+		addEdge(edges, 1, 2);
+		addEdge(edges, 2, 3);
+		addEdge(edges, 3, 1);
+		final Reachability reachability = new Reachability(5, edges);
+
+		assertTrue(reachability.hasPath(0, 3));
+		assertFalse(reachability.hasPath(0, 0));
+		assertTrue(reachability.hasPath(2, 2));
+		assertTrue(reachability.inSameComponent(1, 3));
+		assertFalse(reachability.hasPath(3, 0));
+		assertEquals(0, reachability.count(4));
+		assertEquals(3, reachability.count(0));
+
+		final List<Integer> reached = new ArrayList<>();
+		reachability.forEach(0, reached::add);
+		assertEquals(Arrays.asList(1, 2, 3), reached);
+	}
+
+	@Test
+	public void testSameAsFloydWarshall() {
+		final Random random = new Random(7);
+		for (int round = 0; round < 20; ++round) {
+			final int size = 1 + random.nextInt(150);
+			final Map<Integer, Set<Integer>> edges = new HashMap<>();
+			final AdjMatrixEdgeWeightedDigraph graph = new AdjMatrixEdgeWeightedDigraph(size);
+			for (int e = random.nextInt(2 * size); e > 0; --e) {
+				final int from = random.nextInt(size), to = random.nextInt(size);
+				addEdge(edges, from, to);
+				graph.addEdge(new DirectedEdge(from, to, 1));
+			}
+			final Reachability reachability = new Reachability(size, edges);
+			final FloydWarshall expected = new FloydWarshall(graph);
+			for (int from = 0; from < size; ++from)
+				for (int to = 0; to < size; ++to)
+					if (from != to)
+						assertEquals(expected.hasPath(from, to), reachability.hasPath(from, to));
+		}
+	}
+
+}